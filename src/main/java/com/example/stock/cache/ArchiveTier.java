@@ -0,0 +1,102 @@
+package com.example.stock.cache;
+
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.TradeDate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * 热表与归档表的分界
+ * 早于热表 all_stocks_days 最早交易日的日线已迁移到 all_stocks_days_archive，
+ * 按单个交易日查询的语句通过 StockDataMapper.xml 中的 barsTable 片段调用 {@link #isArchived(String)} 选择表
+ * 分界保存在静态字段中，供 MyBatis 动态SQL中的 OGNL 表达式访问
+ * 执行归档的实例每提交一个交易日就推进分界；其它实例定时重新读取热表最早交易日，
+ * 在 stock.archive.tier-refresh-interval-ms 内切换到归档表
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ArchiveTier {
+
+  /**
+   * 热表最早交易日，尚未加载时为最小值，即所有日期都查询热表
+   */
+  private static volatile int hotStart = Integer.MIN_VALUE;
+
+  private final StockDataMapper stockDataMapper;
+
+  /**
+   * 指定日期的日线是否位于归档表
+   *
+   * @param tradeDate 日期字符串，为空时视为最新交易日
+   */
+  public static boolean isArchived(String tradeDate) {
+    if (tradeDate == null || tradeDate.trim().isEmpty()) {
+      return false;
+    }
+    try {
+      return TradeDate.parse(tradeDate.trim()) < hotStart;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * 热表最早交易日
+   */
+  public static int getHotStart() {
+    return hotStart;
+  }
+
+  @PostConstruct
+  public void init() {
+    try {
+      refresh();
+    } catch (Exception e) {
+      log.warn("加载热表最早交易日失败: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * 重新读取热表最早交易日，归档任务结束后调用
+   * 与 {@link #archived} 互斥，避免归档前读到的旧值覆盖刚推进的分界
+   */
+  public synchronized void refresh() {
+    String minDate = stockDataMapper.findMinDate();
+    int start = minDate == null ? Integer.MIN_VALUE : TradeDate.parse(minDate);
+    if (start != hotStart) {
+      hotStart = start;
+      log.info("热表最早交易日: {}", minDate);
+    }
+  }
+
+  /**
+   * 归档事务提交后调用，此后该交易日及更早的日期查询归档表
+   */
+  public synchronized void archived(String tradeDate) {
+    hotStart = Math.max(hotStart, TradeDate.parse(tradeDate) + 1);
+  }
+
+  /**
+   * 定时重新读取，使其它实例执行的归档在本实例生效
+   */
+  @Scheduled(fixedDelayString = "${stock.archive.tier-refresh-interval-ms:60000}",
+      initialDelayString = "${stock.archive.tier-refresh-interval-ms:60000}")
+  public void scheduledRefresh() {
+    try {
+      refresh();
+    } catch (Exception e) {
+      log.warn("刷新热表最早交易日失败: {}", e.getMessage());
+    }
+  }
+
+  @EventListener
+  public void onTradingCalendarChanged(TradingCalendarChangedEvent event) {
+    init();
+  }
+}
@@ -0,0 +1,333 @@
+package com.example.stock.cache;
+
+import com.example.stock.entity.StockData;
+import com.example.stock.model.StrategyState;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * 单只股票的日线序列
+ * 所有K线按交易日升序排列，ordinal 为各条K线对应的交易日序号，
+ * 取某段区间只需二分查找出起止下标，返回 {@link BarWindow} 视图，不复制数据
+ * 数值列中 NaN 表示数据库中的空值，标记列（各策略状态和 Fmark）中 {@link #NULL_STATE} 表示空值
+ * 具体存储方式由 {@link SeriesBackend} 决定：{@link HeapBarSeries} 使用堆内列数组，
+ * {@link OffHeapBarSeries} 使用堆外定长行
+ */
+public abstract class BarSeries {
+
+  /**
+   * 状态列的空值标记
+   */
+  public static final byte NULL_STATE = Byte.MIN_VALUE;
+
+  /**
+   * 数值列下标，用于 {@link #getValue(int, int)}
+   */
+  public static final int OPEN = 0;
+  public static final int HIGH = 1;
+  public static final int LOW = 2;
+  public static final int CLOSE = 3;
+  public static final int PCT_CHG = 4;
+  public static final int VOL = 5;
+  public static final int AMOUNT = 6;
+  public static final int MA120 = 7;
+  public static final int MA250 = 8;
+
+  /**
+   * 数值列的数量
+   */
+  public static final int VALUE_COLUMNS = 9;
+
+  static final StrategyState[] STATES = StrategyState.values();
+
+  /**
+   * Fmark（买卖点）在标记列中的下标，排在各策略状态之后
+   */
+  public static final int FMARK = STATES.length;
+
+  /**
+   * 标记列的数量：各策略状态列和 Fmark 列，每列每条K线占1字节
+   */
+  public static final int FLAG_COLUMNS = STATES.length + 1;
+
+  protected final String tsCode;
+  protected final int size;
+
+  protected BarSeries(String tsCode, int size) {
+    this.tsCode = tsCode;
+    this.size = size;
+  }
+
+  public String getTsCode() {
+    return tsCode;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * 第一个不早于指定交易日序号的K线下标，全部早于时返回 size
+   */
+  public int lowerBound(int ordinal) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (getOrdinal(mid) < ordinal) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * 指定交易日的K线下标，当日无数据（如停牌）时返回 -1
+   */
+  public int indexOf(int ordinal) {
+    int index = lowerBound(ordinal);
+    return index < size && getOrdinal(index) == ordinal ? index : -1;
+  }
+
+  /**
+   * 截取交易日序号在 [fromOrdinal, toOrdinal] 之间的K线
+   */
+  public BarWindow slice(int fromOrdinal, int toOrdinal) {
+    return new BarWindow(this, lowerBound(fromOrdinal), lowerBound(toOrdinal + 1));
+  }
+
+  public abstract int getOrdinal(int index);
+
+  /**
+   * 数值列的值
+   *
+   * @param column 列下标，如 {@link #CLOSE}
+   * @param index  K线下标
+   */
+  public abstract double getValue(int column, int index);
+
+  /**
+   * 标记列的值，空值时返回 {@link #NULL_STATE}
+   *
+   * @param column 标记列下标，策略状态为 {@link StrategyState#ordinal()}，买卖点为 {@link #FMARK}
+   * @param index  K线下标
+   */
+  public abstract byte getFlag(int column, int index);
+
+  /**
+   * 策略状态值，空值时返回 {@link #NULL_STATE}
+   */
+  public byte getState(StrategyState state, int index) {
+    return getFlag(state.ordinal(), index);
+  }
+
+  /**
+   * Fmark 买卖点标记，空值时返回 {@link #NULL_STATE}
+   */
+  public byte getFmark(int index) {
+    return getFlag(FMARK, index);
+  }
+
+  public abstract String getName(int index);
+
+  public double getOpen(int index) {
+    return getValue(OPEN, index);
+  }
+
+  public double getHigh(int index) {
+    return getValue(HIGH, index);
+  }
+
+  public double getLow(int index) {
+    return getValue(LOW, index);
+  }
+
+  public double getClose(int index) {
+    return getValue(CLOSE, index);
+  }
+
+  public double getPctChg(int index) {
+    return getValue(PCT_CHG, index);
+  }
+
+  public double getVol(int index) {
+    return getValue(VOL, index);
+  }
+
+  public double getAmount(int index) {
+    return getValue(AMOUNT, index);
+  }
+
+  public double getMa120(int index) {
+    return getValue(MA120, index);
+  }
+
+  public double getMa250(int index) {
+    return getValue(MA250, index);
+  }
+
+  /**
+   * 以当前序列为基础创建构建器，用于在末尾追加新交易日的K线
+   */
+  public Builder toBuilder() {
+    return toBuilder(size);
+  }
+
+  /**
+   * 以当前序列的前 length 条K线为基础创建构建器，用于重新读取并替换末尾的K线
+   */
+  public Builder toBuilder(int length) {
+    Builder builder = new Builder(tsCode);
+    builder.source = this;
+    builder.sourceLength = length;
+    builder.ensureCapacity(length + 1);
+    for (int i = 0; i < length; i++) {
+      builder.ordinals[i] = getOrdinal(i);
+      for (int c = 0; c < VALUE_COLUMNS; c++) {
+        builder.values[c][i] = getValue(c, i);
+      }
+      for (int f = 0; f < FLAG_COLUMNS; f++) {
+        builder.flags[f][i] = getFlag(f, i);
+      }
+      builder.names[i] = getName(i);
+    }
+    builder.size = length;
+    return builder;
+  }
+
+  /**
+   * 由各列数组直接构建堆内序列，用于从快照文件恢复
+   * 数组长度必须一致，构建后不再复制，调用方不能再修改
+   *
+   * @param values 按数值列下标排列的数值列
+   * @param flags  按标记列下标排列的标记列
+   */
+  static BarSeries fromColumns(String tsCode, int[] ordinals, double[][] values, byte[][] flags, String[] names) {
+    return new HeapBarSeries(tsCode, ordinals.length, ordinals, values, flags, names);
+  }
+
+  /**
+   * 将数值列转换为响应中使用的 BigDecimal，NaN 转换为 null
+   */
+  public static BigDecimal toDecimal(double value) {
+    if (Double.isNaN(value)) {
+      return null;
+    }
+    BigDecimal decimal = BigDecimal.valueOf(value);
+    return decimal.scale() < 0 ? decimal.setScale(0) : decimal;
+  }
+
+  public static Builder builder(String tsCode) {
+    return new Builder(tsCode);
+  }
+
+  /**
+   * 按交易日升序逐条追加K线构建序列
+   */
+  public static final class Builder {
+    private final String tsCode;
+    private int size;
+    private int[] ordinals = new int[256];
+    private double[][] values = new double[VALUE_COLUMNS][256];
+    private byte[][] flags = new byte[FLAG_COLUMNS][256];
+    private String[] names = new String[256];
+    /**
+     * 通过 {@link BarSeries#toBuilder(int)} 创建时的原序列，及从原序列原样复制的K线数量
+     */
+    private BarSeries source;
+    private int sourceLength;
+
+    private Builder(String tsCode) {
+      this.tsCode = tsCode;
+    }
+
+    public String getTsCode() {
+      return tsCode;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /**
+     * 追加一条K线，交易日序号必须大于已追加的K线
+     */
+    public Builder add(int ordinal, StockData row) {
+      if (size > 0 && ordinal <= ordinals[size - 1]) {
+        return this;
+      }
+      ensureCapacity(size + 1);
+      ordinals[size] = ordinal;
+      values[OPEN][size] = toDouble(row.getOpen());
+      values[HIGH][size] = toDouble(row.getHigh());
+      values[LOW][size] = toDouble(row.getLow());
+      values[CLOSE][size] = toDouble(row.getClose());
+      values[PCT_CHG][size] = toDouble(row.getPctChg());
+      values[VOL][size] = toDouble(row.getVol());
+      values[AMOUNT][size] = toDouble(row.getAmount());
+      values[MA120][size] = toDouble(row.getMa120());
+      values[MA250][size] = toDouble(row.getMa250());
+      flags[StrategyState.FIVE_DAYS.ordinal()][size] = toState(row.getFiveDaysState());
+      flags[StrategyState.MACD_GOLDEN.ordinal()][size] = toState(row.getMacdGoldenState());
+      flags[StrategyState.KDJ_GOLDEN.ordinal()][size] = toState(row.getKdjGoldenState());
+      flags[StrategyState.LOW_PRICE.ordinal()][size] = toState(row.getLowPriceState());
+      flags[StrategyState.HIGH_LEVEL.ordinal()][size] = toState(row.getHighLevelState());
+      flags[StrategyState.RISING_VOLUME.ordinal()][size] = toState(row.getRisingVolumeState());
+      flags[FMARK][size] = toState(row.getFmark());
+      // 名称很少变化，与上一条相同时复用同一个引用
+      String name = row.getName();
+      names[size] = size > 0 && name != null && name.equals(names[size - 1]) ? names[size - 1] : name;
+      size++;
+      return this;
+    }
+
+    /**
+     * 构建堆内序列
+     */
+    public BarSeries build() {
+      return build(SeriesBackend.HEAP);
+    }
+
+    /**
+     * 使用指定的存储方式构建序列
+     */
+    public BarSeries build(SeriesBackend backend) {
+      double[][] trimmedValues = new double[VALUE_COLUMNS][];
+      for (int c = 0; c < VALUE_COLUMNS; c++) {
+        trimmedValues[c] = Arrays.copyOf(values[c], size);
+      }
+      byte[][] trimmedFlags = new byte[FLAG_COLUMNS][];
+      for (int f = 0; f < FLAG_COLUMNS; f++) {
+        trimmedFlags[f] = Arrays.copyOf(flags[f], size);
+      }
+      return backend.create(tsCode, Arrays.copyOf(ordinals, size), trimmedValues, trimmedFlags,
+          Arrays.copyOf(names, size), source, sourceLength);
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity <= ordinals.length) {
+        return;
+      }
+      int newLength = Math.max(capacity, ordinals.length * 2);
+      ordinals = Arrays.copyOf(ordinals, newLength);
+      for (int c = 0; c < VALUE_COLUMNS; c++) {
+        values[c] = Arrays.copyOf(values[c], newLength);
+      }
+      for (int f = 0; f < FLAG_COLUMNS; f++) {
+        flags[f] = Arrays.copyOf(flags[f], newLength);
+      }
+      names = Arrays.copyOf(names, newLength);
+    }
+
+    private static double toDouble(BigDecimal value) {
+      return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    private static byte toState(Integer value) {
+      return value == null ? NULL_STATE : value.byteValue();
+    }
+  }
+}
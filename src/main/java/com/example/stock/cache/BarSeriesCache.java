@@ -0,0 +1,269 @@
+package com.example.stock.cache;
+
+import com.example.stock.entity.StockData;
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.TradeDate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按股票缓存完整日线序列
+ * 列表和分析接口返回的每只股票前后41个交易日的数据都从这里切片获得，
+ * 翻页或逐日切换日期时，已缓存股票不再重复查询数据库
+ * 缓存按最近访问顺序淘汰；导入新交易日时为已缓存的序列重新读取最近 reload-days 个交易日并追加新K线
+ * （不少于 stock.sync.overlap-days，单只股票增量同步重叠部分中事后确定的买卖点和重算的状态也会更新），
+ * 交易日历其它变化时整体失效
+ * 新交易日在导入的第一行写入后就会出现在交易日历中，缓存中最近一个交易日的K线可能不完整，
+ * 因此追加时不从上一个最新交易日之后开始，而是把最近几个交易日整体替换为数据库中的数据
+ * 序列的存储方式由 stock.cache.series.backend 决定，off-heap 时K线数据存放在堆外，不占用堆空间
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BarSeriesCache {
+
+  private final StockDataMapper stockDataMapper;
+  private final TradingCalendar tradingCalendar;
+
+  @Value("${stock.cache.series.max-symbols:2000}")
+  private int maxSymbols;
+
+  @Value("${stock.cache.series.backend:heap}")
+  private String backendName;
+
+  @Value("${stock.cache.series.reload-days:5}")
+  private int reloadDays;
+
+  @Value("${stock.sync.overlap-days:5}")
+  private int overlapDays;
+
+  private SeriesBackend backend;
+
+  private Map<String, BarSeries> cache;
+
+  @PostConstruct
+  public void init() {
+    backend = SeriesBackend.parse(backendName);
+    log.info("日线序列存储方式: {}", backend);
+    cache = Collections.synchronizedMap(new LinkedHashMap<String, BarSeries>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, BarSeries> eldest) {
+        return size() > maxSymbols;
+      }
+    });
+  }
+
+  /**
+   * 获取多只股票以指定交易日为中心、前后各 radius 个交易日的K线
+   * 返回顺序与传入的股票代码顺序一致，数据库中没有数据的股票会被跳过
+   *
+   * @param tsCodes       股票代码
+   * @param centerOrdinal 中心交易日序号
+   * @param radius        向前、向后各取的交易日数（不含中心日）
+   * @return K线窗口列表
+   */
+  public List<BarWindow> windows(List<String> tsCodes, int centerOrdinal, int radius) {
+    int fromOrdinal = tradingCalendar.windowStart(centerOrdinal, radius);
+    int toOrdinal = tradingCalendar.windowEnd(centerOrdinal, radius);
+
+    Map<String, BarSeries> seriesByCode = getAll(tsCodes);
+    List<BarWindow> windows = new ArrayList<>(tsCodes.size());
+    for (String tsCode : tsCodes) {
+      BarSeries series = seriesByCode.get(tsCode);
+      if (series != null) {
+        windows.add(series.slice(fromOrdinal, toOrdinal));
+      }
+    }
+    return windows;
+  }
+
+  /**
+   * 获取单只股票的完整序列
+   *
+   * @param tsCode 股票代码
+   * @return 日线序列，没有数据时返回 null
+   */
+  public BarSeries get(String tsCode) {
+    return getAll(Collections.singletonList(tsCode)).get(tsCode);
+  }
+
+  /**
+   * 批量获取股票的完整序列，未缓存的股票通过一次 IN 查询加载
+   *
+   * @param tsCodes 股票代码
+   * @return 股票代码到日线序列的映射，没有数据的股票不包含在内
+   */
+  public Map<String, BarSeries> getAll(Collection<String> tsCodes) {
+    Map<String, BarSeries> result = new LinkedHashMap<>();
+    List<String> missing = new ArrayList<>();
+    for (String tsCode : tsCodes) {
+      BarSeries series = cache.get(tsCode);
+      if (series != null) {
+        result.put(tsCode, series);
+      } else if (!result.containsKey(tsCode) && !missing.contains(tsCode)) {
+        missing.add(tsCode);
+      }
+    }
+    if (!missing.isEmpty()) {
+      for (BarSeries series : load(missing)) {
+        cache.put(series.getTsCode(), series);
+        result.put(series.getTsCode(), series);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 清空缓存
+   */
+  public void invalidateAll() {
+    cache.clear();
+  }
+
+  /**
+   * 当前缓存的全部序列
+   */
+  public List<BarSeries> snapshot() {
+    synchronized (cache) {
+      return new ArrayList<>(cache.values());
+    }
+  }
+
+  /**
+   * 当前使用的存储方式
+   */
+  public SeriesBackend getBackend() {
+    return backend;
+  }
+
+  /**
+   * 放入序列，已存在的同名序列被替换，存储方式与配置不一致的序列先转换
+   */
+  public void putAll(Collection<BarSeries> seriesList) {
+    for (BarSeries series : seriesList) {
+      cache.put(series.getTsCode(), backend.adopt(series));
+    }
+  }
+
+  /**
+   * 只在末尾追加了新交易日时，已有交易日序号不变，为已缓存的序列重新读取 {@link #reloadStart(int)} 起的交易日，
+   * 并追加新K线；否则交易日序号可能整体偏移，已缓存的序列全部失效
+   */
+  @Order(0)
+  @EventListener
+  public void onTradingCalendarChanged(TradingCalendarChangedEvent event) {
+    List<BarSeries> cached = snapshot();
+    if (!event.isAppendOnly() || cached.isEmpty()) {
+      log.info("交易日历已变化，清空日线序列缓存");
+      invalidateAll();
+      return;
+    }
+    try {
+      putAll(reloadFrom(cached, reloadStart(tradingCalendar.ordinalOf(event.getPreviousLatest()) + 1)));
+      log.info("最新交易日{}，已为{}只股票重新读取并追加日线", event.getLatest(), cached.size());
+    } catch (Exception e) {
+      log.warn("追加新交易日日线失败，清空日线序列缓存: {}", e.getMessage());
+      invalidateAll();
+    }
+  }
+
+  /**
+   * 重新读取时的起始交易日序号：已缓存的交易日中最后 max(reload-days, overlap-days) 个
+   * 单只股票接口从缓存的序列中返回增量同步的重叠部分，重新读取的范围须覆盖重叠部分，否则客户端拿到的仍是旧值
+   *
+   * @param cachedDays 已缓存的交易日数量，即缓存时交易日历的长度
+   */
+  public int reloadStart(int cachedDays) {
+    return Math.max(0, cachedDays - Math.max(1, Math.max(reloadDays, overlapDays)));
+  }
+
+  /**
+   * 将序列中交易日序号不小于 fromOrdinal 的K线替换为数据库中的数据（包括新交易日）
+   *
+   * @param base        已有序列，须与当前交易日历的序号一致
+   * @param fromOrdinal 起始交易日序号
+   * @return 替换后的序列，没有变化的序列原样返回
+   */
+  public List<BarSeries> reloadFrom(List<BarSeries> base, int fromOrdinal) {
+    if (base.isEmpty() || fromOrdinal > tradingCalendar.lastOrdinal()) {
+      return base;
+    }
+    Map<String, BarSeries> byCode = new LinkedHashMap<>();
+    for (BarSeries series : base) {
+      byCode.put(series.getTsCode(), series);
+    }
+    Map<String, BarSeries.Builder> builders = new LinkedHashMap<>();
+    String startDate = tradingCalendar.format(tradingCalendar.dateAt(Math.max(0, fromOrdinal)));
+    stockDataMapper.streamSeriesSince(new ArrayList<>(byCode.keySet()), startDate, context -> {
+      StockData row = context.getResultObject();
+      int ordinal = tradingCalendar.ordinalOf(TradeDate.parse(row.getTradeDate()));
+      if (ordinal < 0) {
+        return;
+      }
+      BarSeries.Builder builder = builders.get(row.getTsCode());
+      if (builder == null) {
+        BarSeries series = byCode.get(row.getTsCode());
+        if (series == null) {
+          return;
+        }
+        builder = series.toBuilder(series.lowerBound(fromOrdinal));
+        builders.put(row.getTsCode(), builder);
+      }
+      builder.add(ordinal, row);
+    });
+    for (BarSeries series : base) {
+      BarSeries.Builder builder = builders.get(series.getTsCode());
+      int keep = series.lowerBound(fromOrdinal);
+      if (builder != null) {
+        byCode.put(series.getTsCode(), builder.build(backend));
+      } else if (keep < series.size()) {
+        // 数据库中已没有这些交易日的K线，去掉缓存中的
+        byCode.put(series.getTsCode(), series.toBuilder(keep).build(backend));
+      }
+    }
+    return new ArrayList<>(byCode.values());
+  }
+
+  /**
+   * 从数据库流式读取多只股票的全部日线并构建序列
+   */
+  private List<BarSeries> load(List<String> tsCodes) {
+    long start = System.currentTimeMillis();
+    List<BarSeries> loaded = new ArrayList<>(tsCodes.size());
+    BarSeries.Builder[] current = new BarSeries.Builder[1];
+
+    stockDataMapper.streamSeriesByTsCodes(tsCodes, context -> {
+      StockData row = context.getResultObject();
+      BarSeries.Builder builder = current[0];
+      if (builder == null || !builder.getTsCode().equals(row.getTsCode())) {
+        if (builder != null && builder.size() > 0) {
+          loaded.add(builder.build(backend));
+        }
+        builder = BarSeries.builder(row.getTsCode());
+        current[0] = builder;
+      }
+      int ordinal = tradingCalendar.ordinalOf(TradeDate.parse(row.getTradeDate()));
+      if (ordinal >= 0) {
+        builder.add(ordinal, row);
+      }
+    });
+    if (current[0] != null && current[0].size() > 0) {
+      loaded.add(current[0].build(backend));
+    }
+
+    log.debug("加载{}只股票的日线序列，耗时{}ms", loaded.size(), System.currentTimeMillis() - start);
+    return loaded;
+  }
+}
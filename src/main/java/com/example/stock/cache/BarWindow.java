@@ -0,0 +1,44 @@
+package com.example.stock.cache;
+
+/**
+ * {@link BarSeries} 上的一段连续K线视图，下标区间为 [from, to)
+ * 只记录起止下标，不复制底层数组
+ */
+public final class BarWindow {
+
+  private final BarSeries series;
+  private final int from;
+  private final int to;
+
+  BarWindow(BarSeries series, int from, int to) {
+    this.series = series;
+    this.from = from;
+    this.to = to;
+  }
+
+  public BarSeries getSeries() {
+    return series;
+  }
+
+  /**
+   * 起始下标（包含）
+   */
+  public int getFrom() {
+    return from;
+  }
+
+  /**
+   * 结束下标（不包含）
+   */
+  public int getTo() {
+    return to;
+  }
+
+  public int size() {
+    return to - from;
+  }
+
+  public boolean isEmpty() {
+    return to <= from;
+  }
+}
@@ -0,0 +1,135 @@
+package com.example.stock.cache;
+
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.DailyBreadth;
+import com.example.stock.model.TradeDate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 全市场每日计数的内存汇总
+ * 按交易日序号存放各策略状态、涨跌停、半年线和年线之上的股票数量，每列一个 int 数组；
+ * 首次使用时一次 GROUP BY 汇总全部历史，之后每个新交易日只汇总新增部分，任意区间的时间序列都只是数组截取
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BreadthRollup {
+
+  /**
+   * 各列名称，顺序与列下标一致
+   */
+  public static final String[] COLUMN_NAMES = {
+      "five_days_state", "macd_golden_state", "kdj_golden_state", "low_price_state", "high_level_state",
+      "rising_volume_state", "limit_up", "limit_down", "above_ma120", "above_ma250", "total"
+  };
+
+  private final StockDataMapper stockDataMapper;
+  private final TradingCalendar tradingCalendar;
+
+  private volatile Snapshot snapshot;
+
+  /**
+   * 取交易日序号在 [fromOrdinal, toOrdinal] 之间的各列计数
+   *
+   * @return 按列下标排列的计数数组，每个数组的第 k 个元素对应序号 fromOrdinal + k 的交易日
+   */
+  public int[][] range(int fromOrdinal, int toOrdinal) {
+    Snapshot current = ensureLoaded();
+    int[][] result = new int[COLUMN_NAMES.length][];
+    int to = Math.min(toOrdinal, current.days - 1);
+    for (int c = 0; c < COLUMN_NAMES.length; c++) {
+      result[c] = fromOrdinal > to ? new int[0] : Arrays.copyOfRange(current.counts[c], fromOrdinal, to + 1);
+    }
+    return result;
+  }
+
+  /**
+   * 新交易日导入时重新汇总上一个最新交易日（导入可能在上次刷新后才完成）及之后的交易日；
+   * 日历其它变化时交易日序号可能整体偏移，丢弃汇总，下次使用时重新加载
+   */
+  @EventListener
+  public void onTradingCalendarChanged(TradingCalendarChangedEvent event) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return;
+    }
+    if (!event.isAppendOnly() || event.getPreviousLatest() == 0) {
+      log.info("交易日历已变化，丢弃每日计数汇总");
+      snapshot = null;
+      return;
+    }
+    try {
+      append(current, tradingCalendar.format(event.getPreviousLatest()));
+    } catch (Exception e) {
+      log.warn("追加每日计数失败，下次使用时重新汇总: {}", e.getMessage());
+      snapshot = null;
+    }
+  }
+
+  private Snapshot ensureLoaded() {
+    Snapshot current = snapshot;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (snapshot == null) {
+        long start = System.currentTimeMillis();
+        append(null, null);
+        log.info("每日计数汇总已加载，共{}个交易日，耗时{}ms", snapshot.days, System.currentTimeMillis() - start);
+      }
+      return snapshot;
+    }
+  }
+
+  /**
+   * 汇总 startDate 及之后的交易日，覆盖到 base 之上
+   *
+   * @param base      已有汇总，为 null 时从空白开始
+   * @param startDate 起始交易日，为 null 时汇总全部历史
+   */
+  private synchronized void append(Snapshot base, String startDate) {
+    List<DailyBreadth> rows = stockDataMapper.findDailyBreadth(startDate);
+    int days = tradingCalendar.lastOrdinal() + 1;
+    int[][] counts = new int[COLUMN_NAMES.length][];
+    for (int c = 0; c < COLUMN_NAMES.length; c++) {
+      counts[c] = base == null ? new int[days] : Arrays.copyOf(base.counts[c], days);
+    }
+    for (DailyBreadth row : rows) {
+      int ordinal = tradingCalendar.ordinalOf(TradeDate.parse(row.getTradeDate()));
+      if (ordinal < 0 || ordinal >= days) {
+        continue;
+      }
+      counts[0][ordinal] = row.getFiveDaysState();
+      counts[1][ordinal] = row.getMacdGoldenState();
+      counts[2][ordinal] = row.getKdjGoldenState();
+      counts[3][ordinal] = row.getLowPriceState();
+      counts[4][ordinal] = row.getHighLevelState();
+      counts[5][ordinal] = row.getRisingVolumeState();
+      counts[6][ordinal] = row.getLimitUp();
+      counts[7][ordinal] = row.getLimitDown();
+      counts[8][ordinal] = row.getAboveMa120();
+      counts[9][ordinal] = row.getAboveMa250();
+      counts[10][ordinal] = row.getTotal();
+    }
+    snapshot = new Snapshot(counts, days);
+  }
+
+  /**
+   * 不可变的汇总，追加时整体替换
+   */
+  private static final class Snapshot {
+    private final int[][] counts;
+    private final int days;
+
+    private Snapshot(int[][] counts, int days) {
+      this.counts = counts;
+      this.days = days;
+    }
+  }
+}
@@ -0,0 +1,487 @@
+package com.example.stock.cache;
+
+import java.util.Arrays;
+
+/**
+ * 压缩存储的日线序列
+ * K线按 {@link #BLOCK_SIZE} 条分块独立编码，全部块连续存放在一个字节数组中：
+ * 交易日序号使用二阶差分 + zigzag 变长整数（连续交易日的二阶差分为0，每条只占1字节），标记列（策略状态和 Fmark）按原始字节存放；
+ * 数值列逐块选择编码：块内的值都是不超过 {@link #MAX_SCALE} 位小数的定点数时（价格、成交量通常如此），
+ * 按定点整数做差分 + zigzag 变长整数编码，否则使用 Gorilla 风格的 XOR 编码（与前一条相同时只占1位）
+ *
+ * 每块的起始偏移和首个交易日序号组成跳跃索引，按交易日切片时先在索引上二分定位块，只解码涉及的块；
+ * 最近解码的块缓存在序列上，同一窗口内的连续访问不会重复解码
+ */
+final class CompressedBarSeries extends BarSeries {
+
+  /**
+   * 每块的K线数量
+   */
+  static final int BLOCK_SIZE = 128;
+
+  /**
+   * 定点编码支持的最大小数位数
+   */
+  static final int MAX_SCALE = 4;
+
+  private static final int XOR_ENCODING = -1;
+
+  private static final double[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000};
+
+  /**
+   * 定点编码时超过该绝对值的数值改用 XOR 编码，避免换算为整数时溢出或丢失精度
+   */
+  private static final double MAX_FIXED_POINT = 1L << 52;
+
+  private final byte[] data;
+  private final int[] blockOffsets;
+  private final int[] blockFirstOrdinals;
+  private final NameRuns names;
+
+  /**
+   * 最近解码的块，块本身不可变，并发访问时最多重复解码
+   */
+  private volatile Block lastBlock;
+
+  private CompressedBarSeries(String tsCode, int size, byte[] data, int[] blockOffsets, int[] blockFirstOrdinals,
+      NameRuns names) {
+    super(tsCode, size);
+    this.data = data;
+    this.blockOffsets = blockOffsets;
+    this.blockFirstOrdinals = blockFirstOrdinals;
+    this.names = names;
+  }
+
+  /**
+   * 编码列数组
+   */
+  static CompressedBarSeries create(String tsCode, int[] ordinals, double[][] values, byte[][] flags, String[] names) {
+    int size = ordinals.length;
+    int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    int[] blockOffsets = new int[blocks];
+    int[] blockFirstOrdinals = new int[blocks];
+    BitOutput out = new BitOutput(size * 16 + 16);
+
+    for (int b = 0; b < blocks; b++) {
+      int from = b * BLOCK_SIZE;
+      int to = Math.min(size, from + BLOCK_SIZE);
+      blockOffsets[b] = out.size();
+      blockFirstOrdinals[b] = ordinals[from];
+
+      out.writeVarint(ordinals[from]);
+      int previousDelta = 1;
+      for (int i = from + 1; i < to; i++) {
+        int delta = ordinals[i] - ordinals[i - 1];
+        out.writeVarint(zigzag(delta - previousDelta));
+        previousDelta = delta;
+      }
+      for (int f = 0; f < FLAG_COLUMNS; f++) {
+        for (int i = from; i < to; i++) {
+          out.writeByte(flags[f][i]);
+        }
+      }
+      for (int c = 0; c < VALUE_COLUMNS; c++) {
+        int scale = fixedPointScale(values[c], from, to);
+        out.writeByte(scale);
+        if (scale == XOR_ENCODING) {
+          writeXor(out, values[c], from, to);
+          out.align();
+        } else {
+          writeFixedPoint(out, values[c], from, to, scale);
+        }
+      }
+    }
+    return new CompressedBarSeries(tsCode, size, out.toByteArray(), blockOffsets, blockFirstOrdinals,
+        NameRuns.of(names, size));
+  }
+
+  /**
+   * 先在跳跃索引上定位块，只解码一个块
+   */
+  @Override
+  public int lowerBound(int ordinal) {
+    int b = Arrays.binarySearch(blockFirstOrdinals, ordinal);
+    if (b >= 0) {
+      return b * BLOCK_SIZE;
+    }
+    b = -b - 2;
+    if (b < 0) {
+      return 0;
+    }
+    Block block = block(b);
+    int lo = 0;
+    int hi = block.ordinals.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (block.ordinals[mid] < ordinal) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return b * BLOCK_SIZE + lo;
+  }
+
+  @Override
+  public int getOrdinal(int index) {
+    return blockOf(index).ordinals[index % BLOCK_SIZE];
+  }
+
+  @Override
+  public double getValue(int column, int index) {
+    return blockOf(index).values[column][index % BLOCK_SIZE];
+  }
+
+  @Override
+  public byte getFlag(int column, int index) {
+    return blockOf(index).flags[column][index % BLOCK_SIZE];
+  }
+
+  @Override
+  public String getName(int index) {
+    return names.get(index);
+  }
+
+  /**
+   * 压缩后占用的字节数（不含跳跃索引和名称）
+   */
+  int compressedBytes() {
+    return data.length;
+  }
+
+  private Block blockOf(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("K线下标越界: " + index);
+    }
+    return block(index / BLOCK_SIZE);
+  }
+
+  private Block block(int b) {
+    Block block = lastBlock;
+    if (block == null || block.index != b) {
+      block = decode(b);
+      lastBlock = block;
+    }
+    return block;
+  }
+
+  private Block decode(int b) {
+    int count = Math.min(size - b * BLOCK_SIZE, BLOCK_SIZE);
+    BitInput in = new BitInput(data, blockOffsets[b]);
+
+    int[] ordinals = new int[count];
+    ordinals[0] = in.readVarint();
+    int previousDelta = 1;
+    for (int i = 1; i < count; i++) {
+      int delta = previousDelta + unzigzag(in.readVarint());
+      ordinals[i] = ordinals[i - 1] + delta;
+      previousDelta = delta;
+    }
+    byte[][] flags = new byte[FLAG_COLUMNS][count];
+    for (int f = 0; f < FLAG_COLUMNS; f++) {
+      in.readBytes(flags[f]);
+    }
+    double[][] values = new double[VALUE_COLUMNS][count];
+    for (int c = 0; c < VALUE_COLUMNS; c++) {
+      int scale = in.readByte();
+      if (scale == XOR_ENCODING) {
+        readXor(in, values[c]);
+        in.align();
+      } else {
+        readFixedPoint(in, values[c], scale);
+      }
+    }
+    return new Block(b, ordinals, values, flags);
+  }
+
+  /**
+   * 块内全部非空值都能用同一小数位数的定点整数精确还原时返回该位数，否则返回 {@link #XOR_ENCODING}
+   */
+  private static int fixedPointScale(double[] column, int from, int to) {
+    int scale = 0;
+    for (int i = from; i < to; i++) {
+      double value = column[i];
+      if (Double.isNaN(value)) {
+        continue;
+      }
+      if (Math.abs(value) * POWERS_OF_TEN[MAX_SCALE] >= MAX_FIXED_POINT) {
+        return XOR_ENCODING;
+      }
+      while (!isExact(value, scale)) {
+        if (++scale > MAX_SCALE) {
+          return XOR_ENCODING;
+        }
+      }
+    }
+    return scale;
+  }
+
+  private static boolean isExact(double value, int scale) {
+    double factor = POWERS_OF_TEN[scale];
+    return Double.doubleToRawLongBits(Math.round(value * factor) / factor) == Double.doubleToRawLongBits(value);
+  }
+
+  /**
+   * 定点编码：相邻定点整数的差值做 zigzag 后加1写为变长整数，0 表示空值（NaN）
+   */
+  private static void writeFixedPoint(BitOutput out, double[] column, int from, int to, int scale) {
+    double factor = POWERS_OF_TEN[scale];
+    long previous = 0;
+    for (int i = from; i < to; i++) {
+      double value = column[i];
+      if (Double.isNaN(value)) {
+        out.writeVarLong(0);
+        continue;
+      }
+      long current = Math.round(value * factor);
+      out.writeVarLong(zigzag(current - previous) + 1);
+      previous = current;
+    }
+  }
+
+  private static void readFixedPoint(BitInput in, double[] column, int scale) {
+    double factor = POWERS_OF_TEN[scale];
+    long previous = 0;
+    for (int i = 0; i < column.length; i++) {
+      long encoded = in.readVarLong();
+      if (encoded == 0) {
+        column[i] = Double.NaN;
+        continue;
+      }
+      previous += unzigzag(encoded - 1);
+      column[i] = previous / factor;
+    }
+  }
+
+  /**
+   * Gorilla XOR 编码：首个值原样写入64位；之后与前一个值异或，
+   * 结果为0写1位 0；有效位落在上一次的前导零/尾随零范围内时写 10 + 有效位；
+   * 否则写 11 + 5位前导零数 + 6位有效位长度 + 有效位
+   */
+  private static void writeXor(BitOutput out, double[] column, int from, int to) {
+    long previous = Double.doubleToRawLongBits(column[from]);
+    out.writeBits(previous, 64);
+    int previousLeading = -1;
+    int previousTrailing = 0;
+    for (int i = from + 1; i < to; i++) {
+      long current = Double.doubleToRawLongBits(column[i]);
+      long xor = current ^ previous;
+      if (xor == 0) {
+        out.writeBits(0, 1);
+      } else {
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+          out.writeBits(0b10, 2);
+          out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+          int length = 64 - leading - trailing;
+          out.writeBits(0b11, 2);
+          out.writeBits(leading, 5);
+          out.writeBits(length - 1, 6);
+          out.writeBits(xor >>> trailing, length);
+          previousLeading = leading;
+          previousTrailing = trailing;
+        }
+      }
+      previous = current;
+    }
+  }
+
+  private static void readXor(BitInput in, double[] column) {
+    long previous = in.readBits(64);
+    column[0] = Double.longBitsToDouble(previous);
+    int leading = 0;
+    int trailing = 0;
+    for (int i = 1; i < column.length; i++) {
+      if (in.readBits(1) != 0) {
+        if (in.readBits(1) != 0) {
+          leading = (int) in.readBits(5);
+          int length = (int) in.readBits(6) + 1;
+          trailing = 64 - leading - length;
+        }
+        previous ^= in.readBits(64 - leading - trailing) << trailing;
+      }
+      column[i] = Double.longBitsToDouble(previous);
+    }
+  }
+
+  private static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static int unzigzag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * 解码后的一个块
+   */
+  private static final class Block {
+    private final int index;
+    private final int[] ordinals;
+    private final double[][] values;
+    private final byte[][] flags;
+
+    private Block(int index, int[] ordinals, double[][] values, byte[][] flags) {
+      this.index = index;
+      this.ordinals = ordinals;
+      this.values = values;
+      this.flags = flags;
+    }
+  }
+
+  /**
+   * 按位写入的可增长字节数组，高位在前
+   */
+  private static final class BitOutput {
+    private byte[] buf;
+    private int pos;
+    private int bitPos;
+
+    private BitOutput(int capacity) {
+      buf = new byte[Math.max(16, capacity)];
+    }
+
+    private int size() {
+      return pos + (bitPos > 0 ? 1 : 0);
+    }
+
+    private void writeByte(int value) {
+      align();
+      ensure(pos + 1);
+      buf[pos++] = (byte) value;
+    }
+
+    private void writeVarint(int value) {
+      while ((value & ~0x7F) != 0) {
+        writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      writeByte(value);
+    }
+
+    private void writeVarLong(long value) {
+      while ((value & ~0x7FL) != 0) {
+        writeByte((int) (value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      writeByte((int) value);
+    }
+
+    private void writeBits(long value, int count) {
+      while (count > 0) {
+        ensure(pos + 1);
+        int free = 8 - bitPos;
+        int take = Math.min(free, count);
+        int chunk = (int) (value >>> (count - take)) & ((1 << take) - 1);
+        buf[pos] |= (byte) (chunk << (free - take));
+        count -= take;
+        bitPos += take;
+        if (bitPos == 8) {
+          bitPos = 0;
+          pos++;
+        }
+      }
+    }
+
+    /**
+     * 补齐到字节边界
+     */
+    private void align() {
+      if (bitPos > 0) {
+        bitPos = 0;
+        pos++;
+      }
+    }
+
+    private void ensure(int capacity) {
+      if (capacity > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+      }
+    }
+
+    private byte[] toByteArray() {
+      return Arrays.copyOf(buf, size());
+    }
+  }
+
+  /**
+   * 按位读取字节数组，高位在前
+   */
+  private static final class BitInput {
+    private final byte[] buf;
+    private int pos;
+    private int bitPos;
+
+    private BitInput(byte[] buf, int pos) {
+      this.buf = buf;
+      this.pos = pos;
+    }
+
+    private int readVarint() {
+      int result = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = buf[pos++];
+        result |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return result;
+    }
+
+    private long readVarLong() {
+      long result = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = buf[pos++];
+        result |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return result;
+    }
+
+    private int readByte() {
+      return buf[pos++];
+    }
+
+    private void readBytes(byte[] target) {
+      System.arraycopy(buf, pos, target, 0, target.length);
+      pos += target.length;
+    }
+
+    private long readBits(int count) {
+      long result = 0;
+      while (count > 0) {
+        int available = 8 - bitPos;
+        int take = Math.min(available, count);
+        int chunk = ((buf[pos] & 0xFF) >>> (available - take)) & ((1 << take) - 1);
+        result = (result << take) | chunk;
+        count -= take;
+        bitPos += take;
+        if (bitPos == 8) {
+          bitPos = 0;
+          pos++;
+        }
+      }
+      return result;
+    }
+
+    private void align() {
+      if (bitPos > 0) {
+        bitPos = 0;
+        pos++;
+      }
+    }
+  }
+}
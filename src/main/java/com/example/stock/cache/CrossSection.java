@@ -0,0 +1,214 @@
+package com.example.stock.cache;
+
+import com.example.stock.model.StrategyState;
+import com.example.stock.model.TradeDate;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 单个交易日的全市场截面
+ * 当日全部股票按股票代码升序排列，下标即股票在截面中的位置，各字段按列存放在基本类型数组中；
+ * 各个 {@link SignalPredicate} 在构建时预先计算为位图，多条件筛选只需位图的与、或、非运算；
+ * 各个 {@link SortKey} 在构建时预先排好股票下标，按某列取前N名只需截取数组
+ */
+public final class CrossSection {
+
+  /**
+   * 斜率列的下标，排在 {@link BarSeries} 的各数值列之后
+   */
+  public static final int SLOPE = BarSeries.VALUE_COLUMNS;
+
+  /**
+   * 数值列的数量
+   */
+  public static final int VALUE_COLUMNS = BarSeries.VALUE_COLUMNS + 1;
+
+  private final TradeDate date;
+  private final String[] tsCodes;
+  private final String[] names;
+  private final double[][] values;
+  private final byte[][] flags;
+  private final double marketSlope;
+  private final BitSet[] bitmaps;
+  private final int[][] rankings;
+  private final int[] rankedCounts;
+
+  CrossSection(TradeDate date, String[] tsCodes, String[] names, double[][] values, byte[][] flags,
+      double marketSlope) {
+    this.date = date;
+    this.tsCodes = tsCodes;
+    this.names = names;
+    this.values = values;
+    this.flags = flags;
+    this.marketSlope = marketSlope;
+
+    SignalPredicate[] predicates = SignalPredicate.values();
+    this.bitmaps = new BitSet[predicates.length];
+    for (SignalPredicate predicate : predicates) {
+      BitSet bitmap = new BitSet(tsCodes.length);
+      for (int i = 0; i < tsCodes.length; i++) {
+        if (predicate.test(this, i)) {
+          bitmap.set(i);
+        }
+      }
+      bitmaps[predicate.ordinal()] = bitmap;
+    }
+
+    SortKey[] keys = SortKey.values();
+    this.rankings = new int[keys.length][];
+    this.rankedCounts = new int[keys.length];
+    for (SortKey key : keys) {
+      rank(key);
+    }
+  }
+
+  /**
+   * 按排序键降序排列股票下标，空值排在最后，值相同时按股票代码升序
+   */
+  private void rank(SortKey key) {
+    double[] column = values[key.getColumn()];
+    Integer[] order = new Integer[tsCodes.length];
+    int valid = 0;
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+      if (!Double.isNaN(column[i])) {
+        valid++;
+      }
+    }
+    Arrays.sort(order, (a, b) -> {
+      double x = column[a];
+      double y = column[b];
+      boolean xNull = Double.isNaN(x);
+      boolean yNull = Double.isNaN(y);
+      if (xNull || yNull) {
+        return xNull == yNull ? Integer.compare(a, b) : xNull ? 1 : -1;
+      }
+      int result = Double.compare(y, x);
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+    int[] ranking = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      ranking[i] = order[i];
+    }
+    rankings[key.ordinal()] = ranking;
+    rankedCounts[key.ordinal()] = valid;
+  }
+
+  public TradeDate getDate() {
+    return date;
+  }
+
+  /**
+   * 当日有数据的股票数量
+   */
+  public int size() {
+    return tsCodes.length;
+  }
+
+  public String getTsCode(int index) {
+    return tsCodes[index];
+  }
+
+  public String getName(int index) {
+    return names[index];
+  }
+
+  /**
+   * 股票在截面中的下标，当日无数据时返回 -1
+   */
+  public int indexOf(String tsCode) {
+    int index = Arrays.binarySearch(tsCodes, tsCode);
+    return index >= 0 ? index : -1;
+  }
+
+  /**
+   * 数值列的值，空值为 NaN
+   *
+   * @param column 列下标，{@link BarSeries} 的数值列下标或 {@link #SLOPE}
+   * @param index  股票下标
+   */
+  public double getValue(int column, int index) {
+    return values[column][index];
+  }
+
+  /**
+   * 整个数值列，按股票下标排列，调用方只能读取不能修改
+   *
+   * @param column 列下标，{@link BarSeries} 的数值列下标或 {@link #SLOPE}
+   */
+  public double[] column(int column) {
+    return values[column];
+  }
+
+  /**
+   * 标记列的值，空值为 {@link BarSeries#NULL_STATE}
+   *
+   * @param column 标记列下标，见 {@link BarSeries#getFlag(int, int)}
+   * @param index  股票下标
+   */
+  public byte getFlag(int column, int index) {
+    return flags[column][index];
+  }
+
+  public byte getState(StrategyState state, int index) {
+    return flags[state.ordinal()][index];
+  }
+
+  /**
+   * 当日上证指数斜率，没有数据时为 NaN
+   */
+  public double getMarketSlope() {
+    return marketSlope;
+  }
+
+  /**
+   * 满足条件的股票位图的副本
+   */
+  public BitSet bitmap(SignalPredicate predicate) {
+    return (BitSet) bitmaps[predicate.ordinal()].clone();
+  }
+
+  /**
+   * 满足条件的股票数量
+   */
+  public int count(SignalPredicate predicate) {
+    return bitmaps[predicate.ordinal()].cardinality();
+  }
+
+  /**
+   * 按排序键取一页股票下标
+   * 不过滤时直接截取预先排好的数组；过滤时顺序扫描排列并跳过不满足条件的股票，同样不需要排序
+   * 空值在升序和降序时都排在最后，升序时值相同的股票按代码倒序
+   *
+   * @param key       排序键
+   * @param ascending 是否升序
+   * @param filter    过滤条件，为 null 时不过滤
+   * @param offset    跳过的股票数
+   * @param limit     最多返回的股票数
+   * @return 股票下标
+   */
+  public int[] top(SortKey key, boolean ascending, SignalPredicate filter, int offset, int limit) {
+    int[] ranking = rankings[key.ordinal()];
+    int valid = rankedCounts[key.ordinal()];
+    BitSet bitmap = filter != null ? bitmaps[filter.ordinal()] : null;
+    int[] result = new int[Math.max(0, Math.min(limit, ranking.length - offset))];
+    int count = 0;
+    int skipped = 0;
+    for (int r = bitmap == null ? offset : 0; r < ranking.length && count < result.length; r++) {
+      // 升序时先倒序遍历有值的部分，再按原顺序遍历空值部分
+      int index = ranking[ascending && r < valid ? valid - 1 - r : r];
+      if (bitmap != null) {
+        if (!bitmap.get(index)) {
+          continue;
+        }
+        if (skipped < offset) {
+          skipped++;
+          continue;
+        }
+      }
+      result[count++] = index;
+    }
+    return count == result.length ? result : Arrays.copyOf(result, count);
+  }
+}
@@ -0,0 +1,175 @@
+package com.example.stock.cache;
+
+import com.example.stock.concurrent.SingleFlight;
+import com.example.stock.entity.StockData;
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.StrategyState;
+import com.example.stock.model.TradeDate;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按交易日缓存全市场截面
+ * 每个交易日只查询一次数据库，同一交易日的并发加载合并为一次；缓存按最近访问顺序淘汰，
+ * 交易日历只在末尾追加时丢弃上一个最新交易日和新交易日的截面（导入可能在上次加载后才完成），其它变化时整体失效；
+ * 依赖截面的市场宽度、相对强弱等缓存在同一事件中丢弃各自的结果，本缓存先于它们处理事件，
+ * 避免它们在事件处理期间重新用到未丢弃的旧截面
+ */
+@Slf4j
+@Component
+public class CrossSectionCache {
+
+  private final StockDataMapper stockDataMapper;
+  private final TradingCalendar tradingCalendar;
+  private final SingleFlight<Integer, CrossSection> loads;
+  private final Map<Integer, CrossSection> cache;
+
+  public CrossSectionCache(StockDataMapper stockDataMapper, TradingCalendar tradingCalendar,
+      MeterRegistry meterRegistry, @Value("${stock.cache.cross-section.max-dates:30}") int maxDates) {
+    this.stockDataMapper = stockDataMapper;
+    this.tradingCalendar = tradingCalendar;
+    this.loads = new SingleFlight<>("stock.cross_section.load", meterRegistry);
+    this.cache = Collections.synchronizedMap(new LinkedHashMap<Integer, CrossSection>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, CrossSection> eldest) {
+        return size() > maxDates;
+      }
+    });
+  }
+
+  /**
+   * 获取指定交易日的截面
+   *
+   * @param date 交易日，必须在交易日历中
+   * @return 截面，当日没有数据时为空截面
+   */
+  public CrossSection get(TradeDate date) {
+    if (!date.isTradingDay()) {
+      throw new IllegalArgumentException("不是交易日: " + date);
+    }
+    CrossSection section = cache.get(date.getValue());
+    if (section != null) {
+      return section;
+    }
+    return loads.execute(date.getValue(), () -> {
+      CrossSection loaded = cache.get(date.getValue());
+      if (loaded == null) {
+        loaded = load(date);
+        cache.put(date.getValue(), loaded);
+      }
+      return loaded;
+    });
+  }
+
+  public void invalidateAll() {
+    cache.clear();
+  }
+
+  @Order(0)
+  @EventListener
+  public void onTradingCalendarChanged(TradingCalendarChangedEvent event) {
+    if (!event.isAppendOnly()) {
+      log.info("交易日历已变化，清空全市场截面缓存");
+      invalidateAll();
+      return;
+    }
+    cache.remove(event.getPreviousLatest());
+    cache.remove(event.getLatest());
+  }
+
+  private CrossSection load(TradeDate date) {
+    long start = System.currentTimeMillis();
+    String tradeDate = tradingCalendar.format(date);
+    Columns columns = new Columns();
+    stockDataMapper.streamCrossSection(tradeDate, context -> columns.add(context.getResultObject()));
+    Double marketSlope = stockDataMapper.findMarketSlope(tradeDate);
+    CrossSection section = columns.build(date, marketSlope != null ? marketSlope : Double.NaN);
+    log.debug("加载{}的全市场截面，{}只股票，耗时{}ms", tradeDate, section.size(), System.currentTimeMillis() - start);
+    return section;
+  }
+
+  /**
+   * 逐行收集截面的各列
+   */
+  private static final class Columns {
+    private int size;
+    private String[] tsCodes = new String[4096];
+    private String[] names = new String[4096];
+    private double[][] values = new double[CrossSection.VALUE_COLUMNS][4096];
+    private byte[][] flags = new byte[BarSeries.FLAG_COLUMNS][4096];
+
+    private void add(StockData row) {
+      // 同一股票当日只保留第一条
+      if (size > 0 && row.getTsCode().equals(tsCodes[size - 1])) {
+        return;
+      }
+      ensureCapacity(size + 1);
+      tsCodes[size] = row.getTsCode();
+      names[size] = row.getName();
+      values[BarSeries.OPEN][size] = toDouble(row.getOpen());
+      values[BarSeries.HIGH][size] = toDouble(row.getHigh());
+      values[BarSeries.LOW][size] = toDouble(row.getLow());
+      values[BarSeries.CLOSE][size] = toDouble(row.getClose());
+      values[BarSeries.PCT_CHG][size] = toDouble(row.getPctChg());
+      values[BarSeries.VOL][size] = toDouble(row.getVol());
+      values[BarSeries.AMOUNT][size] = toDouble(row.getAmount());
+      values[BarSeries.MA120][size] = toDouble(row.getMa120());
+      values[BarSeries.MA250][size] = toDouble(row.getMa250());
+      values[CrossSection.SLOPE][size] = toDouble(row.getSlope());
+      flags[StrategyState.FIVE_DAYS.ordinal()][size] = toFlag(row.getFiveDaysState());
+      flags[StrategyState.MACD_GOLDEN.ordinal()][size] = toFlag(row.getMacdGoldenState());
+      flags[StrategyState.KDJ_GOLDEN.ordinal()][size] = toFlag(row.getKdjGoldenState());
+      flags[StrategyState.LOW_PRICE.ordinal()][size] = toFlag(row.getLowPriceState());
+      flags[StrategyState.HIGH_LEVEL.ordinal()][size] = toFlag(row.getHighLevelState());
+      flags[StrategyState.RISING_VOLUME.ordinal()][size] = toFlag(row.getRisingVolumeState());
+      flags[BarSeries.FMARK][size] = toFlag(row.getFmark());
+      size++;
+    }
+
+    private CrossSection build(TradeDate date, double marketSlope) {
+      double[][] trimmedValues = new double[values.length][];
+      for (int c = 0; c < values.length; c++) {
+        trimmedValues[c] = Arrays.copyOf(values[c], size);
+      }
+      byte[][] trimmedFlags = new byte[flags.length][];
+      for (int f = 0; f < flags.length; f++) {
+        trimmedFlags[f] = Arrays.copyOf(flags[f], size);
+      }
+      return new CrossSection(date, Arrays.copyOf(tsCodes, size), Arrays.copyOf(names, size),
+          trimmedValues, trimmedFlags, marketSlope);
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity <= tsCodes.length) {
+        return;
+      }
+      int newLength = Math.max(capacity, tsCodes.length * 2);
+      tsCodes = Arrays.copyOf(tsCodes, newLength);
+      names = Arrays.copyOf(names, newLength);
+      for (int c = 0; c < values.length; c++) {
+        values[c] = Arrays.copyOf(values[c], newLength);
+      }
+      for (int f = 0; f < flags.length; f++) {
+        flags[f] = Arrays.copyOf(flags[f], newLength);
+      }
+    }
+
+    private static double toDouble(BigDecimal value) {
+      return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    private static byte toFlag(Integer value) {
+      return value == null ? BarSeries.NULL_STATE : value.byteValue();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.example.stock.cache;
+
+/**
+ * 堆内日线序列，每列一个基本类型数组
+ */
+final class HeapBarSeries extends BarSeries {
+
+  private final int[] ordinals;
+  private final double[][] values;
+  private final byte[][] flags;
+  private final String[] names;
+
+  HeapBarSeries(String tsCode, int size, int[] ordinals, double[][] values, byte[][] flags, String[] names) {
+    super(tsCode, size);
+    this.ordinals = ordinals;
+    this.values = values;
+    this.flags = flags;
+    this.names = names;
+  }
+
+  @Override
+  public int getOrdinal(int index) {
+    return ordinals[index];
+  }
+
+  @Override
+  public double getValue(int column, int index) {
+    return values[column][index];
+  }
+
+  @Override
+  public byte getFlag(int column, int index) {
+    return flags[column][index];
+  }
+
+  @Override
+  public String getName(int index) {
+    return names[index];
+  }
+}
@@ -0,0 +1,92 @@
+package com.example.stock.cache;
+
+/**
+ * 单个交易日的市场宽度
+ * 计数与各列表接口的统计口径一致，均线之上沿用 {@link SignalPredicate#HALF_YEAR_LINE} 和
+ * {@link SignalPredicate#YEAR_LINE} 的定义
+ */
+public final class MarketBreadth {
+
+  private final int total;
+  private final int advancers;
+  private final int decliners;
+  private final int unchanged;
+  private final int limitUp;
+  private final int limitDown;
+  private final int aboveMa120;
+  private final int aboveMa250;
+  private final int newHighs;
+  private final int newLows;
+
+  MarketBreadth(int total, int advancers, int decliners, int unchanged, int limitUp, int limitDown,
+      int aboveMa120, int aboveMa250, int newHighs, int newLows) {
+    this.total = total;
+    this.advancers = advancers;
+    this.decliners = decliners;
+    this.unchanged = unchanged;
+    this.limitUp = limitUp;
+    this.limitDown = limitDown;
+    this.aboveMa120 = aboveMa120;
+    this.aboveMa250 = aboveMa250;
+    this.newHighs = newHighs;
+    this.newLows = newLows;
+  }
+
+  /**
+   * 当日有数据的股票数量
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * 上涨家数
+   */
+  public int getAdvancers() {
+    return advancers;
+  }
+
+  /**
+   * 下跌家数
+   */
+  public int getDecliners() {
+    return decliners;
+  }
+
+  /**
+   * 平盘家数，涨跌幅为空的股票不计入涨、跌、平
+   */
+  public int getUnchanged() {
+    return unchanged;
+  }
+
+  public int getLimitUp() {
+    return limitUp;
+  }
+
+  public int getLimitDown() {
+    return limitDown;
+  }
+
+  public int getAboveMa120() {
+    return aboveMa120;
+  }
+
+  public int getAboveMa250() {
+    return aboveMa250;
+  }
+
+  /**
+   * 创52周新高的股票数量
+   */
+  public int getNewHighs() {
+    return newHighs;
+  }
+
+  /**
+   * 创52周新低的股票数量
+   */
+  public int getNewLows() {
+    return newLows;
+  }
+}
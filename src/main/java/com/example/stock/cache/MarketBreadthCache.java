@@ -0,0 +1,131 @@
+package com.example.stock.cache;
+
+import com.example.stock.concurrent.SingleFlight;
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.TradeDate;
+import com.example.stock.model.YearHighLow;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * 按交易日缓存市场宽度
+ * 涨跌家数、涨跌停、均线之上的数量在该日截面上按分块并行一次扫描得到，52周新高新低由一次汇总查询得到；
+ * 每个交易日的结果只有十个整数，计算后一直保留，不随截面缓存淘汰
+ */
+@Slf4j
+@Component
+public class MarketBreadthCache {
+
+  /**
+   * 52周对应的交易日数
+   */
+  private static final int YEAR_DAYS = 250;
+
+  /**
+   * 并行扫描时每个分块包含的股票数
+   */
+  private static final int CHUNK_SIZE = 1024;
+
+  private final StockDataMapper stockDataMapper;
+  private final TradingCalendar tradingCalendar;
+  private final CrossSectionCache crossSectionCache;
+  private final SingleFlight<Integer, MarketBreadth> loads;
+  private final Map<Integer, MarketBreadth> cache = new ConcurrentHashMap<>();
+
+  public MarketBreadthCache(StockDataMapper stockDataMapper, TradingCalendar tradingCalendar,
+      CrossSectionCache crossSectionCache, MeterRegistry meterRegistry) {
+    this.stockDataMapper = stockDataMapper;
+    this.tradingCalendar = tradingCalendar;
+    this.crossSectionCache = crossSectionCache;
+    this.loads = new SingleFlight<>("stock.breadth.load", meterRegistry);
+  }
+
+  /**
+   * 获取指定交易日的市场宽度
+   *
+   * @param date 交易日，必须在交易日历中
+   */
+  public MarketBreadth get(TradeDate date) {
+    if (!date.isTradingDay()) {
+      throw new IllegalArgumentException("不是交易日: " + date);
+    }
+    MarketBreadth breadth = cache.get(date.getValue());
+    if (breadth != null) {
+      return breadth;
+    }
+    return loads.execute(date.getValue(), () -> {
+      MarketBreadth loaded = cache.get(date.getValue());
+      if (loaded == null) {
+        loaded = compute(date);
+        cache.put(date.getValue(), loaded);
+      }
+      return loaded;
+    });
+  }
+
+  /**
+   * 新交易日导入时丢弃上一个最新交易日和新交易日的结果（导入可能在上次计算后才完成），日历其它变化时全部丢弃
+   * 事件在导入新交易日的第一行后就会发布，此时新交易日的截面还不完整，因此不预先计算，等首次请求时再计算；
+   * 截面缓存先于本缓存处理事件，重新计算时不会用到丢弃前的旧截面
+   */
+  @EventListener
+  public void onTradingCalendarChanged(TradingCalendarChangedEvent event) {
+    if (!event.isAppendOnly()) {
+      cache.clear();
+      return;
+    }
+    cache.remove(event.getPreviousLatest());
+    cache.remove(event.getLatest());
+  }
+
+  private MarketBreadth compute(TradeDate date) {
+    long start = System.currentTimeMillis();
+    CrossSection section = crossSectionCache.get(date);
+    double[] pctChg = section.column(BarSeries.PCT_CHG);
+    int size = section.size();
+    int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+    // 每个分块统计上涨、下跌、平盘家数，最后合并
+    int[] counts = IntStream.range(0, chunks).parallel()
+        .mapToObj(chunk -> {
+          int[] partial = new int[3];
+          int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+          for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+            double value = pctChg[i];
+            if (value > 0) {
+              partial[0]++;
+            } else if (value < 0) {
+              partial[1]++;
+            } else if (value == 0) {
+              partial[2]++;
+            }
+          }
+          return partial;
+        })
+        .reduce(new int[3], (a, b) -> new int[]{a[0] + b[0], a[1] + b[1], a[2] + b[2]});
+
+    int newHighs = 0;
+    int newLows = 0;
+    if (date.getOrdinal() > 0) {
+      String tradeDate = tradingCalendar.format(date);
+      String startDate = tradingCalendar.format(tradingCalendar.dateAt(Math.max(0, date.getOrdinal() - YEAR_DAYS)));
+      YearHighLow highLow = stockDataMapper.countYearHighsLows(tradeDate, startDate);
+      if (highLow != null) {
+        newHighs = highLow.getNewHighs() != null ? highLow.getNewHighs() : 0;
+        newLows = highLow.getNewLows() != null ? highLow.getNewLows() : 0;
+      }
+    }
+
+    MarketBreadth breadth = new MarketBreadth(size, counts[0], counts[1], counts[2],
+        section.count(SignalPredicate.LIMIT_UP), section.count(SignalPredicate.LIMIT_DOWN),
+        section.count(SignalPredicate.HALF_YEAR_LINE), section.count(SignalPredicate.YEAR_LINE), newHighs, newLows);
+    log.debug("计算{}的市场宽度，耗时{}ms", date, System.currentTimeMillis() - start);
+    return breadth;
+  }
+}
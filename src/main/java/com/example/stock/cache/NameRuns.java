@@ -0,0 +1,42 @@
+package com.example.stock.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按连续段存储的股票名称
+ * 名称只在更名时变化，只记录每段的起始下标和名称，按下标查找时二分定位所在段
+ */
+final class NameRuns {
+
+  private final int[] starts;
+  private final String[] names;
+
+  private NameRuns(int[] starts, String[] names) {
+    this.starts = starts;
+    this.names = names;
+  }
+
+  static NameRuns of(String[] names, int size) {
+    List<Integer> starts = new ArrayList<>();
+    List<String> runNames = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      String name = names[i];
+      if (i == 0 || !(name == null ? names[i - 1] == null : name.equals(names[i - 1]))) {
+        starts.add(i);
+        runNames.add(name);
+      }
+    }
+    int[] runStarts = new int[starts.size()];
+    for (int r = 0; r < runStarts.length; r++) {
+      runStarts[r] = starts.get(r);
+    }
+    return new NameRuns(runStarts, runNames.toArray(new String[0]));
+  }
+
+  String get(int index) {
+    int run = Arrays.binarySearch(starts, index);
+    return names[run >= 0 ? run : -run - 2];
+  }
+}
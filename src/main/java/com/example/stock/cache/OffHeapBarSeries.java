@@ -0,0 +1,160 @@
+package com.example.stock.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 堆外日线序列
+ * 每条K线占用一个定长行，全部行连续存放在一个直接内存 ByteBuffer 中，访问方法按下标计算偏移直接读取，
+ * 堆上只保留缓冲区对象和名称（名称只记录变化位置），完整历史的大小不再影响堆大小和GC停顿
+ *
+ * 缓冲区分配时预留空闲行，导入新交易日时新K线直接写入原缓冲区的空闲行，由新的序列对象共享缓冲区，
+ * 不再每天为每只股票重新分配直接内存；原序列对象可见的行不会被修改，正在读取原序列的请求不受影响
+ *
+ * 行布局（本机字节序，共 {@link #STRIDE} 字节）：
+ * [0, 4) 交易日序号 int；[4, 4 + 标记列数) 各策略状态和 Fmark byte；[16, 16 + 8 × 数值列数) 各数值列 double
+ */
+final class OffHeapBarSeries extends BarSeries {
+
+  private static final int ORDINAL_OFFSET = 0;
+  private static final int FLAG_OFFSET = 4;
+  private static final int VALUE_OFFSET = 16;
+
+  /**
+   * 每条K线占用的字节数，保持8字节对齐
+   */
+  static final int STRIDE = VALUE_OFFSET + VALUE_COLUMNS * 8;
+
+  /**
+   * 分配缓冲区时至少预留的空闲行数，约为一个半月的交易日
+   */
+  private static final int MIN_SPARE_ROWS = 32;
+
+  static {
+    if (FLAG_OFFSET + FLAG_COLUMNS > VALUE_OFFSET) {
+      throw new IllegalStateException("标记列数量超出堆外行布局");
+    }
+  }
+
+  private final ByteBuffer rows;
+  /**
+   * 缓冲区中已被某个序列对象使用的行数，多个序列对象共享同一个计数
+   */
+  private final AtomicInteger usedRows;
+  private final NameRuns names;
+
+  private OffHeapBarSeries(String tsCode, int size, ByteBuffer rows, AtomicInteger usedRows, NameRuns names) {
+    super(tsCode, size);
+    this.rows = rows;
+    this.usedRows = usedRows;
+    this.names = names;
+  }
+
+  /**
+   * 将列数组写入新分配的直接内存，预留 max(32, size / 16) 个空闲行
+   */
+  static OffHeapBarSeries create(String tsCode, int[] ordinals, double[][] values, byte[][] flags, String[] names) {
+    int size = ordinals.length;
+    int capacity = size + Math.max(MIN_SPARE_ROWS, size / 16);
+    ByteBuffer rows = ByteBuffer.allocateDirect(capacity * STRIDE).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < size; i++) {
+      writeRow(rows, i, ordinals, values, flags);
+    }
+    return new OffHeapBarSeries(tsCode, size, rows, new AtomicInteger(size), NameRuns.of(names, size));
+  }
+
+  /**
+   * 在当前缓冲区的空闲行中追加K线，得到共享缓冲区的新序列
+   * 只有当前序列是缓冲区上最新的序列、空闲行足够，且新数据中下标 [sourceLength, size) 的K线与当前序列相同时才能追加，
+   * 否则返回 null，由调用方重新分配
+   *
+   * @param sourceLength 新数据中原样复制自当前序列的K线数量，这些K线不需要比较
+   * @return 新序列，不能就地追加时返回 null
+   */
+  OffHeapBarSeries appendInPlace(int[] ordinals, double[][] values, byte[][] flags, String[] names,
+      int sourceLength) {
+    int newSize = ordinals.length;
+    if (newSize < size || (long) newSize * STRIDE > rows.capacity()) {
+      return null;
+    }
+    // 重新读取的K线有变化（如导入过程中缓存的不完整交易日）时不能覆盖原序列可见的行
+    for (int i = sourceLength; i < size; i++) {
+      if (!rowEquals(i, ordinals, values, flags)) {
+        return null;
+      }
+    }
+    // 占用空闲行，同一缓冲区上的旧序列或并发的另一次追加都会在这里失败
+    if (!usedRows.compareAndSet(size, newSize)) {
+      return null;
+    }
+    for (int i = size; i < newSize; i++) {
+      writeRow(rows, i, ordinals, values, flags);
+    }
+    return new OffHeapBarSeries(tsCode, newSize, rows, usedRows, NameRuns.of(names, newSize));
+  }
+
+  private static void writeRow(ByteBuffer rows, int index, int[] ordinals, double[][] values, byte[][] flags) {
+    int base = index * STRIDE;
+    rows.putInt(base + ORDINAL_OFFSET, ordinals[index]);
+    for (int f = 0; f < FLAG_COLUMNS; f++) {
+      rows.put(base + FLAG_OFFSET + f, flags[f][index]);
+    }
+    for (int c = 0; c < VALUE_COLUMNS; c++) {
+      rows.putDouble(base + VALUE_OFFSET + c * 8, values[c][index]);
+    }
+  }
+
+  private boolean rowEquals(int index, int[] ordinals, double[][] values, byte[][] flags) {
+    int base = index * STRIDE;
+    if (rows.getInt(base + ORDINAL_OFFSET) != ordinals[index]) {
+      return false;
+    }
+    for (int f = 0; f < FLAG_COLUMNS; f++) {
+      if (rows.get(base + FLAG_OFFSET + f) != flags[f][index]) {
+        return false;
+      }
+    }
+    for (int c = 0; c < VALUE_COLUMNS; c++) {
+      if (Double.doubleToLongBits(rows.getDouble(base + VALUE_OFFSET + c * 8))
+          != Double.doubleToLongBits(values[c][index])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int getOrdinal(int index) {
+    return rows.getInt(offset(index) + ORDINAL_OFFSET);
+  }
+
+  @Override
+  public double getValue(int column, int index) {
+    return rows.getDouble(offset(index) + VALUE_OFFSET + column * 8);
+  }
+
+  @Override
+  public byte getFlag(int column, int index) {
+    return rows.get(offset(index) + FLAG_OFFSET + column);
+  }
+
+  @Override
+  public String getName(int index) {
+    return names.get(index);
+  }
+
+  /**
+   * 堆外占用的字节数（含空闲行，与共享同一缓冲区的其它序列对象重复计算）
+   */
+  long offHeapBytes() {
+    return rows.capacity();
+  }
+
+  private int offset(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("K线下标越界: " + index);
+    }
+    return index * STRIDE;
+  }
+}
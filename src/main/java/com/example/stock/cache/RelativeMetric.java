@@ -0,0 +1,43 @@
+package com.example.stock.cache;
+
+/**
+ * 相对强弱指标
+ * 两个指标都由窗口内每日的相对对数收益 ln(1 + 个股涨跌幅) - ln(1 + 指数涨跌幅) 累加得到，
+ * 大于0表示强于基准指数，小于0表示弱于基准指数
+ */
+public enum RelativeMetric {
+
+  /** 窗口内个股相对基准指数的超额收益（百分比） */
+  RATIO("ratio"),
+  /** 累计相对对数收益对交易日的回归斜率（百分比/交易日） */
+  SLOPE("slope");
+
+  private final String name;
+
+  RelativeMetric(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * 根据名称查找指标，大小写不敏感
+   *
+   * @param name 指标名称，为空时返回 {@link #RATIO}
+   * @return 指标
+   * @throws IllegalArgumentException 名称未知时
+   */
+  public static RelativeMetric parse(String name) {
+    if (name == null || name.trim().isEmpty()) {
+      return RATIO;
+    }
+    for (RelativeMetric metric : values()) {
+      if (metric.name.equalsIgnoreCase(name.trim())) {
+        return metric;
+      }
+    }
+    throw new IllegalArgumentException("不支持的相对强弱指标: " + name + "，可选 ratio、slope");
+  }
+}
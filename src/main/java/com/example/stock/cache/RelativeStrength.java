@@ -0,0 +1,180 @@
+package com.example.stock.cache;
+
+import java.util.Arrays;
+
+/**
+ * 单个交易日全市场相对某个指数在某个窗口上的相对强弱
+ * 股票下标与当日的 {@link CrossSection} 一致；窗口内数据不足的股票指标为 NaN，不参与排名和计数；
+ * 各指标在构建时预先按降序排好股票下标，强于基准的股票位于排列开头，弱于基准的位于有值部分的末尾，
+ * 按强弱过滤和分页只需截取数组
+ */
+public final class RelativeStrength {
+
+  private final CrossSection section;
+  private final String benchmark;
+  private final String benchmarkName;
+  private final int window;
+  private final double benchmarkReturn;
+  private final double[][] values;
+  private final int[][] rankings;
+  private final int[] positives;
+  private final int[] negatives;
+
+  RelativeStrength(CrossSection section, String benchmark, String benchmarkName, int window,
+      double benchmarkReturn, double[][] values) {
+    this.section = section;
+    this.benchmark = benchmark;
+    this.benchmarkName = benchmarkName;
+    this.window = window;
+    this.benchmarkReturn = benchmarkReturn;
+    this.values = values;
+
+    RelativeMetric[] metrics = RelativeMetric.values();
+    this.rankings = new int[metrics.length][];
+    this.positives = new int[metrics.length];
+    this.negatives = new int[metrics.length];
+    for (RelativeMetric metric : metrics) {
+      rank(metric);
+    }
+  }
+
+  /**
+   * 按指标降序排列有值的股票下标，值相同时按股票代码升序
+   */
+  private void rank(RelativeMetric metric) {
+    double[] column = values[metric.ordinal()];
+    Integer[] order = new Integer[column.length];
+    int valid = 0;
+    int positive = 0;
+    int negative = 0;
+    for (int i = 0; i < column.length; i++) {
+      double value = column[i];
+      if (Double.isNaN(value)) {
+        continue;
+      }
+      order[valid++] = i;
+      if (value > 0) {
+        positive++;
+      } else if (value < 0) {
+        negative++;
+      }
+    }
+    Arrays.sort(order, 0, valid, (a, b) -> {
+      int result = Double.compare(column[b], column[a]);
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+    int[] ranking = new int[valid];
+    for (int i = 0; i < valid; i++) {
+      ranking[i] = order[i];
+    }
+    rankings[metric.ordinal()] = ranking;
+    positives[metric.ordinal()] = positive;
+    negatives[metric.ordinal()] = negative;
+  }
+
+  /**
+   * 计算所用的截面
+   */
+  public CrossSection getSection() {
+    return section;
+  }
+
+  /**
+   * 基准指数代码
+   */
+  public String getBenchmark() {
+    return benchmark;
+  }
+
+  public String getBenchmarkName() {
+    return benchmarkName;
+  }
+
+  /**
+   * 窗口包含的交易日数
+   */
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * 基准指数在窗口内的收益（百分比）
+   */
+  public double getBenchmarkReturn() {
+    return benchmarkReturn;
+  }
+
+  /**
+   * 股票的指标值，数据不足时为 NaN
+   *
+   * @param index 股票在截面中的下标
+   */
+  public double getValue(RelativeMetric metric, int index) {
+    return values[metric.ordinal()][index];
+  }
+
+  /**
+   * 有指标值的股票数量
+   */
+  public int count(RelativeMetric metric) {
+    return rankings[metric.ordinal()].length;
+  }
+
+  /**
+   * 指标大于0（强于基准）的股票数量
+   */
+  public int countOutperform(RelativeMetric metric) {
+    return positives[metric.ordinal()];
+  }
+
+  /**
+   * 指标小于0（弱于基准）的股票数量
+   */
+  public int countUnderperform(RelativeMetric metric) {
+    return negatives[metric.ordinal()];
+  }
+
+  /**
+   * 股票按指标降序的名次（从1开始）
+   *
+   * @param index 股票在截面中的下标
+   * @return 名次，没有指标值时返回 0
+   */
+  public int rankOf(RelativeMetric metric, int index) {
+    int[] ranking = rankings[metric.ordinal()];
+    for (int r = 0; r < ranking.length; r++) {
+      if (ranking[r] == index) {
+        return r + 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * 按指标取一页股票下标
+   *
+   * @param metric    指标
+   * @param ascending 是否升序，升序时值相同的股票按代码倒序
+   * @param sign      过滤条件：1 只取强于基准的股票，-1 只取弱于基准的股票，0 不过滤
+   * @param offset    跳过的股票数
+   * @param limit     最多返回的股票数
+   * @return 股票下标
+   */
+  public int[] top(RelativeMetric metric, boolean ascending, int sign, int offset, int limit) {
+    int[] ranking = rankings[metric.ordinal()];
+    int from = sign < 0 ? ranking.length - negatives[metric.ordinal()] : 0;
+    int to = sign > 0 ? positives[metric.ordinal()] : ranking.length;
+    int[] result = new int[Math.max(0, Math.min(limit, to - from - offset))];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = ranking[ascending ? to - 1 - offset - i : from + offset + i];
+    }
+    return result;
+  }
+
+  /**
+   * 按过滤条件计算的股票数量，与 {@link #top} 的 sign 参数含义相同
+   */
+  public int count(RelativeMetric metric, int sign) {
+    return sign > 0 ? countOutperform(metric) : sign < 0 ? countUnderperform(metric) : count(metric);
+  }
+}
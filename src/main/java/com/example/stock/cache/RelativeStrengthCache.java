@@ -0,0 +1,269 @@
+package com.example.stock.cache;
+
+import com.example.stock.concurrent.SingleFlight;
+import com.example.stock.entity.StockData;
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.TradeDate;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 全市场相对任意指数的相对强弱
+ * 以 index 表中的任一指数为基准，读取窗口内全部股票和该指数的涨跌幅，按股票分块并行计算
+ * {@link RelativeMetric} 中的各指标；涨跌幅已考虑除权，不受送转和分红影响，停牌日个股收益记为0
+ * 结果按（基准，窗口，交易日）缓存，按最近访问顺序淘汰；窗口只能取 stock.relative-strength.windows 中的值，
+ * 交易日历只在末尾追加时丢弃上一个最新交易日的结果（导入可能在上次计算后才完成），其它变化时全部丢弃
+ */
+@Slf4j
+@Component
+public class RelativeStrengthCache {
+
+  /**
+   * 并行计算时每个分块包含的股票数
+   */
+  private static final int CHUNK_SIZE = 256;
+
+  private final StockDataMapper stockDataMapper;
+  private final TradingCalendar tradingCalendar;
+  private final CrossSectionCache crossSectionCache;
+  private final SingleFlight<Key, RelativeStrength> loads;
+  private final Map<Key, RelativeStrength> cache;
+  private final int[] windows;
+
+  public RelativeStrengthCache(StockDataMapper stockDataMapper, TradingCalendar tradingCalendar,
+      CrossSectionCache crossSectionCache, MeterRegistry meterRegistry,
+      @Value("${stock.relative-strength.cache-size:64}") int cacheSize,
+      @Value("${stock.relative-strength.windows:20,60,120,250}") String windows) {
+    this.stockDataMapper = stockDataMapper;
+    this.tradingCalendar = tradingCalendar;
+    this.crossSectionCache = crossSectionCache;
+    this.loads = new SingleFlight<>("stock.relative_strength.load", meterRegistry);
+    this.cache = Collections.synchronizedMap(new LinkedHashMap<Key, RelativeStrength>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, RelativeStrength> eldest) {
+        return size() > cacheSize;
+      }
+    });
+    this.windows = Arrays.stream(windows.split(","))
+        .map(String::trim)
+        .filter(text -> !text.isEmpty())
+        .mapToInt(Integer::parseInt)
+        .filter(window -> window > 1)
+        .distinct()
+        .sorted()
+        .toArray();
+    if (this.windows.length == 0) {
+      throw new IllegalStateException("stock.relative-strength.windows 至少需要一个大于1的窗口");
+    }
+  }
+
+  /**
+   * 可选的窗口（交易日数），升序
+   */
+  public int[] getWindows() {
+    return windows.clone();
+  }
+
+  /**
+   * 获取指定交易日全市场相对基准指数的相对强弱
+   *
+   * @param benchmark 基准指数代码
+   * @param window    窗口包含的交易日数，必须是 {@link #getWindows()} 中的值
+   * @param date      交易日，必须在交易日历中
+   * @return 相对强弱
+   * @throws IllegalArgumentException 窗口不可选、交易日之前的历史不足一个窗口或基准指数在窗口内没有数据时
+   */
+  public RelativeStrength get(String benchmark, int window, TradeDate date) {
+    if (!date.isTradingDay()) {
+      throw new IllegalArgumentException("不是交易日: " + date);
+    }
+    if (Arrays.binarySearch(windows, window) < 0) {
+      throw new IllegalArgumentException("不支持的窗口: " + window + "，可选 " + Arrays.toString(windows));
+    }
+    if (benchmark == null || benchmark.trim().isEmpty()) {
+      throw new IllegalArgumentException("基准指数不能为空");
+    }
+    Key key = new Key(benchmark.trim(), window, date.getValue());
+    RelativeStrength strength = cache.get(key);
+    if (strength != null) {
+      return strength;
+    }
+    return loads.execute(key, () -> {
+      RelativeStrength loaded = cache.get(key);
+      if (loaded == null) {
+        loaded = compute(key.benchmark, window, date);
+        cache.put(key, loaded);
+      }
+      return loaded;
+    });
+  }
+
+  @EventListener
+  public void onTradingCalendarChanged(TradingCalendarChangedEvent event) {
+    synchronized (cache) {
+      if (!event.isAppendOnly()) {
+        cache.clear();
+      } else {
+        cache.keySet().removeIf(key -> key.date == event.getPreviousLatest());
+      }
+    }
+  }
+
+  private RelativeStrength compute(String benchmark, int window, TradeDate date) {
+    long start = System.currentTimeMillis();
+    int toOrdinal = date.getOrdinal();
+    int fromOrdinal = toOrdinal - window + 1;
+    if (fromOrdinal < 0) {
+      throw new IllegalArgumentException(date + "之前的交易日不足" + window + "个");
+    }
+    // 窗口内各交易日在数据库中的日期字符串到窗口内位置的映射
+    Map<String, Integer> offsets = new HashMap<>(window * 2);
+    for (int d = 0; d < window; d++) {
+      offsets.put(tradingCalendar.format(tradingCalendar.dateAt(fromOrdinal + d)), d);
+    }
+    String startDate = tradingCalendar.format(tradingCalendar.dateAt(fromOrdinal));
+    String endDate = tradingCalendar.format(date);
+
+    List<StockData> indexBars = stockDataMapper.findIndexPctChg(benchmark, startDate, endDate);
+    if (indexBars.isEmpty()) {
+      throw new IllegalArgumentException("基准指数" + benchmark + "在" + startDate + "至" + endDate + "之间没有数据");
+    }
+    double[] benchmarkLog = new double[window];
+    String benchmarkName = null;
+    for (StockData bar : indexBars) {
+      Integer offset = offsets.get(bar.getTradeDate());
+      if (offset != null && bar.getPctChg() != null) {
+        benchmarkLog[offset] = Math.log1p(bar.getPctChg().doubleValue() / 100);
+      }
+      if (bar.getName() != null) {
+        benchmarkName = bar.getName();
+      }
+    }
+
+    // 当日有数据的股票参与计算，按截面下标存放各股票窗口内的对数收益，没有数据的交易日为 NaN
+    CrossSection section = crossSectionCache.get(date);
+    int size = section.size();
+    double[] stockLog = new double[size * window];
+    Arrays.fill(stockLog, Double.NaN);
+    stockDataMapper.streamWindowPctChg(startDate, endDate, context -> {
+      StockData row = context.getResultObject();
+      if (row.getPctChg() == null) {
+        return;
+      }
+      int index = section.indexOf(row.getTsCode());
+      Integer offset = offsets.get(row.getTradeDate());
+      if (index >= 0 && offset != null) {
+        stockLog[index * window + offset] = Math.log1p(row.getPctChg().doubleValue() / 100);
+      }
+    });
+
+    double[][] values = new double[RelativeMetric.values().length][size];
+    int minPoints = Math.max(2, (window + 1) / 2);
+    int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    IntStream.range(0, chunks).parallel().forEach(chunk -> {
+      int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+      for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+        computeStock(stockLog, i * window, benchmarkLog, minPoints, values, i);
+      }
+    });
+
+    double benchmarkSum = 0;
+    for (double value : benchmarkLog) {
+      benchmarkSum += value;
+    }
+    RelativeStrength strength = new RelativeStrength(section, benchmark, benchmarkName, window,
+        Math.expm1(benchmarkSum) * 100, values);
+    log.debug("计算{}相对{}的{}日相对强弱，{}只股票，耗时{}ms", endDate, benchmark, window, size,
+        System.currentTimeMillis() - start);
+    return strength;
+  }
+
+  /**
+   * 计算单只股票的各指标
+   * 从窗口内第一条日线的前一日起累加每日相对对数收益，停牌日个股收益记为0；
+   * 窗口内日线少于 minPoints 条（如新股）时各指标为 NaN
+   *
+   * @param stockLog     全部股票的对数收益
+   * @param base         该股票在 stockLog 中的起始位置
+   * @param benchmarkLog 基准指数的对数收益，没有数据的交易日为0
+   * @param values       按指标排列的结果数组
+   * @param index        股票在截面中的下标
+   */
+  private static void computeStock(double[] stockLog, int base, double[] benchmarkLog, int minPoints,
+      double[][] values, int index) {
+    int window = benchmarkLog.length;
+    int first = -1;
+    int points = 0;
+    for (int d = 0; d < window; d++) {
+      if (!Double.isNaN(stockLog[base + d])) {
+        if (first < 0) {
+          first = d;
+        }
+        points++;
+      }
+    }
+    if (points < minPoints) {
+      values[RelativeMetric.RATIO.ordinal()][index] = Double.NaN;
+      values[RelativeMetric.SLOPE.ordinal()][index] = Double.NaN;
+      return;
+    }
+
+    // 回归点 (x, y)：x 为窗口内位置，从 first - 1 处的 y = 0 开始
+    double y = 0;
+    double sumX = first - 1;
+    double sumY = 0;
+    double sumXX = (double) (first - 1) * (first - 1);
+    double sumXY = 0;
+    for (int d = first; d < window; d++) {
+      double value = stockLog[base + d];
+      y += (Double.isNaN(value) ? 0 : value) - benchmarkLog[d];
+      sumX += d;
+      sumY += y;
+      sumXX += (double) d * d;
+      sumXY += d * y;
+    }
+    int n = window - first + 1;
+    values[RelativeMetric.RATIO.ordinal()][index] = Math.expm1(y) * 100;
+    values[RelativeMetric.SLOPE.ordinal()][index] = (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX) * 100;
+  }
+
+  /**
+   * 缓存的键
+   */
+  private static final class Key {
+    private final String benchmark;
+    private final int window;
+    private final int date;
+
+    private Key(String benchmark, int window, int date) {
+      this.benchmark = benchmark;
+      this.window = window;
+      this.date = date;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return window == other.window && date == other.date && benchmark.equals(other.benchmark);
+    }
+
+    @Override
+    public int hashCode() {
+      return (benchmark.hashCode() * 31 + window) * 31 + date;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.example.stock.cache;
+
+/**
+ * 日线序列的存储方式，通过 stock.cache.series.backend 配置
+ */
+public enum SeriesBackend {
+
+  /** 堆内列数组 */
+  HEAP {
+    @Override
+    BarSeries create(String tsCode, int[] ordinals, double[][] values, byte[][] flags, String[] names) {
+      return new HeapBarSeries(tsCode, ordinals.length, ordinals, values, flags, names);
+    }
+
+    @Override
+    boolean owns(BarSeries series) {
+      return series instanceof HeapBarSeries;
+    }
+  },
+
+  /** 堆外定长行 */
+  OFF_HEAP {
+    @Override
+    BarSeries create(String tsCode, int[] ordinals, double[][] values, byte[][] flags, String[] names) {
+      return OffHeapBarSeries.create(tsCode, ordinals, values, flags, names);
+    }
+
+    @Override
+    BarSeries create(String tsCode, int[] ordinals, double[][] values, byte[][] flags, String[] names,
+        BarSeries source, int sourceLength) {
+      if (source instanceof OffHeapBarSeries) {
+        BarSeries appended = ((OffHeapBarSeries) source).appendInPlace(ordinals, values, flags, names, sourceLength);
+        if (appended != null) {
+          return appended;
+        }
+      }
+      return create(tsCode, ordinals, values, flags, names);
+    }
+
+    @Override
+    boolean owns(BarSeries series) {
+      return series instanceof OffHeapBarSeries;
+    }
+  },
+
+  /** 分块压缩，XOR/差分编码 */
+  COMPRESSED {
+    @Override
+    BarSeries create(String tsCode, int[] ordinals, double[][] values, byte[][] flags, String[] names) {
+      return CompressedBarSeries.create(tsCode, ordinals, values, flags, names);
+    }
+
+    @Override
+    boolean owns(BarSeries series) {
+      return series instanceof CompressedBarSeries;
+    }
+  };
+
+  abstract BarSeries create(String tsCode, int[] ordinals, double[][] values, byte[][] flags, String[] names);
+
+  /**
+   * 由原序列修改得到的新序列，前 sourceLength 条K线与原序列相同
+   * 默认与 {@link #create(String, int[], double[][], byte[][], String[])} 相同，存储方式可以据此复用原序列的存储
+   *
+   * @param source 原序列，不是由已有序列修改得到时为 null
+   */
+  BarSeries create(String tsCode, int[] ordinals, double[][] values, byte[][] flags, String[] names,
+      BarSeries source, int sourceLength) {
+    return create(tsCode, ordinals, values, flags, names);
+  }
+
+  abstract boolean owns(BarSeries series);
+
+  /**
+   * 转换为当前存储方式，已是当前存储方式时原样返回
+   */
+  public BarSeries adopt(BarSeries series) {
+    return owns(series) ? series : series.toBuilder().build(this);
+  }
+
+  /**
+   * 解析配置值，支持 heap、off-heap、off_heap，大小写不敏感
+   */
+  public static SeriesBackend parse(String value) {
+    return valueOf(value.trim().replace('-', '_').toUpperCase());
+  }
+}
@@ -0,0 +1,326 @@
+package com.example.stock.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 日线序列快照
+ * 关闭时和每次导入新交易日后，把交易日历和 {@link BarSeriesCache} 中的全部序列写入版本化的二进制文件，
+ * 启动时以内存映射方式读取、校验并直接放入缓存，再从数据库重新读取快照中最近几个交易日并补齐之后的新交易日，
+ * 重启后无需逐只股票重新查询完整历史
+ *
+ * 文件格式（大端）：
+ * magic(8) version(4) valueColumns(4) flagColumns(4) calendarLength(4) calendar(int[])
+ * seriesCount(4) { tsCode(str) size(4) ordinals(int[]) values(double[] × valueColumns)
+ * flags(byte[] × flagColumns) nameRuns(4) { index(4) name(str) } }
+ * crc32(8)，str 为 长度(4) + UTF-8，长度 -1 表示 null
+ */
+@Slf4j
+@Component
+public class SeriesSnapshotStore implements SmartLifecycle {
+
+  private static final long MAGIC = 0x53544B534E415031L; // "STKSNAP1"
+  private static final int VERSION = 2;
+
+  private final BarSeriesCache barSeriesCache;
+  private final TradingCalendar tradingCalendar;
+  private final boolean enabled;
+  private final Path file;
+
+  private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "series-snapshot");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private volatile boolean running;
+
+  public SeriesSnapshotStore(BarSeriesCache barSeriesCache, TradingCalendar tradingCalendar,
+      @Value("${stock.cache.snapshot.enabled:true}") boolean enabled,
+      @Value("${stock.cache.snapshot.path:./data/series.snapshot}") String path) {
+    this.barSeriesCache = barSeriesCache;
+    this.tradingCalendar = tradingCalendar;
+    this.enabled = enabled;
+    this.file = Paths.get(path);
+  }
+
+  /**
+   * 启动时恢复快照
+   */
+  @Override
+  public void start() {
+    running = true;
+    if (!enabled || !Files.exists(file)) {
+      return;
+    }
+    long begin = System.currentTimeMillis();
+    try {
+      Restored restored = read();
+      int[] dates = tradingCalendar.toArray();
+      if (!TradingCalendar.isPrefix(restored.calendar, dates)) {
+        log.warn("快照中的交易日历与数据库不一致，丢弃快照");
+        return;
+      }
+      // 快照可能写于导入过程中，最近几个交易日重新读取
+      List<BarSeries> series = barSeriesCache.reloadFrom(restored.series,
+          barSeriesCache.reloadStart(restored.calendar.length));
+      barSeriesCache.putAll(series);
+      log.info("已从快照恢复{}只股票的日线序列，补齐{}个新交易日，耗时{}ms", series.size(),
+          dates.length - restored.calendar.length, System.currentTimeMillis() - begin);
+    } catch (Exception e) {
+      log.warn("读取日线序列快照失败，忽略快照: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * 关闭时写入快照
+   */
+  @Override
+  public void stop() {
+    running = false;
+    writer.shutdown();
+    try {
+      writer.awaitTermination(30, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (enabled) {
+      writeQuietly();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * 在数据源等依赖之后启动、之前停止
+   */
+  @Override
+  public int getPhase() {
+    return Integer.MAX_VALUE - 1000;
+  }
+
+  /**
+   * 新交易日的K线追加到缓存之后写入快照
+   */
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  @EventListener
+  public void onTradingCalendarChanged(TradingCalendarChangedEvent event) {
+    if (enabled && running) {
+      writer.execute(this::writeQuietly);
+    }
+  }
+
+  private void writeQuietly() {
+    try {
+      write();
+    } catch (Exception e) {
+      log.warn("写入日线序列快照失败: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * 写入临时文件后原子替换，读取方不会看到写了一半的文件
+   */
+  synchronized void write() throws IOException {
+    long begin = System.currentTimeMillis();
+    int[] calendar = tradingCalendar.toArray();
+    List<BarSeries> seriesList = barSeriesCache.snapshot();
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    CRC32 crc = new CRC32();
+    try (OutputStream raw = Files.newOutputStream(temp)) {
+      CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(raw, 1 << 16), crc);
+      DataOutputStream out = new DataOutputStream(checked);
+      out.writeLong(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(BarSeries.VALUE_COLUMNS);
+      out.writeInt(BarSeries.FLAG_COLUMNS);
+      out.writeInt(calendar.length);
+      for (int date : calendar) {
+        out.writeInt(date);
+      }
+      out.writeInt(seriesList.size());
+      for (BarSeries series : seriesList) {
+        writeSeries(out, series);
+      }
+      out.flush();
+      // 校验和本身不计入校验范围
+      DataOutputStream trailer = new DataOutputStream(raw);
+      trailer.writeLong(crc.getValue());
+      trailer.flush();
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    log.info("已写入日线序列快照，{}只股票，{}字节，耗时{}ms", seriesList.size(), Files.size(file),
+        System.currentTimeMillis() - begin);
+  }
+
+  private static void writeSeries(DataOutputStream out, BarSeries series) throws IOException {
+    int size = series.size();
+    writeString(out, series.getTsCode());
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      out.writeInt(series.getOrdinal(i));
+    }
+    for (int c = 0; c < BarSeries.VALUE_COLUMNS; c++) {
+      for (int i = 0; i < size; i++) {
+        out.writeDouble(series.getValue(c, i));
+      }
+    }
+    for (int f = 0; f < BarSeries.FLAG_COLUMNS; f++) {
+      for (int i = 0; i < size; i++) {
+        out.writeByte(series.getFlag(f, i));
+      }
+    }
+    // 名称很少变化，只记录发生变化的位置
+    List<Integer> runStarts = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      if (i == 0 || !equals(series.getName(i), series.getName(i - 1))) {
+        runStarts.add(i);
+      }
+    }
+    out.writeInt(runStarts.size());
+    for (int start : runStarts) {
+      out.writeInt(start);
+      writeString(out, series.getName(start));
+    }
+  }
+
+  private Restored read() throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length < 8 + 8 || length > Integer.MAX_VALUE) {
+        throw new IOException("快照文件大小无效: " + length);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      ByteBuffer body = buffer.duplicate();
+      body.limit((int) length - 8);
+      CRC32 crc = new CRC32();
+      crc.update(body);
+      if (crc.getValue() != buffer.getLong((int) length - 8)) {
+        throw new IOException("快照文件校验和不匹配");
+      }
+
+      buffer.limit((int) length - 8);
+      if (buffer.getLong() != MAGIC) {
+        throw new IOException("不是日线序列快照文件");
+      }
+      int version = buffer.getInt();
+      int valueColumns = buffer.getInt();
+      int flagColumns = buffer.getInt();
+      if (version != VERSION || valueColumns != BarSeries.VALUE_COLUMNS
+          || flagColumns != BarSeries.FLAG_COLUMNS) {
+        throw new IOException("快照版本或列布局不兼容: version=" + version);
+      }
+      int[] calendar = new int[buffer.getInt()];
+      buffer.asIntBuffer().get(calendar);
+      buffer.position(buffer.position() + calendar.length * 4);
+
+      int count = buffer.getInt();
+      List<BarSeries> series = new ArrayList<>(count);
+      for (int s = 0; s < count; s++) {
+        series.add(readSeries(buffer, calendar.length));
+      }
+      return new Restored(calendar, series);
+    }
+  }
+
+  private static BarSeries readSeries(ByteBuffer buffer, int calendarLength) throws IOException {
+    String tsCode = readString(buffer);
+    int size = buffer.getInt();
+    int[] ordinals = new int[size];
+    buffer.asIntBuffer().get(ordinals);
+    buffer.position(buffer.position() + size * 4);
+    if (size > 0 && ordinals[size - 1] >= calendarLength) {
+      throw new IOException("快照中" + tsCode + "的交易日序号越界");
+    }
+    double[][] values = new double[BarSeries.VALUE_COLUMNS][size];
+    for (double[] column : values) {
+      buffer.asDoubleBuffer().get(column);
+      buffer.position(buffer.position() + size * 8);
+    }
+    byte[][] flags = new byte[BarSeries.FLAG_COLUMNS][size];
+    for (byte[] column : flags) {
+      buffer.get(column);
+    }
+    String[] names = new String[size];
+    int runs = buffer.getInt();
+    int[] starts = new int[runs];
+    String[] runNames = new String[runs];
+    for (int r = 0; r < runs; r++) {
+      starts[r] = buffer.getInt();
+      runNames[r] = readString(buffer);
+    }
+    for (int r = 0; r < runs; r++) {
+      int end = r + 1 < runs ? starts[r + 1] : size;
+      for (int i = starts[r]; i < end; i++) {
+        names[i] = runNames[r];
+      }
+    }
+    return BarSeries.fromColumns(tsCode, ordinals, values, flags, names);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static boolean equals(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static final class Restored {
+    private final int[] calendar;
+    private final List<BarSeries> series;
+
+    private Restored(int[] calendar, List<BarSeries> series) {
+      this.calendar = calendar;
+      this.series = series;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.example.stock.cache;
+
+import com.example.stock.model.StrategyState;
+
+/**
+ * 截面上的基础筛选条件
+ * 与 StockDataMapper.findWindowTsCodes 中的各个 filter 含义一致，每个条件在截面加载时预先计算为位图
+ */
+public enum SignalPredicate {
+
+  /** 五日调整 */
+  FIVE_DAYS("five_days", "five_days_state") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getState(StrategyState.FIVE_DAYS, i) == 1;
+    }
+  },
+  /** MACD金叉 */
+  MACD_GOLDEN("macd_golden", "macd_golden_state") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getState(StrategyState.MACD_GOLDEN, i) == 1;
+    }
+  },
+  /** KDJ金叉 */
+  KDJ_GOLDEN("kdj_golden", "kdj_golden_state") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getState(StrategyState.KDJ_GOLDEN, i) == 1;
+    }
+  },
+  /** 低位资金净流入 */
+  LOW_PRICE("low_price", "low_price_state") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getState(StrategyState.LOW_PRICE, i) == 1;
+    }
+  },
+  /** 高位资金净流出 */
+  HIGH_LEVEL("high_level", "high_level_state") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getState(StrategyState.HIGH_LEVEL, i) == 1;
+    }
+  },
+  /** 连涨放量 */
+  RISING_VOLUME("rising_volume", "rising_volume_state") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getState(StrategyState.RISING_VOLUME, i) == 1;
+    }
+  },
+  /** 收盘价在半年线之上 */
+  HALF_YEAR_LINE("ma120", "half_year_line") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getValue(BarSeries.CLOSE, i) > orZero(section.getValue(BarSeries.MA120, i));
+    }
+  },
+  /** 收盘价在年线之上 */
+  YEAR_LINE("ma250", "year_line") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getValue(BarSeries.CLOSE, i) > orZero(section.getValue(BarSeries.MA250, i));
+    }
+  },
+  /** 斜率强于大盘 */
+  OUTPERFORM("outperform") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getValue(CrossSection.SLOPE, i) > section.getMarketSlope();
+    }
+  },
+  /** 斜率弱于大盘 */
+  UNDERPERFORM("underperform") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getValue(CrossSection.SLOPE, i) < section.getMarketSlope();
+    }
+  },
+  /** 涨停（涨幅不低于6%） */
+  LIMIT_UP("limit_up") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getValue(BarSeries.PCT_CHG, i) >= 6.0;
+    }
+  },
+  /** 跌停（跌幅不低于6%） */
+  LIMIT_DOWN("limit_down") {
+    @Override
+    boolean test(CrossSection section, int i) {
+      return section.getValue(BarSeries.PCT_CHG, i) <= -6.0;
+    }
+  };
+
+  private final String[] names;
+
+  SignalPredicate(String... names) {
+    this.names = names;
+  }
+
+  /**
+   * 截面中第 i 只股票是否满足条件，空值（NaN）参与比较时不满足
+   */
+  abstract boolean test(CrossSection section, int i);
+
+  /**
+   * 条件在表达式中使用的名称
+   */
+  public String getName() {
+    return names[0];
+  }
+
+  /**
+   * 根据名称查找条件，大小写不敏感
+   *
+   * @param name 条件名称
+   * @return 对应的条件，未知名称时返回 null
+   */
+  public static SignalPredicate fromName(String name) {
+    for (SignalPredicate predicate : values()) {
+      for (String alias : predicate.names) {
+        if (alias.equalsIgnoreCase(name)) {
+          return predicate;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static double orZero(double value) {
+    return Double.isNaN(value) ? 0 : value;
+  }
+}
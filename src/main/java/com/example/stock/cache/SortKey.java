@@ -0,0 +1,55 @@
+package com.example.stock.cache;
+
+/**
+ * 截面排序键
+ * 每个交易日的截面加载时按各排序键预先排好股票下标，取前N名和分页只需截取数组
+ */
+public enum SortKey {
+
+  /** 涨跌幅 */
+  PCT_CHG("pct_chg", BarSeries.PCT_CHG),
+  /** 成交量 */
+  VOL("vol", BarSeries.VOL),
+  /** 成交额 */
+  AMOUNT("amount", BarSeries.AMOUNT),
+  /** 斜率 */
+  SLOPE("slope", CrossSection.SLOPE);
+
+  private final String name;
+  private final int column;
+
+  SortKey(String name, int column) {
+    this.name = name;
+    this.column = column;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * 排序所用的截面数值列
+   */
+  int getColumn() {
+    return column;
+  }
+
+  /**
+   * 根据名称查找排序键，大小写不敏感
+   *
+   * @param name 排序键名称，为空时返回 null
+   * @return 排序键
+   * @throws IllegalArgumentException 名称未知时
+   */
+  public static SortKey parse(String name) {
+    if (name == null || name.trim().isEmpty()) {
+      return null;
+    }
+    for (SortKey key : values()) {
+      if (key.name.equalsIgnoreCase(name.trim())) {
+        return key;
+      }
+    }
+    throw new IllegalArgumentException("不支持的排序字段: " + name + "，可选 pct_chg、vol、amount、slope");
+  }
+}
@@ -0,0 +1,318 @@
+package com.example.stock.cache;
+
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.TradeDate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 交易日历
+ * 将 all_stocks_days 中的全部交易日按升序缓存为 int 数组，数组下标即交易日序号
+ * 前后N个交易日、日期距离等计算都转换为序号上的整数运算，不再依赖字符串比较或SQL查询
+ * 日历变化时发布 {@link TradingCalendarChangedEvent}，依赖交易日序号的缓存据此失效；
+ * 最新交易日可能分批导入，日历同时记录其行数，行数变化时也发布事件，使缓存中不完整的最新交易日重新加载
+ * 定时检查和请求触发的刷新都交给单独的后台线程执行，事件在释放锁之后发布，
+ * 各缓存的重新加载既不占用调度线程和请求线程，也不阻塞读取日历或等待刷新的其它线程
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TradingCalendar {
+
+  /**
+   * 请求日期晚于已知最新交易日时，两次强制刷新之间的最小间隔
+   */
+  private static final long MIN_FORCED_REFRESH_INTERVAL_MS = 5000;
+
+  private final StockDataMapper stockDataMapper;
+  private final ApplicationEventPublisher eventPublisher;
+
+  private volatile Snapshot snapshot;
+
+  private volatile long lastRefreshMillis;
+
+  /**
+   * 执行刷新和事件监听的后台线程，单线程保证事件按刷新顺序发布
+   */
+  private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "trading-calendar-refresh");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * 已提交、尚未开始的刷新，避免重复排队
+   */
+  private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+  /**
+   * 定时检查数据库中是否有新的交易日，有则重新加载日历
+   */
+  @Scheduled(fixedDelayString = "${stock.calendar.refresh-interval-ms:60000}")
+  public void scheduledRefresh() {
+    requestRefresh();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    refresher.shutdownNow();
+  }
+
+  /**
+   * 检查最新交易日及其行数，最新交易日变化时重新加载整个日历，只有行数变化时沿用原日历
+   * 事件在调用线程上、释放锁之后发布；定时和请求触发的刷新经 {@link #requestRefresh()} 在后台线程调用
+   *
+   * @return 日历或最新交易日的数据是否发生变化
+   */
+  public boolean refresh() {
+    TradingCalendarChangedEvent event;
+    boolean changed;
+    synchronized (this) {
+      Snapshot before = snapshot;
+      event = reload();
+      changed = snapshot != before;
+    }
+    if (event != null) {
+      eventPublisher.publishEvent(event);
+    }
+    return changed;
+  }
+
+  /**
+   * 在后台线程刷新，已有刷新在排队时直接返回
+   */
+  public void requestRefresh() {
+    if (!refreshQueued.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      refresher.execute(() -> {
+        refreshQueued.set(false);
+        try {
+          refresh();
+        } catch (Exception e) {
+          log.warn("刷新交易日历失败: {}", e.getMessage());
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      refreshQueued.set(false);
+    }
+  }
+
+  /**
+   * 重新加载日历，须持有锁
+   *
+   * @return 需要发布的事件，没有变化或首次加载时为 null
+   */
+  private TradingCalendarChangedEvent reload() {
+    lastRefreshMillis = System.currentTimeMillis();
+    String maxDate = stockDataMapper.findMaxDate();
+    Snapshot current = snapshot;
+    if (current != null && maxDate == null) {
+      return null;
+    }
+    // 先于日历读取行数，两次查询之间导入的行留给下次刷新发现
+    long latestRows = maxDate == null ? 0 : latestRows(maxDate);
+    if (current != null && TradeDate.parse(maxDate) == current.last()) {
+      if (latestRows == current.latestRows) {
+        return null;
+      }
+      snapshot = new Snapshot(current.dates, current.dashed, latestRows);
+      log.info("最新交易日{}的数据由{}行变为{}行", maxDate, current.latestRows, latestRows);
+      return new TradingCalendarChangedEvent(current.last(), current.last(), true);
+    }
+
+    List<String> dateList = stockDataMapper.findAllTradeDates();
+    int[] dates = new int[dateList.size()];
+    int count = 0;
+    boolean dashed = false;
+    for (String date : dateList) {
+      if (date == null) {
+        continue;
+      }
+      dates[count++] = TradeDate.parse(date);
+      dashed = TradeDate.isDashed(date);
+    }
+    dates = Arrays.copyOf(dates, count);
+    Arrays.sort(dates);
+    snapshot = new Snapshot(dates, dashed, latestRows);
+    log.info("交易日历已加载，共{}个交易日，最新交易日{}", count,
+        count > 0 ? TradeDate.format(dates[count - 1], dashed) : null);
+    if (current == null) {
+      return null;
+    }
+    return new TradingCalendarChangedEvent(current.dates.length == 0 ? 0 : current.last(),
+        count == 0 ? 0 : dates[count - 1], isPrefix(current.dates, dates));
+  }
+
+  /**
+   * 最新交易日，数据库为空时返回 null
+   */
+  public TradeDate latest() {
+    Snapshot current = ensureLoaded();
+    if (current.dates.length == 0) {
+      return null;
+    }
+    int ordinal = current.dates.length - 1;
+    return new TradeDate(current.dates[ordinal], ordinal);
+  }
+
+  /**
+   * 将请求中的日期字符串解析为交易日，为空时使用最新交易日
+   * 日期晚于已知最新交易日时在后台刷新日历，本次仍按当前日历解析，该日期在刷新完成后才有交易日序号
+   *
+   * @param text 日期字符串
+   * @return 交易日，数据库为空时返回 null
+   */
+  public TradeDate resolve(String text) {
+    if (text == null || text.trim().isEmpty()) {
+      return latest();
+    }
+    int value = TradeDate.parse(text.trim());
+    Snapshot current = ensureLoaded();
+    if (value > current.last()
+        && System.currentTimeMillis() - lastRefreshMillis > MIN_FORCED_REFRESH_INTERVAL_MS) {
+      requestRefresh();
+    }
+    return new TradeDate(value, current.ordinalOf(value));
+  }
+
+  /**
+   * 查询日期对应的交易日序号
+   *
+   * @param value yyyymmdd 形式的整数日期
+   * @return 交易日序号，不是交易日时返回 {@link TradeDate#NO_ORDINAL}
+   */
+  public int ordinalOf(int value) {
+    return ensureLoaded().ordinalOf(value);
+  }
+
+  /**
+   * 查询不晚于指定日期的最后一个交易日的序号
+   *
+   * @param value yyyymmdd 形式的整数日期
+   * @return 交易日序号，没有更早的交易日时返回 {@link TradeDate#NO_ORDINAL}
+   */
+  public int floorOrdinal(int value) {
+    int[] dates = ensureLoaded().dates;
+    int index = Arrays.binarySearch(dates, value);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  /**
+   * 根据交易日序号获取日期
+   */
+  public int dateAt(int ordinal) {
+    return ensureLoaded().dates[ordinal];
+  }
+
+  /**
+   * 最新交易日的序号，日历为空时为 -1
+   */
+  public int lastOrdinal() {
+    return ensureLoaded().dates.length - 1;
+  }
+
+  /**
+   * 计算以指定交易日为中心、前后各包含 radius 个交易日的区间起点序号
+   */
+  public int windowStart(int ordinal, int radius) {
+    return Math.max(0, ordinal - radius);
+  }
+
+  /**
+   * 计算以指定交易日为中心、前后各包含 radius 个交易日的区间终点序号
+   */
+  public int windowEnd(int ordinal, int radius) {
+    return Math.min(lastOrdinal(), ordinal + radius);
+  }
+
+  /**
+   * 按数据库中的日期格式将整数日期格式化为字符串
+   */
+  public String format(int value) {
+    return TradeDate.format(value, ensureLoaded().dashed);
+  }
+
+  public String format(TradeDate date) {
+    return date == null ? null : format(date.getValue());
+  }
+
+  /**
+   * 判断 prefix 是否为 dates 的前缀，即 dates 只在末尾追加了交易日
+   */
+  public static boolean isPrefix(int[] prefix, int[] dates) {
+    if (prefix.length > dates.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (prefix[i] != dates[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 全部交易日的副本，升序
+   */
+  public int[] toArray() {
+    return ensureLoaded().dates.clone();
+  }
+
+  private long latestRows(String maxDate) {
+    Long rows = stockDataMapper.countRowsOnDate(maxDate);
+    return rows == null ? 0 : rows;
+  }
+
+  /**
+   * 首次加载在调用线程上同步完成，首次加载不发布事件
+   */
+  private Snapshot ensureLoaded() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      refresh();
+      current = snapshot;
+    }
+    return current;
+  }
+
+  /**
+   * 不可变的日历快照，刷新时整体替换
+   */
+  private static final class Snapshot {
+    private final int[] dates;
+    private final boolean dashed;
+
+    /**
+     * 加载时最新交易日在热表中的行数
+     */
+    private final long latestRows;
+
+    private Snapshot(int[] dates, boolean dashed, long latestRows) {
+      this.dates = dates;
+      this.dashed = dashed;
+      this.latestRows = latestRows;
+    }
+
+    private int last() {
+      return dates.length == 0 ? Integer.MIN_VALUE : dates[dates.length - 1];
+    }
+
+    private int ordinalOf(int value) {
+      int index = Arrays.binarySearch(dates, value);
+      return index >= 0 ? index : TradeDate.NO_ORDINAL;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package com.example.stock.cache;
+
+import lombok.Getter;
+
+/**
+ * 交易日历重新加载后发布的事件，通常意味着数据库中导入了新的交易日数据
+ * 最新交易日不变、只有其行数变化（仍在分批导入）时也会发布，此时 previousLatest 与 latest 相同且 appendOnly 为 true，
+ * 监听方按追加处理即可重新加载该交易日
+ */
+@Getter
+public class TradingCalendarChangedEvent {
+
+  /**
+   * 变化前的最新交易日（yyyymmdd），首次加载时为 0
+   */
+  private final int previousLatest;
+
+  /**
+   * 变化后的最新交易日（yyyymmdd）
+   */
+  private final int latest;
+
+  /**
+   * 是否只在末尾追加了新交易日，此时已有交易日的序号不变
+   */
+  private final boolean appendOnly;
+
+  public TradingCalendarChangedEvent(int previousLatest, int latest, boolean appendOnly) {
+    this.previousLatest = previousLatest;
+    this.latest = latest;
+    this.appendOnly = appendOnly;
+  }
+}
@@ -0,0 +1,192 @@
+package com.example.stock.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发限制器（舱壁）
+ * 同时执行的请求数不超过当前限制，超出的请求在有界队列中最多等待 maxWaitMs，队列满或等待超时立即拒绝
+ * 并发限制按观测到的延迟调整（AIMD），延迟的比较方式与 Gradient 算法相同：
+ * 分别维护最近约 {@value #SHORT_WINDOW} 个请求和约 {@value #LONG_WINDOW} 个请求的指数移动平均延迟，
+ * 短期平均不超过长期平均 × tolerance 且并发接近上限时加性增大，超过时乘性减小；
+ * 长期平均作为基线，跟随缓存命中率、数据量等带来的正常变化，单个慢请求（如缓存未命中）不会触发减小
+ */
+public class AdaptiveLimiter {
+
+  /**
+   * 短期平均延迟覆盖的请求数
+   */
+  static final int SHORT_WINDOW = 50;
+
+  /**
+   * 长期平均延迟（基线）覆盖的请求数
+   */
+  static final int LONG_WINDOW = 1000;
+
+  private static final double SHORT_ALPHA = 2.0 / (SHORT_WINDOW + 1);
+  private static final double LONG_ALPHA = 2.0 / (LONG_WINDOW + 1);
+
+  /**
+   * 长期平均超过短期平均的该倍数时（过载已经结束），长期平均按 {@link #LONG_DECAY} 加速回落
+   */
+  private static final double LONG_RECOVERY_RATIO = 2.0;
+  private static final double LONG_DECAY = 0.95;
+
+  private final String name;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int queueSize;
+  private final long maxWaitNanos;
+  private final double tolerance;
+  private final double backoffRatio;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+
+  private double limit;
+  private int inFlight;
+  private int waiting;
+  private double shortNanos = Double.NaN;
+  private double longNanos = Double.NaN;
+  /**
+   * 上次减小限制后需要再观测的样本数，避免同一批慢请求连续多次减小
+   */
+  private int samplesUntilDecrease;
+
+  public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+      int queueSize, long maxWaitMs, double tolerance, double backoffRatio) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("舱壁[" + name + "]并发限制配置无效: min=" + minLimit + ", max=" + maxLimit);
+    }
+    this.name = name;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.queueSize = Math.max(0, queueSize);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMs));
+    this.tolerance = tolerance;
+    this.backoffRatio = backoffRatio;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * 获取执行许可
+   *
+   * @return 是否获取成功，返回 false 时调用方应立即拒绝请求
+   */
+  public boolean tryAcquire() throws InterruptedException {
+    lock.lock();
+    try {
+      if (inFlight < (int) limit) {
+        inFlight++;
+        return true;
+      }
+      if (waiting >= queueSize || maxWaitNanos == 0) {
+        return false;
+      }
+      waiting++;
+      try {
+        long remaining = maxWaitNanos;
+        while (inFlight >= (int) limit) {
+          if (remaining <= 0) {
+            onDropped();
+            return false;
+          }
+          remaining = available.awaitNanos(remaining);
+        }
+        inFlight++;
+        return true;
+      } finally {
+        waiting--;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 释放许可并记录本次请求的延迟
+   *
+   * @param latencyNanos 请求执行耗时（不含排队时间）
+   */
+  public void release(long latencyNanos) {
+    lock.lock();
+    try {
+      int concurrency = inFlight;
+      inFlight--;
+      update(latencyNanos, concurrency);
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getLimit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getWaiting() {
+    lock.lock();
+    try {
+      return waiting;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void update(long latencyNanos, int concurrency) {
+    if (Double.isNaN(shortNanos)) {
+      shortNanos = latencyNanos;
+      longNanos = latencyNanos;
+    } else {
+      shortNanos += (latencyNanos - shortNanos) * SHORT_ALPHA;
+      longNanos += (latencyNanos - longNanos) * LONG_ALPHA;
+      if (longNanos > shortNanos * LONG_RECOVERY_RATIO) {
+        longNanos *= LONG_DECAY;
+      }
+    }
+    if (samplesUntilDecrease > 0) {
+      samplesUntilDecrease--;
+    }
+
+    if (shortNanos > longNanos * tolerance) {
+      decrease();
+    } else if (concurrency * 2 >= (int) limit) {
+      // 只有在并发确实接近上限时才增大，空闲时不会无限上涨
+      limit = Math.min(maxLimit, limit + 1.0 / limit);
+    }
+  }
+
+  /**
+   * 排队超时说明当前限制下吞吐已饱和
+   */
+  private void onDropped() {
+    decrease();
+  }
+
+  private void decrease() {
+    if (samplesUntilDecrease > 0) {
+      return;
+    }
+    limit = Math.max(minLimit, limit * backoffRatio);
+    samplesUntilDecrease = (int) limit;
+  }
+}
@@ -0,0 +1,22 @@
+package com.example.stock.concurrent;
+
+/**
+ * 服务端容量已满（任务队列、执行线程等）时拒绝请求
+ * 由 OverloadedExceptionHandler 转换为 503 和 Retry-After，与舱壁拒绝请求的响应一致
+ */
+public class OverloadedException extends RuntimeException {
+
+  private final int retryAfterSeconds;
+
+  public OverloadedException(String message, int retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * 建议客户端的重试间隔
+   */
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
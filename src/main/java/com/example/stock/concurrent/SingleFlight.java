@@ -0,0 +1,136 @@
+package com.example.stock.concurrent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并（single-flight）
+ * 同一个 key 同时只执行一次计算，计算期间到达的相同请求等待并共享这次计算的结果或异常，
+ * 计算结束后立即移除，之后的请求重新计算（不做结果缓存）
+ *
+ * @param <K> 请求key类型，需要正确实现 equals/hashCode
+ * @param <V> 结果类型
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  private final Counter executed;
+  private final Counter coalesced;
+
+  /**
+   * @param name     指标名称前缀
+   * @param registry 指标注册中心
+   */
+  public SingleFlight(String name, MeterRegistry registry) {
+    this.executed = Counter.builder(name + ".calls")
+        .description("实际执行的计算次数")
+        .tag("result", "executed")
+        .register(registry);
+    this.coalesced = Counter.builder(name + ".calls")
+        .description("合并到进行中计算的请求次数")
+        .tag("result", "coalesced")
+        .register(registry);
+    Gauge.builder(name + ".in_flight", inFlight, ConcurrentMap::size)
+        .description("正在进行中的计算数量")
+        .register(registry);
+  }
+
+  /**
+   * 执行计算，相同 key 的并发请求只会执行一次 supplier
+   *
+   * @param key      请求key
+   * @param supplier 实际计算
+   * @return 计算结果
+   */
+  public V execute(K key, Supplier<V> supplier) {
+    CompletableFuture<V> created = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+    if (existing != null) {
+      coalesced.increment();
+      return await(existing);
+    }
+
+    executed.increment();
+    try {
+      V value = supplier.get();
+      created.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      created.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, created);
+    }
+  }
+
+  /**
+   * 在指定线程池中执行计算，相同 key 的并发请求共享同一个 future
+   * 调用方放弃等待不影响计算继续完成
+   *
+   * @param key      请求key
+   * @param supplier 实际计算
+   * @param executor 执行计算的线程池
+   * @return 计算结果的 future
+   */
+  public CompletableFuture<V> executeAsync(K key, Supplier<V> supplier, Executor executor) {
+    CompletableFuture<V> created = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+    if (existing != null) {
+      coalesced.increment();
+      return existing;
+    }
+
+    executed.increment();
+    try {
+      executor.execute(() -> {
+        try {
+          created.complete(supplier.get());
+        } catch (Throwable e) {
+          created.completeExceptionally(e);
+        } finally {
+          inFlight.remove(key, created);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlight.remove(key, created);
+      created.completeExceptionally(e);
+    }
+    return created;
+  }
+
+  public double getExecutedCount() {
+    return executed.count();
+  }
+
+  public double getCoalescedCount() {
+    return coalesced.count();
+  }
+
+  private V await(CompletableFuture<V> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("等待合并请求结果时被中断", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
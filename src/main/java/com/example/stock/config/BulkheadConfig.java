@@ -0,0 +1,44 @@
+package com.example.stock.config;
+
+import com.example.stock.concurrent.AdaptiveLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Map;
+
+/**
+ * 按 stock.bulkhead.pools 为每类接口注册独立的舱壁拦截器
+ * 拦截器在 CorsFilter 之后执行，被拒绝的 503 响应同样带有跨域头
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class BulkheadConfig implements WebMvcConfigurer {
+
+    private final BulkheadProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (Map.Entry<String, BulkheadProperties.Pool> entry : properties.getPools().entrySet()) {
+            BulkheadProperties.Pool pool = entry.getValue();
+            if (pool.getPaths().isEmpty()) {
+                continue;
+            }
+            AdaptiveLimiter limiter = new AdaptiveLimiter(entry.getKey(), pool.getInitialLimit(),
+                    pool.getMinLimit(), pool.getMaxLimit(), pool.getQueueSize(), pool.getMaxWaitMs(),
+                    pool.getLatencyTolerance(), pool.getBackoffRatio());
+            registry.addInterceptor(new BulkheadInterceptor(limiter, properties.getRetryAfterSeconds(), meterRegistry))
+                    .addPathPatterns(pool.getPaths());
+            log.info("舱壁[{}]已启用，路径{}，并发限制{}~{}，队列{}", entry.getKey(), pool.getPaths(),
+                    pool.getMinLimit(), pool.getMaxLimit(), pool.getQueueSize());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.stock.config;
+
+import com.example.stock.concurrent.AdaptiveLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 舱壁拦截器
+ * 请求进入控制器前获取所属舱壁的执行许可，获取失败时直接返回 503 和 Retry-After，
+ * 请求结束后释放许可并把执行耗时反馈给限制器，异步请求在异步处理完成后释放
+ */
+@Slf4j
+public class BulkheadInterceptor implements HandlerInterceptor {
+
+    private final AdaptiveLimiter limiter;
+    private final int retryAfterSeconds;
+    private final Counter rejected;
+    private final String startAttribute;
+
+    public BulkheadInterceptor(AdaptiveLimiter limiter, int retryAfterSeconds, MeterRegistry meterRegistry) {
+        this.limiter = limiter;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.startAttribute = BulkheadInterceptor.class.getName() + "." + limiter.getName();
+        this.rejected = Counter.builder("stock.bulkhead.rejected")
+                .description("舱壁拒绝的请求数")
+                .tag("bulkhead", limiter.getName())
+                .register(meterRegistry);
+        Gauge.builder("stock.bulkhead.limit", limiter, AdaptiveLimiter::getLimit)
+                .tag("bulkhead", limiter.getName())
+                .register(meterRegistry);
+        Gauge.builder("stock.bulkhead.in_flight", limiter, AdaptiveLimiter::getInFlight)
+                .tag("bulkhead", limiter.getName())
+                .register(meterRegistry);
+        Gauge.builder("stock.bulkhead.waiting", limiter, AdaptiveLimiter::getWaiting)
+                .tag("bulkhead", limiter.getName())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (request.getAttribute(startAttribute) != null) {
+            // 流式响应等异步请求完成后会再次分派，许可在首次分派时已获取，在本次分派结束时释放
+            return true;
+        }
+        boolean acquired;
+        try {
+            acquired = limiter.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            reject(request, response);
+            return false;
+        }
+        request.setAttribute(startAttribute, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(startAttribute);
+        if (start != null) {
+            request.removeAttribute(startAttribute);
+            limiter.release(System.nanoTime() - (Long) start);
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        rejected.increment();
+        log.debug("舱壁[{}]已满，拒绝请求: {}", limiter.getName(), request.getRequestURI());
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("服务繁忙，请稍后重试");
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 接口舱壁配置
+ * 每类接口（列表、分析、单只股票、自选）使用独立的并发限制和等待队列，互不影响
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "stock.bulkhead")
+public class BulkheadProperties {
+
+    /**
+     * 是否启用舱壁
+     */
+    private boolean enabled = true;
+
+    /**
+     * 拒绝请求时 Retry-After 响应头的秒数
+     */
+    private int retryAfterSeconds = 1;
+
+    /**
+     * 各类接口的舱壁配置，key 为舱壁名称
+     */
+    private Map<String, Pool> pools = new LinkedHashMap<>();
+
+    @Data
+    public static class Pool {
+
+        /**
+         * 归入该舱壁的接口路径（Ant 风格）
+         */
+        private List<String> paths = new ArrayList<>();
+
+        /**
+         * 初始并发限制
+         */
+        private int initialLimit = 8;
+
+        /**
+         * 并发限制下限
+         */
+        private int minLimit = 1;
+
+        /**
+         * 并发限制上限
+         */
+        private int maxLimit = 32;
+
+        /**
+         * 等待队列长度，队列满时直接拒绝
+         */
+        private int queueSize = 16;
+
+        /**
+         * 请求在队列中的最长等待时间（毫秒）
+         */
+        private long maxWaitMs = 200;
+
+        /**
+         * 短期平均延迟超过长期平均延迟（基线）的多少倍时认为过载
+         */
+        private double latencyTolerance = 2.0;
+
+        /**
+         * 过载时并发限制的缩小比例
+         */
+        private double backoffRatio = 0.9;
+    }
+}
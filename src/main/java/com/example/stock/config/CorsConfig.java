@@ -1,5 +1,6 @@
 package com.example.stock.config;
 
+import com.example.stock.controller.StockController;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
@@ -20,6 +21,8 @@ public class CorsConfig {
         config.addAllowedMethod("*");
         // 允许跨域的域名，可以为 *
         config.addAllowedOriginPattern("*");
+        // 允许前端读取的响应头
+        config.addExposedHeader(StockController.SYNC_TOKEN_HEADER);
         // 是否允许携带cookie信息
         config.setAllowCredentials(true);
         
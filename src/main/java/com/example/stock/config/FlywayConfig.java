@@ -0,0 +1,29 @@
+package com.example.stock.config;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.boot.autoconfigure.AbstractDependsOnBeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 数据库迁移配置
+ * Spring Boot 只让 JPA、JdbcTemplate 等等待 Flyway 迁移完成，这里让 MyBatis 的 SqlSessionFactory 也依赖迁移，
+ * 避免 CollectServiceImpl 等在初始化时访问尚未创建的表
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.flyway", name = "enabled", matchIfMissing = true)
+public class FlywayConfig {
+
+    @Bean
+    public static SqlSessionFactoryDependsOnFlywayPostProcessor sqlSessionFactoryDependsOnFlywayPostProcessor() {
+        return new SqlSessionFactoryDependsOnFlywayPostProcessor();
+    }
+
+    static class SqlSessionFactoryDependsOnFlywayPostProcessor extends AbstractDependsOnBeanFactoryPostProcessor {
+
+        SqlSessionFactoryDependsOnFlywayPostProcessor() {
+            super(SqlSessionFactory.class, "flywayInitializer");
+        }
+    }
+}
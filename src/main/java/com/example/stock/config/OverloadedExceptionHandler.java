@@ -0,0 +1,29 @@
+package com.example.stock.config;
+
+import com.example.stock.concurrent.OverloadedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 将 {@link OverloadedException} 转换为 503 和 Retry-After，响应内容与 {@link BulkheadInterceptor} 拒绝请求时相同
+ */
+@Slf4j
+@RestControllerAdvice
+public class OverloadedExceptionHandler {
+
+    @ExceptionHandler(OverloadedException.class)
+    public ResponseEntity<String> handleOverloaded(OverloadedException e) {
+        log.debug("拒绝请求: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body("服务繁忙，请稍后重试");
+    }
+}
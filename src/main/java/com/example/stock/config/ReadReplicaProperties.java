@@ -0,0 +1,62 @@
+package com.example.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只读副本配置
+ * 未配置副本时所有读写都使用 spring.datasource 主库
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "stock.datasource")
+public class ReadReplicaProperties {
+
+    /**
+     * 只读副本列表，多个副本之间轮询
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Data
+    public static class Replica {
+
+        /**
+         * JDBC连接地址
+         */
+        private String url;
+
+        /**
+         * 用户名，为空时与主库相同
+         */
+        private String username;
+
+        /**
+         * 密码，为空时与主库相同
+         */
+        private String password;
+
+        /**
+         * 驱动类名，为空时与主库相同
+         */
+        private String driverClassName;
+
+        /**
+         * 连接池最大连接数
+         */
+        private int maximumPoolSize = 10;
+
+        /**
+         * 连接池最小空闲连接数
+         */
+        private int minimumIdle = 2;
+
+        /**
+         * 获取连接的超时时间（毫秒）
+         */
+        private long connectionTimeoutMs = 3000;
+    }
+}
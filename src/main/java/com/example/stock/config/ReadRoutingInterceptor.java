@@ -0,0 +1,48 @@
+package com.example.stock.config;
+
+import com.example.stock.mapper.StockDataMapper;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 将 StockDataMapper 的查询路由到只读副本
+ * 处于事务中的查询继续使用事务已绑定的主库连接，CollectMapper 等其它语句始终使用主库
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class ReadRoutingInterceptor implements Interceptor {
+
+    private static final String READ_NAMESPACE = StockDataMapper.class.getName() + ".";
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        if (mappedStatement.getSqlCommandType() != SqlCommandType.SELECT
+                || !mappedStatement.getId().startsWith(READ_NAMESPACE)
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return invocation.proceed();
+        }
+        boolean previous = ReadWriteRoutingDataSource.beginReadOnly();
+        try {
+            return invocation.proceed();
+        } finally {
+            ReadWriteRoutingDataSource.endReadOnly(previous);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.stock.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离数据源
+ * 默认使用主库，{@link #beginReadOnly()} 之后获取的连接轮询分配到只读副本
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = replicas;
+        setDefaultTargetDataSource(primary);
+        setTargetDataSources(Collections.<Object, Object>singletonMap(PRIMARY, primary));
+    }
+
+    /**
+     * 进入只读路由，之后在当前线程获取的新连接来自只读副本
+     *
+     * @return 进入前的路由状态，需传给 {@link #endReadOnly(boolean)} 恢复
+     */
+    public static boolean beginReadOnly() {
+        boolean previous = READ_ONLY.get() != null;
+        READ_ONLY.set(Boolean.TRUE);
+        return previous;
+    }
+
+    /**
+     * 退出只读路由，恢复进入前的状态
+     */
+    public static void endReadOnly(boolean previous) {
+        if (!previous) {
+            READ_ONLY.remove();
+        }
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return PRIMARY;
+    }
+
+    @Override
+    protected DataSource determineTargetDataSource() {
+        if (replicas.isEmpty() || READ_ONLY.get() == null) {
+            return primary;
+        }
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+
+    /**
+     * 关闭主库和所有只读副本的连接池
+     */
+    @Override
+    public void close() throws IOException {
+        closePool(primary);
+        for (DataSource replica : replicas) {
+            closePool(replica);
+        }
+    }
+
+    private static void closePool(DataSource dataSource) throws IOException {
+        if (dataSource instanceof Closeable) {
+            ((Closeable) dataSource).close();
+        }
+    }
+}
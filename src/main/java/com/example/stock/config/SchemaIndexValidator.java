@@ -0,0 +1,124 @@
+package com.example.stock.config;
+
+import com.example.stock.migration.CoveringIndexes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动时校验热点查询依赖的索引（{@link CoveringIndexes#REQUIRED}）是否存在
+ * 索引由 V2__covering_indexes 迁移创建，大表的索引迁移中不创建：stock.schema.build-missing-indexes 开启时
+ * 缺失的索引在后台线程逐个在线创建，不阻塞启动；关闭时缺失和列顺序不一致一样，按配置启动失败或记录警告
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SchemaIndexValidator implements ApplicationRunner {
+
+    private final DataSource dataSource;
+
+    @Value("${stock.schema.validate-indexes:true}")
+    private boolean enabled;
+
+    @Value("${stock.schema.fail-on-missing-index:true}")
+    private boolean failOnMissing;
+
+    @Value("${stock.schema.build-missing-indexes:true}")
+    private boolean buildMissing;
+
+    @Override
+    public void run(ApplicationArguments args) throws SQLException {
+        if (!enabled) {
+            return;
+        }
+        List<String> problems = new ArrayList<>();
+        List<CoveringIndexes.Index> missing = new ArrayList<>();
+        Map<String, Map<String, List<String>>> tables = new HashMap<>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (CoveringIndexes.Index required : CoveringIndexes.REQUIRED) {
+                Map<String, List<String>> actual = tables.get(required.getTable());
+                if (actual == null) {
+                    actual = loadIndexes(connection, required.getTable());
+                    tables.put(required.getTable(), actual);
+                }
+                List<String> columns = actual.get(required.getName());
+                if (columns == null) {
+                    missing.add(required);
+                } else if (!columns.equals(required.getColumns())) {
+                    problems.add(required.getTable() + "." + required.getName() + " 列为" + columns
+                            + "，应为" + required.getColumns());
+                }
+            }
+        }
+
+        if (buildMissing) {
+            buildInBackground(missing);
+        } else {
+            for (CoveringIndexes.Index index : missing) {
+                problems.add(index.getTable() + "." + index.getName() + " 不存在");
+            }
+        }
+        if (problems.isEmpty()) {
+            log.info(missing.isEmpty() ? "索引校验通过" : "索引校验通过，缺失的索引在后台创建");
+            return;
+        }
+        String message = "索引校验失败: " + String.join("; ", problems);
+        if (failOnMissing) {
+            throw new IllegalStateException(message);
+        }
+        log.warn(message);
+    }
+
+    /**
+     * 在后台线程逐个在线创建缺失的索引，创建期间查询退化为按日范围扫描
+     */
+    private void buildInBackground(List<CoveringIndexes.Index> missing) {
+        if (missing.isEmpty()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            for (CoveringIndexes.Index index : missing) {
+                String ddl = index.ddl();
+                log.info("执行: {}", ddl);
+                try (Connection connection = dataSource.getConnection();
+                     Statement statement = connection.createStatement()) {
+                    statement.execute(ddl);
+                    log.info("索引{}.{}创建完成", index.getTable(), index.getName());
+                } catch (SQLException e) {
+                    log.error("创建索引{}.{}失败: {}", index.getTable(), index.getName(), e.getMessage(), e);
+                }
+            }
+        }, "schema-index-builder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static Map<String, List<String>> loadIndexes(Connection connection, String table) throws SQLException {
+        Map<String, List<String>> indexes = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT index_name, column_name FROM information_schema.statistics"
+                        + " WHERE table_schema = DATABASE() AND table_name = ? ORDER BY index_name, seq_in_index")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    indexes.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getString(2).toLowerCase());
+                }
+            }
+        }
+        return indexes;
+    }
+}
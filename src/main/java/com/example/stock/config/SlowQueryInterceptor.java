@@ -0,0 +1,218 @@
+package com.example.stock.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 慢查询日志
+ * 记录超过阈值的语句的id、参数、耗时和行数，未超过阈值的语句按比例采样记录，
+ * 每种语句形态（语句id + 归一化后的SQL）第一次出现慢查询时在后台线程中执行 EXPLAIN 并记录执行计划
+ * 所有语句的耗时同时记录到指标 stock.sql{statement=...}
+ */
+@Slf4j
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class SlowQueryInterceptor implements Interceptor {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * IN 列表等长度可变的占位符序列归一化为同一种形态
+     */
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    /**
+     * 分页插件等会在拦截器链内再次调用 query，只统计最外层
+     */
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private final SlowQueryProperties properties;
+    private final ObjectProvider<DataSource> dataSourceProvider;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<String> explainedShapes = ConcurrentHashMap.newKeySet();
+    private final ExecutorService explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(64), r -> {
+                Thread thread = new Thread(r, "slow-query-explain");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    public SlowQueryInterceptor(SlowQueryProperties properties, ObjectProvider<DataSource> dataSourceProvider,
+                                MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.dataSourceProvider = dataSourceProvider;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!properties.isEnabled() || ACTIVE.get() != null) {
+            return invocation.proceed();
+        }
+        Object[] args = invocation.getArgs();
+        MappedStatement mappedStatement = (MappedStatement) args[0];
+        CountingResultHandler countingHandler = null;
+        if (args.length > 3 && args[3] instanceof ResultHandler) {
+            countingHandler = new CountingResultHandler((ResultHandler<?>) args[3]);
+            args[3] = countingHandler;
+        }
+
+        ACTIVE.set(Boolean.TRUE);
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            ACTIVE.remove();
+            try {
+                record(mappedStatement, args, elapsedNanos, rowCount(result, countingHandler));
+            } catch (Exception e) {
+                log.debug("记录SQL耗时失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void record(MappedStatement mappedStatement, Object[] args, long elapsedNanos, long rows) {
+        String statementId = mappedStatement.getId();
+        Timer.builder("stock.sql")
+                .tag("statement", statementId.substring(statementId.lastIndexOf('.', statementId.lastIndexOf('.') - 1) + 1))
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        boolean slow = elapsedMs >= properties.getThresholdMs();
+        if (!slow && (properties.getSampleRate() <= 0
+                || ThreadLocalRandom.current().nextDouble() >= properties.getSampleRate())) {
+            return;
+        }
+
+        BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : mappedStatement.getBoundSql(args[1]);
+        String parameters = abbreviate(String.valueOf(args[1]));
+        if (slow) {
+            log.warn("慢查询 statement={} elapsedMs={} rows={} params={}", statementId, elapsedMs, rows, parameters);
+            String shape = statementId + ":" + normalize(boundSql.getSql());
+            if (properties.isExplain() && mappedStatement.getSqlCommandType() == SqlCommandType.SELECT
+                    && explainedShapes.add(shape)) {
+                explainExecutor.execute(() -> explain(mappedStatement, args[1], boundSql));
+            }
+        } else {
+            log.info("SQL采样 statement={} elapsedMs={} rows={} params={}", statementId, elapsedMs, rows, parameters);
+        }
+    }
+
+    private void explain(MappedStatement mappedStatement, Object parameter, BoundSql boundSql) {
+        DataSource dataSource = dataSourceProvider.getIfAvailable();
+        if (dataSource == null) {
+            return;
+        }
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + boundSql.getSql())) {
+            mappedStatement.getConfiguration()
+                    .newParameterHandler(mappedStatement, parameter, boundSql)
+                    .setParameters(statement);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                while (resultSet.next()) {
+                    plan.append("\n  ");
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        if (i > 1) {
+                            plan.append(", ");
+                        }
+                        plan.append(metaData.getColumnLabel(i)).append('=').append(resultSet.getObject(i));
+                    }
+                }
+            }
+            log.warn("慢查询执行计划 statement={} sql={}{}", mappedStatement.getId(), normalize(boundSql.getSql()), plan);
+        } catch (Exception e) {
+            log.warn("获取执行计划失败 statement={}: {}", mappedStatement.getId(), e.getMessage());
+        }
+    }
+
+    private static long rowCount(Object result, CountingResultHandler countingHandler) {
+        if (countingHandler != null && countingHandler.count > 0) {
+            return countingHandler.count;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        return -1;
+    }
+
+    private static String normalize(String sql) {
+        String collapsed = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+        return PLACEHOLDER_LIST.matcher(collapsed).replaceAll("?+");
+    }
+
+    private String abbreviate(String text) {
+        int max = properties.getMaxParameterLength();
+        return text.length() <= max ? text : text.substring(0, max) + "...(" + text.length() + " chars)";
+    }
+
+    /**
+     * 统计通过 ResultHandler 流式处理的行数
+     */
+    private static final class CountingResultHandler implements ResultHandler<Object> {
+        private final ResultHandler<Object> target;
+        private long count;
+
+        @SuppressWarnings("unchecked")
+        private CountingResultHandler(ResultHandler<?> target) {
+            this.target = (ResultHandler<Object>) target;
+        }
+
+        @Override
+        public void handleResult(ResultContext<?> context) {
+            count++;
+            target.handleResult(context);
+        }
+    }
+}
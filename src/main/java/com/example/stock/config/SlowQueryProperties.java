@@ -0,0 +1,39 @@
+package com.example.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 慢查询日志配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "stock.db.slow-query")
+public class SlowQueryProperties {
+
+    /**
+     * 是否启用慢查询日志
+     */
+    private boolean enabled = true;
+
+    /**
+     * 耗时超过该值（毫秒）的语句记为慢查询
+     */
+    private long thresholdMs = 500;
+
+    /**
+     * 未超过阈值的语句的采样记录比例，0 表示不记录
+     */
+    private double sampleRate = 0.01;
+
+    /**
+     * 每种语句形态第一次出现慢查询时是否异步执行 EXPLAIN
+     */
+    private boolean explain = true;
+
+    /**
+     * 日志中参数的最大长度，超出部分截断
+     */
+    private int maxParameterLength = 500;
+}
@@ -0,0 +1,67 @@
+package com.example.stock.config;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.executor.statement.StatementUtil;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * 按语句id设置查询超时
+ * 优先级：stock.db.statement-timeout.overrides > XML中的 timeout 属性 > default-seconds，
+ * 处于事务中时不超过事务剩余时间
+ */
+@Component
+@RequiredArgsConstructor
+@Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+public class StatementTimeoutInterceptor implements Interceptor {
+
+    private final StatementTimeoutProperties properties;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Statement statement = (Statement) invocation.proceed();
+        MetaObject metaObject = SystemMetaObject.forObject(invocation.getTarget());
+        while (metaObject.hasGetter("h")) {
+            // 被其它插件代理时取出原始对象
+            metaObject = SystemMetaObject.forObject(metaObject.getValue("h.target"));
+        }
+        MappedStatement mappedStatement = (MappedStatement) metaObject.getValue("delegate.mappedStatement");
+        Integer timeout = resolveTimeout(mappedStatement);
+        if (timeout != null) {
+            statement.setQueryTimeout(timeout);
+            StatementUtil.applyTransactionTimeout(statement, timeout, (Integer) invocation.getArgs()[1]);
+        }
+        return statement;
+    }
+
+    private Integer resolveTimeout(MappedStatement mappedStatement) {
+        String id = mappedStatement.getId();
+        Integer timeout = properties.getOverrides().get(id);
+        if (timeout == null) {
+            timeout = properties.getOverrides().get(shortId(id));
+        }
+        if (timeout == null && mappedStatement.getTimeout() == null && properties.getDefaultSeconds() > 0) {
+            timeout = properties.getDefaultSeconds();
+        }
+        return timeout;
+    }
+
+    /**
+     * 去掉包名后的语句id，如 StockDataMapper.findWindowTsCodes
+     */
+    private static String shortId(String id) {
+        int methodDot = id.lastIndexOf('.');
+        int classDot = methodDot > 0 ? id.lastIndexOf('.', methodDot - 1) : -1;
+        return id.substring(classDot + 1);
+    }
+}
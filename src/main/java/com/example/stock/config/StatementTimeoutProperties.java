@@ -0,0 +1,29 @@
+package com.example.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SQL语句超时配置
+ * overrides 的 key 可以是完整的语句id（com.example.stock.mapper.StockDataMapper.findWindowTsCodes），
+ * 也可以是省略包名的形式（StockDataMapper.findWindowTsCodes）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "stock.db.statement-timeout")
+public class StatementTimeoutProperties {
+
+    /**
+     * 默认超时秒数，语句未单独配置且XML中未指定 timeout 时使用，0 表示不限制
+     */
+    private int defaultSeconds = 15;
+
+    /**
+     * 按语句id单独配置的超时秒数
+     */
+    private Map<String, Integer> overrides = new LinkedHashMap<>();
+}
@@ -0,0 +1,82 @@
+package com.example.stock.controller;
+
+import com.example.stock.dto.BacktestJob;
+import com.example.stock.model.StrategyState;
+import com.example.stock.service.BacktestService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Api("策略回测")
+@RestController
+@RequestMapping("/api/backtest")
+@CrossOrigin(origins = "*")
+public class BacktestController {
+
+  private final BacktestService backtestService;
+
+  public BacktestController(BacktestService backtestService) {
+    this.backtestService = backtestService;
+  }
+
+  /**
+   * 提交回测任务，统计信号出现后 1、5、20 个交易日的远期收益分布、胜率和 20 个交易日内的最大回撤
+   *
+   * @param signals   策略信号，多个用逗号分隔：1-五日调整, 2-MACD金叉, 3-KDJ金叉, 4-低位资金净流入, 5-高位资金净流出,
+   *                  6-连涨放量；为空时回测全部信号
+   * @param startDate 起始日期（包含）
+   * @param endDate   结束日期（包含）
+   * @return 任务状态，结果已缓存时直接为完成状态；未完成时通过 GET /api/backtest/{job_id} 查询
+   */
+  @ApiOperation("提交回测任务")
+  @PostMapping
+  public ResponseEntity<BacktestJob> submit(
+      @RequestParam(name = "signals", required = false) String signals,
+      @RequestParam(name = "start_date", required = false) String startDate,
+      @RequestParam(name = "end_date", required = false) String endDate) {
+    BacktestJob job = backtestService.submit(parseSignals(signals), startDate, endDate);
+    HttpStatus status = "DONE".equals(job.getStatus()) ? HttpStatus.OK : HttpStatus.ACCEPTED;
+    return ResponseEntity.status(status).body(job);
+  }
+
+  /**
+   * 查询回测任务
+   *
+   * @param jobId 任务编号
+   * @return 任务状态和完成后的结果
+   */
+  @ApiOperation("查询回测任务")
+  @GetMapping("/{job_id}")
+  public ResponseEntity<BacktestJob> getJob(@PathVariable(name = "job_id") String jobId) {
+    BacktestJob job = backtestService.getJob(jobId);
+    return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+  }
+
+  private static List<StrategyState> parseSignals(String signals) {
+    List<StrategyState> result = new ArrayList<>();
+    if (signals == null) {
+      return result;
+    }
+    for (String part : signals.split(",")) {
+      if (part.trim().isEmpty()) {
+        continue;
+      }
+      int signal;
+      try {
+        signal = Integer.parseInt(part.trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("不支持的策略信号: " + part);
+      }
+      if (signal < 1 || signal > StrategyState.values().length) {
+        throw new IllegalArgumentException("不支持的策略信号: " + signal);
+      }
+      result.add(StrategyState.values()[signal - 1]);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,53 @@
+package com.example.stock.controller;
+
+import com.example.stock.dto.BreadthSeriesResponse;
+import com.example.stock.dto.BreadthSnapshotResponse;
+import com.example.stock.service.BreadthService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Api("市场宽度")
+@RestController
+@RequestMapping("/api/breadth")
+@CrossOrigin(origins = "*")
+public class BreadthController {
+
+  private final BreadthService breadthService;
+
+  public BreadthController(BreadthService breadthService) {
+    this.breadthService = breadthService;
+  }
+
+  /**
+   * 每日全市场计数的时间序列
+   * 列：five_days_state、macd_golden_state、kdj_golden_state、low_price_state、high_level_state、
+   * rising_volume_state、limit_up、limit_down、above_ma120、above_ma250、total
+   *
+   * @param startDate 起始日期（包含），为空时为结束日期之前的250个交易日
+   * @param endDate   结束日期（包含），为空时为最新交易日
+   * @return 按列返回的时间序列
+   */
+  @ApiOperation("每日全市场计数")
+  @GetMapping("/series")
+  public BreadthSeriesResponse getBreadthSeries(
+      @RequestParam(name = "start_date", required = false) String startDate,
+      @RequestParam(name = "end_date", required = false) String endDate) {
+    return breadthService.getBreadthSeries(startDate, endDate);
+  }
+
+  /**
+   * 单个交易日的市场宽度：涨跌平家数、涨跌停数量、均线之上的数量和比例、52周新高新低数量
+   *
+   * @param tradeDate 交易日期，为空时为最新交易日
+   * @return 市场宽度，不是交易日时返回404
+   */
+  @ApiOperation("单日市场宽度")
+  @GetMapping("/snapshot")
+  public ResponseEntity<BreadthSnapshotResponse> getBreadthSnapshot(
+      @RequestParam(name = "trade_date", required = false) String tradeDate) {
+    BreadthSnapshotResponse snapshot = breadthService.getBreadthSnapshot(tradeDate);
+    return snapshot == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(snapshot);
+  }
+}
@@ -0,0 +1,76 @@
+package com.example.stock.controller;
+
+import com.example.stock.model.BarExportQuery;
+import com.example.stock.model.StrategyState;
+import com.example.stock.service.ExportService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Api("数据导出")
+@RestController
+@RequestMapping("/api/export")
+@CrossOrigin(origins = "*")
+public class ExportController {
+
+  private final ExportService exportService;
+
+  public ExportController(ExportService exportService) {
+    this.exportService = exportService;
+  }
+
+  /**
+   * 以 Arrow IPC 流格式批量导出日线
+   *
+   * @param startDate 起始日期（包含）
+   * @param endDate   结束日期（包含）
+   * @param tsCodes   股票代码，多个用逗号分隔
+   * @param signal    策略信号：1-五日调整, 2-MACD金叉, 3-KDJ金叉, 4-低位资金净流入, 5-高位资金净流出, 6-连涨放量
+   * @return Arrow IPC 流
+   */
+  @ApiOperation("导出日线（Arrow IPC）")
+  @GetMapping("/bars")
+  public ResponseEntity<StreamingResponseBody> exportBars(
+      @RequestParam(name = "start_date", required = false) String startDate,
+      @RequestParam(name = "end_date", required = false) String endDate,
+      @RequestParam(name = "ts_codes", required = false) String tsCodes,
+      @RequestParam(name = "signal", required = false) Integer signal) {
+
+    BarExportQuery query = new BarExportQuery();
+    query.setStartDate(startDate);
+    query.setEndDate(endDate);
+    query.setTsCodes(splitCodes(tsCodes));
+    if (signal != null) {
+      if (signal < 1 || signal > StrategyState.values().length) {
+        throw new IllegalArgumentException("不支持的策略信号: " + signal);
+      }
+      query.setSignal(StrategyState.values()[signal - 1]);
+    }
+
+    StreamingResponseBody body = out -> exportService.exportArrow(query, out);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(ExportService.ARROW_STREAM_MEDIA_TYPE))
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"bars.arrows\"")
+        .body(body);
+  }
+
+  private static List<String> splitCodes(String tsCodes) {
+    List<String> codes = new ArrayList<>();
+    if (tsCodes == null) {
+      return codes;
+    }
+    for (String code : tsCodes.split(",")) {
+      if (!code.trim().isEmpty()) {
+        codes.add(code.trim());
+      }
+    }
+    return codes;
+  }
+}
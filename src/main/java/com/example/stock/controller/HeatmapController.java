@@ -0,0 +1,59 @@
+package com.example.stock.controller;
+
+import com.example.stock.dto.HeatmapResponse;
+import com.example.stock.service.HeatmapService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Api("全市场热力图")
+@RestController
+@RequestMapping("/api/heatmap")
+@CrossOrigin(origins = "*")
+public class HeatmapController {
+
+  private final HeatmapService heatmapService;
+
+  public HeatmapController(HeatmapService heatmapService) {
+    this.heatmapService = heatmapService;
+  }
+
+  /**
+   * 全市场热力图，按列返回当日全部股票的涨跌幅和成交额
+   *
+   * @param tradeDate 交易日期，为空时为最新交易日
+   * @param withNames 是否返回股票名称
+   * @return 热力图数据，不是交易日时返回404
+   */
+  @ApiOperation("全市场热力图")
+  @GetMapping
+  public ResponseEntity<HeatmapResponse> getHeatmap(
+      @RequestParam(name = "trade_date", required = false) String tradeDate,
+      @RequestParam(name = "with_names", required = false, defaultValue = "false") boolean withNames) {
+    HeatmapResponse heatmap = heatmapService.getHeatmap(tradeDate, withNames);
+    return heatmap == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(heatmap);
+  }
+
+  /**
+   * 全市场热力图的紧凑二进制格式（format=binary），格式见 HeatmapEncoder，5300只股票不含名称时约 41KB
+   *
+   * @param tradeDate 交易日期，为空时为最新交易日
+   * @param withNames 是否包含股票名称
+   * @return 编码后的数据，不是交易日时返回404
+   */
+  @ApiOperation("全市场热力图（二进制）")
+  @GetMapping(params = "format=binary")
+  public ResponseEntity<byte[]> getHeatmapBinary(
+      @RequestParam(name = "trade_date", required = false) String tradeDate,
+      @RequestParam(name = "with_names", required = false, defaultValue = "false") boolean withNames) {
+    byte[] body = heatmapService.getHeatmapBinary(tradeDate, withNames);
+    if (body == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(HeatmapService.BINARY_MEDIA_TYPE))
+        .body(body);
+  }
+}
@@ -0,0 +1,74 @@
+package com.example.stock.controller;
+
+import com.example.stock.dto.BenchmarkIndex;
+import com.example.stock.dto.RelativeStrengthResponse;
+import com.example.stock.service.RelativeStrengthService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Api("相对强弱")
+@RestController
+@RequestMapping("/api/relative_strength")
+@CrossOrigin(origins = "*")
+public class RelativeStrengthController {
+
+  private final RelativeStrengthService relativeStrengthService;
+
+  public RelativeStrengthController(RelativeStrengthService relativeStrengthService) {
+    this.relativeStrengthService = relativeStrengthService;
+  }
+
+  /**
+   * 全市场相对任意指数的相对强弱排名
+   *
+   * @param benchmark 基准指数代码（index 表中的 ts_code），为空时使用配置的默认基准
+   * @param window    窗口包含的交易日数，必须是 stock.relative-strength.windows 中的值
+   * @param metric    排序指标：ratio（超额收益，默认）或 slope（相对收益斜率）
+   * @param filter    过滤条件：outperform（强于基准）、underperform（弱于基准），为空时不过滤
+   * @param order     排序方向：desc（默认）或 asc
+   * @param tsCode    股票代码，不为空时只返回该股票及其名次
+   * @param tradeDate 交易日期，为空时为最新交易日
+   * @param pageNum   页码
+   * @return 排名，不是交易日时返回404
+   */
+  @ApiOperation("相对强弱排名")
+  @GetMapping
+  public ResponseEntity<RelativeStrengthResponse> getRanking(
+      @RequestParam(name = "benchmark", required = false) String benchmark,
+      @RequestParam(name = "window", required = false) Integer window,
+      @RequestParam(name = "metric", required = false) String metric,
+      @RequestParam(name = "filter", required = false) String filter,
+      @RequestParam(name = "order", required = false, defaultValue = "desc") String order,
+      @RequestParam(name = "ts_code", required = false) String tsCode,
+      @RequestParam(name = "trade_date", required = false) String tradeDate,
+      @RequestParam(name = "page", required = false, defaultValue = "1") Integer pageNum) {
+    RelativeStrengthResponse response = relativeStrengthService.getRanking(benchmark, window, metric, filter,
+        isAscending(order), tsCode, tradeDate, pageNum);
+    return response == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(response);
+  }
+
+  /**
+   * 可作为基准的指数
+   *
+   * @return 最新交易日 index 表中的全部指数
+   */
+  @ApiOperation("可选基准指数")
+  @GetMapping("/benchmarks")
+  public List<BenchmarkIndex> getBenchmarks() {
+    return relativeStrengthService.getBenchmarks();
+  }
+
+  private static boolean isAscending(String order) {
+    if ("asc".equalsIgnoreCase(order)) {
+      return true;
+    }
+    if ("desc".equalsIgnoreCase(order)) {
+      return false;
+    }
+    throw new IllegalArgumentException("不支持的排序方向: " + order + "，可选 asc、desc");
+  }
+}
@@ -1,14 +1,28 @@
 package com.example.stock.controller;
 
+import com.example.stock.cache.SignalPredicate;
+import com.example.stock.cache.SortKey;
 import com.example.stock.dto.SingleStockResponse;
 import com.example.stock.dto.StockResponse;
+import com.example.stock.model.Resolution;
+import com.example.stock.model.SingleStockQuery;
+import com.example.stock.service.SingleStockBatchService;
 import com.example.stock.service.StockService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Api("股票可视化")
 @RestController
@@ -16,15 +30,43 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class StockController {
 
+  /**
+   * 降采样时 max_points 的最小值，LTTB 至少保留首末两点和一个中间点
+   */
+  private static final int MIN_POINTS = 3;
+
+  /**
+   * 增量同步令牌的响应头
+   */
+  public static final String SYNC_TOKEN_HEADER = "X-Sync-Token";
+
   // 注入StockService
 
   private final StockService stockService;
 
+  private final SingleStockBatchService singleStockBatchService;
+
+  private final int batchMaxSymbols;
+
   // 构造函数注入StockService
-  public StockController(StockService stockService) {
+  public StockController(StockService stockService, SingleStockBatchService singleStockBatchService,
+      @Value("${stock.batch.max-symbols:50}") int batchMaxSymbols) {
     this.stockService = stockService;
+    this.singleStockBatchService = singleStockBatchService;
+    this.batchMaxSymbols = batchMaxSymbols;
   }
 
+  /**
+   * 查询股票数据
+   *
+   * @param type      查询类型：0、1-指数, 2-涨停, 3-跌停, 4-半年线, 5-年线, 6-强于大盘, 7-弱于大盘
+   * @param tsCode    股票代码
+   * @param tradeDate 交易日期
+   * @param pageNum   页码
+   * @param sort      排序字段：pct_chg、vol、amount、slope，不传时沿用各类型原有的顺序；指数（0、1）不支持
+   * @param order     排序方向：desc（默认）或 asc
+   * @return 股票数据
+   */
   // 使用RESTful风格的URL
   @ApiOperation("查询股票数据")
   @GetMapping("/stock_data/{type}")
@@ -32,7 +74,14 @@ public class StockController {
       @PathVariable(name = "type") Integer type,
       @RequestParam(name = "ts_code", required = false) String tsCode,
       @RequestParam(name = "trade_date", required = false) String tradeDate,
-      @RequestParam(name = "page", required = false, defaultValue = "1") Integer pageNum) {
+      @RequestParam(name = "page", required = false, defaultValue = "1") Integer pageNum,
+      @RequestParam(name = "sort", required = false) String sort,
+      @RequestParam(name = "order", required = false, defaultValue = "desc") String order) {
+
+    SortKey sortKey = SortKey.parse(sort);
+    if (sortKey != null) {
+      return stockService.getRankedData(rankFilter(type), sortKey, isAscending(order), tsCode, tradeDate, pageNum);
+    }
 
     // 根据类型参数调用不同的服务方法
     switch (type) {
@@ -58,6 +107,41 @@ public class StockController {
     }
   }
 
+  /**
+   * 排序查询时各类型对应的股票范围
+   */
+  private static SignalPredicate rankFilter(int type) {
+    switch (type) {
+      case 2:
+        return SignalPredicate.LIMIT_UP;
+      case 3:
+        return SignalPredicate.LIMIT_DOWN;
+      case 4:
+        return SignalPredicate.HALF_YEAR_LINE;
+      case 5:
+        return SignalPredicate.YEAR_LINE;
+      case 6:
+        return SignalPredicate.OUTPERFORM;
+      case 7:
+        return SignalPredicate.UNDERPERFORM;
+      case 0:
+      case 1:
+        throw new IllegalArgumentException("指数数据不支持排序");
+      default:
+        throw new IllegalArgumentException("不支持的查询类型: " + type);
+    }
+  }
+
+  private static boolean isAscending(String order) {
+    if ("asc".equalsIgnoreCase(order)) {
+      return true;
+    }
+    if ("desc".equalsIgnoreCase(order)) {
+      return false;
+    }
+    throw new IllegalArgumentException("不支持的排序方向: " + order + "，可选 asc、desc");
+  }
+
   /**
    * 获取指定日期和股票的斜率数据
    *
@@ -120,27 +204,125 @@ public class StockController {
     /**
      * 获取单一股票数据，指定状态
      *
-     * @param type      分析类型：1-五日调整分析, 2-MACD金叉, 3-KDJ金叉, 4-低位资金净流入, 5-高位资金净流出, 6-连涨放量
-     * @param tsCode    股票代码
-     * @return 单只股票数据（包含策略分析state）
+     * @param type       分析类型：1-五日调整分析, 2-MACD金叉, 3-KDJ金叉, 4-低位资金净流入, 5-高位资金净流出, 6-连涨放量
+     * @param tsCode     股票代码
+     * @param resolution 时间粒度：day（默认）、week、month；同一周期内有多个买卖点时该周期拆分为多条K线
+     * @param maxPoints  最多返回的K线数量，超出时按LTTB降采样，带信号的K线始终保留
+     * @param since      上次同步得到的同步令牌，指定时只返回之后的增量日线，不能与降采样同时使用
+     * @return 单只股票数据（包含策略分析state），同步令牌通过 X-Sync-Token 响应头返回
      */
   @ApiOperation("查询单只股票数据")
   @GetMapping("/stock_single_data/{type}")
-  public SingleStockResponse getSingleStockData(@PathVariable(name = "type") Integer type,@RequestParam(name = "ts_code") String tsCode){
-      // 根据分析类型调用不同的分析方法
+  public SingleStockResponse getSingleStockData(@PathVariable(name = "type") Integer type,@RequestParam(name = "ts_code") String tsCode,
+      @RequestParam(name = "resolution", required = false) String resolution,
+      @RequestParam(name = "max_points", required = false) Integer maxPoints,
+      @RequestParam(name = "since", required = false) String since,
+      HttpServletResponse httpResponse){
+      SingleStockQuery query = singleStockQuery(type, tsCode, resolution, maxPoints, since);
+      SingleStockResponse response = stockService.getSingleStockData(query);
+      if (response != null && response.getSyncToken() != null) {
+          httpResponse.setHeader(SYNC_TOKEN_HEADER, response.getSyncToken());
+      }
+      return response;
+  }
+
+  /**
+   * 多条件筛选
+   *
+   * @param expression 筛选表达式，如 macd_golden AND kdj_golden AND NOT limit_up，
+   *                   或 close &gt; ma120 &amp;&amp; pct_chg &gt; 3 &amp;&amp; vol &gt; 2 * avg(vol, 5)；
+   *                   可用条件：five_days、macd_golden、kdj_golden、low_price、high_level、rising_volume、
+   *                   outperform、underperform、limit_up、limit_down；
+   *                   数值列：open、high、low、close、pct_chg、vol、amount、ma120、ma250、slope、market_slope；
+   *                   函数：avg、sum、max、min、ref(列, 交易日数)，abs(表达式)；
+   *                   最长1000个字符，括号、函数、NOT 和负号最多嵌套32层
+   * @param tradeDate  交易日期
+   * @param pageNum    页码
+   * @return 满足条件的股票，格式与行情列表相同
+   */
+  @ApiOperation("多条件筛选")
+  @GetMapping("/screen")
+  public StockResponse screen(
+      @RequestParam(name = "expr") String expression,
+      @RequestParam(name = "trade_date", required = false) String tradeDate,
+      @RequestParam(name = "page", required = false, defaultValue = "1") Integer pageNum) {
+    return stockService.getScreenData(expression, tradeDate, pageNum);
+  }
+
+  /**
+   * 批量获取多只股票的全部历史，用于多图对比
+   * 按股票代码逐只写出，格式与单只股票接口相同，grid_data 中每只股票一个数组（按股票代码排序）
+   *
+   * @param type       分析类型，同单只股票接口
+   * @param tsCodes    股票代码，多个用逗号分隔
+   * @param resolution 时间粒度，同单只股票接口
+   * @param maxPoints  每只股票最多返回的K线数量，同单只股票接口
+   * @param since      上次同步得到的同步令牌，同单只股票接口；响应头中的令牌为各股票最后一个交易日中最晚的一个
+   * @return 多只股票数据
+   */
+  @ApiOperation("批量查询多只股票数据")
+  @GetMapping("/stock_single_data/{type}/batch")
+  public ResponseEntity<StreamingResponseBody> getSingleStockDataBatch(@PathVariable(name = "type") Integer type,
+      @RequestParam(name = "ts_codes") String tsCodes,
+      @RequestParam(name = "resolution", required = false) String resolution,
+      @RequestParam(name = "max_points", required = false) Integer maxPoints,
+      @RequestParam(name = "since", required = false) String since) {
+      SingleStockQuery query = singleStockQuery(type, null, resolution, maxPoints, since);
+      Set<String> codes = new LinkedHashSet<>();
+      for (String code : tsCodes.split(",")) {
+          if (!code.trim().isEmpty()) {
+              codes.add(code.trim());
+          }
+      }
+      if (codes.size() > batchMaxSymbols) {
+          throw new IllegalArgumentException("一次最多查询 " + batchMaxSymbols + " 只股票");
+      }
+      List<String> codeList = new ArrayList<>(codes);
+      String syncToken = singleStockBatchService.syncToken(query, codeList);
+      StreamingResponseBody body = out -> singleStockBatchService.writeBatch(query, codeList, out);
+      ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+      if (syncToken != null) {
+          builder.header(SYNC_TOKEN_HEADER, syncToken);
+      }
+      return builder.body(body);
+  }
+
+  /**
+   * 单只股票和批量接口共用的查询条件及校验
+   */
+  private static SingleStockQuery singleStockQuery(Integer type, String tsCode, String resolution, Integer maxPoints,
+      String since) {
+      if (maxPoints != null && maxPoints < MIN_POINTS) {
+          throw new IllegalArgumentException("max_points 不能小于 " + MIN_POINTS);
+      }
+      SingleStockQuery query = new SingleStockQuery(singleStateName(type), tsCode);
+      query.setResolution(Resolution.parse(resolution));
+      query.setMaxPoints(maxPoints);
+      query.setSince(since);
+      if (since != null && (query.getResolution() != Resolution.DAY || maxPoints != null)) {
+          throw new IllegalArgumentException("增量同步不支持 resolution 和 max_points 参数");
+      }
+      return query;
+  }
+
+  /**
+   * 单只股票数据接口的分析类型对应的策略状态列
+   */
+  private static String singleStateName(Integer type) {
+      // 根据分析类型选择策略状态
       switch (type) {
           case 1: // 五日调整分析
-              return stockService.getSingleStockData("five_days_state",tsCode);
+              return "five_days_state";
           case 2: // MACD金叉分析
-              return stockService.getSingleStockData("macd_golden_state",tsCode);
+              return "macd_golden_state";
           case 3: // KDJ金叉分析
-              return stockService.getSingleStockData("kdj_golden_state",tsCode);
+              return "kdj_golden_state";
           case 4: // 低位资金净流入分析
-              return stockService.getSingleStockData("low_price_state",tsCode);
+              return "low_price_state";
           case 5: // 高位资金净流出分析
-              return stockService.getSingleStockData("high_level_state",tsCode);
+              return "high_level_state";
           case 6: // 连涨放量分析
-              return stockService.getSingleStockData("rising_volume_state",tsCode);
+              return "rising_volume_state";
           default:
               throw new IllegalArgumentException("不支持的分析类型: " + type);
       }
@@ -0,0 +1,32 @@
+package com.example.stock.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 回测任务状态
+ */
+@Data
+public class BacktestJob {
+  // 任务编号
+  private String job_id;
+
+  // 任务状态：PENDING、RUNNING、DONE、FAILED
+  private String status;
+
+  // 已处理的股票比例，0到1
+  private double progress;
+
+  // 区间起始交易日
+  private String start_date;
+
+  // 区间结束交易日
+  private String end_date;
+
+  // 失败原因
+  private String error;
+
+  // 各信号的回测结果，任务完成后才有
+  private List<BacktestResult> results;
+}
@@ -0,0 +1,62 @@
+package com.example.stock.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 单个策略信号在一段区间内的回测结果
+ * 收益和回撤都是百分比，以信号当日收盘价为买入价
+ */
+@Data
+public class BacktestResult {
+  // 策略信号，即状态列名
+  private String signal;
+
+  // 区间起始交易日
+  private String start_date;
+
+  // 区间结束交易日
+  private String end_date;
+
+  // 区间内信号出现的次数
+  private long events;
+
+  // 各持有期的远期收益分布
+  private List<HorizonStats> horizons;
+
+  // 持有期内的最大回撤分布
+  private DrawdownStats drawdown;
+
+  @Data
+  public static class HorizonStats {
+    // 持有的交易日数
+    private int days;
+    // 有远期收盘价的样本数
+    private long samples;
+    // 收益为正的样本比例
+    private double hit_rate;
+    // 平均收益
+    private double mean;
+    // 收益中位数
+    private double median;
+    // 10%分位收益
+    private double p10;
+    // 90%分位收益
+    private double p90;
+  }
+
+  @Data
+  public static class DrawdownStats {
+    // 持有的交易日数
+    private int days;
+    // 样本数
+    private long samples;
+    // 平均最大回撤
+    private double mean;
+    // 最大回撤中位数
+    private double median;
+    // 所有样本中最深的回撤
+    private double worst;
+  }
+}
@@ -0,0 +1,15 @@
+package com.example.stock.dto;
+
+import lombok.Data;
+
+/**
+ * 可作为相对强弱基准的指数
+ */
+@Data
+public class BenchmarkIndex {
+  // 指数代码
+  private String ts_code;
+
+  // 指数名称
+  private String name;
+}
@@ -0,0 +1,18 @@
+package com.example.stock.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全市场每日计数的时间序列，按列返回
+ */
+@Data
+public class BreadthSeriesResponse {
+  // 交易日，升序
+  private List<String> dates;
+
+  // 列名到每日计数的映射，数组与 dates 一一对应
+  private Map<String, int[]> series;
+}
@@ -0,0 +1,48 @@
+package com.example.stock.dto;
+
+import lombok.Data;
+
+/**
+ * 单个交易日的市场宽度
+ */
+@Data
+public class BreadthSnapshotResponse {
+  // 交易日期
+  private String trade_date;
+
+  // 当日有数据的股票数量
+  private int total;
+
+  // 上涨家数
+  private int advancers;
+
+  // 下跌家数
+  private int decliners;
+
+  // 平盘家数
+  private int unchanged;
+
+  // 涨停数量
+  private int limit_up;
+
+  // 跌停数量
+  private int limit_down;
+
+  // 收盘价在半年线之上的数量
+  private int above_ma120;
+
+  // 收盘价在年线之上的数量
+  private int above_ma250;
+
+  // 收盘价在半年线之上的百分比
+  private double above_ma120_pct;
+
+  // 收盘价在年线之上的百分比
+  private double above_ma250_pct;
+
+  // 创52周新高的数量
+  private int new_highs;
+
+  // 创52周新低的数量
+  private int new_lows;
+}
@@ -0,0 +1,26 @@
+package com.example.stock.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 全市场热力图数据，按列返回，各数组按股票代码升序一一对应
+ */
+@Data
+public class HeatmapResponse {
+  // 交易日期
+  private String trade_date;
+
+  // 股票代码
+  private List<String> ts_codes;
+
+  // 股票名称，请求时指定 with_names 才返回
+  private List<String> names;
+
+  // 涨跌幅，空值为 null
+  private Double[] pct_chg;
+
+  // 成交额，空值为 null
+  private Double[] amount;
+}
@@ -0,0 +1,62 @@
+package com.example.stock.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 全市场相对基准指数的相对强弱排名
+ * 收益和超额收益都是百分比，斜率为累计相对对数收益每个交易日的变化（百分比）
+ */
+@Data
+public class RelativeStrengthResponse {
+  // 交易日期
+  private String trade_date;
+
+  // 基准指数代码
+  private String benchmark;
+
+  // 基准指数名称
+  private String benchmark_name;
+
+  // 窗口包含的交易日数
+  private int window;
+
+  // 排序所用的指标：ratio 或 slope
+  private String metric;
+
+  // 基准指数在窗口内的收益
+  private Double benchmark_return;
+
+  // 按所用指标强于基准的股票数量
+  private int outperform;
+
+  // 按所用指标弱于基准的股票数量
+  private int underperform;
+
+  // 满足过滤条件的股票数量
+  private int total;
+
+  // 当前页码
+  private int page;
+
+  // 每页股票数量
+  private int page_size;
+
+  // 当前页的股票
+  private List<Item> items;
+
+  @Data
+  public static class Item {
+    // 股票代码
+    private String ts_code;
+    // 股票名称
+    private String name;
+    // 按所用指标降序的名次，从1开始
+    private int rank;
+    // 窗口内相对基准的超额收益
+    private Double ratio;
+    // 累计相对对数收益的回归斜率
+    private Double slope;
+  }
+}
@@ -1,5 +1,6 @@
 package com.example.stock.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.math.BigDecimal;
@@ -13,6 +14,10 @@ public class SingleStockResponse {
   // 股票数据，格式为数组的数组的数组
   private List<List<List<Object>>> grid_data;
 
+  // 同步令牌，即返回的最后一个交易日，通过 X-Sync-Token 响应头返回
+  @JsonIgnore
+  private String syncToken;
+
   @Data
   public static class StockData {
     // 股票代码
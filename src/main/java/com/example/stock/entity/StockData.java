@@ -27,6 +27,7 @@ public class StockData {
   private Integer kdjGoldenState;  // KDJ金叉状态
   private Integer lowPriceState;   // 低位资金净流入状态
   private Integer highLevelState;  // 高位资金净流出状态
+  private Integer risingVolumeState; // 连涨放量状态
   private Integer Fmark; // Fmark字段
   private BigDecimal ma120; // 半年线
   private BigDecimal ma250; // 年线
@@ -0,0 +1,43 @@
+package com.example.stock.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 日线归档
+ * 归档表 all_stocks_days_archive 与热表结构相同（由 V4 迁移通过 CREATE TABLE ... LIKE 创建）
+ */
+@Mapper
+public interface ArchiveMapper {
+
+    /**
+     * 查询热表中早于指定日期的交易日
+     * @param cutoff 截止日期（不包含）
+     * @param limit 最多返回的交易日数量
+     * @return 交易日列表，升序
+     */
+    @Select("SELECT DISTINCT trade_date FROM all_stocks_days WHERE trade_date < #{cutoff} ORDER BY trade_date LIMIT #{limit}")
+    List<String> findHotDatesBefore(@Param("cutoff") String cutoff,
+                                     @Param("limit") int limit);
+
+    /**
+     * 将热表中指定交易日的日线复制到归档表，已存在的行跳过
+     * @param tradeDate 交易日
+     * @return 复制的行数
+     */
+    @Insert("INSERT IGNORE INTO all_stocks_days_archive SELECT * FROM all_stocks_days WHERE trade_date = #{tradeDate}")
+    int copyToArchive(String tradeDate);
+
+    /**
+     * 删除热表中指定交易日的日线
+     * @param tradeDate 交易日
+     * @return 删除的行数
+     */
+    @Delete("DELETE FROM all_stocks_days WHERE trade_date = #{tradeDate}")
+    int deleteFromHot(String tradeDate);
+}
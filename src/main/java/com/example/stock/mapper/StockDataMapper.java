@@ -2,9 +2,12 @@ package com.example.stock.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.stock.entity.StockData;
+import com.example.stock.model.DailyBreadth;
+import com.example.stock.model.YearHighLow;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -15,23 +18,6 @@ import java.util.List;
 @Mapper
 public interface StockDataMapper extends BaseMapper<StockData> {
 
-    /**
-     * 根据日期范围查询股票数据
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 开始日期
-     * @param endDate   结束日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 符合条件的股票数据列表
-     */
-    List<StockData> findByDateRange(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("endDate") String endDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
-
     /**
      * 根据日期范围查询指数股票数据
      *
@@ -50,52 +36,33 @@ public interface StockDataMapper extends BaseMapper<StockData> {
             @Param("offset") int offset);
 
     /**
-     * 查询涨停股票数据
+     * 获取热表中的最小日期，更早的日线已迁移到归档表
      *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 开始日期
-     * @param endDate   结束日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 符合条件的涨停股票数据列表
+     * @return 最小日期字符串，格式为YYYY-MM-DD
      */
-    List<StockData> findLimitUp(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("endDate") String endDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
+    String findMinDate();
 
     /**
-     * 查询跌停股票数据
+     * 获取数据库中的最大日期（最新交易日）
      *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 开始日期
-     * @param endDate   结束日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 符合条件的跌停股票数据列表
+     * @return 最大日期字符串，格式为YYYY-MM-DD
      */
-    List<StockData> findLimitDown(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("endDate") String endDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
+    String findMaxDate();
 
     /**
-     * 获取数据库中的最小日期
+     * 获取指定交易日在热表中的行数
      *
-     * @return 最小日期字符串，格式为YYYY-MM-DD
+     * @param tradeDate 交易日期
+     * @return 行数
      */
-    String findMinDate();
+    Long countRowsOnDate(@Param("tradeDate") String tradeDate);
 
     /**
-     * 获取数据库中的最大日期（最新交易日）
+     * 获取数据库中的全部交易日，按日期升序排列
      *
-     * @return 最大日期字符串，格式为YYYY-MM-DD
+     * @return 交易日列表
      */
-    String findMaxDate();
+    List<String> findAllTradeDates();
 
     /**
      * 查找指定日期之后的第N个交易日
@@ -147,46 +114,6 @@ public interface StockDataMapper extends BaseMapper<StockData> {
                           @Param("isLimitUp") Boolean isLimitUp,
                           @Param("isLimitDown") Boolean isLimitDown);
 
-    /**
-     * 查询半年线股票数据（价格接近120日均线的股票）
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 符合半年线条件的股票数据列表
-     */
-    List<StockData> findHalfYearLine(@Param("tsCode") String tsCode, @Param("startDate") String startDate,
-                                     @Param("pageSize") int pageSize, @Param("offset") int offset);
-
-    /**
-     * 查询年线股票数据（价格接近250日均线的股票）
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 符合年线条件的股票数据列表
-     */
-    List<StockData> findYearLine(@Param("tsCode") String tsCode, @Param("startDate") String startDate,
-                                 @Param("pageSize") int pageSize, @Param("offset") int offset);
-
-    /**
-     * 查询强于大盘的股票数据
-     * 使用pre-computed slope字段，查询斜率高于大盘斜率的股票
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 强于大盘的股票数据列表
-     */
-    List<StockData> findOutperformData(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
-
     /**
      * 统计符合半年线条件的股票数量
      *
@@ -214,22 +141,6 @@ public interface StockDataMapper extends BaseMapper<StockData> {
      */
     Long countOutperformStocks(@Param("tsCode") String tsCode, @Param("startDate") String startDate);
 
-    /**
-     * 查询弱于大盘的股票数据
-     * 使用pre-computed slope字段，查询斜率低于大盘斜率的股票
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 弱于大盘的股票数据列表
-     */
-    List<StockData> findUnderperformData(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
-
     /**
      * 统计弱于大盘的股票数量
      *
@@ -258,22 +169,6 @@ public interface StockDataMapper extends BaseMapper<StockData> {
      */
     Double findMarketSlope(String tradeDate);
 
-    /**
-     * 查询具有买点的五日调整股票数据
-     * 五日调整是指满足特定技术指标条件的股票，state字段大于0表示存在买点
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 有买点的五日调整股票数据列表
-     */
-    List<StockData> findFiveDayAdjustmentStocks(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
-
     /**
      * 获取具有买点的五日调整股票代码列表
      * 返回在指定日期state字段大于0的所有股票代码
@@ -296,30 +191,6 @@ public interface StockDataMapper extends BaseMapper<StockData> {
      */
     Long countFiveDayAdjustmentStocks(@Param("tsCode") String tsCode, @Param("startDate") String startDate);
 
-    /**
-     * 根据指定的策略状态和股票代码获取单只股票数据
-     *
-     * @param stateName 策略状态名
-     * @param tsCode    股票代码，可选过滤条件
-     * @return 有买点的五日调整股票数量
-     */
-    List<StockData> getSingleStockData(@Param("columnName") String stateName, @Param("tsCode") String tsCode);
-
-    /**
-     * 查询具有MACD金叉信号的股票数据
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 有MACD金叉信号的股票数据列表
-     */
-    List<StockData> findMacdGoldenCrossStocks(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
-
     /**
      * 获取具有MACD金叉信号的股票代码列表
      *
@@ -340,21 +211,6 @@ public interface StockDataMapper extends BaseMapper<StockData> {
      */
     Long countMacdGoldenCrossStocks(@Param("tsCode") String tsCode, @Param("startDate") String startDate);
 
-    /**
-     * 查询具有KDJ金叉信号的股票数据
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 有KDJ金叉信号的股票数据列表
-     */
-    List<StockData> findKdjGoldenCrossStocks(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
-
     /**
      * 获取具有KDJ金叉信号的股票代码列表
      *
@@ -375,21 +231,6 @@ public interface StockDataMapper extends BaseMapper<StockData> {
      */
     Long countKdjGoldenCrossStocks(@Param("tsCode") String tsCode, @Param("startDate") String startDate);
 
-    /**
-     * 查询具有低位资金净流入信号的股票数据
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 有低位资金净流入信号的股票数据列表
-     */
-    List<StockData> findLowPriceInflowStocks(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
-
     /**
      * 获取具有低位资金净流入信号的股票代码列表
      *
@@ -410,21 +251,6 @@ public interface StockDataMapper extends BaseMapper<StockData> {
      */
     Long countLowPriceInflowStocks(@Param("tsCode") String tsCode, @Param("startDate") String startDate);
 
-    /**
-     * 查询具有高位资金净流出信号的股票数据
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 有高位资金净流出信号的股票数据列表
-     */
-    List<StockData> findHighLevelOutflowStocks(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
-
     /**
      * 获取具有高位资金净流出信号的股票代码列表
      *
@@ -445,21 +271,6 @@ public interface StockDataMapper extends BaseMapper<StockData> {
      */
     Long countHighLevelOutflowStocks(@Param("tsCode") String tsCode, @Param("startDate") String startDate);
 
-    /**
-     * 查询具有连涨放量信号的股票数据
-     *
-     * @param tsCode    股票代码，可选过滤条件
-     * @param startDate 查询日期
-     * @param pageSize  每页数量
-     * @param offset    偏移量（用于分页）
-     * @return 有连涨放量信号的股票数据列表
-     */
-    List<StockData> findRisingVolumeStocks(
-            @Param("tsCode") String tsCode,
-            @Param("startDate") String startDate,
-            @Param("pageSize") int pageSize,
-            @Param("offset") int offset);
-
     /**
      * 获取具有连涨放量信号信号的股票代码列表
      *
@@ -487,19 +298,136 @@ public interface StockDataMapper extends BaseMapper<StockData> {
     boolean isExists(String tsCode);
 
     /**
-     * 根据多个股票代码查询股票数据
+     * 查询指定日期满足筛选条件的一页股票代码
+     * 前后41个交易日的K线由 BarSeriesCache 提供，这里只确定股票集合及其顺序
      *
-     * @param tsCodes   股票代码列表
-     * @param startDate 开始日期
-     * @param endDate   结束日期
+     * @param filter    筛选条件：all、limit_up、limit_down、half_year_line、year_line、outperform、underperform
+     *                  或策略状态列名（如 macd_golden_state）
+     * @param tsCode    股票代码，可选过滤条件
+     * @param tsCodes   股票代码列表，可选过滤条件
+     * @param startDate 查询日期
      * @param pageSize  每页数量
      * @param offset    偏移量（用于分页）
-     * @return 符合条件的股票数据列表
+     * @return 股票代码列表
      */
-    List<StockData> findByTsCodes(
+    List<String> findWindowTsCodes(
+            @Param("filter") String filter,
+            @Param("tsCode") String tsCode,
             @Param("tsCodes") List<String> tsCodes,
             @Param("startDate") String startDate,
-            @Param("endDate") String endDate,
             @Param("pageSize") int pageSize,
             @Param("offset") int offset);
-}
\ No newline at end of file
+
+    /**
+     * 流式读取多只股票的全部日线数据（包含全部策略状态），按股票代码、交易日升序返回
+     *
+     * @param tsCodes 股票代码列表
+     * @param handler 逐行处理结果
+     */
+    void streamSeriesByTsCodes(@Param("tsCodes") List<String> tsCodes, ResultHandler<StockData> handler);
+
+    /**
+     * 流式读取指定交易日全部股票的日线，按股票代码升序返回
+     *
+     * @param tradeDate 交易日期
+     * @param handler   逐行处理结果
+     */
+    void streamCrossSection(@Param("tradeDate") String tradeDate, ResultHandler<StockData> handler);
+
+    /**
+     * 流式读取多只股票自指定交易日起的日线数据，按股票代码、交易日升序返回
+     *
+     * @param tsCodes   股票代码列表
+     * @param startDate 起始交易日（包含）
+     * @param handler   逐行处理结果
+     */
+    void streamSeriesSince(@Param("tsCodes") List<String> tsCodes,
+                           @Param("startDate") String startDate,
+                           ResultHandler<StockData> handler);
+
+    /**
+     * 流式读取导出用的日线数据（热表与归档表），不保证返回顺序
+     *
+     * @param tsCodes      股票代码列表，为空时不限制
+     * @param startDate    起始日期（包含），为空时不限制
+     * @param endDate      结束日期（包含），为空时不限制
+     * @param signalColumn 策略状态列名，不为空时只返回该状态为1的日线，必须来自 StrategyState
+     * @param handler      逐行处理结果
+     */
+    void streamBarsForExport(@Param("tsCodes") List<String> tsCodes,
+                             @Param("startDate") String startDate,
+                             @Param("endDate") String endDate,
+                             @Param("signalColumn") String signalColumn,
+                             ResultHandler<StockData> handler);
+
+    /**
+     * 获取全部股票代码（热表与归档表），按代码升序排列
+     *
+     * @return 股票代码列表
+     */
+    List<String> findAllTsCodes();
+
+    /**
+     * 流式读取回测用的日线（热表或归档表），只包含收盘价、最低价和各策略状态，按股票代码、交易日升序返回
+     *
+     * @param tsCodes   股票代码列表
+     * @param startDate 起始日期（包含）
+     * @param endDate   结束日期（包含）
+     * @param archive   是否读取归档表
+     * @param handler   逐行处理结果
+     */
+    void streamBacktestBars(@Param("tsCodes") List<String> tsCodes,
+                            @Param("startDate") String startDate,
+                            @Param("endDate") String endDate,
+                            @Param("archive") boolean archive,
+                            ResultHandler<StockData> handler);
+
+    /**
+     * 按交易日汇总全市场计数（热表与归档表），按交易日升序排列
+     *
+     * @param startDate 起始交易日（包含），为空时汇总全部历史
+     * @return 每个交易日一条
+     */
+    List<DailyBreadth> findDailyBreadth(@Param("startDate") String startDate);
+
+    /**
+     * 统计指定交易日创52周新高、新低的股票数量
+     * 当日最高价不低于之前区间内的最高价记为新高，最低价不高于之前区间内的最低价记为新低，之前区间内没有数据的股票不计
+     *
+     * @param tradeDate 交易日
+     * @param startDate 比较区间的起始交易日（包含），区间到 tradeDate 前一交易日为止
+     * @return 新高、新低数量
+     */
+    YearHighLow countYearHighsLows(@Param("tradeDate") String tradeDate, @Param("startDate") String startDate);
+
+    /**
+     * 流式读取区间内全部股票的涨跌幅（热表，起始日期已归档时拼接归档表），不保证返回顺序
+     *
+     * @param startDate 起始日期（包含）
+     * @param endDate   结束日期（包含）
+     * @param handler   逐行处理结果，每行只包含股票代码、交易日和涨跌幅
+     */
+    void streamWindowPctChg(@Param("startDate") String startDate,
+                            @Param("endDate") String endDate,
+                            ResultHandler<StockData> handler);
+
+    /**
+     * 查询单个指数在区间内的日线，按交易日升序排列
+     *
+     * @param tsCode    指数代码
+     * @param startDate 起始日期（包含）
+     * @param endDate   结束日期（包含）
+     * @return 日线列表，只包含指数代码、交易日、涨跌幅和名称
+     */
+    List<StockData> findIndexPctChg(@Param("tsCode") String tsCode,
+                                    @Param("startDate") String startDate,
+                                    @Param("endDate") String endDate);
+
+    /**
+     * 查询指定交易日 index 表中的全部指数，按代码升序排列
+     *
+     * @param tradeDate 交易日期
+     * @return 指数列表，只包含代码和名称
+     */
+    List<StockData> findIndexList(@Param("tradeDate") String tradeDate);
+}
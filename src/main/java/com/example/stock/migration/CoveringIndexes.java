@@ -0,0 +1,87 @@
+package com.example.stock.migration;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 仍直接查库的 SQL 所依赖的二级索引，由 {@link V2__covering_indexes} 创建、SchemaIndexValidator 校验
+ * all_stocks_days 的按日查询都以 trade_date = ? 开头，单日只有几千行，
+ * 策略状态、涨跌停、强弱于大盘的条件都在 (trade_date, ts_code, ...) 的单日范围内过滤，不再为每个条件单独建索引；
+ * 跨多个交易日读取的相对强弱涨跌幅保留单独的覆盖索引
+ * 建索引使用 Online DDL（ALGORITHM=INPLACE, LOCK=NONE），期间不阻塞读写
+ */
+public final class CoveringIndexes {
+
+    /**
+     * 需要的索引
+     */
+    public static final List<Index> REQUIRED = Collections.unmodifiableList(Arrays.asList(
+            // 按日查询：trade_date = ?，半年线/年线 close > ma120 / ma250 只扫描索引
+            new Index("all_stocks_days", "idx_asd_date_ma", "trade_date", "ts_code", "close", "ma120", "ma250"),
+            // 相对强弱：trade_date BETWEEN ? AND ?，只读 ts_code、pct_chg
+            new Index("all_stocks_days", "idx_asd_date_pct_chg", "trade_date", "pct_chg", "ts_code"),
+            // 单只股票历史、日线序列加载：ts_code = ? ORDER BY trade_date
+            new Index("all_stocks_days", "idx_asd_code_date", "ts_code", "trade_date"),
+            // 指数列表：trade_date = ?，按 ts_code 排序；指数区间：ts_code IN (...) AND trade_date BETWEEN ? AND ?
+            new Index("index", "idx_index_date_code", "trade_date", "ts_code"),
+            new Index("index", "idx_index_code_date", "ts_code", "trade_date"),
+            // 上证指数斜率：trade_date = ?
+            new Index("shangzheng", "idx_shangzheng_date_slope", "trade_date", "slope")));
+
+    /**
+     * 早期版本按条件建立、已被 idx_asd_date_ma 取代的 all_stocks_days 索引，由 {@link V5__Drop_superseded_indexes} 删除
+     */
+    static final List<String> SUPERSEDED = Collections.unmodifiableList(Arrays.asList(
+            "idx_asd_date_five_days", "idx_asd_date_macd_golden", "idx_asd_date_kdj_golden",
+            "idx_asd_date_low_price", "idx_asd_date_high_level", "idx_asd_date_rising_volume",
+            "idx_asd_date_slope"));
+
+    private CoveringIndexes() {
+    }
+
+    /**
+     * 索引是否存在（只比较名称）
+     */
+    public static boolean exists(Connection connection, String table, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM information_schema.statistics"
+                        + " WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1")) {
+            statement.setString(1, table);
+            statement.setString(2, name);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * 表名、索引名、索引列
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Index {
+        private final String table;
+        private final String name;
+        private final List<String> columns;
+
+        Index(String table, String name, String... columns) {
+            this(table, name, Collections.unmodifiableList(Arrays.asList(columns)));
+        }
+
+        /**
+         * 在线建索引的 DDL
+         */
+        public String ddl() {
+            return "ALTER TABLE `" + table + "` ADD INDEX " + name + " (" + String.join(", ", columns) + ")"
+                    + ", ALGORITHM=INPLACE, LOCK=NONE";
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.stock.migration;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * all_stocks_days 年度范围分区的布局
+ * 每年一个分区 p{年份}，上界为次年1月1日，最后是接收更晚数据的 pmax 分区；
+ * 分区边界的写法取决于 trade_date 的类型和存储格式（DATE、yyyy-MM-dd 或 yyyyMMdd 字符串）
+ * 小表由 {@link V3__Partition_all_stocks_days} 在迁移时建立分区，大表由分区维护任务在维护时段建立；
+ * 分区维护任务还会在 pmax 收到数据之前拆出新的年度分区
+ * MySQL 要求所有唯一键都包含分区列：主键不含 trade_date 时会改为 (原主键列, trade_date)，
+ * 存在其它不含 trade_date 的唯一键时无法分区
+ */
+@Slf4j
+public final class PartitionLayout {
+
+    public static final String TABLE = "all_stocks_days";
+
+    /**
+     * 分区覆盖到当前年份之后的年数，更晚的数据进入 pmax 分区
+     */
+    public static final int YEARS_AHEAD = 2;
+
+    private PartitionLayout() {
+    }
+
+    /**
+     * 表是否已分区
+     */
+    public static boolean isPartitioned(Connection connection) throws SQLException {
+        return queryForString(connection,
+                "SELECT partition_name FROM information_schema.partitions"
+                        + " WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL LIMIT 1",
+                TABLE) != null;
+    }
+
+    /**
+     * 建立分区的 DDL，主键调整和分区在同一条 ALTER 中完成，只重建一次表
+     *
+     * @return DDL，表不存在、已分区或无法分区时返回 null
+     */
+    public static String partitionDdl(Connection connection) throws SQLException {
+        if (queryForString(connection, "SELECT table_name FROM information_schema.tables"
+                + " WHERE table_schema = DATABASE() AND table_name = ?", TABLE) == null) {
+            log.warn("表{}不存在，不分区", TABLE);
+            return null;
+        }
+        if (isPartitioned(connection)) {
+            return null;
+        }
+        Map<String, List<String>> uniqueKeys = uniqueKeys(connection);
+        for (Map.Entry<String, List<String>> key : uniqueKeys.entrySet()) {
+            if (!"PRIMARY".equals(key.getKey()) && !key.getValue().contains("trade_date")) {
+                log.warn("表{}的唯一键{}{}不包含 trade_date，无法分区", TABLE, key.getKey(), key.getValue());
+                return null;
+            }
+        }
+
+        StringBuilder ddl = new StringBuilder("ALTER TABLE ").append(TABLE);
+        List<String> primaryKey = uniqueKeys.get("PRIMARY");
+        if (primaryKey != null && !primaryKey.contains("trade_date")) {
+            List<String> columns = new ArrayList<>(primaryKey);
+            columns.add("trade_date");
+            ddl.append(" DROP PRIMARY KEY, ADD PRIMARY KEY (").append(String.join(", ", columns)).append(")");
+        }
+        ddl.append(" PARTITION BY RANGE COLUMNS (trade_date) (")
+                .append(yearPartitions(firstYear(connection), targetLastYear(), usesDashedDates(connection)))
+                .append("PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+        return ddl.toString();
+    }
+
+    /**
+     * information_schema 中的估算行数，不扫描表
+     */
+    public static long estimatedRows(Connection connection, String table) throws SQLException {
+        String rows = queryForString(connection,
+                "SELECT table_rows FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?",
+                table);
+        return rows == null ? 0 : Long.parseLong(rows);
+    }
+
+    /**
+     * 最后一个年度分区的年份，没有年度分区时返回 -1
+     */
+    public static int lastYear(Connection connection) throws SQLException {
+        int last = -1;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT partition_name FROM information_schema.partitions"
+                        + " WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL")) {
+            statement.setString(1, TABLE);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    if (name.matches("p\\d{4}")) {
+                        last = Math.max(last, Integer.parseInt(name.substring(1)));
+                    }
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * DATE 类型或 yyyy-MM-dd 字符串时分区边界使用带横线的格式
+     */
+    public static boolean usesDashedDates(Connection connection) throws SQLException {
+        String dataType = queryForString(connection,
+                "SELECT data_type FROM information_schema.columns"
+                        + " WHERE table_schema = DATABASE() AND table_name = ? AND column_name = 'trade_date'",
+                TABLE);
+        if ("date".equalsIgnoreCase(dataType) || "datetime".equalsIgnoreCase(dataType)) {
+            return true;
+        }
+        String sample = queryForString(connection, "SELECT MIN(trade_date) FROM " + TABLE, null);
+        return sample != null && sample.indexOf('-') >= 0;
+    }
+
+    /**
+     * 应当覆盖到的最后一个年度分区
+     */
+    public static int targetLastYear() {
+        return LocalDate.now().getYear() + YEARS_AHEAD;
+    }
+
+    /**
+     * [fromYear, toYear] 各年度分区的定义，以逗号和空格分隔，末尾带分隔符
+     */
+    public static String yearPartitions(int fromYear, int toYear, boolean dashed) {
+        StringBuilder partitions = new StringBuilder();
+        for (int year = fromYear; year <= toYear; year++) {
+            String bound = dashed ? (year + 1) + "-01-01" : (year + 1) + "0101";
+            partitions.append("PARTITION p").append(year).append(" VALUES LESS THAN ('").append(bound).append("'), ");
+        }
+        return partitions.toString();
+    }
+
+    private static Map<String, List<String>> uniqueKeys(Connection connection) throws SQLException {
+        Map<String, List<String>> keys = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT index_name, column_name FROM information_schema.statistics"
+                        + " WHERE table_schema = DATABASE() AND table_name = ? AND non_unique = 0"
+                        + " ORDER BY index_name, seq_in_index")) {
+            statement.setString(1, TABLE);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    keys.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getString(2));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static int firstYear(Connection connection) throws SQLException {
+        String min = queryForString(connection, "SELECT MIN(trade_date) FROM " + TABLE, null);
+        return min == null ? LocalDate.now().getYear() : Integer.parseInt(min.substring(0, 4));
+    }
+
+    static String queryForString(Connection connection, String sql, String parameter) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (parameter != null) {
+                statement.setString(1, parameter);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+}
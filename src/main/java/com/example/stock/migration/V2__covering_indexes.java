@@ -0,0 +1,56 @@
+package com.example.stock.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * 创建 {@link CoveringIndexes#REQUIRED} 中的索引
+ * 同名索引已存在（如曾手工创建）时跳过，列是否一致由 SchemaIndexValidator 在启动时校验
+ * 建索引要扫描整张表，表的估算行数超过占位符 indexMaxRows（默认 {@value #DEFAULT_MAX_ROWS}）时不在迁移中创建，
+ * 由 SchemaIndexValidator 在启动后于后台线程在线创建，启动不等待
+ */
+@Slf4j
+public class V2__covering_indexes extends BaseJavaMigration {
+
+    /**
+     * 迁移中直接建索引的最大估算行数
+     */
+    static final long DEFAULT_MAX_ROWS = 1_000_000;
+
+    /**
+     * 配置最大估算行数的 Flyway 占位符，对应 spring.flyway.placeholders.indexMaxRows
+     */
+    private static final String MAX_ROWS_PLACEHOLDER = "indexMaxRows";
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        long maxRows = maxRows(context);
+        for (CoveringIndexes.Index index : CoveringIndexes.REQUIRED) {
+            if (CoveringIndexes.exists(connection, index.getTable(), index.getName())) {
+                log.info("索引{}.{}已存在，跳过", index.getTable(), index.getName());
+                continue;
+            }
+            long rows = PartitionLayout.estimatedRows(connection, index.getTable());
+            if (rows > maxRows) {
+                log.warn("表{}约{}行，超过{}行，索引{}在启动后由后台线程创建", index.getTable(), rows, maxRows,
+                        index.getName());
+                continue;
+            }
+            String ddl = index.ddl();
+            log.info("执行: {}", ddl);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(ddl);
+            }
+        }
+    }
+
+    private static long maxRows(Context context) {
+        String value = context.getConfiguration().getPlaceholders().get(MAX_ROWS_PLACEHOLDER);
+        return value == null || value.trim().isEmpty() ? DEFAULT_MAX_ROWS : Long.parseLong(value.trim());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.stock.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * 按 trade_date 对 all_stocks_days 做年度范围分区
+ * 分区边界的写法取决于 trade_date 的类型和存储格式，因此用Java迁移动态生成，DDL 见 {@link PartitionLayout#partitionDdl}
+ * 分区会重建整张表并在期间阻塞写入，只有估算行数不超过占位符 partitionMaxRows（默认 {@value #DEFAULT_MAX_ROWS}）时
+ * 才在迁移中执行；更大的表交给 PartitionServiceImpl 在维护时段的定时任务中建立分区（stock.partition.initialize-enabled），
+ * 启动不会因此阻塞，也不会在分区建立前把本迁移当作分区已完成
+ * 分区建立后由 PartitionServiceImpl 定期拆分 pmax，补充后续年份的分区
+ */
+@Slf4j
+public class V3__Partition_all_stocks_days extends BaseJavaMigration {
+
+    private static final String TABLE = PartitionLayout.TABLE;
+
+    /**
+     * 迁移中直接分区的最大估算行数
+     */
+    static final long DEFAULT_MAX_ROWS = 1_000_000;
+
+    /**
+     * 配置最大估算行数的 Flyway 占位符，对应 spring.flyway.placeholders.partitionMaxRows
+     */
+    private static final String MAX_ROWS_PLACEHOLDER = "partitionMaxRows";
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        String ddl = PartitionLayout.partitionDdl(connection);
+        if (ddl == null) {
+            return;
+        }
+
+        long rows = PartitionLayout.estimatedRows(connection, TABLE);
+        long maxRows = maxRows(context);
+        if (rows > maxRows) {
+            log.warn("表{}约{}行，超过{}行，迁移中不分区，由分区维护任务在维护时段执行: {}", TABLE, rows, maxRows, ddl);
+            return;
+        }
+        log.info("执行: {}", ddl);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(ddl);
+        }
+    }
+
+    private static long maxRows(Context context) {
+        String value = context.getConfiguration().getPlaceholders().get(MAX_ROWS_PLACEHOLDER);
+        return value == null || value.trim().isEmpty() ? DEFAULT_MAX_ROWS : Long.parseLong(value.trim());
+    }
+}
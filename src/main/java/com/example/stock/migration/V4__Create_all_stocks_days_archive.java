@@ -0,0 +1,98 @@
+package com.example.stock.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 创建冷数据归档表 all_stocks_days_archive
+ * 结构与热表相同（CREATE TABLE ... LIKE），但不分区、使用压缩行格式，
+ * 二级索引只保留按股票读取历史所需的 (ts_code, trade_date) 和按日查询所需的 (trade_date, ts_code)
+ */
+@Slf4j
+public class V4__Create_all_stocks_days_archive extends BaseJavaMigration {
+
+    private static final String HOT = "all_stocks_days";
+    private static final String ARCHIVE = "all_stocks_days_archive";
+
+    /**
+     * 归档表保留的二级索引
+     */
+    private static final String CODE_DATE_INDEX = "idx_asd_code_date";
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        if (!exists(connection, "SELECT 1 FROM information_schema.tables"
+                + " WHERE table_schema = DATABASE() AND table_name = ?", HOT)) {
+            log.warn("表{}不存在，跳过创建归档表", HOT);
+            return;
+        }
+        if (exists(connection, "SELECT 1 FROM information_schema.tables"
+                + " WHERE table_schema = DATABASE() AND table_name = ?", ARCHIVE)) {
+            log.info("归档表{}已存在，跳过", ARCHIVE);
+            return;
+        }
+
+        execute(connection, "CREATE TABLE " + ARCHIVE + " LIKE " + HOT);
+        if (exists(connection, "SELECT 1 FROM information_schema.partitions WHERE table_schema = DATABASE()"
+                + " AND table_name = ? AND partition_name IS NOT NULL", ARCHIVE)) {
+            execute(connection, "ALTER TABLE " + ARCHIVE + " REMOVE PARTITIONING");
+        }
+
+        Set<String> indexes = secondaryIndexes(connection);
+        List<String> alters = new ArrayList<>();
+        for (String index : indexes) {
+            if (!CODE_DATE_INDEX.equals(index)) {
+                alters.add("DROP INDEX `" + index + "`");
+            }
+        }
+        alters.add("ADD INDEX idx_asda_date_code (trade_date, ts_code)");
+        if (!indexes.contains(CODE_DATE_INDEX)) {
+            alters.add("ADD INDEX " + CODE_DATE_INDEX + " (ts_code, trade_date)");
+        }
+        execute(connection, "ALTER TABLE " + ARCHIVE + " " + String.join(", ", alters)
+                + ", ROW_FORMAT = COMPRESSED, KEY_BLOCK_SIZE = 8");
+    }
+
+    private static Set<String> secondaryIndexes(Connection connection) throws SQLException {
+        Set<String> indexes = new LinkedHashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT DISTINCT index_name FROM information_schema.statistics"
+                        + " WHERE table_schema = DATABASE() AND table_name = ? AND non_unique = 1")) {
+            statement.setString(1, ARCHIVE);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    indexes.add(rs.getString(1));
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private static boolean exists(Connection connection, String sql, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void execute(Connection connection, String ddl) throws SQLException {
+        log.info("执行: {}", ddl);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(ddl);
+        }
+    }
+}
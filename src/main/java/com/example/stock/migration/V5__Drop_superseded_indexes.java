@@ -0,0 +1,38 @@
+package com.example.stock.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 删除早期 V2 迁移按条件建立、已被 idx_asd_date_ma 取代的 all_stocks_days 索引（{@link CoveringIndexes#SUPERSEDED}）
+ * InnoDB 删除二级索引只修改元数据，不重建表
+ */
+@Slf4j
+public class V5__Drop_superseded_indexes extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        List<String> drops = new ArrayList<>();
+        for (String index : CoveringIndexes.SUPERSEDED) {
+            if (CoveringIndexes.exists(connection, PartitionLayout.TABLE, index)) {
+                drops.add("DROP INDEX " + index);
+            }
+        }
+        if (drops.isEmpty()) {
+            return;
+        }
+        String ddl = "ALTER TABLE " + PartitionLayout.TABLE + " " + String.join(", ", drops)
+                + ", ALGORITHM=INPLACE, LOCK=NONE";
+        log.info("执行: {}", ddl);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(ddl);
+        }
+    }
+}
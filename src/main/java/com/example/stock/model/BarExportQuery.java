@@ -0,0 +1,33 @@
+package com.example.stock.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 日线导出条件
+ * 三个条件可以组合，都为空时导出全部日线
+ */
+@Data
+public class BarExportQuery {
+
+  /**
+   * 起始日期（包含），为空时从最早交易日开始
+   */
+  private String startDate;
+
+  /**
+   * 结束日期（包含），为空时到最新交易日为止
+   */
+  private String endDate;
+
+  /**
+   * 股票代码列表，为空时导出全部股票
+   */
+  private List<String> tsCodes;
+
+  /**
+   * 策略信号，不为空时只导出该信号为1的日线
+   */
+  private StrategyState signal;
+}
@@ -0,0 +1,35 @@
+package com.example.stock.model;
+
+import lombok.Data;
+
+/**
+ * 单个交易日的全市场计数
+ * 各策略状态为1、涨停、跌停、收盘价在半年线和年线之上的股票数量，以及当日有数据的股票总数
+ */
+@Data
+public class DailyBreadth {
+
+  private String tradeDate;
+
+  private Integer fiveDaysState;
+
+  private Integer macdGoldenState;
+
+  private Integer kdjGoldenState;
+
+  private Integer lowPriceState;
+
+  private Integer highLevelState;
+
+  private Integer risingVolumeState;
+
+  private Integer limitUp;
+
+  private Integer limitDown;
+
+  private Integer aboveMa120;
+
+  private Integer aboveMa250;
+
+  private Integer total;
+}
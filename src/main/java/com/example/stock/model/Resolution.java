@@ -0,0 +1,42 @@
+package com.example.stock.model;
+
+/**
+ * 单只股票K线的时间粒度
+ */
+public enum Resolution {
+
+  /** 日线，不聚合 */
+  DAY,
+  /** 周线，按自然周聚合 */
+  WEEK,
+  /** 月线，按自然月聚合 */
+  MONTH;
+
+  /**
+   * 解析请求参数，支持 day/week/month 及 d/w/m，大小写不敏感，为空时返回日线
+   *
+   * @param text 请求参数
+   * @return 时间粒度
+   */
+  public static Resolution parse(String text) {
+    if (text == null || text.trim().isEmpty()) {
+      return DAY;
+    }
+    switch (text.trim().toLowerCase()) {
+      case "d":
+      case "day":
+      case "daily":
+        return DAY;
+      case "w":
+      case "week":
+      case "weekly":
+        return WEEK;
+      case "m":
+      case "month":
+      case "monthly":
+        return MONTH;
+      default:
+        throw new IllegalArgumentException("不支持的时间粒度: " + text);
+    }
+  }
+}
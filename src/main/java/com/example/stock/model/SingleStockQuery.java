@@ -0,0 +1,43 @@
+package com.example.stock.model;
+
+import lombok.Data;
+
+/**
+ * 单只股票数据查询条件
+ */
+@Data
+public class SingleStockQuery {
+
+  /**
+   * 策略状态列名，作为返回数据中的 state 列
+   */
+  private String stateName;
+
+  /**
+   * 股票代码
+   */
+  private String tsCode;
+
+  /**
+   * 时间粒度
+   */
+  private Resolution resolution = Resolution.DAY;
+
+  /**
+   * 最多返回的K线数量，为空时不限制
+   */
+  private Integer maxPoints;
+
+  /**
+   * 增量同步的起点，即客户端上次同步得到的同步令牌，为空时返回全部历史
+   */
+  private String since;
+
+  public SingleStockQuery() {
+  }
+
+  public SingleStockQuery(String stateName, String tsCode) {
+    this.stateName = stateName;
+    this.tsCode = tsCode;
+  }
+}
@@ -0,0 +1,49 @@
+package com.example.stock.model;
+
+/**
+ * 策略状态字段
+ * 与 all_stocks_days 表中的各个 *_state 列一一对应，状态值为1表示当日出现该策略信号
+ */
+public enum StrategyState {
+
+  /** 五日调整 */
+  FIVE_DAYS("five_days_state"),
+  /** MACD金叉 */
+  MACD_GOLDEN("macd_golden_state"),
+  /** KDJ金叉 */
+  KDJ_GOLDEN("kdj_golden_state"),
+  /** 低位资金净流入 */
+  LOW_PRICE("low_price_state"),
+  /** 高位资金净流出 */
+  HIGH_LEVEL("high_level_state"),
+  /** 连涨放量 */
+  RISING_VOLUME("rising_volume_state");
+
+  private final String columnName;
+
+  StrategyState(String columnName) {
+    this.columnName = columnName;
+  }
+
+  /**
+   * 数据库列名
+   */
+  public String getColumnName() {
+    return columnName;
+  }
+
+  /**
+   * 根据数据库列名查找策略状态
+   *
+   * @param columnName 列名
+   * @return 对应的策略状态，未知列名时返回 null
+   */
+  public static StrategyState fromColumnName(String columnName) {
+    for (StrategyState state : values()) {
+      if (state.columnName.equals(columnName)) {
+        return state;
+      }
+    }
+    return null;
+  }
+}
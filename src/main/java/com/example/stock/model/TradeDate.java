@@ -0,0 +1,117 @@
+package com.example.stock.model;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * 交易日模型
+ * value 为 yyyymmdd 形式的整数日期，ordinal 为该日期在交易日历中的稠密序号（从0开始）
+ * 服务内部统一使用整数进行比较、区间切片和距离计算，只在入参和出参处与字符串互转
+ */
+@EqualsAndHashCode
+public final class TradeDate implements Comparable<TradeDate> {
+
+  /**
+   * 不在交易日历中的日期的序号
+   */
+  public static final int NO_ORDINAL = -1;
+
+  private final int value;
+  private final int ordinal;
+
+  public TradeDate(int value, int ordinal) {
+    this.value = value;
+    this.ordinal = ordinal;
+  }
+
+  /**
+   * yyyymmdd 形式的整数日期
+   */
+  public int getValue() {
+    return value;
+  }
+
+  /**
+   * 交易日序号，不是交易日时为 {@link #NO_ORDINAL}
+   */
+  public int getOrdinal() {
+    return ordinal;
+  }
+
+  public boolean isTradingDay() {
+    return ordinal != NO_ORDINAL;
+  }
+
+  @Override
+  public int compareTo(TradeDate other) {
+    return Integer.compare(value, other.value);
+  }
+
+  @Override
+  public String toString() {
+    return format(value, false);
+  }
+
+  /**
+   * 解析日期字符串，支持 yyyyMMdd 和 yyyy-MM-dd 两种格式
+   *
+   * @param text 日期字符串
+   * @return yyyymmdd 形式的整数日期
+   */
+  public static int parse(String text) {
+    if (text == null) {
+      throw new IllegalArgumentException("交易日期不能为空");
+    }
+    int result = 0;
+    int digits = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        result = result * 10 + (c - '0');
+        digits++;
+      } else if (c != '-') {
+        throw new IllegalArgumentException("无效的交易日期: " + text);
+      }
+    }
+    if (digits != 8) {
+      throw new IllegalArgumentException("无效的交易日期: " + text);
+    }
+    return result;
+  }
+
+  /**
+   * 判断日期字符串是否为 yyyy-MM-dd 格式
+   */
+  public static boolean isDashed(String text) {
+    return text != null && text.indexOf('-') >= 0;
+  }
+
+  /**
+   * 将整数日期格式化为字符串
+   *
+   * @param value  yyyymmdd 形式的整数日期
+   * @param dashed 是否使用 yyyy-MM-dd 格式
+   * @return 日期字符串
+   */
+  public static String format(int value, boolean dashed) {
+    char[] buf = new char[dashed ? 10 : 8];
+    int year = value / 10000;
+    int month = value / 100 % 100;
+    int day = value % 100;
+    int pos = 0;
+    buf[pos++] = (char) ('0' + year / 1000 % 10);
+    buf[pos++] = (char) ('0' + year / 100 % 10);
+    buf[pos++] = (char) ('0' + year / 10 % 10);
+    buf[pos++] = (char) ('0' + year % 10);
+    if (dashed) {
+      buf[pos++] = '-';
+    }
+    buf[pos++] = (char) ('0' + month / 10);
+    buf[pos++] = (char) ('0' + month % 10);
+    if (dashed) {
+      buf[pos++] = '-';
+    }
+    buf[pos++] = (char) ('0' + day / 10);
+    buf[pos] = (char) ('0' + day % 10);
+    return new String(buf);
+  }
+}
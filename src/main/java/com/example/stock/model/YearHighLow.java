@@ -0,0 +1,14 @@
+package com.example.stock.model;
+
+import lombok.Data;
+
+/**
+ * 单个交易日创52周新高、新低的股票数量
+ */
+@Data
+public class YearHighLow {
+
+  private Integer newHighs;
+
+  private Integer newLows;
+}
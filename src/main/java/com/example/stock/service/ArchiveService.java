@@ -0,0 +1,13 @@
+package com.example.stock.service;
+
+/**
+ * 冷数据归档服务
+ */
+public interface ArchiveService {
+
+    /**
+     * 将超出保留期的交易日从热表迁移到归档表
+     * @return 本次迁移的交易日数量
+     */
+    int archive();
+}
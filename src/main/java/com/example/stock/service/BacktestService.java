@@ -0,0 +1,33 @@
+package com.example.stock.service;
+
+import com.example.stock.dto.BacktestJob;
+import com.example.stock.model.StrategyState;
+
+import java.util.List;
+
+/**
+ * 策略信号回测服务
+ * 统计信号出现后 1、5、20 个交易日的远期收益、胜率和持有期内的最大回撤
+ */
+public interface BacktestService {
+
+  /**
+   * 提交回测任务
+   * 所有信号在该区间的结果都已缓存时，返回的任务直接为完成状态
+   *
+   * @param signals   策略信号，为空时回测全部信号
+   * @param startDate 起始日期（包含），为空时从最早交易日开始
+   * @param endDate   结束日期（包含），为空时到最新交易日为止
+   * @return 任务状态
+   * @throws com.example.stock.concurrent.OverloadedException 排队的任务过多时，接口返回 503 和 Retry-After
+   */
+  BacktestJob submit(List<StrategyState> signals, String startDate, String endDate);
+
+  /**
+   * 查询任务状态
+   *
+   * @param jobId 任务编号
+   * @return 任务状态，任务不存在或已过期时返回 null
+   */
+  BacktestJob getJob(String jobId);
+}
@@ -0,0 +1,27 @@
+package com.example.stock.service;
+
+import com.example.stock.dto.BreadthSeriesResponse;
+import com.example.stock.dto.BreadthSnapshotResponse;
+
+/**
+ * 市场宽度服务
+ */
+public interface BreadthService {
+
+  /**
+   * 区间内每个交易日的全市场计数：各策略状态为1、涨停、跌停、半年线和年线之上的股票数量及股票总数
+   *
+   * @param startDate 起始日期（包含），为空时为结束日期之前的250个交易日
+   * @param endDate   结束日期（包含），为空时为最新交易日
+   * @return 按列返回的时间序列
+   */
+  BreadthSeriesResponse getBreadthSeries(String startDate, String endDate);
+
+  /**
+   * 单个交易日的市场宽度：涨跌平家数、涨跌停数量、均线之上的数量和比例、52周新高新低数量
+   *
+   * @param tradeDate 交易日期，为空时为最新交易日
+   * @return 市场宽度，不是交易日时返回 null
+   */
+  BreadthSnapshotResponse getBreadthSnapshot(String tradeDate);
+}
@@ -0,0 +1,26 @@
+package com.example.stock.service;
+
+import com.example.stock.model.BarExportQuery;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 日线批量导出服务
+ */
+public interface ExportService {
+
+  /**
+   * Arrow IPC 流格式的 MIME 类型
+   */
+  String ARROW_STREAM_MEDIA_TYPE = "application/vnd.apache.arrow.stream";
+
+  /**
+   * 以 Arrow IPC 流格式导出日线
+   *
+   * @param query 导出条件
+   * @param out   输出流，方法返回后不会关闭
+   * @return 导出的行数
+   */
+  long exportArrow(BarExportQuery query, OutputStream out) throws IOException;
+}
@@ -0,0 +1,32 @@
+package com.example.stock.service;
+
+import com.example.stock.dto.HeatmapResponse;
+
+/**
+ * 全市场热力图服务，数据来自内存中的全市场截面
+ */
+public interface HeatmapService {
+
+  /**
+   * 紧凑二进制格式的 MIME 类型，格式见 HeatmapEncoder
+   */
+  String BINARY_MEDIA_TYPE = "application/vnd.stock.heatmap";
+
+  /**
+   * 按列返回指定交易日全部股票的涨跌幅和成交额
+   *
+   * @param tradeDate 交易日期，为空时为最新交易日
+   * @param withNames 是否返回股票名称
+   * @return 热力图数据，不是交易日时返回 null
+   */
+  HeatmapResponse getHeatmap(String tradeDate, boolean withNames);
+
+  /**
+   * 以紧凑二进制格式返回与 {@link #getHeatmap} 相同的数据
+   *
+   * @param tradeDate 交易日期，为空时为最新交易日
+   * @param withNames 是否包含股票名称
+   * @return 编码后的字节，不是交易日时返回 null
+   */
+  byte[] getHeatmapBinary(String tradeDate, boolean withNames);
+}
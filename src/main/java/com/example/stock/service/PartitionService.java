@@ -0,0 +1,19 @@
+package com.example.stock.service;
+
+/**
+ * all_stocks_days 分区维护服务
+ */
+public interface PartitionService {
+
+    /**
+     * 对未分区的表建立年度分区，会重建整张表，只应在维护时段执行
+     * @return 是否执行了分区，表已分区、不存在或无法分区时为 false
+     */
+    boolean partitionTable();
+
+    /**
+     * 从 pmax 拆出到 当前年份 + 2 为止缺少的年度分区
+     * @return 新增的分区数量，表未分区或分区已足够时为0
+     */
+    int extendPartitions();
+}
@@ -0,0 +1,35 @@
+package com.example.stock.service;
+
+import com.example.stock.dto.BenchmarkIndex;
+import com.example.stock.dto.RelativeStrengthResponse;
+
+import java.util.List;
+
+/**
+ * 相对强弱服务
+ */
+public interface RelativeStrengthService {
+
+  /**
+   * 全市场相对基准指数的相对强弱排名
+   *
+   * @param benchmark 基准指数代码，为空时使用 stock.relative-strength.default-benchmark
+   * @param window    窗口包含的交易日数，为空时使用可选窗口中最小的一个
+   * @param metric    排序指标：ratio（默认）或 slope
+   * @param filter    过滤条件：outperform 只取强于基准的股票，underperform 只取弱于基准的股票，为空时不过滤
+   * @param ascending 是否升序
+   * @param tsCode    股票代码，不为空时只返回该股票及其名次
+   * @param tradeDate 交易日期，为空时为最新交易日
+   * @param pageNum   页码
+   * @return 排名，不是交易日时返回 null
+   */
+  RelativeStrengthResponse getRanking(String benchmark, Integer window, String metric, String filter,
+      boolean ascending, String tsCode, String tradeDate, Integer pageNum);
+
+  /**
+   * 最新交易日 index 表中可作为基准的全部指数
+   *
+   * @return 指数列表
+   */
+  List<BenchmarkIndex> getBenchmarks();
+}
@@ -0,0 +1,35 @@
+package com.example.stock.service;
+
+import com.example.stock.model.SingleStockQuery;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 批量获取多只股票的全部历史
+ */
+public interface SingleStockBatchService {
+
+  /**
+   * 批量结果的同步令牌，即各股票返回的最后一个交易日中最晚的一个，写出前通过响应头返回
+   * 没有任何K线时沿用查询中的令牌
+   *
+   * @param query   查询条件，其中的股票代码不使用
+   * @param tsCodes 股票代码
+   * @return 同步令牌，不是增量同步且没有数据时为 null
+   */
+  String syncToken(SingleStockQuery query, List<String> tsCodes);
+
+  /**
+   * 以 JSON 流式写出多只股票的数据
+   * 格式与单只股票接口相同：grid_data 中每只股票一个数组，按股票代码排序，没有数据的股票不包含在内；
+   * 增量同步、时间粒度和降采样的处理与单只股票接口一致
+   *
+   * @param query   查询条件，其中的股票代码不使用
+   * @param tsCodes 股票代码
+   * @param out     输出流，方法返回后不会关闭
+   * @return 写出的股票数量
+   */
+  int writeBatch(SingleStockQuery query, List<String> tsCodes, OutputStream out) throws IOException;
+}
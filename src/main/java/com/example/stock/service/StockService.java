@@ -1,6 +1,9 @@
 package com.example.stock.service;
 
+import com.example.stock.cache.SignalPredicate;
+import com.example.stock.cache.SortKey;
 import com.example.stock.dto.*;
+import com.example.stock.model.SingleStockQuery;
 import org.springframework.stereotype.Service;
 
 /**
@@ -124,6 +127,16 @@ public interface StockService {
    * @return
    */
   SingleStockResponse getSingleStockData(String stateName,String tsCode);
+
+  /**
+   * 按查询条件获取单只股票数据
+   * 可按周、月聚合或限制返回的K线数量，带有策略信号或买卖点的K线始终保留；
+   * 指定 since 时只返回该同步令牌之后的增量日线，新的同步令牌通过 {@link SingleStockResponse#getSyncToken()} 返回
+   *
+   * @param query 查询条件
+   * @return 单只股票数据，没有数据且不是增量同步时返回 null
+   */
+  SingleStockResponse getSingleStockData(SingleStockQuery query);
   
   /**
    * 获取MACD金叉分析数据
@@ -190,4 +203,31 @@ public interface StockService {
    * @return 股票数据响应
    */
   StockResponse getFavoriteStocksData(String tradeDate, Integer pageNum);
-}
\ No newline at end of file
+
+  /**
+   * 多条件筛选
+   * 表达式由各策略信号和均线、强弱、涨跌停条件，以及数值列、窗口函数上的比较和四则运算，
+   * 通过 AND、OR、NOT 组合而成，在目标日期的全市场截面上求值，返回格式与行情列表相同，股票按代码排序
+   *
+   * @param expression 筛选表达式
+   * @param tradeDate  交易日期
+   * @param pageNum    页码
+   * @return 股票数据响应
+   */
+  StockResponse getScreenData(String expression, String tradeDate, Integer pageNum);
+
+  /**
+   * 按指定字段排序的行情列表
+   * 使用目标日期全市场截面中预先排好的顺序分页，不在数据库中排序；返回格式与行情列表相同
+   *
+   * @param filter    股票范围，如涨停、半年线之上，为 null 时为全市场
+   * @param sort      排序字段
+   * @param ascending 是否升序，默认降序即前N名
+   * @param tsCode    股票代码，可选过滤条件
+   * @param tradeDate 交易日期
+   * @param pageNum   页码
+   * @return 股票数据响应
+   */
+  StockResponse getRankedData(SignalPredicate filter, SortKey sort, boolean ascending, String tsCode,
+      String tradeDate, Integer pageNum);
+}
@@ -0,0 +1,80 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.ArchiveTier;
+import com.example.stock.cache.TradingCalendar;
+import com.example.stock.mapper.ArchiveMapper;
+import com.example.stock.service.ArchiveService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 冷数据归档
+ * 热表只保留最近 horizon-trading-days 个交易日，更早的日线按交易日逐日迁移到压缩的归档表，
+ * 每个交易日的复制和删除在同一事务中完成，读取方不会看到重复或缺失的数据
+ * 交易日历、日线序列和单只股票查询同时读取两张表，按日查询根据 {@link ArchiveTier} 选择表
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ArchiveServiceImpl implements ArchiveService {
+
+    private final ArchiveMapper archiveMapper;
+    private final TradingCalendar tradingCalendar;
+    private final ArchiveTier archiveTier;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stock.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${stock.archive.horizon-trading-days:750}")
+    private int horizonTradingDays;
+
+    @Value("${stock.archive.max-days-per-run:60}")
+    private int maxDaysPerRun;
+
+    /**
+     * 定时归档
+     */
+    @Scheduled(cron = "${stock.archive.cron:0 30 2 * * ?}")
+    public void scheduledArchive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archive();
+        } catch (Exception e) {
+            log.error("归档失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int archive() {
+        int lastOrdinal = tradingCalendar.lastOrdinal();
+        int cutoffOrdinal = lastOrdinal - horizonTradingDays + 1;
+        if (cutoffOrdinal <= 0) {
+            return 0;
+        }
+        String cutoff = tradingCalendar.format(tradingCalendar.dateAt(cutoffOrdinal));
+        List<String> dates = archiveMapper.findHotDatesBefore(cutoff, maxDaysPerRun);
+        for (String date : dates) {
+            Integer moved = transactionTemplate.execute(status -> {
+                int copied = archiveMapper.copyToArchive(date);
+                int deleted = archiveMapper.deleteFromHot(date);
+                log.debug("归档交易日{}: 复制{}行，删除{}行", date, copied, deleted);
+                return deleted;
+            });
+            archiveTier.archived(date);
+            log.info("已归档交易日{}，共{}行", date, moved);
+        }
+        if (!dates.isEmpty()) {
+            archiveTier.refresh();
+        }
+        return dates.size();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.BarSeries;
+import com.example.stock.dto.BacktestResult;
+import com.example.stock.model.StrategyState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 回测的中间结果
+ * 每个信号、每个持有期的样本收益存放在 double 数组中；各线程分别累加自己负责的股票，最后合并
+ * 持有期按该股票实际交易的K线计数，停牌日不计
+ */
+final class BacktestAccumulator {
+
+  /**
+   * 统计远期收益的持有交易日数
+   */
+  static final int[] HORIZONS = {1, 5, 20};
+
+  /**
+   * 统计最大回撤的持有交易日数
+   */
+  static final int DRAWDOWN_DAYS = 20;
+
+  private final StrategyState[] signals;
+  private final int fromOrdinal;
+  private final int toOrdinal;
+  private final long[] events;
+  private final DoubleBuffer[][] returns;
+  private final DoubleBuffer[] drawdowns;
+
+  /**
+   * @param signals     参与回测的信号
+   * @param fromOrdinal 信号日的起始交易日序号（包含）
+   * @param toOrdinal   信号日的结束交易日序号（包含）
+   */
+  BacktestAccumulator(StrategyState[] signals, int fromOrdinal, int toOrdinal) {
+    this.signals = signals;
+    this.fromOrdinal = fromOrdinal;
+    this.toOrdinal = toOrdinal;
+    this.events = new long[signals.length];
+    this.returns = new DoubleBuffer[signals.length][HORIZONS.length];
+    this.drawdowns = new DoubleBuffer[signals.length];
+    for (int s = 0; s < signals.length; s++) {
+      for (int h = 0; h < HORIZONS.length; h++) {
+        returns[s][h] = new DoubleBuffer();
+      }
+      drawdowns[s] = new DoubleBuffer();
+    }
+  }
+
+  /**
+   * 累加一只股票区间内的全部信号
+   */
+  void add(BarSeries series) {
+    int end = series.lowerBound(toOrdinal + 1);
+    for (int i = series.lowerBound(fromOrdinal); i < end; i++) {
+      double entry = series.getClose(i);
+      if (!(entry > 0)) {
+        continue;
+      }
+      for (int s = 0; s < signals.length; s++) {
+        if (series.getState(signals[s], i) != 1) {
+          continue;
+        }
+        events[s]++;
+        for (int h = 0; h < HORIZONS.length; h++) {
+          int exit = i + HORIZONS[h];
+          if (exit < series.size() && !Double.isNaN(series.getClose(exit))) {
+            returns[s][h].add((series.getClose(exit) / entry - 1) * 100);
+          }
+        }
+        int last = Math.min(series.size() - 1, i + DRAWDOWN_DAYS);
+        if (last > i) {
+          double lowest = entry;
+          for (int j = i + 1; j <= last; j++) {
+            double low = series.getLow(j);
+            if (low < lowest) {
+              lowest = low;
+            }
+          }
+          drawdowns[s].add((lowest / entry - 1) * 100);
+        }
+      }
+    }
+  }
+
+  /**
+   * 合并另一部分股票的结果，返回自身
+   */
+  BacktestAccumulator merge(BacktestAccumulator other) {
+    for (int s = 0; s < signals.length; s++) {
+      events[s] += other.events[s];
+      for (int h = 0; h < HORIZONS.length; h++) {
+        returns[s][h].addAll(other.returns[s][h]);
+      }
+      drawdowns[s].addAll(other.drawdowns[s]);
+    }
+    return this;
+  }
+
+  /**
+   * 第 s 个信号的统计结果
+   */
+  BacktestResult toResult(int s, String startDate, String endDate) {
+    BacktestResult result = new BacktestResult();
+    result.setSignal(signals[s].getColumnName());
+    result.setStart_date(startDate);
+    result.setEnd_date(endDate);
+    result.setEvents(events[s]);
+
+    List<BacktestResult.HorizonStats> horizons = new ArrayList<>(HORIZONS.length);
+    for (int h = 0; h < HORIZONS.length; h++) {
+      double[] sorted = returns[s][h].sorted();
+      BacktestResult.HorizonStats stats = new BacktestResult.HorizonStats();
+      stats.setDays(HORIZONS[h]);
+      stats.setSamples(sorted.length);
+      int hits = 0;
+      for (double value : sorted) {
+        if (value > 0) {
+          hits++;
+        }
+      }
+      stats.setHit_rate(sorted.length == 0 ? 0 : round((double) hits / sorted.length));
+      stats.setMean(round(mean(sorted)));
+      stats.setMedian(round(percentile(sorted, 0.5)));
+      stats.setP10(round(percentile(sorted, 0.1)));
+      stats.setP90(round(percentile(sorted, 0.9)));
+      horizons.add(stats);
+    }
+    result.setHorizons(horizons);
+
+    double[] sorted = drawdowns[s].sorted();
+    BacktestResult.DrawdownStats drawdown = new BacktestResult.DrawdownStats();
+    drawdown.setDays(DRAWDOWN_DAYS);
+    drawdown.setSamples(sorted.length);
+    drawdown.setMean(round(mean(sorted)));
+    drawdown.setMedian(round(percentile(sorted, 0.5)));
+    drawdown.setWorst(sorted.length == 0 ? 0 : round(sorted[0]));
+    result.setDrawdown(drawdown);
+    return result;
+  }
+
+  private static double mean(double[] values) {
+    if (values.length == 0) {
+      return 0;
+    }
+    double sum = 0;
+    for (double value : values) {
+      sum += value;
+    }
+    return sum / values.length;
+  }
+
+  /**
+   * 最近秩法分位数，values 须已升序排列
+   */
+  private static double percentile(double[] values, double p) {
+    if (values.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(p * values.length);
+    return values[Math.max(0, Math.min(values.length - 1, rank - 1))];
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 10000) / 10000.0;
+  }
+
+  /**
+   * 可增长的 double 数组
+   */
+  private static final class DoubleBuffer {
+    private double[] values = new double[16];
+    private int size;
+
+    private void add(double value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    private void addAll(DoubleBuffer other) {
+      if (size + other.size > values.length) {
+        values = Arrays.copyOf(values, Math.max(size + other.size, values.length * 2));
+      }
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+    }
+
+    private double[] sorted() {
+      double[] result = Arrays.copyOf(values, size);
+      Arrays.sort(result);
+      return result;
+    }
+  }
+}
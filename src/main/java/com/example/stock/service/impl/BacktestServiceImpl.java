@@ -0,0 +1,381 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.ArchiveTier;
+import com.example.stock.cache.BarSeries;
+import com.example.stock.cache.TradingCalendar;
+import com.example.stock.cache.TradingCalendarChangedEvent;
+import com.example.stock.concurrent.OverloadedException;
+import com.example.stock.dto.BacktestJob;
+import com.example.stock.dto.BacktestResult;
+import com.example.stock.entity.StockData;
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.StrategyState;
+import com.example.stock.model.TradeDate;
+import com.example.stock.service.BacktestService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 策略信号回测
+ * 任务在后台线程执行：全部股票按 batch-symbols 分批从数据库读取区间内的收盘价、最低价和策略状态，
+ * 构建为 {@link BarSeries} 后在 ForkJoinPool 上按股票拆分并行统计，读取下一批的同时计算上一批；
+ * 每个信号的结果按（信号，区间）缓存，之后相同区间的任务不再读取数据库
+ */
+@Slf4j
+@Service
+public class BacktestServiceImpl implements BacktestService {
+
+  /**
+   * 区间末尾之后多读取的交易日数，覆盖最长持有期及其间的停牌
+   */
+  private static final int LOOKAHEAD_DAYS = 2 * Math.max(BacktestAccumulator.DRAWDOWN_DAYS,
+      BacktestAccumulator.HORIZONS[BacktestAccumulator.HORIZONS.length - 1]);
+
+  /**
+   * ForkJoin 任务不再拆分的股票数
+   */
+  private static final int SPLIT_THRESHOLD = 8;
+
+  /**
+   * 保留的最近任务数，更早的任务查询时视为不存在
+   */
+  private static final int MAX_RETAINED_JOBS = 100;
+
+  private final StockDataMapper stockDataMapper;
+  private final TradingCalendar tradingCalendar;
+  private final int batchSymbols;
+  private final int retryAfterSeconds;
+  private final ForkJoinPool pool;
+  private final ThreadPoolExecutor jobExecutor;
+  private final Map<String, Job> jobs;
+  private final Map<ResultKey, CachedResult> results;
+
+  public BacktestServiceImpl(StockDataMapper stockDataMapper, TradingCalendar tradingCalendar,
+      @Value("${stock.backtest.parallelism:0}") int parallelism,
+      @Value("${stock.backtest.batch-symbols:300}") int batchSymbols,
+      @Value("${stock.backtest.max-running-jobs:2}") int maxRunningJobs,
+      @Value("${stock.backtest.max-queued-jobs:8}") int maxQueuedJobs,
+      @Value("${stock.backtest.result-cache-size:256}") int resultCacheSize,
+      @Value("${stock.backtest.retry-after-seconds:30}") int retryAfterSeconds) {
+    this.stockDataMapper = stockDataMapper;
+    this.tradingCalendar = tradingCalendar;
+    this.batchSymbols = Math.max(1, batchSymbols);
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    AtomicInteger threadIndex = new AtomicInteger();
+    this.jobExecutor = new ThreadPoolExecutor(maxRunningJobs, maxRunningJobs, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, maxQueuedJobs)), r -> {
+          Thread thread = new Thread(r, "stock-backtest-" + threadIndex.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.jobs = Collections.synchronizedMap(new LinkedHashMap<String, Job>(16, 0.75f, false) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+        return size() > MAX_RETAINED_JOBS;
+      }
+    });
+    this.results = Collections.synchronizedMap(new LinkedHashMap<ResultKey, CachedResult>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ResultKey, CachedResult> eldest) {
+        return size() > resultCacheSize;
+      }
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    jobExecutor.shutdownNow();
+    pool.shutdownNow();
+  }
+
+  @Override
+  public BacktestJob submit(List<StrategyState> signals, String startDate, String endDate) {
+    StrategyState[] requested = signals == null || signals.isEmpty()
+        ? StrategyState.values() : signals.stream().distinct().toArray(StrategyState[]::new);
+    int lastOrdinal = tradingCalendar.lastOrdinal();
+    if (lastOrdinal < 0) {
+      throw new IllegalArgumentException("数据库中没有交易日");
+    }
+    int fromOrdinal = isEmpty(startDate) ? 0 : tradingCalendar.floorOrdinal(TradeDate.parse(startDate.trim()) - 1) + 1;
+    int toOrdinal = isEmpty(endDate) ? lastOrdinal : tradingCalendar.floorOrdinal(TradeDate.parse(endDate.trim()));
+    if (fromOrdinal > toOrdinal) {
+      throw new IllegalArgumentException("回测区间内没有交易日");
+    }
+
+    Job job = new Job(UUID.randomUUID().toString(), requested,
+        tradingCalendar.format(tradingCalendar.dateAt(fromOrdinal)),
+        tradingCalendar.format(tradingCalendar.dateAt(toOrdinal)));
+    Map<StrategyState, BacktestResult> known = new EnumMap<>(StrategyState.class);
+    List<StrategyState> missing = new ArrayList<>();
+    for (StrategyState signal : requested) {
+      CachedResult result = results.get(new ResultKey(signal, job.startDate, job.endDate));
+      if (result != null) {
+        known.put(signal, result.result);
+      } else {
+        missing.add(signal);
+      }
+    }
+    jobs.put(job.id, job);
+    if (missing.isEmpty()) {
+      job.finish(known);
+      return job.toDto();
+    }
+
+    try {
+      jobExecutor.execute(() -> run(job, missing.toArray(new StrategyState[0]), known, fromOrdinal, toOrdinal));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(job.id);
+      throw new OverloadedException("回测任务过多，请稍后重试", retryAfterSeconds);
+    }
+    return job.toDto();
+  }
+
+  @Override
+  public BacktestJob getJob(String jobId) {
+    Job job = jobs.get(jobId);
+    return job == null ? null : job.toDto();
+  }
+
+  /**
+   * 日历只在末尾追加时，已有区间的信号不变，只有持有期当时还没走完的结果需要重算；其它变化时全部失效
+   */
+  @EventListener
+  public void onTradingCalendarChanged(TradingCalendarChangedEvent event) {
+    synchronized (results) {
+      if (!event.isAppendOnly()) {
+        results.clear();
+      } else {
+        results.values().removeIf(result -> !result.complete);
+      }
+    }
+  }
+
+  /**
+   * 执行回测
+   *
+   * @param signals 需要计算的信号
+   * @param known   提交时已缓存的其它信号的结果
+   */
+  private void run(Job job, StrategyState[] signals, Map<StrategyState, BacktestResult> known, int fromOrdinal,
+      int toOrdinal) {
+    long start = System.currentTimeMillis();
+    job.status = "RUNNING";
+    try {
+      int dataEnd = Math.min(tradingCalendar.lastOrdinal(), toOrdinal + LOOKAHEAD_DAYS);
+      String loadStart = tradingCalendar.format(tradingCalendar.dateAt(fromOrdinal));
+      String loadEnd = tradingCalendar.format(tradingCalendar.dateAt(dataEnd));
+      List<String> tsCodes = stockDataMapper.findAllTsCodes();
+      job.total = tsCodes.size();
+
+      BacktestAccumulator total = new BacktestAccumulator(signals, fromOrdinal, toOrdinal);
+      ForkJoinTask<BacktestAccumulator> computing = null;
+      for (int from = 0; from < tsCodes.size(); from += batchSymbols) {
+        List<String> codes = tsCodes.subList(from, Math.min(tsCodes.size(), from + batchSymbols));
+        BarSeries[] batch = load(codes, loadStart, loadEnd);
+        if (computing != null) {
+          total.merge(computing.join());
+        }
+        computing = pool.submit(new SeriesTask(batch, 0, batch.length, signals, fromOrdinal, toOrdinal));
+        job.processed = from;
+      }
+      if (computing != null) {
+        total.merge(computing.join());
+      }
+
+      boolean complete = toOrdinal + LOOKAHEAD_DAYS <= dataEnd;
+      for (int s = 0; s < signals.length; s++) {
+        BacktestResult result = total.toResult(s, job.startDate, job.endDate);
+        results.put(new ResultKey(signals[s], job.startDate, job.endDate), new CachedResult(result, complete));
+        known.put(signals[s], result);
+      }
+      job.finish(known);
+      log.info("回测完成，{}只股票，信号{}，区间{}至{}，耗时{}ms", tsCodes.size(), Arrays.toString(signals),
+          job.startDate, job.endDate, System.currentTimeMillis() - start);
+    } catch (Exception e) {
+      log.warn("回测任务{}失败: {}", job.id, e.getMessage(), e);
+      job.error = e.getMessage();
+      job.status = "FAILED";
+    }
+  }
+
+  /**
+   * 读取一批股票的日线，按股票构建序列
+   * 先读归档表再读热表，归档表中的日线都早于热表，同一股票的K线按交易日升序追加；区间不涉及的表不查询
+   */
+  private BarSeries[] load(List<String> tsCodes, String startDate, String endDate) {
+    Map<String, BarSeries.Builder> builders = new LinkedHashMap<>();
+    ResultHandler<StockData> handler = context -> {
+      StockData row = context.getResultObject();
+      int ordinal = tradingCalendar.ordinalOf(TradeDate.parse(row.getTradeDate()));
+      if (ordinal >= 0) {
+        builders.computeIfAbsent(row.getTsCode(), BarSeries::builder).add(ordinal, row);
+      }
+    };
+    List<String> codes = new ArrayList<>(tsCodes);
+    if (ArchiveTier.isArchived(startDate)) {
+      stockDataMapper.streamBacktestBars(codes, startDate, endDate, true, handler);
+    }
+    if (!ArchiveTier.isArchived(endDate)) {
+      stockDataMapper.streamBacktestBars(codes, startDate, endDate, false, handler);
+    }
+    List<BarSeries> loaded = new ArrayList<>(builders.size());
+    for (BarSeries.Builder builder : builders.values()) {
+      loaded.add(builder.build());
+    }
+    return loaded.toArray(new BarSeries[0]);
+  }
+
+  private static boolean isEmpty(String text) {
+    return text == null || text.trim().isEmpty();
+  }
+
+  /**
+   * 按股票区间二分拆分的统计任务
+   */
+  private static final class SeriesTask extends RecursiveTask<BacktestAccumulator> {
+    private final BarSeries[] series;
+    private final int from;
+    private final int to;
+    private final StrategyState[] signals;
+    private final int fromOrdinal;
+    private final int toOrdinal;
+
+    private SeriesTask(BarSeries[] series, int from, int to, StrategyState[] signals, int fromOrdinal,
+        int toOrdinal) {
+      this.series = series;
+      this.from = from;
+      this.to = to;
+      this.signals = signals;
+      this.fromOrdinal = fromOrdinal;
+      this.toOrdinal = toOrdinal;
+    }
+
+    @Override
+    protected BacktestAccumulator compute() {
+      if (to - from <= SPLIT_THRESHOLD) {
+        BacktestAccumulator accumulator = new BacktestAccumulator(signals, fromOrdinal, toOrdinal);
+        for (int i = from; i < to; i++) {
+          accumulator.add(series[i]);
+        }
+        return accumulator;
+      }
+      int mid = (from + to) >>> 1;
+      SeriesTask left = new SeriesTask(series, from, mid, signals, fromOrdinal, toOrdinal);
+      left.fork();
+      BacktestAccumulator right = new SeriesTask(series, mid, to, signals, fromOrdinal, toOrdinal).compute();
+      return left.join().merge(right);
+    }
+  }
+
+  /**
+   * 一次回测任务，字段由执行线程写入、查询线程读取
+   */
+  private static final class Job {
+    private final String id;
+    private final StrategyState[] signals;
+    private final String startDate;
+    private final String endDate;
+    private volatile String status = "PENDING";
+    private volatile int processed;
+    private volatile int total;
+    private volatile String error;
+    private volatile List<BacktestResult> results;
+
+    private Job(String id, StrategyState[] signals, String startDate, String endDate) {
+      this.id = id;
+      this.signals = signals;
+      this.startDate = startDate;
+      this.endDate = endDate;
+    }
+
+    /**
+     * 按请求的信号顺序保存结果并标记完成
+     */
+    private void finish(Map<StrategyState, BacktestResult> bySignal) {
+      List<BacktestResult> list = new ArrayList<>(signals.length);
+      for (StrategyState signal : signals) {
+        list.add(bySignal.get(signal));
+      }
+      this.results = list;
+      processed = total;
+      status = "DONE";
+    }
+
+    private BacktestJob toDto() {
+      BacktestJob dto = new BacktestJob();
+      dto.setJob_id(id);
+      String current = status;
+      dto.setStatus(current);
+      dto.setProgress("DONE".equals(current) ? 1.0 : total == 0 ? 0.0 : (double) processed / total);
+      dto.setStart_date(startDate);
+      dto.setEnd_date(endDate);
+      dto.setError(error);
+      dto.setResults(results);
+      return dto;
+    }
+  }
+
+  /**
+   * 结果缓存的键
+   */
+  private static final class ResultKey {
+    private final StrategyState signal;
+    private final String startDate;
+    private final String endDate;
+
+    private ResultKey(StrategyState signal, String startDate, String endDate) {
+      this.signal = signal;
+      this.startDate = startDate;
+      this.endDate = endDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ResultKey)) {
+        return false;
+      }
+      ResultKey other = (ResultKey) o;
+      return signal == other.signal && startDate.equals(other.startDate) && endDate.equals(other.endDate);
+    }
+
+    @Override
+    public int hashCode() {
+      return (signal.hashCode() * 31 + startDate.hashCode()) * 31 + endDate.hashCode();
+    }
+  }
+
+  /**
+   * 缓存的结果，complete 为 false 表示计算时区间末尾的持有期还没有走完
+   */
+  private static final class CachedResult {
+    private final BacktestResult result;
+    private final boolean complete;
+
+    private CachedResult(BacktestResult result, boolean complete) {
+      this.result = result;
+      this.complete = complete;
+    }
+  }
+}
@@ -0,0 +1,205 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.entity.StockData;
+import com.example.stock.model.Resolution;
+import com.example.stock.model.TradeDate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单只股票K线的降采样
+ * 按周、月聚合为 OHLC K线，或用 LTTB（Largest-Triangle-Three-Buckets）算法按收盘价挑选最能保持走势形状的K线；
+ * 带有策略状态信号或买卖点（Fmark 为0或1）的K线始终保留：聚合时信号并入所在周期，
+ * 同一周期内有多个买卖点时在后一个买卖点处拆分周期，LTTB 时原样保留
+ */
+final class BarDownsampler {
+
+  private BarDownsampler() {
+  }
+
+  /**
+   * 先按时间粒度聚合，聚合后仍多于 maxPoints 条时再用 LTTB 降采样
+   *
+   * @param rows       按交易日升序排列的日线
+   * @param resolution 时间粒度
+   * @param maxPoints  最多返回的K线数量，为空时不限制；信号K线多于该数量时全部保留
+   * @return 降采样后的K线，按交易日升序
+   */
+  static List<StockData> downsample(List<StockData> rows, Resolution resolution, Integer maxPoints) {
+    List<StockData> result = resolution == Resolution.DAY ? rows : aggregate(rows, resolution);
+    if (maxPoints != null && result.size() > maxPoints) {
+      result = lttb(result, maxPoints);
+    }
+    return result;
+  }
+
+  /**
+   * 按周或月聚合，交易日取周期内最后一个交易日
+   * 开盘取首日、收盘取末日，最高、最低取极值，成交量和成交额求和，涨跌幅按日涨跌幅复合计算，
+   * 均线和名称取末日；状态取周期内最大值，买卖点取周期内的买卖点
+   * 周期内出现第二个买卖点时，从该交易日起另起一条K线（仍属于同一周期，交易日取各段的最后一个交易日），
+   * 每条聚合K线最多带一个买卖点，周期内的买卖点都不会丢失
+   */
+  static List<StockData> aggregate(List<StockData> rows, Resolution resolution) {
+    List<StockData> result = new ArrayList<>();
+    StockData current = null;
+    long currentKey = Long.MIN_VALUE;
+    double growth = 1;
+    for (StockData row : rows) {
+      long key = periodKey(TradeDate.parse(row.getTradeDate()), resolution);
+      if (current == null || key != currentKey || (isMarker(current.getFmark()) && isMarker(row.getFmark()))) {
+        if (current != null) {
+          current.setPctChg(toPercent(growth));
+        }
+        current = new StockData();
+        current.setTsCode(row.getTsCode());
+        current.setOpen(row.getOpen());
+        current.setHigh(row.getHigh());
+        current.setLow(row.getLow());
+        result.add(current);
+        currentKey = key;
+        growth = 1;
+      } else {
+        current.setHigh(max(current.getHigh(), row.getHigh()));
+        current.setLow(min(current.getLow(), row.getLow()));
+      }
+      current.setTradeDate(row.getTradeDate());
+      current.setClose(row.getClose());
+      current.setVol(add(current.getVol(), row.getVol()));
+      current.setAmount(add(current.getAmount(), row.getAmount()));
+      current.setState(max(current.getState(), row.getState()));
+      if (!isMarker(current.getFmark()) && row.getFmark() != null) {
+        current.setFmark(row.getFmark());
+      }
+      current.setMa120(row.getMa120());
+      current.setMa250(row.getMa250());
+      current.setName(row.getName());
+      if (row.getPctChg() != null) {
+        growth *= 1 + row.getPctChg().doubleValue() / 100;
+      }
+    }
+    if (current != null) {
+      current.setPctChg(toPercent(growth));
+    }
+    return result;
+  }
+
+  /**
+   * LTTB 降采样：首末K线和信号K线必选，剩余名额按 LTTB 在全部K线上分桶挑选
+   */
+  static List<StockData> lttb(List<StockData> rows, int maxPoints) {
+    int n = rows.size();
+    if (n <= maxPoints || n < 3) {
+      return rows;
+    }
+    boolean[] keep = new boolean[n];
+    keep[0] = true;
+    keep[n - 1] = true;
+    int kept = 2;
+    for (int i = 1; i < n - 1; i++) {
+      if (isSignal(rows.get(i))) {
+        keep[i] = true;
+        kept++;
+      }
+    }
+
+    int buckets = maxPoints - kept;
+    if (buckets > 0) {
+      double[] y = new double[n];
+      double last = 0;
+      for (int i = 0; i < n; i++) {
+        BigDecimal close = rows.get(i).getClose();
+        last = close != null ? close.doubleValue() : last;
+        y[i] = last;
+      }
+      double every = (double) (n - 2) / buckets;
+      int a = 0;
+      for (int b = 0; b < buckets; b++) {
+        int from = (int) (b * every) + 1;
+        int to = Math.min(n - 1, (int) ((b + 1) * every) + 1);
+        int nextFrom = to;
+        int nextTo = Math.min(n, (int) ((b + 2) * every) + 1);
+        double avgX = 0;
+        double avgY = 0;
+        for (int i = nextFrom; i < nextTo; i++) {
+          avgX += i;
+          avgY += y[i];
+        }
+        int count = Math.max(1, nextTo - nextFrom);
+        avgX /= count;
+        avgY /= count;
+
+        double maxArea = -1;
+        int selected = from;
+        for (int i = from; i < to; i++) {
+          double area = Math.abs((a - avgX) * (y[i] - y[a]) - (a - i) * (avgY - y[a]));
+          if (area > maxArea) {
+            maxArea = area;
+            selected = i;
+          }
+        }
+        keep[selected] = true;
+        a = selected;
+      }
+    }
+
+    List<StockData> result = new ArrayList<>(Math.max(maxPoints, kept));
+    for (int i = 0; i < n; i++) {
+      if (keep[i]) {
+        result.add(rows.get(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 当日是否出现策略信号或买卖点
+   */
+  static boolean isSignal(StockData row) {
+    return (row.getState() != null && row.getState().signum() != 0) || isMarker(row.getFmark());
+  }
+
+  /**
+   * Fmark 为0、1时表示买卖点
+   */
+  private static boolean isMarker(Integer fmark) {
+    return fmark != null && (fmark == 0 || fmark == 1);
+  }
+
+  private static long periodKey(int date, Resolution resolution) {
+    if (resolution == Resolution.MONTH) {
+      return date / 100;
+    }
+    return LocalDate.of(date / 10000, date / 100 % 100, date % 100).with(DayOfWeek.MONDAY).toEpochDay();
+  }
+
+  private static BigDecimal toPercent(double growth) {
+    return BigDecimal.valueOf((growth - 1) * 100).setScale(4, RoundingMode.HALF_UP);
+  }
+
+  private static BigDecimal add(BigDecimal a, BigDecimal b) {
+    if (a == null) {
+      return b;
+    }
+    return b == null ? a : a.add(b);
+  }
+
+  private static BigDecimal max(BigDecimal a, BigDecimal b) {
+    if (a == null) {
+      return b;
+    }
+    return b == null || a.compareTo(b) >= 0 ? a : b;
+  }
+
+  private static BigDecimal min(BigDecimal a, BigDecimal b) {
+    if (a == null) {
+      return b;
+    }
+    return b == null || a.compareTo(b) <= 0 ? a : b;
+  }
+}
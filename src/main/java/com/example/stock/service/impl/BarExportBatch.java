@@ -0,0 +1,161 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.BarSeries;
+import com.example.stock.entity.StockData;
+import com.example.stock.model.StrategyState;
+import com.example.stock.model.TradeDate;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 导出用的一批日线
+ * 由查询线程填充到基本类型数组中，再由写出线程拷贝到 Arrow 向量，Arrow 内存只在写出线程中分配
+ */
+final class BarExportBatch {
+
+  private static final String[] DOUBLE_COLUMNS = {
+      "open", "high", "low", "close", "pct_chg", "vol", "amount", "ma120", "ma250", "slope"
+  };
+
+  private static final StrategyState[] STATES = StrategyState.values();
+
+  /**
+   * 导出文件的列定义
+   */
+  static final Schema SCHEMA = buildSchema();
+
+  private final String[] tsCodes;
+  private final int[] tradeDates;
+  private final double[][] doubles;
+  private final byte[][] states;
+  private final byte[] fmarks;
+  private final String[] names;
+  private int size;
+
+  BarExportBatch(int capacity) {
+    this.tsCodes = new String[capacity];
+    this.tradeDates = new int[capacity];
+    this.doubles = new double[DOUBLE_COLUMNS.length][capacity];
+    this.states = new byte[STATES.length][capacity];
+    this.fmarks = new byte[capacity];
+    this.names = new String[capacity];
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isFull() {
+    return size == tradeDates.length;
+  }
+
+  void add(StockData row) {
+    int i = size++;
+    tsCodes[i] = row.getTsCode();
+    tradeDates[i] = TradeDate.parse(row.getTradeDate());
+    doubles[0][i] = toDouble(row.getOpen());
+    doubles[1][i] = toDouble(row.getHigh());
+    doubles[2][i] = toDouble(row.getLow());
+    doubles[3][i] = toDouble(row.getClose());
+    doubles[4][i] = toDouble(row.getPctChg());
+    doubles[5][i] = toDouble(row.getVol());
+    doubles[6][i] = toDouble(row.getAmount());
+    doubles[7][i] = toDouble(row.getMa120());
+    doubles[8][i] = toDouble(row.getMa250());
+    doubles[9][i] = toDouble(row.getSlope());
+    states[StrategyState.FIVE_DAYS.ordinal()][i] = toByte(row.getFiveDaysState());
+    states[StrategyState.MACD_GOLDEN.ordinal()][i] = toByte(row.getMacdGoldenState());
+    states[StrategyState.KDJ_GOLDEN.ordinal()][i] = toByte(row.getKdjGoldenState());
+    states[StrategyState.LOW_PRICE.ordinal()][i] = toByte(row.getLowPriceState());
+    states[StrategyState.HIGH_LEVEL.ordinal()][i] = toByte(row.getHighLevelState());
+    states[StrategyState.RISING_VOLUME.ordinal()][i] = toByte(row.getRisingVolumeState());
+    fmarks[i] = toByte(row.getFmark());
+    names[i] = row.getName();
+  }
+
+  /**
+   * 将本批数据写入 root 的各个向量，列顺序与 {@link #SCHEMA} 一致
+   */
+  void writeTo(VectorSchemaRoot root) {
+    root.allocateNew();
+    List<FieldVector> vectors = root.getFieldVectors();
+    int column = 0;
+    writeStrings((VarCharVector) vectors.get(column++), tsCodes);
+    IntVector dateVector = (IntVector) vectors.get(column++);
+    for (int i = 0; i < size; i++) {
+      dateVector.setSafe(i, tradeDates[i]);
+    }
+    for (double[] values : doubles) {
+      Float8Vector vector = (Float8Vector) vectors.get(column++);
+      for (int i = 0; i < size; i++) {
+        if (Double.isNaN(values[i])) {
+          vector.setNull(i);
+        } else {
+          vector.setSafe(i, values[i]);
+        }
+      }
+    }
+    for (byte[] values : states) {
+      writeBytes((TinyIntVector) vectors.get(column++), values);
+    }
+    writeBytes((TinyIntVector) vectors.get(column++), fmarks);
+    writeStrings((VarCharVector) vectors.get(column), names);
+    root.setRowCount(size);
+  }
+
+  private void writeStrings(VarCharVector vector, String[] values) {
+    for (int i = 0; i < size; i++) {
+      if (values[i] == null) {
+        vector.setNull(i);
+      } else {
+        vector.setSafe(i, values[i].getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  private void writeBytes(TinyIntVector vector, byte[] values) {
+    for (int i = 0; i < size; i++) {
+      if (values[i] == BarSeries.NULL_STATE) {
+        vector.setNull(i);
+      } else {
+        vector.setSafe(i, values[i]);
+      }
+    }
+  }
+
+  private static Schema buildSchema() {
+    List<Field> fields = new ArrayList<>();
+    fields.add(Field.nullable("ts_code", ArrowType.Utf8.INSTANCE));
+    fields.add(Field.notNullable("trade_date", new ArrowType.Int(32, true)));
+    for (String column : DOUBLE_COLUMNS) {
+      fields.add(Field.nullable(column, new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)));
+    }
+    for (StrategyState state : STATES) {
+      fields.add(Field.nullable(state.getColumnName(), new ArrowType.Int(8, true)));
+    }
+    fields.add(Field.nullable("fmark", new ArrowType.Int(8, true)));
+    fields.add(Field.nullable("name", ArrowType.Utf8.INSTANCE));
+    return new Schema(fields);
+  }
+
+  private static double toDouble(BigDecimal value) {
+    return value == null ? Double.NaN : value.doubleValue();
+  }
+
+  private static byte toByte(Integer value) {
+    return value == null ? BarSeries.NULL_STATE : value.byteValue();
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.BreadthRollup;
+import com.example.stock.cache.MarketBreadth;
+import com.example.stock.cache.MarketBreadthCache;
+import com.example.stock.cache.TradingCalendar;
+import com.example.stock.dto.BreadthSeriesResponse;
+import com.example.stock.dto.BreadthSnapshotResponse;
+import com.example.stock.model.TradeDate;
+import com.example.stock.service.BreadthService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class BreadthServiceImpl implements BreadthService {
+
+  /**
+   * 未指定起始日期时返回的交易日数
+   */
+  private static final int DEFAULT_DAYS = 250;
+
+  private final BreadthRollup breadthRollup;
+  private final MarketBreadthCache marketBreadthCache;
+  private final TradingCalendar tradingCalendar;
+
+  @Override
+  public BreadthSeriesResponse getBreadthSeries(String startDate, String endDate) {
+    BreadthSeriesResponse response = new BreadthSeriesResponse();
+    int lastOrdinal = tradingCalendar.lastOrdinal();
+    int toOrdinal = isEmpty(endDate) ? lastOrdinal : tradingCalendar.floorOrdinal(TradeDate.parse(endDate.trim()));
+    int fromOrdinal = isEmpty(startDate) ? Math.max(0, toOrdinal - DEFAULT_DAYS + 1)
+        : tradingCalendar.floorOrdinal(TradeDate.parse(startDate.trim()) - 1) + 1;
+    if (toOrdinal < 0 || fromOrdinal > toOrdinal) {
+      response.setDates(Collections.emptyList());
+      response.setSeries(Collections.emptyMap());
+      return response;
+    }
+
+    List<String> dates = new ArrayList<>(toOrdinal - fromOrdinal + 1);
+    for (int ordinal = fromOrdinal; ordinal <= toOrdinal; ordinal++) {
+      dates.add(tradingCalendar.format(tradingCalendar.dateAt(ordinal)));
+    }
+    int[][] counts = breadthRollup.range(fromOrdinal, toOrdinal);
+    Map<String, int[]> series = new LinkedHashMap<>();
+    for (int c = 0; c < BreadthRollup.COLUMN_NAMES.length; c++) {
+      series.put(BreadthRollup.COLUMN_NAMES[c], counts[c]);
+    }
+    response.setDates(dates);
+    response.setSeries(series);
+    return response;
+  }
+
+  @Override
+  public BreadthSnapshotResponse getBreadthSnapshot(String tradeDate) {
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    if (target == null || !target.isTradingDay()) {
+      return null;
+    }
+    MarketBreadth breadth = marketBreadthCache.get(target);
+    BreadthSnapshotResponse response = new BreadthSnapshotResponse();
+    response.setTrade_date(tradingCalendar.format(target));
+    response.setTotal(breadth.getTotal());
+    response.setAdvancers(breadth.getAdvancers());
+    response.setDecliners(breadth.getDecliners());
+    response.setUnchanged(breadth.getUnchanged());
+    response.setLimit_up(breadth.getLimitUp());
+    response.setLimit_down(breadth.getLimitDown());
+    response.setAbove_ma120(breadth.getAboveMa120());
+    response.setAbove_ma250(breadth.getAboveMa250());
+    response.setAbove_ma120_pct(percent(breadth.getAboveMa120(), breadth.getTotal()));
+    response.setAbove_ma250_pct(percent(breadth.getAboveMa250(), breadth.getTotal()));
+    response.setNew_highs(breadth.getNewHighs());
+    response.setNew_lows(breadth.getNewLows());
+    return response;
+  }
+
+  private static double percent(int count, int total) {
+    return total == 0 ? 0 : Math.round(count * 10000.0 / total) / 100.0;
+  }
+
+  private static boolean isEmpty(String text) {
+    return text == null || text.trim().isEmpty();
+  }
+}
@@ -0,0 +1,495 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.SignalPredicate;
+import com.example.stock.cache.SortKey;
+import com.example.stock.cache.TradingCalendar;
+import com.example.stock.concurrent.OverloadedException;
+import com.example.stock.concurrent.SingleFlight;
+import com.example.stock.dto.*;
+import com.example.stock.model.SingleStockQuery;
+import com.example.stock.model.TradeDate;
+import com.example.stock.service.StockService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并与过期回退层
+ * 位于 {@link StockServiceImpl} 之前，参数相同的并发请求只执行一次查询并共享结果，
+ * 避免收盘后大量客户端同时请求同一页数据时对 MySQL 造成冲击
+ * 每个请求key保留最近一次成功的响应：查询超过 soft-timeout-ms 或数据库异常时直接返回该响应，
+ * 并在HTTP响应头中标记 X-Stale: true 和 Age，查询在后台继续执行，完成后更新保留的响应；
+ * 没有保留响应时最多等待 hard-timeout-ms，超过时返回503；查询线程池已满时返回503和 Retry-After
+ * 单只股票的全部历史体积大、且按 since、max_points 等参数组合数量多，只合并不保留
+ * 指标：stock.service.singleflight.calls{result=executed|coalesced}、stock.service.stale_served
+ */
+@Slf4j
+@Primary
+@Service
+public class CoalescingStockService implements StockService {
+
+  /**
+   * 标记过期响应的HTTP响应头
+   */
+  public static final String STALE_HEADER = "X-Stale";
+
+  private final StockServiceImpl delegate;
+
+  private final TradingCalendar tradingCalendar;
+
+  private final SingleFlight<RequestKey, Object> singleFlight;
+
+  private final long softTimeoutMs;
+
+  private final long hardTimeoutMs;
+
+  private final int retryAfterSeconds;
+
+  /**
+   * 每个请求key最近一次成功的响应，按访问顺序淘汰
+   */
+  private final Map<RequestKey, Snapshot> lastGood;
+
+  private final ThreadPoolExecutor executor;
+
+  private final Counter staleServed;
+
+  public CoalescingStockService(StockServiceImpl delegate, TradingCalendar tradingCalendar,
+      MeterRegistry meterRegistry,
+      @Value("${stock.fallback.soft-timeout-ms:3000}") long softTimeoutMs,
+      @Value("${stock.fallback.hard-timeout-ms:30000}") long hardTimeoutMs,
+      @Value("${stock.fallback.max-entries:2000}") int maxEntries,
+      @Value("${stock.fallback.threads:16}") int threads,
+      @Value("${stock.fallback.retry-after-seconds:1}") int retryAfterSeconds) {
+    this.delegate = delegate;
+    this.tradingCalendar = tradingCalendar;
+    this.singleFlight = new SingleFlight<>("stock.service.singleflight", meterRegistry);
+    this.softTimeoutMs = softTimeoutMs;
+    this.hardTimeoutMs = Math.max(softTimeoutMs, hardTimeoutMs);
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.lastGood = Collections.synchronizedMap(new LinkedHashMap<RequestKey, Snapshot>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<RequestKey, Snapshot> eldest) {
+        return size() > maxEntries;
+      }
+    });
+    AtomicInteger threadIndex = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(threads * 16), r -> {
+          Thread thread = new Thread(r, "stock-query-" + threadIndex.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.executor.allowCoreThreadTimeOut(true);
+    this.staleServed = Counter.builder("stock.service.stale_served")
+        .description("返回过期响应的次数")
+        .register(meterRegistry);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public StockResponse getAllData(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getAllData",
+        () -> delegate.getAllData(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public StockResponse getAllIndexData(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getAllIndexData",
+        () -> delegate.getAllIndexData(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public StockResponse getLimitUpData(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getLimitUpData",
+        () -> delegate.getLimitUpData(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public StockResponse getLimitDownData(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getLimitDownData",
+        () -> delegate.getLimitDownData(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public StockResponse getHalfYearLineData(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getHalfYearLineData",
+        () -> delegate.getHalfYearLineData(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public StockResponse getYearLineData(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getYearLineData",
+        () -> delegate.getYearLineData(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public StockResponse getOutperformData(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getOutperformData",
+        () -> delegate.getOutperformData(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public StockResponse getUnderperformData(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getUnderperformData",
+        () -> delegate.getUnderperformData(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public double getStockSlope(String tsCode, String tradeDate) {
+    return delegate.getStockSlope(tsCode, tradeDate);
+  }
+
+  @Override
+  public double getMarketSlope(String tradeDate) {
+    return delegate.getMarketSlope(tradeDate);
+  }
+
+  @Override
+  public FiveDayAdjustmentResponse getFiveDayAdjustment(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    FiveDayAdjustmentResponse response = coalesce("getFiveDayAdjustment",
+        () -> delegate.getFiveDayAdjustment(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public SingleStockResponse getSingleStockData(String stateName, String tsCode) {
+    String state = normalizeText(stateName);
+    String code = normalizeText(tsCode);
+    return coalesce("getSingleStockData", false, () -> delegate.getSingleStockData(state, code), state, code);
+  }
+
+  @Override
+  public SingleStockResponse getSingleStockData(SingleStockQuery query) {
+    SingleStockQuery normalized = new SingleStockQuery(normalizeText(query.getStateName()),
+        normalizeText(query.getTsCode()));
+    normalized.setResolution(query.getResolution());
+    normalized.setMaxPoints(query.getMaxPoints());
+    normalized.setSince(normalizeText(query.getSince()));
+    return coalesce("getSingleStockData", false, () -> delegate.getSingleStockData(normalized), normalized);
+  }
+
+  @Override
+  public MacdGoldenCrossResponse getMacdGoldenCross(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    MacdGoldenCrossResponse response = coalesce("getMacdGoldenCross",
+        () -> delegate.getMacdGoldenCross(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public KdjGoldenCrossResponse getKdjGoldenCross(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    KdjGoldenCrossResponse response = coalesce("getKdjGoldenCross",
+        () -> delegate.getKdjGoldenCross(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public LowPriceInflowResponse getLowPriceInflow(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    LowPriceInflowResponse response = coalesce("getLowPriceInflow",
+        () -> delegate.getLowPriceInflow(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public HighLevelOutflowResponse getHighLevelOutflow(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    HighLevelOutflowResponse response = coalesce("getHighLevelOutflow",
+        () -> delegate.getHighLevelOutflow(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public RisingVolumeResponse getRisingVolume(String tsCode, String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    RisingVolumeResponse response = coalesce("getRisingVolume",
+        () -> delegate.getRisingVolume(code, date, page), code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public boolean isStockExist(String tsCode) {
+    return delegate.isStockExist(tsCode);
+  }
+
+  @Override
+  public StockResponse getFavoriteStocksData(String tradeDate, Integer pageNum) {
+    // 自选股列表来自 Redis，可能在两次请求之间变化，不做合并
+    return delegate.getFavoriteStocksData(tradeDate, pageNum);
+  }
+
+  @Override
+  public StockResponse getScreenData(String expression, String tradeDate, Integer pageNum) {
+    String text = normalizeText(expression);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getScreenData",
+        () -> delegate.getScreenData(text, date, page), text, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  @Override
+  public StockResponse getRankedData(SignalPredicate filter, SortKey sort, boolean ascending, String tsCode,
+      String tradeDate, Integer pageNum) {
+    String code = normalizeText(tsCode);
+    String date = normalizeDate(tradeDate);
+    Integer page = normalizePage(pageNum);
+    StockResponse response = coalesce("getRankedData",
+        () -> delegate.getRankedData(filter, sort, ascending, code, date, page),
+        filter, sort, ascending, code, date, page);
+    return echoDate(response, tradeDate);
+  }
+
+  private <T> T coalesce(String method, Supplier<T> supplier, Object... args) {
+    return coalesce(method, true, supplier, args);
+  }
+
+  /**
+   * 合并参数相同的并发请求
+   *
+   * @param retain 是否保留成功的响应，用于之后查询过慢或失败时返回过期响应
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T coalesce(String method, boolean retain, Supplier<T> supplier, Object... args) {
+    RequestKey key = new RequestKey(method, args);
+    CompletableFuture<Object> future = singleFlight.executeAsync(key, () -> {
+      T value = supplier.get();
+      if (retain && value != null) {
+        lastGood.put(key, new Snapshot(value));
+      }
+      return value;
+    }, executor);
+    Snapshot fallback = retain ? lastGood.get(key) : null;
+    try {
+      if (fallback == null) {
+        return (T) future.get(hardTimeoutMs, TimeUnit.MILLISECONDS);
+      }
+      return (T) future.get(softTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      if (fallback == null) {
+        // 查询仍在后台执行，执行期间到达的相同请求继续合并到该查询
+        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "查询超过" + hardTimeoutMs + "ms");
+      }
+      return (T) serveStale(key, fallback, "查询超过" + softTimeoutMs + "ms");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("等待查询结果时被中断", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (fallback != null && isDatabaseFailure(cause)) {
+        return (T) serveStale(key, fallback, cause.toString());
+      }
+      if (cause instanceof RejectedExecutionException) {
+        // 查询线程池和队列已满，按舱壁拒绝的方式返回503，而不是当作服务端错误
+        throw new OverloadedException("服务繁忙，请稍后重试", retryAfterSeconds);
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private Object serveStale(RequestKey key, Snapshot fallback, String reason) {
+    staleServed.increment();
+    long ageSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - fallback.createdMillis);
+    log.warn("{} 返回{}秒前的过期响应，原因: {}", key, ageSeconds, reason);
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes instanceof ServletRequestAttributes) {
+      HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+      if (response != null) {
+        response.setHeader(STALE_HEADER, "true");
+        response.setHeader("Age", String.valueOf(ageSeconds));
+      }
+    }
+    return fallback.value;
+  }
+
+  /**
+   * 响应中的 date 返回调用方传入的交易日期
+   * 合并时按数据库格式的日期执行查询，相同的响应会共享给多个调用方，因此日期不同时复制一份再修改
+   */
+  @SuppressWarnings("unchecked")
+  private static <T extends StockResponse> T echoDate(T response, String tradeDate) {
+    String requested = normalizeText(tradeDate);
+    if (response == null || requested == null || requested.equals(response.getDate())) {
+      return response;
+    }
+    T copy = (T) BeanUtils.instantiateClass(response.getClass());
+    BeanUtils.copyProperties(response, copy);
+    copy.setDate(requested);
+    return copy;
+  }
+
+  /**
+   * 数据库不可用、查询超时或查询线程池已满
+   */
+  private static boolean isDatabaseFailure(Throwable error) {
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      if (t instanceof DataAccessException || t instanceof PersistenceException
+          || t instanceof SQLException || t instanceof RejectedExecutionException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 去掉首尾空白，空字符串视为未传（与各策略分析接口对 ts_code 的处理一致）
+   */
+  private static String normalizeText(String text) {
+    if (text == null) {
+      return null;
+    }
+    String trimmed = text.trim();
+    return trimmed.isEmpty() ? null : trimmed;
+  }
+
+  /**
+   * 将交易日期解析为数据库格式的具体日期，未传时解析为当前最新交易日
+   * 这样 20240102、2024-01-02 和未传日期（最新交易日为该日时）合并为同一请求，
+   * 新交易日到来后未传日期的请求也不会再使用前一日保留的响应
+   */
+  private String normalizeDate(String tradeDate) {
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    return target == null ? normalizeText(tradeDate) : tradingCalendar.format(target);
+  }
+
+  /**
+   * 页码为空时服务层按第1页处理，合并时视为同一请求
+   */
+  private static Integer normalizePage(Integer pageNum) {
+    return pageNum != null ? pageNum : 1;
+  }
+
+  /**
+   * 一次成功的响应及其生成时间
+   */
+  private static final class Snapshot {
+    private final Object value;
+    private final long createdMillis = System.currentTimeMillis();
+
+    private Snapshot(Object value) {
+      this.value = value;
+    }
+  }
+
+  /**
+   * 请求key：方法名 + 规范化后的参数
+   */
+  private static final class RequestKey {
+    private final String method;
+    private final Object[] args;
+    private final int hash;
+
+    private RequestKey(String method, Object[] args) {
+      this.method = method;
+      this.args = args;
+      this.hash = 31 * method.hashCode() + Arrays.hashCode(args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof RequestKey)) {
+        return false;
+      }
+      RequestKey other = (RequestKey) o;
+      return method.equals(other.method) && Arrays.equals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return method + Arrays.toString(args);
+    }
+  }
+}
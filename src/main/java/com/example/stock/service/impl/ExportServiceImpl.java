@@ -0,0 +1,274 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.TradingCalendar;
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.BarExportQuery;
+import com.example.stock.model.TradeDate;
+import com.example.stock.service.ExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 日线导出
+ * 导出范围按股票集合（指定了股票时）或交易日区间切分为多个分区，由导出线程池并行流式查询，
+ * 每个分区把结果按 batch-rows 行一批放入有界队列，请求线程从队列取出批次写成 Arrow IPC 流，
+ * 同时在内存中的批次数不超过 queue-capacity + 分区数，与导出总行数无关
+ * 所有导出共用 max-connections 个查询许可，分区查询前先取得许可，同时占用的连接数不超过该值，
+ * 应小于查询所用连接池的大小，给其它接口留出连接
+ * 查询失败时不写出流结束标记、不正常关闭响应流，由容器中断连接，客户端不会把截断的数据当作完整结果
+ */
+@Slf4j
+@Service
+public class ExportServiceImpl implements ExportService {
+
+  /**
+   * 分区结束标记
+   */
+  private static final Object END = new Object();
+
+  private final StockDataMapper stockDataMapper;
+  private final TradingCalendar tradingCalendar;
+  private final int parallelism;
+  private final int batchRows;
+  private final int queueCapacity;
+  private final Semaphore connections;
+  private final ExecutorService executor;
+
+  public ExportServiceImpl(StockDataMapper stockDataMapper, TradingCalendar tradingCalendar,
+      @Value("${stock.export.parallelism:4}") int parallelism,
+      @Value("${stock.export.batch-rows:8192}") int batchRows,
+      @Value("${stock.export.queue-capacity:8}") int queueCapacity,
+      @Value("${stock.export.max-connections:6}") int maxConnections) {
+    this.stockDataMapper = stockDataMapper;
+    this.tradingCalendar = tradingCalendar;
+    this.parallelism = Math.max(1, parallelism);
+    this.batchRows = Math.max(1, batchRows);
+    this.queueCapacity = Math.max(1, queueCapacity);
+    this.connections = new Semaphore(Math.max(1, maxConnections), true);
+    AtomicInteger threadIndex = new AtomicInteger();
+    this.executor = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "stock-export-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public long exportArrow(BarExportQuery query, OutputStream out) throws IOException {
+    List<Partition> partitions = plan(query);
+    String signalColumn = query.getSignal() == null ? null : query.getSignal().getColumnName();
+    BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+    AtomicBoolean cancelled = new AtomicBoolean();
+    List<Future<?>> futures = new ArrayList<>();
+    for (Partition partition : partitions) {
+      futures.add(executor.submit(() -> produce(partition, signalColumn, queue, cancelled)));
+    }
+
+    long rows = 0;
+    boolean completed = false;
+    BufferAllocator allocator = new RootAllocator();
+    VectorSchemaRoot root = VectorSchemaRoot.create(BarExportBatch.SCHEMA, allocator);
+    ArrowStreamWriter writer = new ArrowStreamWriter(root, null, Channels.newChannel(out));
+    try {
+      writer.start();
+      int remaining = partitions.size();
+      while (remaining > 0) {
+        Object item = queue.take();
+        if (item == END) {
+          remaining--;
+        } else if (item instanceof Throwable) {
+          throw new IOException("导出查询失败", (Throwable) item);
+        } else {
+          BarExportBatch batch = (BarExportBatch) item;
+          batch.writeTo(root);
+          writer.writeBatch();
+          rows += batch.size();
+        }
+      }
+      writer.end();
+      completed = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("导出被中断");
+    } finally {
+      if (completed) {
+        writer.close();
+      } else {
+        // ArrowStreamWriter.close() 会先写出流结束标记再关闭响应流，失败时跳过，只释放内存
+        cancelled.set(true);
+        for (Future<?> future : futures) {
+          future.cancel(true);
+        }
+      }
+      root.close();
+      allocator.close();
+    }
+    log.info("导出完成，{}个分区，{}行", partitions.size(), rows);
+    return rows;
+  }
+
+  /**
+   * 查询一个分区并按批放入队列，写出端取消后尽快停止
+   */
+  private void produce(Partition partition, String signalColumn, BlockingQueue<Object> queue, AtomicBoolean cancelled) {
+    BarExportBatch[] current = {new BarExportBatch(batchRows)};
+    boolean acquired = false;
+    try {
+      acquired = acquire(cancelled);
+      if (!acquired) {
+        return;
+      }
+      stockDataMapper.streamBarsForExport(partition.tsCodes, partition.startDate, partition.endDate, signalColumn,
+          context -> {
+            if (cancelled.get()) {
+              context.stop();
+              return;
+            }
+            current[0].add(context.getResultObject());
+            if (current[0].isFull()) {
+              if (!offer(queue, current[0], cancelled)) {
+                context.stop();
+                return;
+              }
+              current[0] = new BarExportBatch(batchRows);
+            }
+          });
+      if (current[0].size() > 0) {
+        offer(queue, current[0], cancelled);
+      }
+    } catch (Exception e) {
+      log.warn("导出分区{}失败: {}", partition, e.getMessage());
+      offer(queue, e, cancelled);
+    } finally {
+      if (acquired) {
+        connections.release();
+      }
+      offer(queue, END, cancelled);
+    }
+  }
+
+  /**
+   * 等待查询许可，写出端取消后放弃
+   */
+  private boolean acquire(AtomicBoolean cancelled) {
+    try {
+      while (!cancelled.get()) {
+        if (connections.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  private static boolean offer(BlockingQueue<Object> queue, Object item, AtomicBoolean cancelled) {
+    try {
+      while (!cancelled.get()) {
+        if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  /**
+   * 切分导出范围：指定了股票时按股票切分，否则按交易日区间切分
+   */
+  private List<Partition> plan(BarExportQuery query) {
+    String startDate = normalizeDate(query.getStartDate());
+    String endDate = normalizeDate(query.getEndDate());
+    List<String> tsCodes = query.getTsCodes();
+    List<Partition> partitions = new ArrayList<>();
+
+    if (tsCodes != null && !tsCodes.isEmpty()) {
+      int chunk = (tsCodes.size() + parallelism - 1) / parallelism;
+      for (int from = 0; from < tsCodes.size(); from += chunk) {
+        List<String> codes = tsCodes.subList(from, Math.min(tsCodes.size(), from + chunk));
+        partitions.add(new Partition(new ArrayList<>(codes), startDate, endDate));
+      }
+      return partitions;
+    }
+
+    int lastOrdinal = tradingCalendar.lastOrdinal();
+    if (lastOrdinal < 0) {
+      return Collections.singletonList(new Partition(null, startDate, endDate));
+    }
+    int fromOrdinal = startDate == null ? 0 : tradingCalendar.floorOrdinal(TradeDate.parse(startDate) - 1) + 1;
+    int toOrdinal = endDate == null ? lastOrdinal : tradingCalendar.floorOrdinal(TradeDate.parse(endDate));
+    if (toOrdinal < fromOrdinal) {
+      // 区间内没有交易日，仍输出只含表头的空文件
+      return Collections.singletonList(new Partition(null, startDate, endDate));
+    }
+    int days = toOrdinal - fromOrdinal + 1;
+    int chunk = (days + parallelism - 1) / parallelism;
+    for (int from = fromOrdinal; from <= toOrdinal; from += chunk) {
+      int to = Math.min(toOrdinal, from + chunk - 1);
+      partitions.add(new Partition(null,
+          tradingCalendar.format(tradingCalendar.dateAt(from)), tradingCalendar.format(tradingCalendar.dateAt(to))));
+    }
+    return partitions;
+  }
+
+  /**
+   * 转换为数据库中的日期格式，为空时返回 null
+   */
+  private String normalizeDate(String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return null;
+    }
+    return tradingCalendar.format(TradeDate.parse(value.trim()));
+  }
+
+  /**
+   * 一个导出分区
+   */
+  private static final class Partition {
+    private final List<String> tsCodes;
+    private final String startDate;
+    private final String endDate;
+
+    private Partition(List<String> tsCodes, String startDate, String endDate) {
+      this.tsCodes = tsCodes;
+      this.startDate = startDate;
+      this.endDate = endDate;
+    }
+
+    @Override
+    public String toString() {
+      return "[" + (tsCodes == null ? "全部股票" : tsCodes.size() + "只股票") + ", " + startDate + " ~ " + endDate + "]";
+    }
+  }
+}
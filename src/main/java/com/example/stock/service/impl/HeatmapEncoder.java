@@ -0,0 +1,229 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.BarSeries;
+import com.example.stock.cache.CrossSection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 热力图的紧凑二进制编码
+ * 整数均为大端，varint 为每字节7位、低位在前的无符号变长整数，zigzag 将有符号数映射为无符号数：
+ * <pre>
+ * 魔数 "HMAP"（4字节） 版本（1字节，当前为2） 标志（1字节：bit0 含名称，bit1 代码为前缀编码）
+ * 交易日 yyyymmdd（int32） 股票数 n（varint）
+ * 代码，数字编码（标志 bit1 为0，所有代码形如 数字.后缀、且同一后缀的数字部分位数相同时使用）：
+ *   后缀字典：个数（varint），每个后缀为 长度（varint）+ UTF-8 + 数字部分位数（varint）
+ *   每只股票：数字部分与上一只之差（zigzag varint）+ 后缀下标（varint）
+ *   解码时数字部分按后缀的位数左侧补0，000001.SZ 与 1.SZ 不会混淆
+ * 代码，前缀编码（标志 bit1 为1）：
+ *   每只股票：与上一只代码的公共前缀长度（varint）+ 剩余部分长度（varint）+ UTF-8
+ * 涨跌幅：每只股票一个 varint，0 为空值，否则为 zigzag(round(涨跌幅 * 100)) + 1
+ * 成交额：每只股票一个 float32，空值为 NaN
+ * 名称（标志 bit0 为1时）：每只股票 长度（varint）+ UTF-8
+ * </pre>
+ * 5300只股票不含名称时约 41KB（HeatmapEncoderTest 中按沪深北各板块代码分布生成的数据为 41329 字节）
+ */
+final class HeatmapEncoder {
+
+  static final int VERSION = 2;
+  static final int FLAG_NAMES = 1;
+  static final int FLAG_PREFIX_CODES = 2;
+
+  /**
+   * 数字编码支持的数字部分最大位数
+   */
+  private static final int MAX_DIGITS = 9;
+
+  private HeatmapEncoder() {
+  }
+
+  static byte[] encode(CrossSection section, boolean withNames) {
+    int size = section.size();
+    String[] tsCodes = new String[size];
+    String[] names = withNames ? new String[size] : null;
+    for (int i = 0; i < size; i++) {
+      tsCodes[i] = section.getTsCode(i);
+      if (withNames) {
+        names[i] = section.getName(i);
+      }
+    }
+    return encode(section.getDate().getValue(), tsCodes, section.column(BarSeries.PCT_CHG),
+        section.column(BarSeries.AMOUNT), names);
+  }
+
+  /**
+   * 按列编码
+   *
+   * @param date    交易日 yyyymmdd
+   * @param tsCodes 股票代码
+   * @param pctChg  涨跌幅，空值为 NaN
+   * @param amount  成交额，空值为 NaN
+   * @param names   股票名称，为 null 时不含名称
+   */
+  static byte[] encode(int date, String[] tsCodes, double[] pctChg, double[] amount, String[] names) {
+    int size = tsCodes.length;
+    Buffer out = new Buffer(size * 12 + 64);
+    boolean numeric = isNumeric(tsCodes);
+
+    out.write('H');
+    out.write('M');
+    out.write('A');
+    out.write('P');
+    out.write(VERSION);
+    out.write((names != null ? FLAG_NAMES : 0) | (numeric ? 0 : FLAG_PREFIX_CODES));
+    writeInt(out, date);
+    writeVarint(out, size);
+
+    if (numeric) {
+      writeNumericCodes(out, tsCodes);
+    } else {
+      writePrefixCodes(out, tsCodes);
+    }
+
+    for (int i = 0; i < size; i++) {
+      double value = pctChg[i];
+      writeVarint(out, Double.isNaN(value) ? 0 : zigzag(Math.round(value * 100)) + 1);
+    }
+    for (int i = 0; i < size; i++) {
+      writeInt(out, Float.floatToIntBits((float) amount[i]));
+    }
+    if (names != null) {
+      for (int i = 0; i < size; i++) {
+        writeString(out, names[i] == null ? "" : names[i]);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * 所有代码是否都形如 数字.后缀，数字部分不超过9位，且同一后缀的数字部分位数相同
+   */
+  private static boolean isNumeric(String[] tsCodes) {
+    Map<String, Integer> digits = new HashMap<>();
+    for (String tsCode : tsCodes) {
+      int dot = tsCode.indexOf('.');
+      if (dot <= 0 || dot > MAX_DIGITS) {
+        return false;
+      }
+      for (int j = 0; j < dot; j++) {
+        char c = tsCode.charAt(j);
+        if (c < '0' || c > '9') {
+          return false;
+        }
+      }
+      Integer previous = digits.putIfAbsent(tsCode.substring(dot + 1), dot);
+      if (previous != null && previous != dot) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeNumericCodes(Buffer out, String[] tsCodes) {
+    int size = tsCodes.length;
+    List<String> suffixes = new ArrayList<>();
+    List<Integer> digits = new ArrayList<>();
+    int[] suffixIndexes = new int[size];
+    long[] numbers = new long[size];
+    for (int i = 0; i < size; i++) {
+      String tsCode = tsCodes[i];
+      int dot = tsCode.indexOf('.');
+      numbers[i] = Long.parseLong(tsCode.substring(0, dot));
+      String suffix = tsCode.substring(dot + 1);
+      int index = suffixes.indexOf(suffix);
+      if (index < 0) {
+        index = suffixes.size();
+        suffixes.add(suffix);
+        digits.add(dot);
+      }
+      suffixIndexes[i] = index;
+    }
+    writeVarint(out, suffixes.size());
+    for (int s = 0; s < suffixes.size(); s++) {
+      writeString(out, suffixes.get(s));
+      writeVarint(out, digits.get(s));
+    }
+    long previous = 0;
+    for (int i = 0; i < size; i++) {
+      writeVarint(out, zigzag(numbers[i] - previous));
+      writeVarint(out, suffixIndexes[i]);
+      previous = numbers[i];
+    }
+  }
+
+  private static void writePrefixCodes(Buffer out, String[] tsCodes) {
+    byte[] previous = new byte[0];
+    for (String tsCode : tsCodes) {
+      byte[] current = tsCode.getBytes(StandardCharsets.UTF_8);
+      int shared = 0;
+      while (shared < previous.length && shared < current.length && previous[shared] == current[shared]) {
+        shared++;
+      }
+      writeVarint(out, shared);
+      writeVarint(out, current.length - shared);
+      out.write(current, shared, current.length - shared);
+      previous = current;
+    }
+  }
+
+  private static void writeString(Buffer out, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private static void writeInt(Buffer out, int value) {
+    out.write(value >>> 24);
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  private static void writeVarint(Buffer out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * 可增长的字节数组，逐字节写入时没有 ByteArrayOutputStream 的同步开销
+   */
+  private static final class Buffer {
+    private byte[] bytes;
+    private int size;
+
+    private Buffer(int capacity) {
+      bytes = new byte[capacity];
+    }
+
+    private void write(int b) {
+      if (size == bytes.length) {
+        bytes = Arrays.copyOf(bytes, size * 2);
+      }
+      bytes[size++] = (byte) b;
+    }
+
+    private void write(byte[] src, int offset, int length) {
+      if (size + length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+      }
+      System.arraycopy(src, offset, bytes, size, length);
+      size += length;
+    }
+
+    private byte[] toByteArray() {
+      return Arrays.copyOf(bytes, size);
+    }
+  }
+}
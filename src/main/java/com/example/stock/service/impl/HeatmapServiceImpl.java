@@ -0,0 +1,70 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.BarSeries;
+import com.example.stock.cache.CrossSection;
+import com.example.stock.cache.CrossSectionCache;
+import com.example.stock.cache.TradingCalendar;
+import com.example.stock.dto.HeatmapResponse;
+import com.example.stock.model.TradeDate;
+import com.example.stock.service.HeatmapService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class HeatmapServiceImpl implements HeatmapService {
+
+  private final TradingCalendar tradingCalendar;
+  private final CrossSectionCache crossSectionCache;
+
+  @Override
+  public HeatmapResponse getHeatmap(String tradeDate, boolean withNames) {
+    CrossSection section = section(tradeDate);
+    if (section == null) {
+      return null;
+    }
+    int size = section.size();
+    List<String> tsCodes = new ArrayList<>(size);
+    List<String> names = withNames ? new ArrayList<>(size) : null;
+    for (int i = 0; i < size; i++) {
+      tsCodes.add(section.getTsCode(i));
+      if (withNames) {
+        names.add(section.getName(i));
+      }
+    }
+    HeatmapResponse response = new HeatmapResponse();
+    response.setTrade_date(tradingCalendar.format(section.getDate()));
+    response.setTs_codes(tsCodes);
+    response.setNames(names);
+    response.setPct_chg(toBoxed(section.column(BarSeries.PCT_CHG)));
+    response.setAmount(toBoxed(section.column(BarSeries.AMOUNT)));
+    return response;
+  }
+
+  @Override
+  public byte[] getHeatmapBinary(String tradeDate, boolean withNames) {
+    CrossSection section = section(tradeDate);
+    return section == null ? null : HeatmapEncoder.encode(section, withNames);
+  }
+
+  private CrossSection section(String tradeDate) {
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    if (target == null || !target.isTradingDay()) {
+      return null;
+    }
+    return crossSectionCache.get(target);
+  }
+
+  /**
+   * NaN 不是合法的 JSON 数值，转换为 null
+   */
+  private static Double[] toBoxed(double[] values) {
+    Double[] result = new Double[values.length];
+    Arrays.setAll(result, i -> Double.isNaN(values[i]) ? null : values[i]);
+    return result;
+  }
+}
@@ -0,0 +1,116 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.migration.PartitionLayout;
+import com.example.stock.service.PartitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 分区维护
+ * 表过大时 V3 迁移不在启动时分区，由维护时段的定时任务建立分区，启动时不执行会重建整张表的 DDL；
+ * V3 迁移只预建到当时年份之后两年的年度分区，之后的数据会全部落入 pmax，按年份裁剪分区失效；
+ * 启动时和每月定时检查，在 pmax 收到数据之前用 REORGANIZE PARTITION 拆出新的年度分区，
+ * pmax 为空时只修改元数据，不复制数据
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PartitionServiceImpl implements PartitionService, ApplicationRunner {
+
+    private final DataSource dataSource;
+
+    @Value("${stock.partition.maintenance-enabled:true}")
+    private boolean enabled;
+
+    @Value("${stock.partition.initialize-enabled:true}")
+    private boolean initializeEnabled;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        scheduledExtend();
+    }
+
+    /**
+     * 维护时段对 V3 迁移未处理的大表建立分区，表已分区时只做一次元数据查询
+     */
+    @Scheduled(cron = "${stock.partition.initialize-cron:0 0 3 * * ?}")
+    public void scheduledPartition() {
+        if (!enabled || !initializeEnabled) {
+            return;
+        }
+        try {
+            if (partitionTable()) {
+                extendPartitions();
+            }
+        } catch (Exception e) {
+            log.error("建立分区失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 定时检查分区
+     */
+    @Scheduled(cron = "${stock.partition.cron:0 0 3 1 * ?}")
+    public void scheduledExtend() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            extendPartitions();
+        } catch (Exception e) {
+            log.error("分区维护失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean partitionTable() {
+        try (Connection connection = dataSource.getConnection()) {
+            String ddl = PartitionLayout.partitionDdl(connection);
+            if (ddl == null) {
+                return false;
+            }
+            log.info("执行: {}", ddl);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(ddl);
+            }
+            return true;
+        } catch (SQLException e) {
+            throw new IllegalStateException("建立分区失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int extendPartitions() {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!PartitionLayout.isPartitioned(connection)) {
+                log.debug("表{}未分区，跳过分区维护", PartitionLayout.TABLE);
+                return 0;
+            }
+            int lastYear = PartitionLayout.lastYear(connection);
+            int targetYear = PartitionLayout.targetLastYear();
+            if (lastYear < 0 || lastYear >= targetYear) {
+                return 0;
+            }
+            String ddl = "ALTER TABLE " + PartitionLayout.TABLE + " REORGANIZE PARTITION pmax INTO ("
+                    + PartitionLayout.yearPartitions(lastYear + 1, targetYear, PartitionLayout.usesDashedDates(connection))
+                    + "PARTITION pmax VALUES LESS THAN (MAXVALUE))";
+            log.info("执行: {}", ddl);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(ddl);
+            }
+            return targetYear - lastYear;
+        } catch (SQLException e) {
+            throw new IllegalStateException("分区维护失败: " + e.getMessage(), e);
+        }
+    }
+}
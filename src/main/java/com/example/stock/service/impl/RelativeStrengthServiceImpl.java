@@ -0,0 +1,140 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.RelativeMetric;
+import com.example.stock.cache.RelativeStrength;
+import com.example.stock.cache.RelativeStrengthCache;
+import com.example.stock.cache.TradingCalendar;
+import com.example.stock.dto.BenchmarkIndex;
+import com.example.stock.dto.RelativeStrengthResponse;
+import com.example.stock.entity.StockData;
+import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.TradeDate;
+import com.example.stock.service.RelativeStrengthService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class RelativeStrengthServiceImpl implements RelativeStrengthService {
+
+  private final RelativeStrengthCache relativeStrengthCache;
+  private final TradingCalendar tradingCalendar;
+  private final StockDataMapper stockDataMapper;
+
+  @Value("${stock.relative-strength.default-benchmark:000001.SH}")
+  private String defaultBenchmark;
+
+  @Value("${stock.relative-strength.page-size:50}")
+  private int pageSize;
+
+  @Override
+  public RelativeStrengthResponse getRanking(String benchmark, Integer window, String metric, String filter,
+      boolean ascending, String tsCode, String tradeDate, Integer pageNum) {
+    RelativeMetric relativeMetric = RelativeMetric.parse(metric);
+    int sign = parseFilter(filter);
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    if (target == null || !target.isTradingDay()) {
+      return null;
+    }
+    String code = isEmpty(benchmark) ? defaultBenchmark : benchmark.trim();
+    int days = window != null ? window : relativeStrengthCache.getWindows()[0];
+    RelativeStrength strength = relativeStrengthCache.get(code, days, target);
+
+    RelativeStrengthResponse response = new RelativeStrengthResponse();
+    response.setTrade_date(tradingCalendar.format(target));
+    response.setBenchmark(strength.getBenchmark());
+    response.setBenchmark_name(strength.getBenchmarkName());
+    response.setWindow(strength.getWindow());
+    response.setMetric(relativeMetric.getName());
+    response.setBenchmark_return(toResponseValue(strength.getBenchmarkReturn()));
+    response.setOutperform(strength.countOutperform(relativeMetric));
+    response.setUnderperform(strength.countUnderperform(relativeMetric));
+    response.setPage_size(pageSize);
+
+    if (!isEmpty(tsCode)) {
+      int index = strength.getSection().indexOf(tsCode.trim());
+      response.setPage(1);
+      if (index < 0) {
+        response.setItems(Collections.emptyList());
+        return response;
+      }
+      response.setTotal(1);
+      response.setItems(Collections.singletonList(toItem(strength, relativeMetric, index,
+          strength.rankOf(relativeMetric, index))));
+      return response;
+    }
+
+    int page = pageNum == null || pageNum < 1 ? 1 : pageNum;
+    int total = strength.count(relativeMetric, sign);
+    int offset = (page - 1) * pageSize;
+    int[] indexes = strength.top(relativeMetric, ascending, sign, offset, pageSize);
+    // 名次始终按降序计算，只取弱于基准的股票时从这部分在排列中的起点开始
+    int firstRank = sign < 0 ? strength.count(relativeMetric) - strength.countUnderperform(relativeMetric) + 1 : 1;
+    List<RelativeStrengthResponse.Item> items = new ArrayList<>(indexes.length);
+    for (int i = 0; i < indexes.length; i++) {
+      int position = ascending ? total - 1 - offset - i : offset + i;
+      items.add(toItem(strength, relativeMetric, indexes[i], firstRank + position));
+    }
+    response.setPage(page);
+    response.setTotal(total);
+    response.setItems(items);
+    return response;
+  }
+
+  @Override
+  public List<BenchmarkIndex> getBenchmarks() {
+    TradeDate latest = tradingCalendar.latest();
+    if (latest == null) {
+      return Collections.emptyList();
+    }
+    List<StockData> rows = stockDataMapper.findIndexList(tradingCalendar.format(latest));
+    List<BenchmarkIndex> benchmarks = new ArrayList<>(rows.size());
+    for (StockData row : rows) {
+      BenchmarkIndex benchmark = new BenchmarkIndex();
+      benchmark.setTs_code(row.getTsCode());
+      benchmark.setName(row.getName());
+      benchmarks.add(benchmark);
+    }
+    return benchmarks;
+  }
+
+  private static RelativeStrengthResponse.Item toItem(RelativeStrength strength, RelativeMetric metric, int index,
+      int rank) {
+    RelativeStrengthResponse.Item item = new RelativeStrengthResponse.Item();
+    item.setTs_code(strength.getSection().getTsCode(index));
+    item.setName(strength.getSection().getName(index));
+    item.setRank(rank);
+    item.setRatio(toResponseValue(strength.getValue(RelativeMetric.RATIO, index)));
+    item.setSlope(toResponseValue(strength.getValue(RelativeMetric.SLOPE, index)));
+    return item;
+  }
+
+  /**
+   * 保留4位小数，NaN 转换为 null
+   */
+  private static Double toResponseValue(double value) {
+    return Double.isNaN(value) ? null : Math.round(value * 10000) / 10000.0;
+  }
+
+  private static int parseFilter(String filter) {
+    if (isEmpty(filter)) {
+      return 0;
+    }
+    if ("outperform".equalsIgnoreCase(filter.trim())) {
+      return 1;
+    }
+    if ("underperform".equalsIgnoreCase(filter.trim())) {
+      return -1;
+    }
+    throw new IllegalArgumentException("不支持的过滤条件: " + filter + "，可选 outperform、underperform");
+  }
+
+  private static boolean isEmpty(String text) {
+    return text == null || text.trim().isEmpty();
+  }
+}
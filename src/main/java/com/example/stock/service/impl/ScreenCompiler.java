@@ -0,0 +1,523 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.BarSeries;
+import com.example.stock.cache.CrossSection;
+import com.example.stock.cache.SignalPredicate;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 筛选表达式编译器
+ * 表达式由数值列、数字、四则运算、比较、窗口函数和 {@link SignalPredicate} 条件通过 AND、OR、NOT 组合而成，
+ * 例如 {@code close > ma120 && pct_chg > 3 && vol > 2 * avg(vol, 5)}；
+ * 解析时完成类型检查和常量折叠，编译结果是两层 lambda：绑定阶段取出截面的列数组、算好窗口函数，
+ * 执行阶段只剩按股票下标读取 double 数组的比较和运算
+ *
+ * <p>支持的写法：
+ * <ul>
+ *   <li>数值列：open、high、low、close、pct_chg、vol、amount、ma120、ma250、slope、market_slope</li>
+ *   <li>窗口函数：avg、sum、max、min(列, 天数)，包含当日在内最近若干个交易日；ref(列, 天数)，若干个交易日之前的值</li>
+ *   <li>数值函数：abs(表达式)</li>
+ *   <li>比较：&gt;、&gt;=、&lt;、&lt;=、==、!=，任一侧为空值（NaN）时不满足</li>
+ *   <li>逻辑：AND、OR、NOT，或 &amp;&amp;、||、!，优先级从低到高为 OR、AND、NOT</li>
+ * </ul>
+ * 表达式最长 {@value #MAX_LENGTH} 个字符，括号、函数、NOT 和负号合计最多嵌套 {@value #MAX_DEPTH} 层，
+ * 解析和执行都是递归的，超过限制的表达式直接拒绝，避免栈溢出
+ */
+final class ScreenCompiler {
+
+  /**
+   * 表达式的最大字符数
+   */
+  static final int MAX_LENGTH = 1000;
+
+  /**
+   * 括号、函数、NOT 和负号的最大嵌套层数
+   */
+  static final int MAX_DEPTH = 32;
+
+  private static final Map<String, Integer> COLUMNS = new HashMap<>();
+
+  static {
+    COLUMNS.put("open", BarSeries.OPEN);
+    COLUMNS.put("high", BarSeries.HIGH);
+    COLUMNS.put("low", BarSeries.LOW);
+    COLUMNS.put("close", BarSeries.CLOSE);
+    COLUMNS.put("pct_chg", BarSeries.PCT_CHG);
+    COLUMNS.put("vol", BarSeries.VOL);
+    COLUMNS.put("amount", BarSeries.AMOUNT);
+    COLUMNS.put("ma120", BarSeries.MA120);
+    COLUMNS.put("ma250", BarSeries.MA250);
+    COLUMNS.put("slope", CrossSection.SLOPE);
+  }
+
+  private ScreenCompiler() {
+  }
+
+  /**
+   * 编译表达式
+   *
+   * @param text      表达式文本
+   * @param maxWindow 窗口函数允许的最大交易日数
+   * @return 可在任意交易日截面上重复执行的计划
+   * @throws IllegalArgumentException 表达式为空、超过长度或嵌套限制、语法错误、类型不匹配或包含未知名称时
+   */
+  static ScreenPlan compile(String text, int maxWindow) {
+    if (text == null || text.trim().isEmpty()) {
+      throw new IllegalArgumentException("筛选表达式不能为空");
+    }
+    if (text.length() > MAX_LENGTH) {
+      throw new IllegalArgumentException("筛选表达式不能超过 " + MAX_LENGTH + " 个字符");
+    }
+    Parser parser = new Parser(tokenize(text), maxWindow);
+    Term root = parser.parseOr();
+    if (parser.pos < parser.tokens.size()) {
+      throw new IllegalArgumentException("筛选表达式语法错误，多余的内容: " + parser.tokens.get(parser.pos));
+    }
+    return new ScreenPlan(text, parser.requireBool(root), parser.lookback);
+  }
+
+  private static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    int i = 0;
+    while (i < text.length()) {
+      char c = text.charAt(i);
+      char next = i + 1 < text.length() ? text.charAt(i + 1) : 0;
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if ((c == '&' || c == '|') && next == c
+          || (c == '>' || c == '<' || c == '=' || c == '!') && next == '=') {
+        tokens.add(text.substring(i, i + 2));
+        i += 2;
+      } else if ("()!,+-*/<>=".indexOf(c) >= 0) {
+        tokens.add(c == '=' ? "==" : String.valueOf(c));
+        i++;
+      } else if (Character.isDigit(c) || c == '.') {
+        int start = i;
+        while (i < text.length() && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) {
+          i++;
+        }
+        tokens.add(text.substring(start, i));
+      } else if (Character.isLetter(c) || c == '_') {
+        int start = i;
+        while (i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+          i++;
+        }
+        tokens.add(text.substring(start, i));
+      } else {
+        throw new IllegalArgumentException("筛选表达式包含无效字符: " + c);
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * 按股票下标求数值
+   */
+  interface NumExpr {
+    double eval(int i);
+  }
+
+  /**
+   * 按股票下标求条件
+   */
+  interface BoolExpr {
+    boolean test(int i);
+  }
+
+  /**
+   * 将数值节点绑定到一次执行的环境
+   */
+  interface NumBinder {
+    NumExpr bind(ScreenContext context);
+  }
+
+  /**
+   * 将条件节点绑定到一次执行的环境
+   */
+  interface BoolBinder {
+    BoolExpr bind(ScreenContext context);
+  }
+
+  /**
+   * 解析得到的节点，数值和条件二选一；数值常量额外记录常量值用于折叠
+   */
+  private static final class Term {
+    private final NumBinder num;
+    private final BoolBinder bool;
+    private final boolean constant;
+    private final double value;
+
+    private Term(NumBinder num, BoolBinder bool, boolean constant, double value) {
+      this.num = num;
+      this.bool = bool;
+      this.constant = constant;
+      this.value = value;
+    }
+
+    private static Term num(NumBinder num) {
+      return new Term(num, null, false, 0);
+    }
+
+    private static Term bool(BoolBinder bool) {
+      return new Term(null, bool, false, 0);
+    }
+
+    private static Term constant(double value) {
+      return new Term(context -> i -> value, null, true, value);
+    }
+  }
+
+  /**
+   * 递归下降解析，优先级从低到高：OR、AND、NOT、比较、加减、乘除、负号
+   */
+  private static final class Parser {
+    private final List<String> tokens;
+    private final int maxWindow;
+    private int pos;
+    private int lookback;
+    private int depth;
+
+    private Parser(List<String> tokens, int maxWindow) {
+      this.tokens = tokens;
+      this.maxWindow = maxWindow;
+    }
+
+    private Term parseOr() {
+      Term left = parseAnd();
+      while (accept("OR", "||")) {
+        BoolBinder l = requireBool(left);
+        BoolBinder r = requireBool(parseAnd());
+        left = Term.bool(context -> {
+          BoolExpr a = l.bind(context);
+          BoolExpr b = r.bind(context);
+          return i -> a.test(i) || b.test(i);
+        });
+      }
+      return left;
+    }
+
+    private Term parseAnd() {
+      Term left = parseNot();
+      while (accept("AND", "&&")) {
+        BoolBinder l = requireBool(left);
+        BoolBinder r = requireBool(parseNot());
+        left = Term.bool(context -> {
+          BoolExpr a = l.bind(context);
+          BoolExpr b = r.bind(context);
+          return i -> a.test(i) && b.test(i);
+        });
+      }
+      return left;
+    }
+
+    private Term parseNot() {
+      if (accept("NOT", "!")) {
+        enter();
+        BoolBinder operand = requireBool(parseNot());
+        depth--;
+        return Term.bool(context -> {
+          BoolExpr a = operand.bind(context);
+          return i -> !a.test(i);
+        });
+      }
+      return parseComparison();
+    }
+
+    private Term parseComparison() {
+      Term left = parseAdditive();
+      if (pos >= tokens.size()) {
+        return left;
+      }
+      String op = tokens.get(pos);
+      if (!op.equals(">") && !op.equals(">=") && !op.equals("<") && !op.equals("<=")
+          && !op.equals("==") && !op.equals("!=")) {
+        return left;
+      }
+      pos++;
+      NumBinder l = requireNum(left);
+      NumBinder r = requireNum(parseAdditive());
+      switch (op) {
+        case ">":
+          return Term.bool(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> a.eval(i) > b.eval(i);
+          });
+        case ">=":
+          return Term.bool(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> a.eval(i) >= b.eval(i);
+          });
+        case "<":
+          return Term.bool(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> a.eval(i) < b.eval(i);
+          });
+        case "<=":
+          return Term.bool(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> a.eval(i) <= b.eval(i);
+          });
+        case "==":
+          return Term.bool(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> a.eval(i) == b.eval(i);
+          });
+        default:
+          // 空值参与的比较一律不满足，!= 也不例外
+          return Term.bool(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> {
+              double x = a.eval(i);
+              double y = b.eval(i);
+              return x != y && !Double.isNaN(x) && !Double.isNaN(y);
+            };
+          });
+      }
+    }
+
+    private Term parseAdditive() {
+      Term left = parseMultiplicative();
+      while (pos < tokens.size() && (tokens.get(pos).equals("+") || tokens.get(pos).equals("-"))) {
+        char op = tokens.get(pos++).charAt(0);
+        left = arithmetic(op, left, parseMultiplicative());
+      }
+      return left;
+    }
+
+    private Term parseMultiplicative() {
+      Term left = parseUnary();
+      while (pos < tokens.size() && (tokens.get(pos).equals("*") || tokens.get(pos).equals("/"))) {
+        char op = tokens.get(pos++).charAt(0);
+        left = arithmetic(op, left, parseUnary());
+      }
+      return left;
+    }
+
+    private Term parseUnary() {
+      if (accept("-")) {
+        enter();
+        Term operand = parseUnary();
+        depth--;
+        if (operand.constant) {
+          return Term.constant(-operand.value);
+        }
+        NumBinder a = requireNum(operand);
+        return Term.num(context -> {
+          NumExpr x = a.bind(context);
+          return i -> -x.eval(i);
+        });
+      }
+      return parsePrimary();
+    }
+
+    private Term parsePrimary() {
+      if (pos >= tokens.size()) {
+        throw new IllegalArgumentException("筛选表达式不完整");
+      }
+      String token = tokens.get(pos++);
+      if ("(".equals(token)) {
+        enter();
+        Term inner = parseOr();
+        expect(")");
+        depth--;
+        return inner;
+      }
+      char first = token.charAt(0);
+      if (Character.isDigit(first) || first == '.') {
+        try {
+          return Term.constant(Double.parseDouble(token));
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("无效的数字: " + token);
+        }
+      }
+      if (!Character.isLetter(first) && first != '_') {
+        throw new IllegalArgumentException("筛选表达式语法错误: " + token);
+      }
+      String name = token.toLowerCase(Locale.ROOT);
+      if (accept("(")) {
+        return parseFunction(name);
+      }
+      Integer column = COLUMNS.get(name);
+      if (column != null) {
+        int c = column;
+        return Term.num(context -> {
+          double[] values = context.column(c);
+          return i -> values[i];
+        });
+      }
+      if ("market_slope".equals(name)) {
+        return Term.num(context -> {
+          double marketSlope = context.getSection().getMarketSlope();
+          return i -> marketSlope;
+        });
+      }
+      SignalPredicate predicate = SignalPredicate.fromName(name);
+      if (predicate != null) {
+        return Term.bool(context -> {
+          BitSet bitmap = context.getSection().bitmap(predicate);
+          return bitmap::get;
+        });
+      }
+      throw new IllegalArgumentException("未知的列或筛选条件: " + token);
+    }
+
+    private Term parseFunction(String name) {
+      if ("abs".equals(name)) {
+        enter();
+        Term operand = parseAdditive();
+        expect(")");
+        depth--;
+        if (operand.constant) {
+          return Term.constant(Math.abs(operand.value));
+        }
+        NumBinder a = requireNum(operand);
+        return Term.num(context -> {
+          NumExpr x = a.bind(context);
+          return i -> Math.abs(x.eval(i));
+        });
+      }
+      ScreenContext.Aggregate aggregate = null;
+      if (!"ref".equals(name)) {
+        try {
+          aggregate = ScreenContext.Aggregate.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException("未知的函数: " + name);
+        }
+      }
+      String columnName = pos < tokens.size() ? tokens.get(pos++).toLowerCase(Locale.ROOT) : "";
+      Integer column = COLUMNS.get(columnName);
+      if (column == null) {
+        throw new IllegalArgumentException(name + " 的第一个参数必须是数值列: " + columnName);
+      }
+      expect(",");
+      String daysToken = pos < tokens.size() ? tokens.get(pos++) : "";
+      int days;
+      try {
+        days = Integer.parseInt(daysToken);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(name + " 的第二个参数必须是整数交易日数: " + daysToken);
+      }
+      expect(")");
+      int c = column;
+      if (aggregate == null) {
+        if (days < 0 || days >= maxWindow) {
+          throw new IllegalArgumentException("ref 的交易日数必须在 0 到 " + (maxWindow - 1) + " 之间");
+        }
+        lookback = Math.max(lookback, days);
+        return Term.num(context -> {
+          double[] values = context.ref(c, days);
+          return i -> values[i];
+        });
+      }
+      if (days < 1 || days > maxWindow) {
+        throw new IllegalArgumentException(name + " 的交易日数必须在 1 到 " + maxWindow + " 之间");
+      }
+      lookback = Math.max(lookback, days - 1);
+      ScreenContext.Aggregate fn = aggregate;
+      return Term.num(context -> {
+        double[] values = context.window(c, days, fn);
+        return i -> values[i];
+      });
+    }
+
+    private Term arithmetic(char op, Term left, Term right) {
+      NumBinder l = requireNum(left);
+      NumBinder r = requireNum(right);
+      if (left.constant && right.constant) {
+        return Term.constant(apply(op, left.value, right.value));
+      }
+      switch (op) {
+        case '+':
+          return Term.num(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> a.eval(i) + b.eval(i);
+          });
+        case '-':
+          return Term.num(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> a.eval(i) - b.eval(i);
+          });
+        case '*':
+          return Term.num(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> a.eval(i) * b.eval(i);
+          });
+        default:
+          return Term.num(context -> {
+            NumExpr a = l.bind(context);
+            NumExpr b = r.bind(context);
+            return i -> a.eval(i) / b.eval(i);
+          });
+      }
+    }
+
+    private static double apply(char op, double a, double b) {
+      switch (op) {
+        case '+':
+          return a + b;
+        case '-':
+          return a - b;
+        case '*':
+          return a * b;
+        default:
+          return a / b;
+      }
+    }
+
+    private NumBinder requireNum(Term term) {
+      if (term.num == null) {
+        throw new IllegalArgumentException("筛选表达式类型错误，条件不能参与数值运算或比较");
+      }
+      return term.num;
+    }
+
+    private BoolBinder requireBool(Term term) {
+      if (term.bool == null) {
+        throw new IllegalArgumentException("筛选表达式类型错误，数值不能直接作为条件，需要与其它值比较");
+      }
+      return term.bool;
+    }
+
+    /**
+     * 进入一层嵌套，出错时整个解析器丢弃，因此只在正常返回时减回
+     */
+    private void enter() {
+      if (++depth > MAX_DEPTH) {
+        throw new IllegalArgumentException("筛选表达式嵌套不能超过 " + MAX_DEPTH + " 层");
+      }
+    }
+
+    private void expect(String token) {
+      if (!accept(token)) {
+        throw new IllegalArgumentException("筛选表达式缺少 " + token);
+      }
+    }
+
+    private boolean accept(String... candidates) {
+      if (pos < tokens.size()) {
+        for (String candidate : candidates) {
+          if (candidate.equalsIgnoreCase(tokens.get(pos))) {
+            pos++;
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.CrossSection;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 筛选表达式的一次执行环境
+ * 持有目标交易日的截面，按需取得之前交易日的截面并按股票代码与目标截面对齐；
+ * 窗口函数的结果在绑定阶段一次性算成与目标截面等长的数组，同一执行中重复出现时复用
+ */
+final class ScreenContext {
+
+  /**
+   * 窗口聚合方式
+   */
+  enum Aggregate {
+    AVG, SUM, MAX, MIN
+  }
+
+  private final CrossSection section;
+  private final IntFunction<CrossSection> lookback;
+  private final Map<Integer, int[]> alignments = new HashMap<>();
+  private final Map<String, double[]> windows = new HashMap<>();
+
+  /**
+   * @param section  目标交易日的截面
+   * @param lookback 根据向前的交易日数（1 表示前一交易日）取得截面，超出交易日历时返回 null
+   */
+  ScreenContext(CrossSection section, IntFunction<CrossSection> lookback) {
+    this.section = section;
+    this.lookback = lookback;
+  }
+
+  CrossSection getSection() {
+    return section;
+  }
+
+  int size() {
+    return section.size();
+  }
+
+  /**
+   * 目标截面的数值列
+   */
+  double[] column(int column) {
+    return section.column(column);
+  }
+
+  /**
+   * 各股票 days 个交易日之前的值，当日无数据时为 NaN
+   */
+  double[] ref(int column, int days) {
+    if (days == 0) {
+      return column(column);
+    }
+    String key = "ref:" + column + ":" + days;
+    double[] result = windows.get(key);
+    if (result == null) {
+      result = new double[size()];
+      Arrays.fill(result, Double.NaN);
+      CrossSection past = lookback.apply(days);
+      if (past != null) {
+        int[] align = align(days, past);
+        double[] values = past.column(column);
+        for (int i = 0; i < result.length; i++) {
+          if (align[i] >= 0) {
+            result[i] = values[align[i]];
+          }
+        }
+      }
+      windows.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * 包含目标交易日在内最近 days 个交易日的聚合值，跳过停牌和空值，全部为空时为 NaN
+   */
+  double[] window(int column, int days, Aggregate aggregate) {
+    // 聚合时会查询 ref 的缓存，不能在 computeIfAbsent 中嵌套修改同一个 Map
+    String key = aggregate + ":" + column + ":" + days;
+    double[] acc = windows.get(key);
+    if (acc == null) {
+      int n = size();
+      acc = new double[n];
+      int[] counts = new int[n];
+      for (int k = 0; k < days; k++) {
+        double[] values = ref(column, k);
+        for (int i = 0; i < n; i++) {
+          double value = values[i];
+          if (Double.isNaN(value)) {
+            continue;
+          }
+          if (counts[i] == 0) {
+            acc[i] = value;
+          } else if (aggregate == Aggregate.MAX) {
+            acc[i] = Math.max(acc[i], value);
+          } else if (aggregate == Aggregate.MIN) {
+            acc[i] = Math.min(acc[i], value);
+          } else {
+            acc[i] += value;
+          }
+          counts[i]++;
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        if (counts[i] == 0) {
+          acc[i] = Double.NaN;
+        } else if (aggregate == Aggregate.AVG) {
+          acc[i] /= counts[i];
+        }
+      }
+      windows.put(key, acc);
+    }
+    return acc;
+  }
+
+  /**
+   * 目标截面中各股票在之前截面中的下标，两个截面都按股票代码排序，归并一次即可
+   */
+  private int[] align(int days, CrossSection past) {
+    return alignments.computeIfAbsent(days, key -> {
+      int[] result = new int[size()];
+      int j = 0;
+      for (int i = 0; i < result.length; i++) {
+        String tsCode = section.getTsCode(i);
+        while (j < past.size() && past.getTsCode(j).compareTo(tsCode) < 0) {
+          j++;
+        }
+        result[i] = j < past.size() && past.getTsCode(j).equals(tsCode) ? j : -1;
+      }
+      return result;
+    });
+  }
+}
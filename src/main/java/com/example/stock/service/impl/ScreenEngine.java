@@ -0,0 +1,94 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.CrossSection;
+import com.example.stock.cache.CrossSectionCache;
+import com.example.stock.cache.TradingCalendar;
+import com.example.stock.model.TradeDate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 筛选表达式执行器
+ * 编译结果按表达式文本缓存，同一表达式只解析一次；执行时在目标交易日及窗口函数用到的之前交易日的截面上求值，
+ * 截面都来自 {@link CrossSectionCache}，不查询数据库
+ */
+@Component
+public class ScreenEngine {
+
+  private final CrossSectionCache crossSectionCache;
+  private final TradingCalendar tradingCalendar;
+  private final int maxWindow;
+  private final Map<String, ScreenPlan> plans;
+
+  private final Timer executions;
+  private final Counter planHits;
+  private final Counter planMisses;
+
+  public ScreenEngine(CrossSectionCache crossSectionCache, TradingCalendar tradingCalendar,
+      MeterRegistry meterRegistry,
+      @Value("${stock.screen.max-window:20}") int maxWindow,
+      @Value("${stock.screen.plan-cache-size:256}") int planCacheSize) {
+    this.crossSectionCache = crossSectionCache;
+    this.tradingCalendar = tradingCalendar;
+    this.maxWindow = maxWindow;
+    this.plans = Collections.synchronizedMap(new LinkedHashMap<String, ScreenPlan>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ScreenPlan> eldest) {
+        return size() > planCacheSize;
+      }
+    });
+    this.executions = Timer.builder("stock.screen.execution")
+        .description("筛选表达式的执行耗时，包含截面加载和窗口函数计算")
+        .register(meterRegistry);
+    this.planHits = Counter.builder("stock.screen.plans")
+        .description("命中编译缓存的次数")
+        .tag("result", "hit")
+        .register(meterRegistry);
+    this.planMisses = Counter.builder("stock.screen.plans")
+        .description("需要重新编译的次数")
+        .tag("result", "miss")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 编译表达式，已编译过的直接返回缓存的计划
+   *
+   * @throws IllegalArgumentException 表达式无效时
+   */
+  ScreenPlan compile(String expression) {
+    String key = expression == null ? "" : expression.trim();
+    ScreenPlan plan = plans.get(key);
+    if (plan != null) {
+      planHits.increment();
+      return plan;
+    }
+    planMisses.increment();
+    plan = ScreenCompiler.compile(key, maxWindow);
+    plans.put(key, plan);
+    return plan;
+  }
+
+  /**
+   * 在指定交易日的截面上执行表达式
+   *
+   * @param plan    编译后的表达式
+   * @param section 目标交易日的截面
+   * @return 满足条件的股票下标位图，下标与截面一致
+   */
+  BitSet execute(ScreenPlan plan, CrossSection section) {
+    int ordinal = section.getDate().getOrdinal();
+    ScreenContext context = new ScreenContext(section, days -> {
+      int past = ordinal - days;
+      return past < 0 ? null : crossSectionCache.get(new TradeDate(tradingCalendar.dateAt(past), past));
+    });
+    return executions.record(() -> plan.execute(context));
+  }
+}
@@ -0,0 +1,63 @@
+package com.example.stock.service.impl;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * 编译后的筛选表达式
+ * 不持有任何截面数据，可以缓存并在不同交易日、不同线程上重复执行
+ */
+final class ScreenPlan {
+
+  /**
+   * 每个并行分块包含的股票数，取64的倍数使各分块写入的位图字互不重叠
+   */
+  private static final int CHUNK_SIZE = 1024;
+
+  private final String expression;
+  private final ScreenCompiler.BoolBinder root;
+  private final int lookback;
+
+  ScreenPlan(String expression, ScreenCompiler.BoolBinder root, int lookback) {
+    this.expression = expression;
+    this.root = root;
+    this.lookback = lookback;
+  }
+
+  String getExpression() {
+    return expression;
+  }
+
+  /**
+   * 窗口函数需要向前回溯的交易日数，0 表示只用到目标交易日的截面
+   */
+  int getLookback() {
+    return lookback;
+  }
+
+  /**
+   * 在执行环境上求值
+   * 绑定（取列数组、计算窗口函数）在调用线程完成，逐只股票的判断按分块并行执行
+   *
+   * @return 满足条件的股票下标位图
+   */
+  BitSet execute(ScreenContext context) {
+    ScreenCompiler.BoolExpr predicate = root.bind(context);
+    int size = context.size();
+    long[] words = new long[(size + 63) >>> 6];
+    int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    IntStream range = IntStream.range(0, chunks);
+    if (chunks > 1) {
+      range = range.parallel();
+    }
+    range.forEach(chunk -> {
+      int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+      for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+        if (predicate.test(i)) {
+          words[i >>> 6] |= 1L << i;
+        }
+      }
+    });
+    return BitSet.valueOf(words);
+  }
+}
@@ -0,0 +1,86 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.BarSeries;
+import com.example.stock.cache.BarSeriesCache;
+import com.example.stock.entity.StockData;
+import com.example.stock.model.SingleStockQuery;
+import com.example.stock.model.TradeDate;
+import com.example.stock.service.SingleStockBatchService;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 批量单只股票数据
+ * 全部股票的日线序列通过 {@link BarSeriesCache#getAll} 一次取得，未缓存的股票合并为一次 IN 查询；
+ * 按股票代码顺序逐只投影、降采样并立即写出，与单只股票接口共用 {@link SingleStockProjection}，
+ * 内存中同时只保留一只股票的投影结果
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SingleStockBatchServiceImpl implements SingleStockBatchService {
+
+  private final BarSeriesCache barSeriesCache;
+  private final SingleStockProjection singleStockProjection;
+  private final ObjectMapper objectMapper;
+
+  @Override
+  public String syncToken(SingleStockQuery query, List<String> tsCodes) {
+    String since = SingleStockProjection.since(query);
+    String latest = since;
+    for (BarSeries series : barSeriesCache.getAll(new TreeSet<>(tsCodes)).values()) {
+      String token = singleStockProjection.syncToken(series, singleStockProjection.startIndex(series, since), since);
+      if (token != null && (latest == null || TradeDate.parse(token) > TradeDate.parse(latest))) {
+        latest = token;
+      }
+    }
+    return latest;
+  }
+
+  @Override
+  public int writeBatch(SingleStockQuery query, List<String> tsCodes, OutputStream out) throws IOException {
+    long start = System.currentTimeMillis();
+    String since = SingleStockProjection.since(query);
+    TreeSet<String> codes = new TreeSet<>(tsCodes);
+    Map<String, BarSeries> seriesByCode = barSeriesCache.getAll(codes);
+    int stocks = 0;
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.writeStartObject();
+      generator.writeObjectField("column_names", SingleStockRows.COLUMN_NAMES);
+      generator.writeArrayFieldStart("grid_data");
+      for (String tsCode : codes) {
+        BarSeries series = seriesByCode.get(tsCode);
+        if (series == null) {
+          continue;
+        }
+        List<StockData> rows = singleStockProjection.project(series,
+            singleStockProjection.startIndex(series, since), query);
+        if (rows.isEmpty()) {
+          continue;
+        }
+        generator.writeStartArray();
+        for (StockData row : rows) {
+          generator.writeObject(SingleStockRows.toRow(row));
+        }
+        generator.writeEndArray();
+        generator.flush();
+        stocks++;
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+    log.debug("批量写出{}只股票数据，耗时{}ms", stocks, System.currentTimeMillis() - start);
+    return stocks;
+  }
+}
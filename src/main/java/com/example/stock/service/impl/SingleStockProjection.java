@@ -0,0 +1,114 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.cache.BarSeries;
+import com.example.stock.cache.TradingCalendar;
+import com.example.stock.entity.StockData;
+import com.example.stock.model.SingleStockQuery;
+import com.example.stock.model.StrategyState;
+import com.example.stock.model.TradeDate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从日线序列投影出单只股票接口的K线
+ * 单只和批量接口共用，增量同步的起点、state 列和降采样的处理方式一致
+ */
+@Component
+class SingleStockProjection {
+
+  private final TradingCalendar tradingCalendar;
+  private final int syncOverlapDays;
+
+  SingleStockProjection(TradingCalendar tradingCalendar,
+      @Value("${stock.sync.overlap-days:5}") int syncOverlapDays) {
+    this.tradingCalendar = tradingCalendar;
+    this.syncOverlapDays = syncOverlapDays;
+  }
+
+  /**
+   * 查询中的同步令牌，为空时返回 null
+   */
+  static String since(SingleStockQuery query) {
+    String since = query.getSince();
+    return since == null || since.trim().isEmpty() ? null : since.trim();
+  }
+
+  /**
+   * 需要返回的第一条K线在序列中的下标，不是增量同步时为0
+   */
+  int startIndex(BarSeries series, String since) {
+    return since == null ? 0 : series.lowerBound(syncStartOrdinal(since));
+  }
+
+  /**
+   * 下标 from 之后的K线对应的同步令牌，即最后一个交易日；没有K线时沿用原令牌
+   */
+  String syncToken(BarSeries series, int from, String since) {
+    if (from >= series.size()) {
+      return since;
+    }
+    return tradingCalendar.format(tradingCalendar.dateAt(series.getOrdinal(series.size() - 1)));
+  }
+
+  /**
+   * 投影出下标 from 之后的K线，再按查询中的时间粒度和数量降采样
+   */
+  List<StockData> project(BarSeries series, int from, SingleStockQuery query) {
+    List<StockData> rows = project(series, from, singleState(query.getStateName()));
+    return BarDownsampler.downsample(rows, query.getResolution(), query.getMaxPoints());
+  }
+
+  /**
+   * 增量同步的起始交易日序号
+   * 从同步令牌之后的交易日开始，并向前重叠 syncOverlapDays 个交易日，
+   * 覆盖令牌之后才确定的买卖点和重算的状态；令牌已是最新交易日时返回最新交易日之后的序号
+   */
+  private int syncStartOrdinal(String since) {
+    int ordinal = tradingCalendar.floorOrdinal(TradeDate.parse(since));
+    int lastOrdinal = tradingCalendar.lastOrdinal();
+    if (ordinal >= lastOrdinal) {
+      return lastOrdinal + 1;
+    }
+    return Math.max(0, ordinal + 1 - syncOverlapDays);
+  }
+
+  /**
+   * 单只股票接口的策略状态列名对应的策略状态，未知列名时与SQL一致使用五日调整
+   */
+  private static StrategyState singleState(String stateName) {
+    StrategyState state = StrategyState.fromColumnName(stateName);
+    return state != null ? state : StrategyState.FIVE_DAYS;
+  }
+
+  /**
+   * 从日线序列投影出单只股票接口的日线，state 列取指定的策略状态
+   */
+  private List<StockData> project(BarSeries series, int from, StrategyState state) {
+    List<StockData> rows = new ArrayList<>(Math.max(0, series.size() - from));
+    for (int i = from; i < series.size(); i++) {
+      StockData row = new StockData();
+      row.setTsCode(series.getTsCode());
+      row.setTradeDate(tradingCalendar.format(tradingCalendar.dateAt(series.getOrdinal(i))));
+      row.setOpen(BarSeries.toDecimal(series.getOpen(i)));
+      row.setHigh(BarSeries.toDecimal(series.getHigh(i)));
+      row.setLow(BarSeries.toDecimal(series.getLow(i)));
+      row.setClose(BarSeries.toDecimal(series.getClose(i)));
+      row.setPctChg(BarSeries.toDecimal(series.getPctChg(i)));
+      row.setVol(BarSeries.toDecimal(series.getVol(i)));
+      row.setAmount(BarSeries.toDecimal(series.getAmount(i)));
+      row.setMa120(BarSeries.toDecimal(series.getMa120(i)));
+      row.setMa250(BarSeries.toDecimal(series.getMa250(i)));
+      row.setName(series.getName(i));
+      byte value = series.getState(state, i);
+      row.setState(value != BarSeries.NULL_STATE ? BigDecimal.valueOf(value) : null);
+      byte fmark = series.getFmark(i);
+      row.setFmark(fmark != BarSeries.NULL_STATE ? Integer.valueOf(fmark) : null);
+      rows.add(row);
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,68 @@
+package com.example.stock.service.impl;
+
+import com.example.stock.entity.StockData;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单只股票接口的行格式
+ * 单只和批量接口共用，保证两者返回的列和 Fmark 处理方式一致
+ */
+final class SingleStockRows {
+
+  /**
+   * 列名
+   */
+  static final List<String> COLUMN_NAMES = Collections.unmodifiableList(Arrays.asList(
+      "ts_code", "trade_date", "open", "high", "low", "close", "pct_chg", "vol", "amount", "state",
+      "Fmark", "ma120", "ma250", "name"));
+
+  private SingleStockRows() {
+  }
+
+  /**
+   * 将一条日线转换为 grid_data 中的一行
+   */
+  static List<Object> toRow(StockData stockData) {
+    // 根据Fmark值进行处理
+    Object fmarkValue;
+    if (stockData.getFmark() != null) {
+      int fmark = stockData.getFmark();
+      if (fmark == 0) {
+        // 如果Fmark=0，返回当日high
+        fmarkValue = stockData.getHigh();
+      } else if (fmark == 1) {
+        // 如果Fmark=1，返回当日low
+        fmarkValue = stockData.getLow();
+      } else if (fmark == 2 || fmark == 3) {
+        // 如果Fmark=2或3，返回0
+        fmarkValue = BigDecimal.ZERO;
+      } else {
+        // 其他值保持不变
+        fmarkValue = stockData.getFmark();
+      }
+    } else {
+      // Fmark为null时返回0
+      fmarkValue = BigDecimal.ZERO;
+    }
+
+    // 创建内层List (每行数据)
+    return Arrays.asList(
+        stockData.getTsCode(),
+        stockData.getTradeDate(),
+        stockData.getOpen(),
+        stockData.getHigh(),
+        stockData.getLow(),
+        stockData.getClose(),
+        stockData.getPctChg(),
+        stockData.getVol(),
+        stockData.getState(),
+        fmarkValue, // 处理后的Fmark值
+        stockData.getMa120(),
+        stockData.getMa250(),
+        stockData.getName());
+  }
+}
@@ -1,34 +1,67 @@
 package com.example.stock.service.impl;
 
 
+import com.example.stock.cache.BarSeries;
+import com.example.stock.cache.BarSeriesCache;
+import com.example.stock.cache.BarWindow;
+import com.example.stock.cache.CrossSection;
+import com.example.stock.cache.CrossSectionCache;
+import com.example.stock.cache.SignalPredicate;
+import com.example.stock.cache.SortKey;
+import com.example.stock.cache.TradingCalendar;
 import com.example.stock.dto.*;
 import com.example.stock.entity.StockData;
 import com.example.stock.mapper.StockDataMapper;
+import com.example.stock.model.SingleStockQuery;
+import com.example.stock.model.StrategyState;
+import com.example.stock.model.TradeDate;
 import com.example.stock.service.StockService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 @Service
 public class StockServiceImpl implements StockService {
 
+  /**
+   * 每只股票在目标日期前、后各取的交易日数（不含目标日），即前后各41个交易日
+   */
+  private static final int WINDOW_RADIUS = 40;
+
   @Autowired
   private StockDataMapper stockDataMapper;
 
+  @Autowired
+  private TradingCalendar tradingCalendar;
+
+  @Autowired
+  private BarSeriesCache barSeriesCache;
+
+  @Autowired
+  private CrossSectionCache crossSectionCache;
+
+  @Autowired
+  private ScreenEngine screenEngine;
+
   @Value("${stock.page.size}")
   private int pageSize;
 
+  @Autowired
+  private SingleStockProjection singleStockProjection;
+
   @Autowired
   private com.example.stock.service.CollectService collectService;
 
@@ -43,88 +76,50 @@ public class StockServiceImpl implements StockService {
   @Override
   public StockResponse getAllData(String tsCode, String tradeDate, Integer pageNum) {
     // 使用传入的日期或获取最新日期
-    String targetDate = tradeDate;
-
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
 
-    // 严格使用指定日期查询，SQL会自动计算前后20个交易日的范围
-    List<StockData> stockList = stockDataMapper.findByDateRange(
-        tsCode,
-        targetDate,
-        null, // 不需要显式传递endDate，SQL会自动计算
-        pageSize,
-        offset);
+    // 严格使用指定日期选出当前页股票，前后41个交易日的数据从序列缓存中切片
+    List<BarWindow> windows = findWindows("all", tsCode, null, target, targetDate, offset);
 
     Long totalCount = stockDataMapper.countStocks(tsCode, targetDate, null, null, null);
 
     // 如果没有数据，返回一个空响应
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       return buildEmptyResponse(targetDate, pageNum, tradeDate);
     }
 
-    // 从查询结果中获取实际的日期范围
-    String startDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .min(String::compareTo)
-        .orElse(targetDate);
-    String endDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .max(String::compareTo)
-        .orElse(targetDate);
-
-    return buildResponse(stockList, startDate, endDate, totalCount.intValue(), pageNum, tradeDate);
+    return buildResponse(windows, target, totalCount.intValue(), pageNum, tradeDate);
   }
   
   @Override
   public StockResponse getLimitUpData(String tsCode, String tradeDate, Integer pageNum) {
     // 使用传入的日期或获取最新日期
-    String targetDate = tradeDate;
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
 
     // 严格使用指定日期筛选涨停股票
-    List<StockData> stockList = stockDataMapper.findLimitUp(
-        tsCode,
-        targetDate,
-        null,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("limit_up", tsCode, null, target, targetDate, offset);
 
     Long totalCount = stockDataMapper.countStocks(tsCode, targetDate, null, true, null);
 
     // 如果没有数据，返回一个空响应
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       return buildEmptyResponse(targetDate, pageNum, tradeDate);
     }
 
-    // 显示使用日期范围的开始和结束日期（如果有数据）
-    String startDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .min(String::compareTo)
-        .orElse(targetDate);
-    String endDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .max(String::compareTo)
-        .orElse(targetDate);
-
-    return buildLimitResponse(stockList, startDate, endDate, totalCount.intValue(), pageNum, tradeDate);
+    return buildWindowResponse(windows, target, totalCount.intValue(), pageNum, tradeDate);
   }
 
   @Override
   public StockResponse getAllIndexData(String tsCode, String tradeDate, Integer pageNum) {
     // 使用传入的日期或获取最新日期
-    String targetDate = tradeDate;
-
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
 
@@ -143,129 +138,70 @@ public class StockServiceImpl implements StockService {
       return buildEmptyResponse(targetDate, pageNum, tradeDate);
     }
 
-    // 从查询结果中获取实际的日期范围
-    String startDate = stockList.stream()
-            .map(StockData::getTradeDate)
-            .min(String::compareTo)
-            .orElse(targetDate);
-    String endDate = stockList.stream()
-            .map(StockData::getTradeDate)
-            .max(String::compareTo)
-            .orElse(targetDate);
-
-    return buildResponse(stockList, startDate, endDate, totalCount.intValue(), pageNum, tradeDate);
+    return buildIndexResponse(stockList, target, totalCount.intValue(), pageNum, tradeDate);
   }
 
   @Override
   public StockResponse getLimitDownData(String tsCode, String tradeDate, Integer pageNum) {
     // 使用传入的日期或获取最新日期
-    String targetDate = tradeDate;
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
 
     // 严格使用指定日期筛选跌停股票
-    List<StockData> stockList = stockDataMapper.findLimitDown(
-        tsCode,
-        targetDate,
-        null,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("limit_down", tsCode, null, target, targetDate, offset);
 
     Long totalCount = stockDataMapper.countStocks(tsCode, targetDate, null, null, true);
 
     // 如果没有数据，返回一个空响应
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       return buildEmptyResponse(targetDate, pageNum, tradeDate);
     }
 
-    // 显示使用日期范围的开始和结束日期（如果有数据）
-    String startDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .min(String::compareTo)
-        .orElse(targetDate);
-    String endDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .max(String::compareTo)
-        .orElse(targetDate);
-
-    return buildLimitResponse(stockList, startDate, endDate, totalCount.intValue(), pageNum, tradeDate);
+    return buildWindowResponse(windows, target, totalCount.intValue(), pageNum, tradeDate);
   }
 
   @Override
   public StockResponse getHalfYearLineData(String tsCode, String tradeDate, Integer pageNum) {
     // 使用传入的日期或获取最新日期
-    String targetDate = tradeDate;
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
 
     // 查询半年线数据
-    List<StockData> stockList = stockDataMapper.findHalfYearLine(
-        tsCode,
-        targetDate,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("half_year_line", tsCode, null, target, targetDate, offset);
 
     Long totalCount = stockDataMapper.countHalfYearLineStocks(tsCode, targetDate);
 
     // 如果没有数据，返回一个空响应
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       return buildEmptyResponse(targetDate, pageNum, tradeDate);
     }
 
-    // 从查询结果中获取实际的日期范围
-    String startDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .min(String::compareTo)
-        .orElse(targetDate);
-    String endDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .max(String::compareTo)
-        .orElse(targetDate);
-
-    return buildMaResponse(stockList, startDate, endDate, totalCount.intValue(), pageNum, tradeDate, "ma120");
+    return buildWindowResponse(windows, target, totalCount.intValue(), pageNum, tradeDate);
   }
 
   @Override
   public StockResponse getYearLineData(String tsCode, String tradeDate, Integer pageNum) {
     // 使用传入的日期或获取最新日期
-    String targetDate = tradeDate;
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
 
     // 查询年线数据
-    List<StockData> stockList = stockDataMapper.findYearLine(
-        tsCode,
-        targetDate,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("year_line", tsCode, null, target, targetDate, offset);
 
     Long totalCount = stockDataMapper.countYearLineStocks(tsCode, targetDate);
 
     // 如果没有数据，返回一个空响应
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       return buildEmptyResponse(targetDate, pageNum, tradeDate);
     }
 
-    // 从查询结果中获取实际的日期范围
-    String startDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .min(String::compareTo)
-        .orElse(targetDate);
-    String endDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .max(String::compareTo)
-        .orElse(targetDate);
-
-    return buildMaResponse(stockList, startDate, endDate, totalCount.intValue(), pageNum, tradeDate, "ma250");
+    return buildWindowResponse(windows, target, totalCount.intValue(), pageNum, tradeDate);
   }
 
   /**
@@ -279,69 +215,39 @@ public class StockServiceImpl implements StockService {
   @Override
   public StockResponse getOutperformData(String tsCode, String tradeDate, Integer pageNum) {
     // 使用传入的日期或获取最新日期
-    String targetDate = tradeDate;
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
-    List<StockData> stockList = stockDataMapper.findOutperformData(tsCode,
-        targetDate,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("outperform", tsCode, null, target, targetDate, offset);
 
     Long totalCount = stockDataMapper.countOutperformStocks(tsCode, targetDate);
 
     // 如果没有数据，返回一个空响应
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       return buildEmptyResponse(targetDate, pageNum, tradeDate);
     }
-    // 从查询结果中获取实际的日期范围
-    String startDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .min(String::compareTo)
-        .orElse(targetDate);
-    String endDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .max(String::compareTo)
-        .orElse(targetDate);
-
     // 构建返回数据
-    return buildMaResponse(stockList, startDate, endDate, totalCount.intValue(), pageNum, tradeDate, "outperform");
+    return buildWindowResponse(windows, target, totalCount.intValue(), pageNum, tradeDate);
   }
 
   @Override
   public StockResponse getUnderperformData(String tsCode, String tradeDate, Integer pageNum) {
     // 使用传入的日期或获取最新日期
-    String targetDate = tradeDate;
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
-    List<StockData> stockList = stockDataMapper.findUnderperformData(tsCode,
-        targetDate,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("underperform", tsCode, null, target, targetDate, offset);
 
     Long totalCount = stockDataMapper.countUnderperformStocks(tsCode, targetDate);
 
     // 如果没有数据，返回一个空响应
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       return buildEmptyResponse(targetDate, pageNum, tradeDate);
     }
-    // 从查询结果中获取实际的日期范围
-    String startDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .min(String::compareTo)
-        .orElse(targetDate);
-    String endDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .max(String::compareTo)
-        .orElse(targetDate);
-
     // 构建返回数据
-    return buildMaResponse(stockList, startDate, endDate, totalCount.intValue(), pageNum, tradeDate, "underperform");
+    return buildWindowResponse(windows, target, totalCount.intValue(), pageNum, tradeDate);
   }
 
   @Override
@@ -366,7 +272,8 @@ public class StockServiceImpl implements StockService {
     }
 
     // 确定查询日期
-    String targetDate = StringUtils.isEmpty(tradeDateStr) ? stockDataMapper.findMaxDate() : tradeDateStr;
+    TradeDate target = tradingCalendar.resolve(tradeDateStr);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
     int page = pageNum != null ? pageNum : 1;
@@ -394,70 +301,49 @@ public class StockServiceImpl implements StockService {
     }
 
     // 查询包含买卖点的股票数据
-    List<StockData> stockList = stockDataMapper.findFiveDayAdjustmentStocks(
-        tsCode,
-        targetDate,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("five_days_state", tsCode, null, target, targetDate, offset);
 
     // 如果分页查询没有返回数据，返回空结果集
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       response.setGrid_data(new ArrayList<>());
       return response;
     }
 
-    // 将股票数据按照股票代码分组，使用专门的转换方法
-    Map<String, List<StockResponse.StockData>> groupedDataByStock = stockList.stream()
-        .map(this::convertToDtoForAnalysis) // 使用专门为五日调整分析设计的转换方法
-        .collect(Collectors.groupingBy(StockResponse.StockData::getTsCode));
-
-    // 获取特定日期的数据用于排序（股票代码已在SQL中按排序）
-    List<String> sortedStockCodes = new ArrayList<>(groupedDataByStock.keySet());
-
-    // 转换为grid_data格式：List<List<List<Object>>>
-    List<List<List<Object>>> gridData = new ArrayList<>();
-
-    for (String stockCode : sortedStockCodes) {
-      List<List<Object>> stockDataArray = new ArrayList<>();
-
-      // 对同一只股票的数据按照日期升序排序
-      List<StockResponse.StockData> sortedData = groupedDataByStock.get(stockCode).stream()
-          .sorted(Comparator.comparing(StockResponse.StockData::getTradeDate))
-          .collect(Collectors.toList());
-
-      // 将每个股票的数据转换为Object[]并添加到stockDataArray
-      for (StockResponse.StockData data : sortedData) {
-        stockDataArray.add(Arrays.asList(data.toObjectArray()));
-      }
-
-      gridData.add(stockDataArray);
-    }
-
-    // 设置响应数据
-    response.setGrid_data(gridData);
+    // 设置响应数据，股票顺序与SQL中一致（按股票代码）
+    response.setGrid_data(toGridData(windows, StrategyState.FIVE_DAYS));
 
     return response;
   }
 
   @Override
   public SingleStockResponse getSingleStockData(String stateName,String tsCode) {
+    return getSingleStockData(new SingleStockQuery(stateName, tsCode));
+  }
+
+  @Override
+  public SingleStockResponse getSingleStockData(SingleStockQuery query) {
+    String tsCode = query.getTsCode();
     if (tsCode == null || tsCode.trim().isEmpty()) {
       return null;
     }
 
-    // 查询单只股票的所有时间数据（包含策略状态指标）
-    List<StockData> stockDataList = stockDataMapper.getSingleStockData(stateName,tsCode);
+    // 全部策略状态和 Fmark 都在日线序列缓存中，切换分析类型只是从同一序列投影出不同的 state 列
+    BarSeries series = barSeriesCache.get(tsCode);
 
-    if (stockDataList.isEmpty()) {
+    // 增量同步时只取同步令牌之后（含重叠部分）的日线，按需聚合或降采样，信号K线始终保留
+    String since = SingleStockProjection.since(query);
+    int from = series == null ? 0 : singleStockProjection.startIndex(series, since);
+    List<StockData> stockDataList = series == null ? Collections.<StockData>emptyList()
+        : singleStockProjection.project(series, from, query);
+    if (stockDataList.isEmpty() && since == null) {
       return null;
     }
+    String syncToken = series == null ? since : singleStockProjection.syncToken(series, from, since);
 
     SingleStockResponse response = new SingleStockResponse();
 
     // 设置列名
-    response.setColumn_names(Arrays.asList(
-        "ts_code", "trade_date", "open", "high", "low", "close", "pct_chg", "vol", "amount", "state",
-        "Fmark", "ma120", "ma250", "name"));
+    response.setColumn_names(SingleStockRows.COLUMN_NAMES);
 
     // 创建外层List
     List<List<List<Object>>> gridData = new ArrayList<>();
@@ -467,52 +353,15 @@ public class StockServiceImpl implements StockService {
 
     // 将每条股票数据转换为Object数组
     for (StockData stockData : stockDataList) {
-      // 根据Fmark值进行处理
-      Object fmarkValue;
-      if (stockData.getFmark() != null) {
-        int fmark = stockData.getFmark();
-        if (fmark == 0) {
-          // 如果Fmark=0，返回当日high
-          fmarkValue = stockData.getHigh();
-        } else if (fmark == 1) {
-          // 如果Fmark=1，返回当日low
-          fmarkValue = stockData.getLow();
-        } else if (fmark == 2 || fmark == 3) {
-          // 如果Fmark=2或3，返回0
-          fmarkValue = BigDecimal.ZERO;
-        } else {
-          // 其他值保持不变
-          fmarkValue = stockData.getFmark();
-        }
-      } else {
-        // Fmark为null时返回0
-        fmarkValue = BigDecimal.ZERO;
-      }
-
-      // 创建内层List (每行数据)
-      List<Object> rowData = Arrays.asList(
-          stockData.getTsCode(),
-          stockData.getTradeDate(),
-          stockData.getOpen(),
-          stockData.getHigh(),
-          stockData.getLow(),
-          stockData.getClose(),
-          stockData.getPctChg(),
-          stockData.getVol(),
-          stockData.getState(),
-          fmarkValue, // 处理后的Fmark值
-          stockData.getMa120(),
-          stockData.getMa250(),
-          stockData.getName());
-
       // 添加到中层List
-      stockDataArray.add(rowData);
+      stockDataArray.add(SingleStockRows.toRow(stockData));
     }
 
     // 将中层List添加到外层List
     gridData.add(stockDataArray);
 
     response.setGrid_data(gridData);
+    response.setSyncToken(syncToken);
 
     return response;
   }
@@ -543,7 +392,8 @@ public class StockServiceImpl implements StockService {
     }
 
     // 确定查询日期
-    String targetDate = StringUtils.isEmpty(tradeDateStr) ? stockDataMapper.findMaxDate() : tradeDateStr;
+    TradeDate target = tradingCalendar.resolve(tradeDateStr);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
     int page = pageNum != null ? pageNum : 1;
@@ -571,47 +421,16 @@ public class StockServiceImpl implements StockService {
     }
 
     // 查询包含MACD金叉信号的股票数据
-    List<StockData> stockList = stockDataMapper.findMacdGoldenCrossStocks(
-        tsCode,
-        targetDate,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("macd_golden_state", tsCode, null, target, targetDate, offset);
 
     // 如果分页查询没有返回数据，返回空结果集
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       response.setGrid_data(new ArrayList<>());
       return response;
     }
 
-    // 将股票数据按照股票代码分组，使用专门的转换方法
-    Map<String, List<StockResponse.StockData>> groupedDataByStock = stockList.stream()
-        .map(entity -> convertToDtoForAnalysis(entity, "macd_golden_state")) // 传递macd_golden_state标识
-        .collect(Collectors.groupingBy(StockResponse.StockData::getTsCode));
-
-    // 获取特定日期的数据用于排序（股票代码已在SQL中按排序）
-    List<String> sortedStockCodes = new ArrayList<>(groupedDataByStock.keySet());
-
-    // 转换为grid_data格式：List<List<List<Object>>>
-    List<List<List<Object>>> gridData = new ArrayList<>();
-
-    for (String stockCode : sortedStockCodes) {
-      List<List<Object>> stockDataArray = new ArrayList<>();
-
-      // 对同一只股票的数据按照日期升序排序
-      List<StockResponse.StockData> sortedData = groupedDataByStock.get(stockCode).stream()
-          .sorted(Comparator.comparing(StockResponse.StockData::getTradeDate))
-          .collect(Collectors.toList());
-
-      // 将每个股票的数据转换为Object[]并添加到stockDataArray
-      for (StockResponse.StockData data : sortedData) {
-        stockDataArray.add(Arrays.asList(data.toObjectArray()));
-      }
-
-      gridData.add(stockDataArray);
-    }
-
-    // 设置响应数据
-    response.setGrid_data(gridData);
+    // 设置响应数据，股票顺序与SQL中一致（按股票代码）
+    response.setGrid_data(toGridData(windows, StrategyState.MACD_GOLDEN));
 
     return response;
   }
@@ -642,7 +461,8 @@ public class StockServiceImpl implements StockService {
     }
 
     // 确定查询日期
-    String targetDate = StringUtils.isEmpty(tradeDateStr) ? stockDataMapper.findMaxDate() : tradeDateStr;
+    TradeDate target = tradingCalendar.resolve(tradeDateStr);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
     int page = pageNum != null ? pageNum : 1;
@@ -670,47 +490,16 @@ public class StockServiceImpl implements StockService {
     }
 
     // 查询包含KDJ金叉信号的股票数据
-    List<StockData> stockList = stockDataMapper.findKdjGoldenCrossStocks(
-        tsCode,
-        targetDate,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("kdj_golden_state", tsCode, null, target, targetDate, offset);
 
     // 如果分页查询没有返回数据，返回空结果集
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       response.setGrid_data(new ArrayList<>());
       return response;
     }
 
-    // 将股票数据按照股票代码分组，使用专门的转换方法
-    Map<String, List<StockResponse.StockData>> groupedDataByStock = stockList.stream()
-        .map(entity -> convertToDtoForAnalysis(entity, "kdj_golden_state")) // 传递kdj_golden_state标识
-        .collect(Collectors.groupingBy(StockResponse.StockData::getTsCode));
-
-    // 获取特定日期的数据用于排序（股票代码已在SQL中按排序）
-    List<String> sortedStockCodes = new ArrayList<>(groupedDataByStock.keySet());
-
-    // 转换为grid_data格式：List<List<List<Object>>>
-    List<List<List<Object>>> gridData = new ArrayList<>();
-
-    for (String stockCode : sortedStockCodes) {
-      List<List<Object>> stockDataArray = new ArrayList<>();
-
-      // 对同一只股票的数据按照日期升序排序
-      List<StockResponse.StockData> sortedData = groupedDataByStock.get(stockCode).stream()
-          .sorted(Comparator.comparing(StockResponse.StockData::getTradeDate))
-          .collect(Collectors.toList());
-
-      // 将每个股票的数据转换为Object[]并添加到stockDataArray
-      for (StockResponse.StockData data : sortedData) {
-        stockDataArray.add(Arrays.asList(data.toObjectArray()));
-      }
-
-      gridData.add(stockDataArray);
-    }
-
-    // 设置响应数据
-    response.setGrid_data(gridData);
+    // 设置响应数据，股票顺序与SQL中一致（按股票代码）
+    response.setGrid_data(toGridData(windows, StrategyState.KDJ_GOLDEN));
 
     return response;
   }
@@ -741,7 +530,8 @@ public class StockServiceImpl implements StockService {
     }
 
     // 确定查询日期
-    String targetDate = StringUtils.isEmpty(tradeDateStr) ? stockDataMapper.findMaxDate() : tradeDateStr;
+    TradeDate target = tradingCalendar.resolve(tradeDateStr);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
     int page = pageNum != null ? pageNum : 1;
@@ -769,47 +559,16 @@ public class StockServiceImpl implements StockService {
     }
 
     // 查询包含低位资金净流入信号的股票数据
-    List<StockData> stockList = stockDataMapper.findLowPriceInflowStocks(
-        tsCode,
-        targetDate,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("low_price_state", tsCode, null, target, targetDate, offset);
 
     // 如果分页查询没有返回数据，返回空结果集
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       response.setGrid_data(new ArrayList<>());
       return response;
     }
 
-    // 将股票数据按照股票代码分组，使用专门的转换方法
-    Map<String, List<StockResponse.StockData>> groupedDataByStock = stockList.stream()
-        .map(entity -> convertToDtoForAnalysis(entity, "low_price_state")) // 传递low_price_state标识
-        .collect(Collectors.groupingBy(StockResponse.StockData::getTsCode));
-
-    // 获取特定日期的数据用于排序（股票代码已在SQL中按排序）
-    List<String> sortedStockCodes = new ArrayList<>(groupedDataByStock.keySet());
-
-    // 转换为grid_data格式：List<List<List<Object>>>
-    List<List<List<Object>>> gridData = new ArrayList<>();
-
-    for (String stockCode : sortedStockCodes) {
-      List<List<Object>> stockDataArray = new ArrayList<>();
-
-      // 对同一只股票的数据按照日期升序排序
-      List<StockResponse.StockData> sortedData = groupedDataByStock.get(stockCode).stream()
-          .sorted(Comparator.comparing(StockResponse.StockData::getTradeDate))
-          .collect(Collectors.toList());
-
-      // 将每个股票的数据转换为Object[]并添加到stockDataArray
-      for (StockResponse.StockData data : sortedData) {
-        stockDataArray.add(Arrays.asList(data.toObjectArray()));
-      }
-
-      gridData.add(stockDataArray);
-    }
-
-    // 设置响应数据
-    response.setGrid_data(gridData);
+    // 设置响应数据，股票顺序与SQL中一致（按股票代码）
+    response.setGrid_data(toGridData(windows, StrategyState.LOW_PRICE));
 
     return response;
   }
@@ -822,7 +581,8 @@ public class StockServiceImpl implements StockService {
     }
 
     // 确定查询日期
-    String targetDate = StringUtils.isEmpty(tradeDateStr) ? stockDataMapper.findMaxDate() : tradeDateStr;
+    TradeDate target = tradingCalendar.resolve(tradeDateStr);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
     int page = pageNum != null ? pageNum : 1;
@@ -850,47 +610,16 @@ public class StockServiceImpl implements StockService {
     }
 
     // 查询包含高位资金净流出信号的股票数据
-    List<StockData> stockList = stockDataMapper.findHighLevelOutflowStocks(
-        tsCode,
-        targetDate,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("high_level_state", tsCode, null, target, targetDate, offset);
 
     // 如果分页查询没有返回数据，返回空结果集
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       response.setGrid_data(new ArrayList<>());
       return response;
     }
 
-    // 将股票数据按照股票代码分组，使用专门的转换方法
-    Map<String, List<StockResponse.StockData>> groupedDataByStock = stockList.stream()
-        .map(entity -> convertToDtoForAnalysis(entity, "high_level_state")) // 传递high_level_state标识
-        .collect(Collectors.groupingBy(StockResponse.StockData::getTsCode));
-
-    // 获取特定日期的数据用于排序（股票代码已在SQL中按排序）
-    List<String> sortedStockCodes = new ArrayList<>(groupedDataByStock.keySet());
-
-    // 转换为grid_data格式：List<List<List<Object>>>
-    List<List<List<Object>>> gridData = new ArrayList<>();
-
-    for (String stockCode : sortedStockCodes) {
-      List<List<Object>> stockDataArray = new ArrayList<>();
-
-      // 对同一只股票的数据按照日期升序排序
-      List<StockResponse.StockData> sortedData = groupedDataByStock.get(stockCode).stream()
-          .sorted(Comparator.comparing(StockResponse.StockData::getTradeDate))
-          .collect(Collectors.toList());
-
-      // 将每个股票的数据转换为Object[]并添加到stockDataArray
-      for (StockResponse.StockData data : sortedData) {
-        stockDataArray.add(Arrays.asList(data.toObjectArray()));
-      }
-
-      gridData.add(stockDataArray);
-    }
-
-    // 设置响应数据
-    response.setGrid_data(gridData);
+    // 设置响应数据，股票顺序与SQL中一致（按股票代码）
+    response.setGrid_data(toGridData(windows, StrategyState.HIGH_LEVEL));
 
     return response;
   }
@@ -920,7 +649,8 @@ public class StockServiceImpl implements StockService {
     }
 
     // 确定查询日期
-    String targetDate = StringUtils.isEmpty(tradeDateStr) ? stockDataMapper.findMaxDate() : tradeDateStr;
+    TradeDate target = tradingCalendar.resolve(tradeDateStr);
+    String targetDate = tradingCalendar.format(target);
 
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
     int page = pageNum != null ? pageNum : 1;
@@ -948,47 +678,16 @@ public class StockServiceImpl implements StockService {
     }
 
     // 查询包含KDJ金叉信号的股票数据
-    List<StockData> stockList = stockDataMapper.findRisingVolumeStocks(
-            tsCode,
-            targetDate,
-            pageSize,
-            offset);
+    List<BarWindow> windows = findWindows("rising_volume_state", tsCode, null, target, targetDate, offset);
 
     // 如果分页查询没有返回数据，返回空结果集
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       response.setGrid_data(new ArrayList<>());
       return response;
     }
 
-    // 将股票数据按照股票代码分组，使用专门的转换方法
-    Map<String, List<StockResponse.StockData>> groupedDataByStock = stockList.stream()
-            .map(entity -> convertToDtoForAnalysis(entity, "rising_volume_state")) // 传递kdj_gloden_state标识
-            .collect(Collectors.groupingBy(StockResponse.StockData::getTsCode));
-
-    // 获取特定日期的数据用于排序（股票代码已在SQL中按排序）
-    List<String> sortedStockCodes = new ArrayList<>(groupedDataByStock.keySet());
-
-    // 转换为grid_data格式：List<List<List<Object>>>
-    List<List<List<Object>>> gridData = new ArrayList<>();
-
-    for (String stockCode : sortedStockCodes) {
-      List<List<Object>> stockDataArray = new ArrayList<>();
-
-      // 对同一只股票的数据按照日期升序排序
-      List<StockResponse.StockData> sortedData = groupedDataByStock.get(stockCode).stream()
-              .sorted(Comparator.comparing(StockResponse.StockData::getTradeDate))
-              .collect(Collectors.toList());
-
-      // 将每个股票的数据转换为Object[]并添加到stockDataArray
-      for (StockResponse.StockData data : sortedData) {
-        stockDataArray.add(Arrays.asList(data.toObjectArray()));
-      }
-
-      gridData.add(stockDataArray);
-    }
-
-    // 设置响应数据
-    response.setGrid_data(gridData);
+    // 设置响应数据，股票顺序与SQL中一致（按股票代码）
+    response.setGrid_data(toGridData(windows, StrategyState.RISING_VOLUME));
 
     return response;
   }
@@ -1005,31 +704,23 @@ public class StockServiceImpl implements StockService {
    * @return 日期范围
    */
   private SimpleImmutableEntry<String, String> getDateRange(String tradeDate) {
-    String targetDate = tradeDate;
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    int ordinal = target.isTradingDay() ? target.getOrdinal() : tradingCalendar.floorOrdinal(target.getValue());
 
-    // 获取目标日期前后20个交易日的日期范围
-    String startDate = stockDataMapper.findPreviousNthTradeDate(targetDate, 20);
-    if (startDate == null) {
-      startDate = stockDataMapper.findMinDate(); // 如果没有足够的交易日，则使用最早日期
-    }
+    // 获取目标日期前后20个交易日的日期范围，交易日不足时使用最早/最晚日期
+    int startOrdinal = tradingCalendar.windowStart(Math.max(ordinal, 0), 20);
+    int endOrdinal = tradingCalendar.windowEnd(Math.max(ordinal, 0), 20);
 
-    String endDate = stockDataMapper.findNextNthTradeDate(targetDate, 20);
-    if (endDate == null) {
-      endDate = stockDataMapper.findMaxDate(); // 如果没有足够的交易日，则使用最晚日期
-    }
-
-    return new SimpleImmutableEntry<>(startDate, endDate);
+    return new SimpleImmutableEntry<>(
+        tradingCalendar.format(tradingCalendar.dateAt(startOrdinal)),
+        tradingCalendar.format(tradingCalendar.dateAt(endOrdinal)));
   }
 
   /**
-   * 构建响应对象
+   * 构建指数响应对象（指数数据不在序列缓存中，仍由SQL返回完整窗口）
    */
-  private StockResponse buildResponse(List<StockData> stockDataList,
-      String startDate, String endDate,
-      int totalStocks, Integer pageNum, String tradeDateStr) {
+  private StockResponse buildIndexResponse(List<StockData> stockDataList,
+      TradeDate baseDate, int totalStocks, Integer pageNum, String tradeDateStr) {
     StockResponse response = new StockResponse();
 
     // 设置列名
@@ -1038,83 +729,81 @@ public class StockServiceImpl implements StockService {
         "ma120", "ma250", "name"));
 
     // 设置查询日期
-    response.setDate(tradeDateStr != null ? tradeDateStr : stockDataMapper.findMaxDate());
+    response.setDate(tradeDateStr != null ? tradeDateStr : tradingCalendar.format(baseDate));
 
     // 设置分页信息
     int page = pageNum != null ? pageNum : 1;
     response.setPage(page);
 
-    // 根据tradeDateStr获取基准日期
-    String baseDate = tradeDateStr != null && !tradeDateStr.isEmpty() ? tradeDateStr : stockDataMapper.findMaxDate();
-
-    // 获取具有最大涨跌幅的股票编码及其涨跌幅值
-    Map<String, Double> maxPctChgByStockOnDate = new HashMap<>();
+    // 只考虑基准日期当天或距离最近的一天的涨跌幅，距离按交易日序号计算
+    Map<String, Double> pctChgByStockOnDate = new HashMap<>();
+    Map<String, Integer> distanceByStock = new HashMap<>();
 
     for (StockData stock : stockDataList) {
       String tsCode = stock.getTsCode();
-      String stockDate = stock.getTradeDate();
-
-      // 只考虑基准日期当天或最近的一天的涨跌幅
-      if (!maxPctChgByStockOnDate.containsKey(tsCode) ||
-          Math.abs(stockDate.compareTo(baseDate)) < Math
-              .abs(getClosestDateForStock(stockDataList, tsCode, baseDate).compareTo(baseDate))) {
-        maxPctChgByStockOnDate.put(tsCode, stock.getPctChg().doubleValue());
+      int distance = tradeDayDistance(TradeDate.parse(stock.getTradeDate()), baseDate);
+      Integer closest = distanceByStock.get(tsCode);
+      if (closest == null || distance < closest) {
+        distanceByStock.put(tsCode, distance);
+        pctChgByStockOnDate.put(tsCode, stock.getPctChg() != null ? stock.getPctChg().doubleValue() : 0.0);
       }
     }
 
     // 将股票数据按照股票代码分组
-    Map<String, List<StockResponse.StockData>> groupedDataByStock = stockDataList.stream()
-        .map(this::convertToDto)
-        .collect(Collectors.groupingBy(StockResponse.StockData::getTsCode));
+    Map<String, List<StockData>> groupedDataByStock = groupByStock(stockDataList);
 
     // 按当天涨跌幅对股票代码进行排序
     List<String> sortedStockCodes = new ArrayList<>(groupedDataByStock.keySet());
-    sortedStockCodes.sort((tsCode1, tsCode2) -> Double.compare(maxPctChgByStockOnDate.getOrDefault(tsCode2, 0.0),
-        maxPctChgByStockOnDate.getOrDefault(tsCode1, 0.0)));
-
-    // 转换为grid_data格式：List<List<List<Object>>>
-    List<List<List<Object>>> gridData = new ArrayList<>();
-
-    for (String tsCode : sortedStockCodes) {
-      List<List<Object>> stockDataArray = new ArrayList<>();
-
-      // 对同一只股票的数据按照日期升序排序
-      List<StockResponse.StockData> sortedData = groupedDataByStock.get(tsCode).stream()
-          .sorted(Comparator.comparing(StockResponse.StockData::getTradeDate))
-          .collect(Collectors.toList());
-
-      // 将每个股票的数据转换为Object[]并添加到stockDataArray
-      for (StockResponse.StockData data : sortedData) {
-        stockDataArray.add(Arrays.asList(data.toObjectArray()));
-      }
-
-      gridData.add(stockDataArray);
-    }
+    sortedStockCodes.sort((tsCode1, tsCode2) -> Double.compare(pctChgByStockOnDate.getOrDefault(tsCode2, 0.0),
+        pctChgByStockOnDate.getOrDefault(tsCode1, 0.0)));
 
     // 设置响应数据
-    response.setGrid_data(gridData);
+    response.setGrid_data(toGridData(groupedDataByStock, sortedStockCodes, this::convertToDto));
     response.setStock_count(totalStocks);
 
     return response;
   }
 
   /**
-   * 获取某只股票在给定日期最近的交易日
+   * 计算两个日期之间相隔的交易日数
+   * 日期不在交易日历中时（如指数表独有的日期）退化为整数日期差
+   */
+  private int tradeDayDistance(int date, TradeDate baseDate) {
+    int ordinal = tradingCalendar.ordinalOf(date);
+    if (ordinal != TradeDate.NO_ORDINAL && baseDate.isTradingDay()) {
+      return Math.abs(ordinal - baseDate.getOrdinal());
+    }
+    return Math.abs(date - baseDate.getValue());
+  }
+
+  /**
+   * 构建响应对象（K线来自序列缓存），按基准日期的涨跌幅对股票排序
    */
-  private String getClosestDateForStock(List<StockData> stockDataList, String tsCode, String targetDate) {
-    return stockDataList.stream()
-        .filter(stock -> stock.getTsCode().equals(tsCode))
-        .map(StockData::getTradeDate)
-        .min(Comparator.comparing(date -> Math.abs(date.compareTo(targetDate))))
-        .orElse(targetDate);
+  private StockResponse buildResponse(List<BarWindow> windows,
+      TradeDate baseDate, int totalStocks, Integer pageNum, String tradeDateStr) {
+    // 股票均在基准日期有数据，直接取当日涨跌幅降序排列
+    List<BarWindow> sortedWindows = new ArrayList<>(windows);
+    sortedWindows.sort((w1, w2) -> Double.compare(pctChgOnDate(w2, baseDate), pctChgOnDate(w1, baseDate)));
+    return buildWindowResponse(sortedWindows, baseDate, totalStocks, pageNum, tradeDateStr);
   }
 
   /**
-   * 构建涨停/跌停响应对象
+   * 基准日期当天的涨跌幅，当天无数据时为0
    */
-  private StockResponse buildLimitResponse(List<StockData> stockDataList,
-      String startDate, String endDate,
-      int totalStocks, Integer pageNum, String tradeDateStr) {
+  private double pctChgOnDate(BarWindow window, TradeDate baseDate) {
+    BarSeries series = window.getSeries();
+    int index = series.indexOf(baseDate.getOrdinal());
+    if (index < 0 || Double.isNaN(series.getPctChg(index))) {
+      return 0.0;
+    }
+    return series.getPctChg(index);
+  }
+
+  /**
+   * 构建行情窗口响应对象，股票顺序沿用传入的顺序（即SQL中的排序）
+   */
+  private StockResponse buildWindowResponse(List<BarWindow> windows,
+      TradeDate baseDate, int totalStocks, Integer pageNum, String tradeDateStr) {
     StockResponse response = new StockResponse();
 
     // 设置列名
@@ -1123,104 +812,99 @@ public class StockServiceImpl implements StockService {
         "ma120", "ma250", "name"));
 
     // 设置查询日期
-    response.setDate(tradeDateStr != null ? tradeDateStr : stockDataMapper.findMaxDate());
+    response.setDate(tradeDateStr != null ? tradeDateStr : tradingCalendar.format(baseDate));
 
     // 设置分页信息
     int page = pageNum != null ? pageNum : 1;
     response.setPage(page);
 
-    // 根据tradeDateStr获取基准日期
-    String baseDate = tradeDateStr != null && !tradeDateStr.isEmpty() ? tradeDateStr : stockDataMapper.findMaxDate();
-
-    // 将股票数据按照股票代码分组
-    Map<String, List<StockResponse.StockData>> groupedDataByStock = stockDataList.stream()
-        .map(this::convertToDto)
-        .collect(Collectors.groupingBy(StockResponse.StockData::getTsCode));
+    // 设置响应数据，常规查询中state置为0
+    response.setGrid_data(toGridData(windows, null));
+    response.setStock_count(totalStocks);
 
-    // 获取特定日期的数据用于排序（股票代码已在SQL中按涨跌幅排序）
-    List<String> sortedStockCodes = new ArrayList<>(groupedDataByStock.keySet());
+    return response;
+  }
 
-    // 转换为grid_data格式：List<List<List<Object>>>
-    List<List<List<Object>>> gridData = new ArrayList<>();
+  /**
+   * 选出目标日期满足筛选条件的当前页股票，并从序列缓存中截取每只股票前后41个交易日的K线
+   *
+   * @param filter     筛选条件，见 {@link StockDataMapper#findWindowTsCodes}
+   * @param tsCode     股票代码，可选过滤条件
+   * @param tsCodes    股票代码列表，可选过滤条件
+   * @param target     目标交易日
+   * @param targetDate 目标交易日（数据库格式）
+   * @param offset     偏移量（用于分页）
+   * @return 每只股票的K线窗口，顺序与SQL排序一致
+   */
+  private List<BarWindow> findWindows(String filter, String tsCode, List<String> tsCodes,
+      TradeDate target, String targetDate, int offset) {
+    // 非交易日当天没有任何股票数据
+    if (target == null || !target.isTradingDay()) {
+      return Collections.emptyList();
+    }
 
-    for (String tsCode : sortedStockCodes) {
-      List<List<Object>> stockDataArray = new ArrayList<>();
+    List<String> stockCodes = stockDataMapper.findWindowTsCodes(filter, tsCode, tsCodes, targetDate, pageSize, offset);
+    if (stockCodes.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return barSeriesCache.windows(new ArrayList<>(new LinkedHashSet<>(stockCodes)), target.getOrdinal(), WINDOW_RADIUS);
+  }
 
-      // 对同一只股票的数据按照日期升序排序
-      List<StockResponse.StockData> sortedData = groupedDataByStock.get(tsCode).stream()
-          .sorted(Comparator.comparing(StockResponse.StockData::getTradeDate))
-          .collect(Collectors.toList());
+  /**
+   * 将K线窗口转换为grid_data格式：List<List<List<Object>>>
+   *
+   * @param windows K线窗口
+   * @param state   作为state列输出的策略状态，为 null 时state置为0
+   */
+  private List<List<List<Object>>> toGridData(List<BarWindow> windows, StrategyState state) {
+    List<List<List<Object>>> gridData = new ArrayList<>(windows.size());
 
-      // 将每个股票的数据转换为Object[]并添加到stockDataArray
-      for (StockResponse.StockData data : sortedData) {
-        stockDataArray.add(Arrays.asList(data.toObjectArray()));
+    for (BarWindow window : windows) {
+      List<List<Object>> stockDataArray = new ArrayList<>(window.size());
+      for (int i = window.getFrom(); i < window.getTo(); i++) {
+        stockDataArray.add(Arrays.asList(convertToDto(window.getSeries(), i, state).toObjectArray()));
       }
-
       gridData.add(stockDataArray);
     }
-
-    // 设置响应数据
-    response.setGrid_data(gridData);
-    response.setStock_count(totalStocks);
-
-    return response;
+    return gridData;
   }
 
   /**
-   * 构建MA线响应对象
+   * 按股票代码分组，保持SQL返回的股票顺序
    */
-  private StockResponse buildMaResponse(List<StockData> stockDataList,
-      String startDate, String endDate,
-      int totalStocks, Integer pageNum, String tradeDateStr, String maType) {
-    StockResponse response = new StockResponse();
-
-    // 设置列名
-    response.setColumn_names(Arrays.asList(
-        "ts_code", "trade_date", "open", "high", "low", "close", "pct_chg", "vol", "state",
-        "ma120", "ma250", "name"));
-
-    // 设置查询日期
-    response.setDate(tradeDateStr != null ? tradeDateStr : stockDataMapper.findMaxDate());
-
-    // 设置分页信息
-    int page = pageNum != null ? pageNum : 1;
-    response.setPage(page);
-
-    // 根据tradeDateStr获取基准日期
-    String baseDate = tradeDateStr != null && !tradeDateStr.isEmpty() ? tradeDateStr : stockDataMapper.findMaxDate();
-
-    // 将股票数据按照股票代码分组
-    Map<String, List<StockResponse.StockData>> groupedDataByStock = stockDataList.stream()
-        .map(this::convertToDto)
-        .collect(Collectors.groupingBy(StockResponse.StockData::getTsCode));
-
-    // 获取特定日期的数据用于排序
-    List<String> sortedStockCodes = new ArrayList<>(groupedDataByStock.keySet());
+  private Map<String, List<StockData>> groupByStock(List<StockData> stockDataList) {
+    Map<String, List<StockData>> grouped = new LinkedHashMap<>();
+    for (StockData stock : stockDataList) {
+      grouped.computeIfAbsent(stock.getTsCode(), k -> new ArrayList<>()).add(stock);
+    }
+    return grouped;
+  }
 
-    // 转换为grid_data格式：List<List<List<Object>>>
-    List<List<List<Object>>> gridData = new ArrayList<>();
+  /**
+   * 转换为grid_data格式：List<List<List<Object>>>
+   * 每只股票的数据按交易日升序排列
+   */
+  private List<List<List<Object>>> toGridData(Map<String, List<StockData>> groupedDataByStock,
+      List<String> sortedStockCodes, Function<StockData, StockResponse.StockData> converter) {
+    List<List<List<Object>>> gridData = new ArrayList<>(sortedStockCodes.size());
 
     for (String tsCode : sortedStockCodes) {
-      List<List<Object>> stockDataArray = new ArrayList<>();
-
-      // 对同一只股票的数据按照日期升序排序
-      List<StockResponse.StockData> sortedData = groupedDataByStock.get(tsCode).stream()
-          .sorted(Comparator.comparing(StockResponse.StockData::getTradeDate))
-          .collect(Collectors.toList());
-
-      // 将每个股票的数据转换为Object[]并添加到stockDataArray
-      for (StockResponse.StockData data : sortedData) {
-        stockDataArray.add(Arrays.asList(data.toObjectArray()));
+      List<StockData> stockData = groupedDataByStock.get(tsCode);
+      int[] dates = new int[stockData.size()];
+      Integer[] order = new Integer[stockData.size()];
+      for (int i = 0; i < dates.length; i++) {
+        dates[i] = TradeDate.parse(stockData.get(i).getTradeDate());
+        order[i] = i;
       }
+      Arrays.sort(order, (a, b) -> Integer.compare(dates[a], dates[b]));
 
+      List<List<Object>> stockDataArray = new ArrayList<>(order.length);
+      for (Integer index : order) {
+        stockDataArray.add(Arrays.asList(converter.apply(stockData.get(index)).toObjectArray()));
+      }
       gridData.add(stockDataArray);
     }
-
-    // 设置响应数据
-    response.setGrid_data(gridData);
-    response.setStock_count(totalStocks);
-
-    return response;
+    return gridData;
   }
 
   /**
@@ -1248,51 +932,29 @@ public class StockServiceImpl implements StockService {
   }
 
   /**
-   * 将实体转换为DTO，用于分析场景
-   * 根据分析类型返回不同的状态字段
+   * 将序列缓存中的一条K线转换为DTO
+   * 根据分析类型返回不同的状态字段，state 为 null 时（常规查询）state置为0
    */
-  private StockResponse.StockData convertToDtoForAnalysis(StockData entity, String stateType) {
+  private StockResponse.StockData convertToDto(BarSeries series, int index, StrategyState state) {
     StockResponse.StockData dto = new StockResponse.StockData();
-    dto.setTsCode(entity.getTsCode());
-    dto.setTradeDate(entity.getTradeDate());
-    dto.setOpen(entity.getOpen());
-    dto.setHigh(entity.getHigh());
-    dto.setLow(entity.getLow());
-    dto.setClose(entity.getClose());
-    dto.setPctChg(entity.getPctChg());
-    dto.setVol(entity.getVol());
-    dto.setAmount(entity.getAmount());
-    dto.setMa120(entity.getMa120());
-    dto.setMa250(entity.getMa250());
-    dto.setName(entity.getName());
-    
-    // 根据分析类型设置state字段的值
-    switch (stateType) {
-      case "macd_golden_state":
-        dto.setState(entity.getMacdGoldenState() != null ? new BigDecimal(entity.getMacdGoldenState()) : BigDecimal.ZERO);
-        break;
-      case "kdj_golden_state":
-        dto.setState(entity.getKdjGoldenState() != null ? new BigDecimal(entity.getKdjGoldenState()) : BigDecimal.ZERO);
-        break;
-      case "low_price_state":
-        dto.setState(entity.getLowPriceState() != null ? new BigDecimal(entity.getLowPriceState()) : BigDecimal.ZERO);
-        break;
-      case "high_level_state":
-        dto.setState(entity.getHighLevelState() != null ? new BigDecimal(entity.getHighLevelState()) : BigDecimal.ZERO);
-        break;
-      default:
-        dto.setState(entity.getState());
-        break;
-    }
-    
+    dto.setTsCode(series.getTsCode());
+    dto.setTradeDate(tradingCalendar.format(tradingCalendar.dateAt(series.getOrdinal(index))));
+    dto.setOpen(BarSeries.toDecimal(series.getOpen(index)));
+    dto.setHigh(BarSeries.toDecimal(series.getHigh(index)));
+    dto.setLow(BarSeries.toDecimal(series.getLow(index)));
+    dto.setClose(BarSeries.toDecimal(series.getClose(index)));
+    dto.setPctChg(BarSeries.toDecimal(series.getPctChg(index)));
+    dto.setVol(BarSeries.toDecimal(series.getVol(index)));
+    dto.setAmount(BarSeries.toDecimal(series.getAmount(index)));
+    dto.setMa120(BarSeries.toDecimal(series.getMa120(index)));
+    dto.setMa250(BarSeries.toDecimal(series.getMa250(index)));
+    dto.setName(series.getName(index));
+
+    byte value = state != null ? series.getState(state, index) : BarSeries.NULL_STATE;
+    dto.setState(value != BarSeries.NULL_STATE ? BigDecimal.valueOf(value) : BigDecimal.ZERO);
     return dto;
   }
 
-  // 修改原有方法，兼容新的转换逻辑
-  private StockResponse.StockData convertToDtoForAnalysis(StockData entity) {
-    return convertToDtoForAnalysis(entity, "state");
-  }
-
   /**
    * 构建空响应对象
    */
@@ -1318,38 +980,91 @@ public class StockServiceImpl implements StockService {
     }
     
     // 使用传入的日期或获取最新日期
-    String targetDate = tradeDate;
-    if (targetDate == null || targetDate.isEmpty()) {
-      targetDate = stockDataMapper.findMaxDate();
-    }
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    String targetDate = tradingCalendar.format(target);
     
     int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
     
     // 查询收藏股票的数据
-    List<StockData> stockList = stockDataMapper.findByTsCodes(
-        favoriteStocks, 
-        targetDate,
-        null,
-        pageSize,
-        offset);
+    List<BarWindow> windows = findWindows("all", null, favoriteStocks, target, targetDate, offset);
     
     Long totalCount = Long.valueOf(favoriteStocks.size());
     
     // 如果没有数据，返回空响应
-    if (stockList.isEmpty()) {
+    if (windows.isEmpty()) {
       return buildEmptyResponse(targetDate, pageNum, tradeDate);
     }
     
-    // 从查询结果中获取实际的日期范围
-    String startDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .min(String::compareTo)
-        .orElse(targetDate);
-    String endDate = stockList.stream()
-        .map(StockData::getTradeDate)
-        .max(String::compareTo)
-        .orElse(targetDate);
-    
-    return buildResponse(stockList, startDate, endDate, totalCount.intValue(), pageNum, tradeDate);
+    return buildResponse(windows, target, totalCount.intValue(), pageNum, tradeDate);
+  }
+
+  @Override
+  public StockResponse getScreenData(String expression, String tradeDate, Integer pageNum) {
+    ScreenPlan plan = screenEngine.compile(expression);
+
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    if (target == null || !target.isTradingDay()) {
+      return buildEmptyResponse(tradeDate, pageNum, tradeDate);
+    }
+    String targetDate = tradingCalendar.format(target);
+
+    // 在全市场截面上求值，结果位图按股票代码顺序排列
+    CrossSection section = crossSectionCache.get(target);
+    BitSet matched = screenEngine.execute(plan, section);
+    int totalCount = matched.cardinality();
+
+    int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
+    List<String> stockCodes = new ArrayList<>(pageSize);
+    int skipped = 0;
+    for (int i = matched.nextSetBit(0); i >= 0 && stockCodes.size() < pageSize; i = matched.nextSetBit(i + 1)) {
+      if (skipped++ >= offset) {
+        stockCodes.add(section.getTsCode(i));
+      }
+    }
+    if (stockCodes.isEmpty()) {
+      StockResponse response = buildEmptyResponse(targetDate, pageNum, tradeDate);
+      response.setStock_count(totalCount);
+      return response;
+    }
+
+    List<BarWindow> windows = barSeriesCache.windows(stockCodes, target.getOrdinal(), WINDOW_RADIUS);
+    return buildWindowResponse(windows, target, totalCount, pageNum, tradeDate);
+  }
+
+  @Override
+  public StockResponse getRankedData(SignalPredicate filter, SortKey sort, boolean ascending, String tsCode,
+      String tradeDate, Integer pageNum) {
+    TradeDate target = tradingCalendar.resolve(tradeDate);
+    if (target == null || !target.isTradingDay()) {
+      return buildEmptyResponse(tradeDate, pageNum, tradeDate);
+    }
+    String targetDate = tradingCalendar.format(target);
+    CrossSection section = crossSectionCache.get(target);
+
+    List<String> stockCodes = new ArrayList<>(pageSize);
+    int totalCount;
+    if (tsCode != null && !tsCode.isEmpty()) {
+      // 指定股票时至多一条，不需要排序
+      int index = section.indexOf(tsCode);
+      boolean matched = index >= 0 && (filter == null || section.bitmap(filter).get(index));
+      totalCount = matched ? 1 : 0;
+      if (matched && (pageNum == null || pageNum <= 1)) {
+        stockCodes.add(tsCode);
+      }
+    } else {
+      int offset = (pageNum != null ? pageNum - 1 : 0) * pageSize;
+      totalCount = filter == null ? section.size() : section.count(filter);
+      for (int index : section.top(sort, ascending, filter, offset, pageSize)) {
+        stockCodes.add(section.getTsCode(index));
+      }
+    }
+    if (stockCodes.isEmpty()) {
+      StockResponse response = buildEmptyResponse(targetDate, pageNum, tradeDate);
+      response.setStock_count(totalCount);
+      return response;
+    }
+
+    List<BarWindow> windows = barSeriesCache.windows(stockCodes, target.getOrdinal(), WINDOW_RADIUS);
+    return buildWindowResponse(windows, target, totalCount, pageNum, tradeDate);
   }
-}
\ No newline at end of file
+}
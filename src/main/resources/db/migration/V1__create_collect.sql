@@ -0,0 +1,10 @@
+-- 自选股表
+-- 已有库在 baseline 之后执行，表已存在时跳过
+CREATE TABLE IF NOT EXISTS collect (
+    id          INT AUTO_INCREMENT PRIMARY KEY,
+    ts_code     VARCHAR(20) NOT NULL COMMENT '股票代码',
+    create_time DATETIME    NULL COMMENT '收藏时间',
+    update_time DATETIME    NULL COMMENT '更新时间',
+    UNIQUE KEY uk_collect_ts_code (ts_code),
+    KEY idx_collect_create_time (create_time)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '自选股';
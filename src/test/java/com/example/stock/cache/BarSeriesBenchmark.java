@@ -0,0 +1,158 @@
+package com.example.stock.cache;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 各存储方式的占用和读取耗时对比
+ * 使用固定种子生成的随机游走日线（两位小数价格、整数成交量、前250条无年线、约5%的停牌缺口），
+ * 数据和访问顺序只由参数决定，每项先预热再取多轮耗时的中位数
+ *
+ * 运行：
+ * <pre>
+ * mvn -B test-compile
+ * java -cp target/classes:target/test-classes com.example.stock.cache.BarSeriesBenchmark [股票数=500] [每只K线数=5000] [种子=42]
+ * </pre>
+ * 堆内占用按列数组计算（不含对象头和名称），堆外为缓冲区容量（含预留的空闲行），压缩为编码后的字节数；
+ * 堆内构建直接引用列数组不复制，构建耗时只作为堆外和压缩的参照
+ */
+public final class BarSeriesBenchmark {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int ROUNDS = 15;
+  private static final int WINDOW = 60;
+  private static final int WINDOW_READS = 200_000;
+
+  /**
+   * 防止读取循环被优化掉
+   */
+  private static volatile double sink;
+
+  private BarSeriesBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    int stocks = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int bars = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+    System.out.printf("stocks=%d bars=%d seed=%d java=%s%n", stocks, bars, seed,
+        System.getProperty("java.version"));
+
+    Random random = new Random(seed);
+    int[][] ordinals = new int[stocks][];
+    double[][][] values = new double[stocks][][];
+    byte[][][] flags = new byte[stocks][][];
+    String[][] names = new String[stocks][];
+    for (int s = 0; s < stocks; s++) {
+      generate(random, bars, s, ordinals, values, flags, names);
+    }
+
+    System.out.printf("%-10s %12s %10s %12s %12s %14s%n", "backend", "bytes", "bytes/bar", "build ms",
+        "scan ns/bar", "window ns/bar");
+    for (SeriesBackend backend : SeriesBackend.values()) {
+      BarSeries[] series = new BarSeries[stocks];
+      double build = median(() -> {
+        for (int s = 0; s < stocks; s++) {
+          series[s] = backend.create("S" + s, ordinals[s], values[s], flags[s], names[s]);
+        }
+      }) / 1e6;
+
+      long bytes = 0;
+      long total = 0;
+      for (BarSeries one : series) {
+        bytes += bytesOf(one);
+        total += one.size();
+      }
+      long barCount = total;
+      double scan = median(() -> scan(series)) / barCount;
+      double window = median(() -> windows(series, seed)) / ((double) WINDOW_READS * WINDOW);
+      System.out.printf("%-10s %12d %10.2f %12.1f %12.2f %14.2f%n", backend, bytes, (double) bytes / barCount,
+          build, scan, window);
+    }
+  }
+
+  /**
+   * 顺序读取每只股票全部K线的收盘价
+   */
+  private static void scan(BarSeries[] series) {
+    double sum = 0;
+    for (BarSeries one : series) {
+      for (int i = 0; i < one.size(); i++) {
+        sum += one.getClose(i);
+      }
+    }
+    sink = sum;
+  }
+
+  /**
+   * 随机选股票和截止交易日，按交易日定位后读取窗口内的收盘价和 Fmark，与接口按区间取数的访问方式一致
+   */
+  private static void windows(BarSeries[] series, long seed) {
+    Random random = new Random(seed);
+    double sum = 0;
+    for (int n = 0; n < WINDOW_READS; n++) {
+      BarSeries one = series[random.nextInt(series.length)];
+      int last = one.getOrdinal(one.size() - 1);
+      int to = random.nextInt(last + 1);
+      int end = one.lowerBound(to + 1);
+      for (int i = Math.max(0, end - WINDOW); i < end; i++) {
+        sum += one.getClose(i) + one.getFmark(i);
+      }
+    }
+    sink = sum;
+  }
+
+  private static long bytesOf(BarSeries series) {
+    if (series instanceof OffHeapBarSeries) {
+      return ((OffHeapBarSeries) series).offHeapBytes();
+    }
+    if (series instanceof CompressedBarSeries) {
+      return ((CompressedBarSeries) series).compressedBytes();
+    }
+    return (long) series.size() * (4 + BarSeries.VALUE_COLUMNS * 8 + BarSeries.FLAG_COLUMNS);
+  }
+
+  private static double median(Runnable task) {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      task.run();
+    }
+    long[] nanos = new long[ROUNDS];
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      task.run();
+      nanos[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(nanos);
+    return nanos[ROUNDS / 2];
+  }
+
+  private static void generate(Random random, int bars, int s, int[][] ordinals, double[][][] values,
+      byte[][][] flags, String[][] names) {
+    ordinals[s] = new int[bars];
+    values[s] = new double[BarSeries.VALUE_COLUMNS][bars];
+    flags[s] = new byte[BarSeries.FLAG_COLUMNS][bars];
+    names[s] = new String[bars];
+    String name = "股票" + s;
+    long cents = 500 + random.nextInt(5000);
+    int ordinal = 0;
+    for (int i = 0; i < bars; i++) {
+      ordinal += random.nextInt(20) == 0 ? 1 + random.nextInt(20) : 1;
+      ordinals[s][i] = ordinal;
+      long open = cents;
+      cents = Math.max(1, cents + random.nextInt(41) - 20);
+      values[s][BarSeries.OPEN][i] = open / 100.0;
+      values[s][BarSeries.CLOSE][i] = cents / 100.0;
+      values[s][BarSeries.HIGH][i] = (Math.max(open, cents) + random.nextInt(10)) / 100.0;
+      values[s][BarSeries.LOW][i] = Math.max(1, Math.min(open, cents) - random.nextInt(10)) / 100.0;
+      values[s][BarSeries.PCT_CHG][i] = Math.round((cents - open) * 10000.0 / open) / 100.0;
+      values[s][BarSeries.VOL][i] = random.nextInt(1_000_000);
+      values[s][BarSeries.AMOUNT][i] = random.nextInt(100_000_000) / 1000.0;
+      values[s][BarSeries.MA120][i] = i < 120 ? Double.NaN : Math.round(cents * 0.98) / 100.0;
+      values[s][BarSeries.MA250][i] = i < 250 ? Double.NaN : Math.round(cents * 0.95) / 100.0;
+      for (int f = 0; f < BarSeries.FLAG_COLUMNS; f++) {
+        flags[s][f][i] = (byte) (random.nextInt(10) == 0 ? 1 : 0);
+      }
+      names[s][i] = name;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package com.example.stock.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link CompressedBarSeries} 编码后逐位还原各列，以及跳跃索引上的 lowerBound 与逐条二分一致
+ */
+class CompressedBarSeriesTest {
+
+  private static final int BLOCK = CompressedBarSeries.BLOCK_SIZE;
+
+  @Test
+  void emptySeries() {
+    Columns columns = new Columns(0);
+    CompressedBarSeries series = columns.compress();
+    assertEquals(0, series.size());
+    assertEquals(0, series.lowerBound(0));
+    assertEquals(0, series.lowerBound(Integer.MAX_VALUE));
+  }
+
+  @Test
+  void blockBoundaries() {
+    int[] sizes = {1, 2, BLOCK - 1, BLOCK, BLOCK + 1, BLOCK * 2, BLOCK * 2 + 1, BLOCK * 5 + 37};
+    for (int size : sizes) {
+      Columns columns = Columns.prices(size, new Random(size));
+      assertRoundTrip(columns);
+    }
+  }
+
+  @Test
+  void nullValues() {
+    Columns columns = Columns.prices(BLOCK * 3, new Random(1));
+    // 整列为空、块首为空、块尾为空、定点块和 XOR 块中零散的空值
+    Arrays.fill(columns.values[BarSeries.MA250], Double.NaN);
+    columns.values[BarSeries.CLOSE][0] = Double.NaN;
+    columns.values[BarSeries.CLOSE][BLOCK] = Double.NaN;
+    columns.values[BarSeries.CLOSE][BLOCK - 1] = Double.NaN;
+    columns.values[BarSeries.OPEN][BLOCK + 3] = Double.NaN;
+    columns.values[BarSeries.OPEN][BLOCK + 4] = 0.1 + 0.2;
+    columns.values[BarSeries.OPEN][BLOCK + 5] = Double.NaN;
+    columns.flags[BarSeries.FMARK][7] = BarSeries.NULL_STATE;
+    assertRoundTrip(columns);
+  }
+
+  @Test
+  void negativeZero() {
+    Columns columns = Columns.prices(BLOCK + 10, new Random(2));
+    columns.values[BarSeries.PCT_CHG][0] = -0.0;
+    columns.values[BarSeries.PCT_CHG][BLOCK + 1] = -0.0;
+    columns.values[BarSeries.PCT_CHG][BLOCK + 2] = 0.0;
+    assertRoundTrip(columns);
+  }
+
+  @Test
+  void moreThanFourDecimals() {
+    Columns columns = Columns.prices(BLOCK * 2, new Random(3));
+    columns.values[BarSeries.MA120][5] = 12.34567;
+    columns.values[BarSeries.MA120][BLOCK + 5] = 1.0 / 3;
+    columns.values[BarSeries.AMOUNT][BLOCK * 2 - 1] = 0.00001;
+    assertRoundTrip(columns);
+  }
+
+  @Test
+  void valuesBeyondFixedPointRange() {
+    double limit = (1L << 52) / 1e4;
+    Columns columns = Columns.prices(BLOCK * 2, new Random(4));
+    columns.values[BarSeries.AMOUNT][3] = limit;
+    columns.values[BarSeries.AMOUNT][4] = -limit;
+    columns.values[BarSeries.AMOUNT][5] = Math.nextDown(limit);
+    columns.values[BarSeries.VOL][BLOCK] = 1e300;
+    columns.values[BarSeries.VOL][BLOCK + 1] = Double.MAX_VALUE;
+    columns.values[BarSeries.VOL][BLOCK + 2] = Double.POSITIVE_INFINITY;
+    columns.values[BarSeries.VOL][BLOCK + 3] = Double.MIN_VALUE;
+    assertRoundTrip(columns);
+  }
+
+  @Test
+  void ordinalGaps() {
+    Columns columns = Columns.prices(BLOCK * 3, new Random(5));
+    int ordinal = 1000;
+    for (int i = 0; i < columns.ordinals.length; i++) {
+      // 连续交易日、短停牌、跨块边界的长停牌，以及停牌后恢复连续使二阶差分为负
+      if (i == 10) {
+        ordinal += 3;
+      } else if (i == BLOCK) {
+        ordinal += 500;
+      } else if (i == BLOCK * 2 - 1) {
+        ordinal += 100_000;
+      }
+      columns.ordinals[i] = ordinal++;
+    }
+    assertRoundTrip(columns);
+  }
+
+  @Test
+  void randomSeries() {
+    Random random = new Random(6);
+    for (int round = 0; round < 50; round++) {
+      Columns columns = Columns.prices(random.nextInt(BLOCK * 4), random);
+      int ordinal = random.nextInt(10);
+      for (int i = 0; i < columns.ordinals.length; i++) {
+        ordinal += random.nextInt(10) == 0 ? 1 + random.nextInt(300) : 1;
+        columns.ordinals[i] = ordinal;
+      }
+      for (int c = 0; c < BarSeries.VALUE_COLUMNS; c++) {
+        for (int i = 0; i < columns.ordinals.length; i++) {
+          int kind = random.nextInt(40);
+          if (kind == 0) {
+            columns.values[c][i] = Double.NaN;
+          } else if (kind == 1) {
+            columns.values[c][i] = random.nextGaussian();
+          } else if (kind == 2) {
+            columns.values[c][i] = -0.0;
+          }
+        }
+      }
+      assertRoundTrip(columns);
+    }
+  }
+
+  /**
+   * 逐条比较各列的位模式，随后按乱序下标再比较一次，覆盖块缓存失效后重新解码的路径
+   */
+  private static void assertRoundTrip(Columns columns) {
+    CompressedBarSeries series = columns.compress();
+    int size = columns.ordinals.length;
+    assertEquals(size, series.size());
+    for (int i = 0; i < size; i++) {
+      assertRow(columns, series, i);
+    }
+    Random random = new Random(size);
+    for (int n = 0; n < Math.min(size, 200); n++) {
+      assertRow(columns, series, random.nextInt(size));
+    }
+
+    if (size == 0) {
+      return;
+    }
+    int first = columns.ordinals[0];
+    int last = columns.ordinals[size - 1];
+    for (int ordinal = first - 2; ordinal <= last + 2; ordinal++) {
+      int expected = lowerBound(columns.ordinals, ordinal);
+      assertEquals(expected, series.lowerBound(ordinal), "lowerBound(" + ordinal + ")");
+      assertEquals(expected < size && columns.ordinals[expected] == ordinal ? expected : -1,
+          series.indexOf(ordinal), "indexOf(" + ordinal + ")");
+    }
+    assertEquals(0, series.lowerBound(Integer.MIN_VALUE));
+    assertEquals(size, series.lowerBound(Integer.MAX_VALUE));
+  }
+
+  private static void assertRow(Columns columns, CompressedBarSeries series, int i) {
+    assertEquals(columns.ordinals[i], series.getOrdinal(i), "ordinal[" + i + "]");
+    for (int c = 0; c < BarSeries.VALUE_COLUMNS; c++) {
+      assertEquals(Double.doubleToLongBits(columns.values[c][i]), Double.doubleToLongBits(series.getValue(c, i)),
+          "value[" + c + "][" + i + "] = " + columns.values[c][i]);
+    }
+    for (int f = 0; f < BarSeries.FLAG_COLUMNS; f++) {
+      assertEquals(columns.flags[f][i], series.getFlag(f, i), "flag[" + f + "][" + i + "]");
+    }
+    assertEquals(columns.names[i], series.getName(i), "name[" + i + "]");
+  }
+
+  private static int lowerBound(int[] ordinals, int ordinal) {
+    int index = Arrays.binarySearch(ordinals, ordinal);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  /**
+   * 构建压缩序列用的列数组
+   */
+  private static final class Columns {
+    private final int[] ordinals;
+    private final double[][] values;
+    private final byte[][] flags;
+    private final String[] names;
+
+    private Columns(int size) {
+      ordinals = new int[size];
+      values = new double[BarSeries.VALUE_COLUMNS][size];
+      flags = new byte[BarSeries.FLAG_COLUMNS][size];
+      names = new String[size];
+    }
+
+    /**
+     * 连续交易日上的随机游走价格，数值均为两位小数，成交量为整数
+     */
+    private static Columns prices(int size, Random random) {
+      Columns columns = new Columns(size);
+      long cents = 1000 + random.nextInt(5000);
+      for (int i = 0; i < size; i++) {
+        columns.ordinals[i] = i;
+        long open = cents;
+        cents = Math.max(1, cents + random.nextInt(41) - 20);
+        columns.values[BarSeries.OPEN][i] = open / 100.0;
+        columns.values[BarSeries.CLOSE][i] = cents / 100.0;
+        columns.values[BarSeries.HIGH][i] = (Math.max(open, cents) + random.nextInt(10)) / 100.0;
+        columns.values[BarSeries.LOW][i] = Math.max(1, Math.min(open, cents) - random.nextInt(10)) / 100.0;
+        columns.values[BarSeries.PCT_CHG][i] = Math.round((cents - open) * 10000.0 / open) / 100.0;
+        columns.values[BarSeries.VOL][i] = random.nextInt(1_000_000);
+        columns.values[BarSeries.AMOUNT][i] = random.nextInt(100_000_000) / 1000.0;
+        columns.values[BarSeries.MA120][i] = cents / 100.0;
+        columns.values[BarSeries.MA250][i] = i < 250 ? Double.NaN : cents / 100.0;
+        for (int f = 0; f < BarSeries.FLAG_COLUMNS; f++) {
+          columns.flags[f][i] = random.nextInt(5) == 0 ? BarSeries.NULL_STATE : (byte) random.nextInt(3);
+        }
+        columns.names[i] = i < size / 2 ? "平安银行" : "ST平安";
+      }
+      return columns;
+    }
+
+    private CompressedBarSeries compress() {
+      return CompressedBarSeries.create("000001.SZ", ordinals, values, flags, names);
+    }
+  }
+}
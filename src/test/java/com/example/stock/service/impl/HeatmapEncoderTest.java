@@ -0,0 +1,226 @@
+package com.example.stock.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按 {@link HeatmapEncoder} 文档中的格式解码，与编码前的数据比较
+ */
+class HeatmapEncoderTest {
+
+  private static final int DATE = 20240105;
+
+  @Test
+  void numericCodesKeepLeadingZeros() {
+    String[] tsCodes = {"000001.SZ", "000002.SZ", "300750.SZ", "600000.SH", "688981.SH", "830799.BJ"};
+    Heatmap decoded = roundTrip(tsCodes, null);
+    assertEquals(0, decoded.flags & HeatmapEncoder.FLAG_PREFIX_CODES);
+  }
+
+  @Test
+  void mixedWidthsFallBackToPrefixCodes() {
+    String[] tsCodes = {"000001.SZ", "1.SZ", "01.SZ", "600000.SH"};
+    Heatmap decoded = roundTrip(tsCodes, null);
+    assertEquals(HeatmapEncoder.FLAG_PREFIX_CODES, decoded.flags & HeatmapEncoder.FLAG_PREFIX_CODES);
+  }
+
+  @Test
+  void widthsArePerSuffix() {
+    String[] tsCodes = {"00700.HK", "000001.SZ", "09988.HK", "600000.SH"};
+    Heatmap decoded = roundTrip(tsCodes, null);
+    assertEquals(0, decoded.flags & HeatmapEncoder.FLAG_PREFIX_CODES);
+  }
+
+  @Test
+  void nonNumericCodes() {
+    roundTrip(new String[]{"AAPL.O", "AMZN.O", "BABA.N", "000001.SZ", "X"}, null);
+  }
+
+  @Test
+  void namesAndNulls() {
+    String[] tsCodes = {"000001.SZ", "000002.SZ", "000004.SZ"};
+    String[] names = {"平安银行", null, "*ST国华"};
+    Heatmap decoded = roundTrip(tsCodes, names);
+    assertEquals("", decoded.names[1]);
+  }
+
+  @Test
+  void empty() {
+    roundTrip(new String[0], null);
+    roundTrip(new String[0], new String[0]);
+  }
+
+  @Test
+  void marketSizedSection() {
+    Random random = new Random(42);
+    String[] tsCodes = marketCodes(random);
+    String[] names = new String[tsCodes.length];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = "股票" + i;
+    }
+    byte[] bytes = roundTrip(tsCodes, null).bytes;
+    roundTrip(tsCodes, names);
+    // 与类文档和接口文档中“5300只股票不含名称时约 41KB”一致
+    assertTrue(bytes.length > 40_000 && bytes.length < 42_000, "encoded " + bytes.length + " bytes");
+  }
+
+  /**
+   * 编码后解码，逐列比较
+   */
+  private static Heatmap roundTrip(String[] tsCodes, String[] names) {
+    Random random = new Random(tsCodes.length);
+    int size = tsCodes.length;
+    double[] pctChg = new double[size];
+    double[] amount = new double[size];
+    for (int i = 0; i < size; i++) {
+      pctChg[i] = i % 17 == 3 ? Double.NaN : Math.round(random.nextGaussian() * 300) / 100.0;
+      amount[i] = i % 19 == 5 ? Double.NaN : Math.round(random.nextDouble() * 1e9) / 1000.0;
+    }
+
+    byte[] bytes = HeatmapEncoder.encode(DATE, tsCodes, pctChg, amount, names);
+    Heatmap decoded = decode(bytes);
+    assertEquals(DATE, decoded.date);
+    assertArrayEquals(tsCodes, decoded.tsCodes);
+    for (int i = 0; i < size; i++) {
+      assertEquals(pctChg[i], decoded.pctChg[i], 1e-9, "pct_chg[" + i + "]");
+      assertEquals((float) amount[i], decoded.amount[i], "amount[" + i + "]");
+    }
+    if (names == null) {
+      assertNull(decoded.names);
+    } else {
+      for (int i = 0; i < size; i++) {
+        assertEquals(names[i] == null ? "" : names[i], decoded.names[i]);
+      }
+    }
+    return decoded;
+  }
+
+  /**
+   * 5300只股票：深市主板、创业板，沪市主板、科创板，北交所，代码间随机间隔
+   */
+  private static String[] marketCodes(Random random) {
+    List<String> codes = new ArrayList<>();
+    addCodes(codes, random, 1, 1500, "SZ");
+    addCodes(codes, random, 300001, 1300, "SZ");
+    addCodes(codes, random, 600000, 1700, "SH");
+    addCodes(codes, random, 688001, 560, "SH");
+    addCodes(codes, random, 830799, 240, "BJ");
+    codes.sort(null);
+    return codes.toArray(new String[0]);
+  }
+
+  private static void addCodes(List<String> codes, Random random, int first, int count, String suffix) {
+    int number = first;
+    for (int i = 0; i < count; i++) {
+      codes.add(String.format("%06d.%s", number, suffix));
+      number += 1 + (random.nextInt(4) == 0 ? random.nextInt(3) : 0);
+    }
+  }
+
+  private static Heatmap decode(byte[] bytes) {
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+    byte[] magic = new byte[4];
+    in.get(magic);
+    assertEquals("HMAP", new String(magic, StandardCharsets.US_ASCII));
+    assertEquals(HeatmapEncoder.VERSION, in.get());
+    Heatmap heatmap = new Heatmap();
+    heatmap.bytes = bytes;
+    heatmap.flags = in.get();
+    heatmap.date = in.getInt();
+    int size = (int) readVarint(in);
+
+    heatmap.tsCodes = new String[size];
+    if ((heatmap.flags & HeatmapEncoder.FLAG_PREFIX_CODES) == 0) {
+      int suffixCount = (int) readVarint(in);
+      String[] suffixes = new String[suffixCount];
+      int[] digits = new int[suffixCount];
+      for (int s = 0; s < suffixCount; s++) {
+        suffixes[s] = readString(in);
+        digits[s] = (int) readVarint(in);
+      }
+      long number = 0;
+      for (int i = 0; i < size; i++) {
+        number += unzigzag(readVarint(in));
+        int suffix = (int) readVarint(in);
+        StringBuilder code = new StringBuilder(Long.toString(number));
+        while (code.length() < digits[suffix]) {
+          code.insert(0, '0');
+        }
+        heatmap.tsCodes[i] = code.append('.').append(suffixes[suffix]).toString();
+      }
+    } else {
+      byte[] previous = new byte[0];
+      for (int i = 0; i < size; i++) {
+        int shared = (int) readVarint(in);
+        byte[] current = new byte[shared + (int) readVarint(in)];
+        System.arraycopy(previous, 0, current, 0, shared);
+        in.get(current, shared, current.length - shared);
+        heatmap.tsCodes[i] = new String(current, StandardCharsets.UTF_8);
+        previous = current;
+      }
+    }
+
+    heatmap.pctChg = new double[size];
+    for (int i = 0; i < size; i++) {
+      long value = readVarint(in);
+      heatmap.pctChg[i] = value == 0 ? Double.NaN : unzigzag(value - 1) / 100.0;
+    }
+    heatmap.amount = new float[size];
+    for (int i = 0; i < size; i++) {
+      heatmap.amount[i] = Float.intBitsToFloat(in.getInt());
+    }
+    if ((heatmap.flags & HeatmapEncoder.FLAG_NAMES) != 0) {
+      heatmap.names = new String[size];
+      for (int i = 0; i < size; i++) {
+        heatmap.names[i] = readString(in);
+      }
+    }
+    assertEquals(0, in.remaining(), "trailing bytes");
+    return heatmap;
+  }
+
+  private static long readVarint(ByteBuffer in) {
+    long result = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.get();
+      result |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return result;
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[(int) readVarint(in)];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 解码结果
+   */
+  private static final class Heatmap {
+    private byte[] bytes;
+    private int flags;
+    private int date;
+    private String[] tsCodes;
+    private double[] pctChg;
+    private float[] amount;
+    private String[] names;
+  }
+}